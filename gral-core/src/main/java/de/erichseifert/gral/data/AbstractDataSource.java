@@ -34,7 +34,9 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
+import de.erichseifert.gral.data.statistics.RowStatistics;
 import de.erichseifert.gral.data.statistics.Statistics;
+import de.erichseifert.gral.util.DataUtils;
 
 
 /**
@@ -175,10 +177,10 @@ public abstract class AbstractDataSource implements DataSource, Serializable {
 	}
 
 	public DataSource getRowStatistics(String key) {
-		DataTable statisticsTable = getRowCount() != 0 ? new DataTable(Double.class) : new DataTable();
-		for (int rowIndex = 0; rowIndex < getRowCount(); rowIndex++) {
-			Record row = getRecord(rowIndex);
-			statisticsTable.add(new Statistics(row).get(key));
+		double[] rowStatistics = RowStatistics.get(this, key);
+		DataTable statisticsTable = rowStatistics.length != 0 ? new DataTable(Double.class) : new DataTable();
+		for (double value : rowStatistics) {
+			statisticsTable.add(new Record(value));
 		}
 		return statisticsTable;
 	}
@@ -257,6 +259,54 @@ public abstract class AbstractDataSource implements DataSource, Serializable {
 		return new Column(columnType, columnData.toArray(new Comparable[0]));
 	}
 
+	/**
+	 * Copies the values of consecutive rows in the specified column to an
+	 * array of primitive values. Cells that don't contain a number are stored
+	 * as {@code NaN}. This allows numeric data to be processed in blocks
+	 * without creating an object for every cell. Rows outside the data
+	 * source, i.e. negative rows and rows after the last row, are stored as
+	 * {@code NaN} as well; the remaining rows are copied with
+	 * {@link #getValuesInRange(int, int, double[], int, int)}.
+	 * <p>Values of arbitrary data sources can be copied with
+	 * {@link DataUtils#getValues(DataSource, int, int, double[], int, int)}.</p>
+	 * @param col Index of the column.
+	 * @param row Index of the first row to be copied.
+	 * @param values Array that receives the values.
+	 * @param offset Position in the array where the first value is stored.
+	 * @param length Number of rows to be copied.
+	 */
+	public void getValues(int col, int row, double[] values, int offset, int length) {
+		long first = Math.max(row, 0L);
+		long last = Math.min((long) row + length, getRowCount());
+		if (first >= last) {
+			Arrays.fill(values, offset, offset + length, Double.NaN);
+			return;
+		}
+		int before = (int) (first - row);
+		int count = (int) (last - first);
+		Arrays.fill(values, offset, offset + before, Double.NaN);
+		getValuesInRange(col, (int) first, values, offset + before, count);
+		Arrays.fill(values, offset + before + count, offset + length, Double.NaN);
+	}
+
+	/**
+	 * Copies the values of consecutive rows in the specified column to an
+	 * array of primitive values. All rows exist in the data source. Cells
+	 * that don't contain a number are stored as {@code NaN}. Subclasses
+	 * should override this method if they can provide values without
+	 * creating objects.
+	 * @param col Index of the column.
+	 * @param row Index of the first row to be copied.
+	 * @param values Array that receives the values.
+	 * @param offset Position in the array where the first value is stored.
+	 * @param length Number of rows to be copied.
+	 */
+	protected void getValuesInRange(int col, int row, double[] values, int offset, int length) {
+		for (int i = 0; i < length; i++) {
+			values[offset + i] = DataUtils.getValueOrNaN(get(col, row + i));
+		}
+	}
+
 	@Override
 	public String getName() {
 		return name;
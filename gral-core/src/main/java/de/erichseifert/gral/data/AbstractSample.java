@@ -0,0 +1,307 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import de.erichseifert.gral.util.DataUtils;
+
+/**
+ * <p>Abstract base class for views that contain a random sample of a bounded
+ * number of rows of another data source. Such samples allow plotting huge
+ * data sources with a bounded number of points.</p>
+ *
+ * <p>Rows that are appended to the original data source are passed to the
+ * implementation incrementally by calling {@link #sample(int, int)}. Any
+ * other change causes the sample to be drawn again from scratch. The
+ * implementation uses the random number generator provided by
+ * {@link #getRandom()}, which is initialized with a fixed seed, so the
+ * sample can be reproduced after deserialization. Listeners are only
+ * notified about appended rows if the sample changed. Events refer to the
+ * rows of the sample: rows that contain a different original row are
+ * reported as updated, and only rows that enlarge the sample are reported
+ * as added.</p>
+ */
+public abstract class AbstractSample extends AbstractDataSource
+		implements DataListener {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -2219633829063391744L;
+
+	/** Original data source. */
+	private final DataSource original;
+	/** Maximal number of rows in the sample. */
+	private final int size;
+	/** Seed of the random number generator. */
+	private final long seed;
+
+	/** Random number generator. */
+	private transient Random random;
+	/** Number of rows of the original data source that have been sampled. */
+	private transient int sampledRowCount;
+
+	/**
+	 * Initializes a new instance with the specified data source. Derived
+	 * classes must call {@link #rebuild()} after their initialization.
+	 * @param original Data source to be sampled.
+	 * @param size Maximal number of rows in the sample.
+	 * @param seed Seed of the random number generator.
+	 */
+	public AbstractSample(DataSource original, int size, long seed) {
+		if (size <= 0) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid sample size: {0,number,integer}", size)); //$NON-NLS-1$
+		}
+		this.original = original;
+		this.size = size;
+		this.seed = seed;
+		setColumnTypes(original.getColumnTypes());
+		this.original.addDataListener(this);
+	}
+
+	/**
+	 * Returns the data source that is sampled.
+	 * @return Original data source.
+	 */
+	public DataSource getOriginal() {
+		return original;
+	}
+
+	/**
+	 * Returns the maximal number of rows in the sample.
+	 * @return Sample size.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the seed of the random number generator.
+	 * @return Seed.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Returns the random number generator that must be used for sampling.
+	 * @return Random number generator.
+	 */
+	protected Random getRandom() {
+		return random;
+	}
+
+	/**
+	 * Returns the index of the original row that is contained in the
+	 * specified row of the sample.
+	 * @param row Row index in the sample.
+	 * @return Row index in the original data source.
+	 */
+	public abstract int getOriginalRow(int row);
+
+	/**
+	 * Discards the current sample.
+	 */
+	protected abstract void clear();
+
+	/**
+	 * Adds the specified rows of the original data source to the sample.
+	 * The method is called with consecutive rows in ascending order.
+	 * @param rowStart Index of the first row.
+	 * @param rowEnd Index after the last row.
+	 * @return {@code true} if the sample has changed.
+	 */
+	protected abstract boolean sample(int rowStart, int rowEnd);
+
+	/**
+	 * Draws the sample again from all rows of the original data source.
+	 */
+	protected void rebuild() {
+		random = new Random(seed);
+		setColumnTypes(original.getColumnTypes());
+		clear();
+		sampledRowCount = original.getRowCount();
+		sample(0, sampledRowCount);
+	}
+
+	/**
+	 * Returns the row with the specified index.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell
+	 */
+	public Comparable<?> get(int col, int row) {
+		return original.get(col, getOriginalRow(row));
+	}
+
+	@Override
+	protected void getValuesInRange(int col, int row, double[] values, int offset, int length) {
+		for (int i = 0; i < length; i++) {
+			DataUtils.getValues(original, col, getOriginalRow(row + i), values, offset + i, 1);
+		}
+	}
+
+	/**
+	 * Returns whether the specified events only describe rows that were
+	 * appended after the rows that have already been sampled.
+	 * @param events Event objects.
+	 * @return {@code true} if only new rows were appended.
+	 */
+	private boolean isAppended(DataChangeEvent... events) {
+		if (events == null || events.length == 0 ||
+				original.getRowCount() < sampledRowCount) {
+			return false;
+		}
+		for (DataChangeEvent event : events) {
+			if (event.getRow() < sampledRowCount) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the indexes of the original rows that are contained in the
+	 * sample.
+	 * @return Row indexes in the original data source.
+	 */
+	private int[] getOriginalRows() {
+		int[] rows = new int[getRowCount()];
+		for (int row = 0; row < rows.length; row++) {
+			rows[row] = getOriginalRow(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * Notifies listeners of the rows of the sample that have changed. Rows
+	 * that contain a different original row are reported as updated, rows
+	 * after the previous end of the sample as added, and rows after the
+	 * current end of the sample as removed.
+	 * @param rowsOld Original rows that were contained in the sample before
+	 *        the change.
+	 * @param rebuilt Whether the sample was drawn again. In this case all
+	 *        rows are reported as updated, as the values of the original
+	 *        rows may have changed as well.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void notifySampleChanged(int[] rowsOld, boolean rebuilt) {
+		int colCount = getColumnCount();
+		int rowCount = getRowCount();
+		List<DataChangeEvent> added = new ArrayList<>();
+		List<DataChangeEvent> updated = new ArrayList<>();
+		List<DataChangeEvent> removed = new ArrayList<>();
+		for (int row = 0; row < Math.max(rowCount, rowsOld.length); row++) {
+			for (int col = 0; col < colCount; col++) {
+				if (row >= rowCount) {
+					removed.add(new DataChangeEvent(this, col, row, null, null));
+				} else if (row >= rowsOld.length) {
+					added.add(new DataChangeEvent(this, col, row, null, get(col, row)));
+				} else if (rebuilt) {
+					updated.add(new DataChangeEvent(this, col, row, null, get(col, row)));
+				} else if (rowsOld[row] != getOriginalRow(row)) {
+					Comparable valueOld = original.get(col, rowsOld[row]);
+					updated.add(new DataChangeEvent(this, col, row, valueOld, get(col, row)));
+				}
+			}
+		}
+		if (!removed.isEmpty()) {
+			notifyDataRemoved(removed.toArray(new DataChangeEvent[0]));
+		}
+		if (!updated.isEmpty()) {
+			notifyDataUpdated(updated.toArray(new DataChangeEvent[0]));
+		}
+		if (!added.isEmpty()) {
+			notifyDataAdded(added.toArray(new DataChangeEvent[0]));
+		}
+	}
+
+	/**
+	 * Method that is invoked when data has been added.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been added.
+	 */
+	public void dataAdded(DataSource source, DataChangeEvent... events) {
+		int[] rowsOld = getOriginalRows();
+		if (!isAppended(events)) {
+			rebuild();
+			notifySampleChanged(rowsOld, true);
+			return;
+		}
+		int rowStart = sampledRowCount;
+		sampledRowCount = original.getRowCount();
+		if (sample(rowStart, sampledRowCount)) {
+			notifySampleChanged(rowsOld, false);
+		}
+	}
+
+	/**
+	 * Method that is invoked when data has been updated.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been updated.
+	 */
+	public void dataUpdated(DataSource source, DataChangeEvent... events) {
+		int[] rowsOld = getOriginalRows();
+		rebuild();
+		notifySampleChanged(rowsOld, true);
+	}
+
+	/**
+	 * Method that is invoked when data has been removed.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been removed.
+	 */
+	public void dataRemoved(DataSource source, DataChangeEvent... events) {
+		int[] rowsOld = getOriginalRows();
+		rebuild();
+		notifySampleChanged(rowsOld, true);
+	}
+
+	/**
+	 * Custom deserialization method.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		// Normal deserialization
+		in.defaultReadObject();
+
+		// Restore listeners
+		original.addDataListener(this);
+	}
+}
@@ -26,6 +26,8 @@ import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.erichseifert.gral.util.DataUtils;
+
 /**
  * Class that represents a view on several columns of a {@code DataSource}.
  * @see DataSource
@@ -102,6 +104,11 @@ public class DataSeries extends AbstractDataSource implements DataListener {
 		}
 	}
 
+	@Override
+	protected void getValuesInRange(int col, int row, double[] values, int offset, int length) {
+		DataUtils.getValues(data, cols.get(col), row, values, offset, length);
+	}
+
 	@Override
 	public int getColumnCount() {
 		return cols.size();
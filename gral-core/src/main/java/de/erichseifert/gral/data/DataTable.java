@@ -29,6 +29,7 @@ import java.util.Comparator;
 import java.util.List;
 
 import de.erichseifert.gral.data.comparators.DataComparator;
+import de.erichseifert.gral.util.DataUtils;
 
 /**
  * An in-memory, random access implementation of a mutable data source using
@@ -161,23 +162,7 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 	 */
 	public int add(List<? extends Comparable<?>> values) {
 		DataChangeEvent[] events;
-		if (values.size() != getColumnCount()) {
-			throw new IllegalArgumentException(MessageFormat.format(
-					"Wrong number of columns! Expected {0,number,integer}, got {1,number,integer}.", //$NON-NLS-1$
-					getColumnCount(), values.size()));
-		}
-
-		// Check row data types
-		Class<? extends Comparable<?>>[] types = getColumnTypes();
-		for (int colIndex = 0; colIndex < values.size(); colIndex++) {
-			Comparable<?> value = values.get(colIndex);
-			if ((value != null)
-					&& !(types[colIndex].isAssignableFrom(value.getClass()))) {
-				throw new IllegalArgumentException(MessageFormat.format(
-						"Wrong column type! Expected {0}, got {1}.", //$NON-NLS-1$
-						types[colIndex], value.getClass()));
-			}
-		}
+		checkRow(values, getColumnTypes());
 
 		// Add data to row
 		Record row = new Record(values);
@@ -196,6 +181,73 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 		return rowIndex - 1;
 	}
 
+	/**
+	 * Adds rows with the specified containers' elements to the table.
+	 * The values of each row are added in the order they are specified. If
+	 * the types of the table columns and the values do not match, an
+	 * {@code IllegalArgumentException} is thrown and no row is added.
+	 * Listeners are notified once for all rows with one event per added
+	 * cell, like with {@link #add(List)}.
+	 * <p>Rows can be added to arbitrary data sinks with
+	 * {@link DataUtils#addAll(MutableDataSource, List)}.</p>
+	 * @param rows Rows to be added.
+	 * @return Index of the first row that has been added.
+	 */
+	public int addAll(List<? extends List<? extends Comparable<?>>> rows) {
+		Class<? extends Comparable<?>>[] types = getColumnTypes();
+		List<Record> records = new ArrayList<>(rows.size());
+		for (List<? extends Comparable<?>> values : rows) {
+			checkRow(values, types);
+			records.add(new Record(values));
+		}
+
+		int rowStart;
+		synchronized (this.rows) {
+			rowStart = this.rows.size();
+			this.rows.addAll(records);
+		}
+		if (!records.isEmpty()) {
+			int colCount = getColumnCount();
+			DataChangeEvent[] events = new DataChangeEvent[records.size()*colCount];
+			int i = 0;
+			for (int row = 0; row < records.size(); row++) {
+				Record record = records.get(row);
+				for (int col = 0; col < colCount; col++) {
+					events[i++] = new DataChangeEvent(this, col, rowStart + row, null, record.get(col));
+				}
+			}
+			notifyDataAdded(events);
+		}
+		return rowStart;
+	}
+
+	/**
+	 * Checks whether the number and the types of the specified values match
+	 * the columns of this table.
+	 * @param values Values of a row.
+	 * @param types Types of the columns.
+	 * @throws IllegalArgumentException if the values don't match.
+	 */
+	private void checkRow(List<? extends Comparable<?>> values,
+			Class<? extends Comparable<?>>[] types) {
+		if (values.size() != getColumnCount()) {
+			throw new IllegalArgumentException(MessageFormat.format(
+					"Wrong number of columns! Expected {0,number,integer}, got {1,number,integer}.", //$NON-NLS-1$
+					getColumnCount(), values.size()));
+		}
+
+		// Check row data types
+		for (int colIndex = 0; colIndex < values.size(); colIndex++) {
+			Comparable<?> value = values.get(colIndex);
+			if ((value != null)
+					&& !(types[colIndex].isAssignableFrom(value.getClass()))) {
+				throw new IllegalArgumentException(MessageFormat.format(
+						"Wrong column type! Expected {0}, got {1}.", //$NON-NLS-1$
+						types[colIndex], value.getClass()));
+			}
+		}
+	}
+
 	/**
 	 * Adds the specified row to the table.
 	 * The values are added in the order they are specified. If the types of
@@ -297,6 +349,21 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 		return r.get(col);
 	}
 
+	@Override
+	public void getValues(int col, int row, double[] values, int offset, int length) {
+		synchronized (rows) {
+			int rowStart = Math.max(row, 0);
+			int rowEnd = (int) Math.min((long) row + length, rows.size());
+			int i = offset + Math.min(rowStart - row, length);
+			Arrays.fill(values, offset, i, Double.NaN);
+			for (int rowIndex = rowStart; rowIndex < rowEnd; rowIndex++) {
+				Record r = rows.get(rowIndex);
+				values[i++] = (r == null) ? Double.NaN : DataUtils.getValueOrNaN(r.get(col));
+			}
+			Arrays.fill(values, i, offset + length, Double.NaN);
+		}
+	}
+
 	/**
 	 * Sets the value of a cell specified by its column and row indexes.
 	 * @param <T> Data type of the cell.
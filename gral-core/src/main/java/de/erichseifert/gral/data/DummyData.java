@@ -23,6 +23,8 @@ package de.erichseifert.gral.data;
 
 import java.util.Arrays;
 
+import de.erichseifert.gral.util.DataUtils;
+
 
 /**
  * Class that represents a data source containing the same value in each cell.
@@ -67,6 +69,11 @@ public class DummyData extends AbstractDataSource {
 		return value;
 	}
 
+	@Override
+	protected void getValuesInRange(int col, int row, double[] values, int offset, int length) {
+		Arrays.fill(values, offset, offset + length, DataUtils.getValueOrNaN(value));
+	}
+
 	@Override
 	public int getColumnCount() {
 		return cols;
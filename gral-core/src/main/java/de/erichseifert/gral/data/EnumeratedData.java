@@ -21,6 +21,8 @@
  */
 package de.erichseifert.gral.data;
 
+import de.erichseifert.gral.util.DataUtils;
+
 
 /**
  * <p>Class that creates a new data source which adds a leading column
@@ -93,6 +95,17 @@ public class EnumeratedData extends AbstractDataSource
 		return original.get(col - 1, row);
 	}
 
+	@Override
+	protected void getValuesInRange(int col, int row, double[] values, int offset, int length) {
+		if (col >= 1) {
+			DataUtils.getValues(original, col - 1, row, values, offset, length);
+			return;
+		}
+		for (int i = 0; i < length; i++) {
+			values[offset + i] = (row + i)*steps + this.offset;
+		}
+	}
+
 	/**
 	 * Returns the number of rows of the data source.
 	 * @return number of rows in the data source.
@@ -0,0 +1,271 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.io.ObjectStreamException;
+
+
+/**
+ * <p>Read-only data source that provides one color channel of an image as a
+ * grid of values. Each column of the data source belongs to a column of
+ * pixels, and each row to a row of pixels. The values are read directly
+ * from the raster of the image when they are requested, so the pixels
+ * aren't copied.</p>
+ * <p>Channel values range from 0 to 255 and can be scaled with a factor and
+ * an offset: {@code value = channel*factor + offset}. Changes to the image
+ * are visible immediately, but no events are sent to listeners.</p>
+ * <p>When serialized, the values are copied to a {@link DataTable}.</p>
+ */
+public class RasterData extends AbstractDataSource {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -6437284211574624812L;
+
+	/** Weight of the red channel for luminance (ITU-R BT.601). */
+	private static final double LUMINANCE_RED = 0.299;
+	/** Weight of the green channel for luminance (ITU-R BT.601). */
+	private static final double LUMINANCE_GREEN = 0.587;
+	/** Weight of the blue channel for luminance (ITU-R BT.601). */
+	private static final double LUMINANCE_BLUE = 0.114;
+
+	/**
+	 * Color channels that can be provided by the data source.
+	 */
+	public enum Channel {
+		/** Red channel. */
+		RED,
+		/** Green channel. */
+		GREEN,
+		/** Blue channel. */
+		BLUE,
+		/** Alpha channel. */
+		ALPHA,
+		/** Luminance of red, green, and blue channel. */
+		LUMINANCE
+	}
+
+	/** Image whose pixels are provided. */
+	private final transient BufferedImage image;
+	/** Raster of the image. */
+	private final transient Raster raster;
+	/** Color model of the image. */
+	private final transient ColorModel colorModel;
+	/** Channel whose values are provided. */
+	private final Channel channel;
+	/** Factor that is used to scale the channel values. */
+	private final double factor;
+	/** Offset that is added to the scaled channel values. */
+	private final double offset;
+	/** Raster bands of red, green, blue, and alpha channel, or {@code null}
+	if the samples must be converted by the color model. */
+	private final int[] bands;
+
+	/**
+	 * Initializes a new instance that provides the red channel of the
+	 * specified image.
+	 * @param image Image.
+	 */
+	public RasterData(BufferedImage image) {
+		this(image, Channel.RED, 1.0, 0.0);
+	}
+
+	/**
+	 * Initializes a new instance that provides the specified channel of an
+	 * image scaled by a factor and an offset.
+	 * @param image Image.
+	 * @param channel Channel whose values are provided.
+	 * @param factor Factor that is used to scale the channel values.
+	 * @param offset Offset that is added to the scaled channel values.
+	 */
+	@SuppressWarnings("unchecked")
+	public RasterData(BufferedImage image, Channel channel, double factor,
+			double offset) {
+		if (channel == null) {
+			throw new NullPointerException("Channel must not be null."); //$NON-NLS-1$
+		}
+		this.image = image;
+		this.raster = image.getRaster();
+		this.colorModel = image.getColorModel();
+		this.channel = channel;
+		this.factor = factor;
+		this.offset = offset;
+		this.bands = getBands(raster, colorModel);
+
+		Class<? extends Comparable<?>>[] types = new Class[raster.getWidth()];
+		for (int col = 0; col < types.length; col++) {
+			types[col] = Double.class;
+		}
+		setColumnTypes(types);
+	}
+
+	/**
+	 * Returns the raster bands that contain the red, green, blue, and alpha
+	 * samples, if the samples can be used without conversion. This is the
+	 * case for images with 8 bits per channel in the sRGB color space
+	 * without premultiplied alpha.
+	 * @param raster Raster of the image.
+	 * @param colorModel Color model of the image.
+	 * @return Raster bands of red, green, blue, and alpha channel, or
+	 *         {@code null} if the samples must be converted.
+	 */
+	private static int[] getBands(Raster raster, ColorModel colorModel) {
+		if (colorModel instanceof IndexColorModel ||
+				!colorModel.getColorSpace().isCS_sRGB() ||
+				colorModel.isAlphaPremultiplied() ||
+				raster.getNumBands() != colorModel.getNumComponents()) {
+			return null;
+		}
+		for (int size : colorModel.getComponentSize()) {
+			if (size != 8) {
+				return null;
+			}
+		}
+		if (!(colorModel instanceof DirectColorModel) &&
+				raster.getTransferType() != DataBuffer.TYPE_BYTE) {
+			return null;
+		}
+		int alpha = colorModel.hasAlpha() ? 3 : -1;
+		return new int[] {0, 1, 2, alpha};
+	}
+
+	@Override
+	public Comparable<?> get(int col, int row) {
+		return getValue(col, row);
+	}
+
+	/**
+	 * Returns the scaled channel value of the specified pixel.
+	 * @param col Column of the pixel.
+	 * @param row Row of the pixel.
+	 * @return Scaled channel value.
+	 */
+	private double getValue(int col, int row) {
+		int x = raster.getMinX() + col;
+		int y = raster.getMinY() + row;
+		double value;
+		if (bands != null) {
+			switch (channel) {
+			case LUMINANCE:
+				value = LUMINANCE_RED*raster.getSample(x, y, bands[0]) +
+					LUMINANCE_GREEN*raster.getSample(x, y, bands[1]) +
+					LUMINANCE_BLUE*raster.getSample(x, y, bands[2]);
+				break;
+			case ALPHA:
+				value = (bands[3] < 0) ? 255 : raster.getSample(x, y, bands[3]);
+				break;
+			default:
+				value = raster.getSample(x, y, bands[channel.ordinal()]);
+				break;
+			}
+		} else {
+			Object pixel = raster.getDataElements(x, y, null);
+			switch (channel) {
+			case RED:
+				value = colorModel.getRed(pixel);
+				break;
+			case GREEN:
+				value = colorModel.getGreen(pixel);
+				break;
+			case BLUE:
+				value = colorModel.getBlue(pixel);
+				break;
+			case ALPHA:
+				value = colorModel.getAlpha(pixel);
+				break;
+			default:
+				value = LUMINANCE_RED*colorModel.getRed(pixel) +
+					LUMINANCE_GREEN*colorModel.getGreen(pixel) +
+					LUMINANCE_BLUE*colorModel.getBlue(pixel);
+				break;
+			}
+		}
+		return value*factor + offset;
+	}
+
+	@Override
+	protected void getValuesInRange(int col, int row, double[] values, int offset, int length) {
+		if (bands == null || channel == Channel.LUMINANCE ||
+				(channel == Channel.ALPHA && bands[3] < 0)) {
+			super.getValuesInRange(col, row, values, offset, length);
+			return;
+		}
+		// Read the samples of the pixel column at once
+		int band = bands[channel.ordinal()];
+		double[] samples = raster.getSamples(raster.getMinX() + col,
+			raster.getMinY() + row, 1, length, band, (double[]) null);
+		for (int i = 0; i < length; i++) {
+			values[offset + i] = samples[i]*factor + this.offset;
+		}
+	}
+
+	@Override
+	public int getRowCount() {
+		return raster.getHeight();
+	}
+
+	/**
+	 * Returns the image whose pixels are provided.
+	 * @return Image.
+	 */
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	/**
+	 * Returns the channel whose values are provided.
+	 * @return Channel.
+	 */
+	public Channel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Returns the factor that is used to scale the channel values.
+	 * @return Factor.
+	 */
+	public double getFactor() {
+		return factor;
+	}
+
+	/**
+	 * Returns the offset that is added to the scaled channel values.
+	 * @return Offset.
+	 */
+	public double getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Replaces this object by a {@code DataTable} with the same values for
+	 * serialization, because images can't be serialized.
+	 * @return Table with the same values.
+	 * @throws ObjectStreamException if the object can't be replaced.
+	 */
+	protected Object writeReplace() throws ObjectStreamException {
+		return new DataTable(this);
+	}
+}
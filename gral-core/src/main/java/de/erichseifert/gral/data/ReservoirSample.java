@@ -0,0 +1,168 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * <p>View that contains a uniform random sample of at most {@code size} rows
+ * of another data source. Each row of the original data source is contained
+ * in the sample with the same probability. The rows of the sample are
+ * sorted by their index in the original data source.</p>
+ *
+ * <p>The sample is maintained as a reservoir that is updated incrementally
+ * when rows are appended to the original data source. Random numbers are
+ * only needed for rows that enter the sample (Li's algorithm L), so huge
+ * numbers of appended rows can be skipped in constant time.</p>
+ *
+ * <p>Example that plots at most 10000 points of a huge table:</p>
+ * <pre>
+ * DataSource sample = new ReservoirSample(data, 10000);
+ * XYPlot plot = new XYPlot(sample);
+ * </pre>
+ */
+public class ReservoirSample extends AbstractSample {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = 6315866017409262383L;
+
+	/** Indexes of the sampled rows in the order of the reservoir. */
+	private transient int[] reservoir;
+	/** Number of rows in the reservoir. */
+	private transient int count;
+	/** Index of the next original row that will enter the reservoir. */
+	private transient long next;
+	/** Current weight of Li's algorithm L. */
+	private transient double weight;
+	/** Indexes of the sampled rows in ascending order. */
+	private transient int[] sortedRows;
+
+	/**
+	 * Initializes a new instance that samples the specified data source with
+	 * a random seed.
+	 * @param original Data source to be sampled.
+	 * @param size Maximal number of rows in the sample.
+	 */
+	public ReservoirSample(DataSource original, int size) {
+		this(original, size, new Random().nextLong());
+	}
+
+	/**
+	 * Initializes a new instance that samples the specified data source.
+	 * @param original Data source to be sampled.
+	 * @param size Maximal number of rows in the sample.
+	 * @param seed Seed of the random number generator.
+	 */
+	public ReservoirSample(DataSource original, int size, long seed) {
+		super(original, size, seed);
+		rebuild();
+	}
+
+	@Override
+	protected void clear() {
+		reservoir = new int[getSize()];
+		count = 0;
+		next = 0L;
+		weight = 0.0;
+		sortedRows = null;
+	}
+
+	@Override
+	protected boolean sample(int rowStart, int rowEnd) {
+		int size = getSize();
+		boolean changed = false;
+		for (int row = rowStart; row < rowEnd && count < size; row++) {
+			reservoir[count++] = row;
+			changed = true;
+			if (count == size) {
+				weight = Math.exp(Math.log(nextRandom())/size);
+				next = row + skip() + 1L;
+			}
+		}
+		if (count == size) {
+			Random random = getRandom();
+			while (next < rowEnd) {
+				reservoir[random.nextInt(size)] = (int) next;
+				changed = true;
+				weight *= Math.exp(Math.log(nextRandom())/size);
+				next += skip() + 1L;
+			}
+		}
+		if (changed) {
+			sortedRows = null;
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns a random number in the interval (0, 1].
+	 * @return Random number.
+	 */
+	private double nextRandom() {
+		return 1.0 - getRandom().nextDouble();
+	}
+
+	/**
+	 * Returns the random number of rows that will be skipped before the
+	 * next row enters the reservoir.
+	 * @return Number of skipped rows.
+	 */
+	private long skip() {
+		double skip = Math.floor(Math.log(nextRandom())/Math.log1p(-weight));
+		return (long) Math.min(skip, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int getOriginalRow(int row) {
+		if (sortedRows == null) {
+			sortedRows = Arrays.copyOf(reservoir, count);
+			Arrays.sort(sortedRows);
+		}
+		return sortedRows[row];
+	}
+
+	/**
+	 * Returns the number of rows of the data source.
+	 * @return number of rows in the data source.
+	 */
+	public int getRowCount() {
+		return count;
+	}
+
+	/**
+	 * Custom deserialization method.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		// Normal deserialization
+		in.defaultReadObject();
+
+		// Update caches
+		rebuild();
+	}
+}
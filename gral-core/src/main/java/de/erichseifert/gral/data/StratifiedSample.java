@@ -0,0 +1,377 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Random;
+
+import de.erichseifert.gral.util.DataUtils;
+import de.erichseifert.gral.util.MathUtils;
+
+/**
+ * <p>View that contains a random sample of at most {@code size} rows of
+ * another data source which preserves the coverage along the x-axis. The
+ * range of the x values is divided into a number of strata of equal width
+ * and a uniform sample of at most {@code size/strataCount} rows is drawn
+ * from each stratum. Thus, sparse regions are still represented in the
+ * sample even if most values are located in a dense region. The rows of the
+ * sample are sorted by stratum and by their index in the original data
+ * source. Rows with an x value that is not calculatable are ignored.</p>
+ *
+ * <p>The samples of the strata are maintained as reservoirs that are updated
+ * incrementally when rows are appended to the original data source. If an
+ * appended row lies outside of the current range, the range is doubled and
+ * the samples of adjacent strata are merged. Doubling keeps the merged
+ * samples uniform, but the values may cover only a bit more than half of
+ * the strata afterwards. Any change other than appending rows determines
+ * the range again from the bounds of all values.</p>
+ */
+public class StratifiedSample extends AbstractSample {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -7093811787806406291L;
+
+	/** Number of rows that are read from the original data source at once. */
+	private static final int BLOCK_SIZE = 1024;
+
+	/** Index of the column that contains the x values. */
+	private final int xCol;
+	/** Number of strata. */
+	private final int strataCount;
+
+	/** Samples of all strata. */
+	private transient Stratum[] strata;
+	/** Lower bound of the range. */
+	private transient double rangeStart;
+	/** Width of the range. */
+	private transient double rangeWidth;
+	/** Indexes of the sampled rows in the order of the view. */
+	private transient int[] rows;
+
+	/**
+	 * Uniform sample of the rows that belong to a single stratum.
+	 */
+	private static final class Stratum {
+		/** Indexes of the sampled rows. */
+		private final int[] rows;
+		/** Number of sampled rows. */
+		private int size;
+		/** Number of rows that belong to the stratum. */
+		private long count;
+
+		/**
+		 * Initializes a new empty stratum.
+		 * @param capacity Maximal number of sampled rows.
+		 */
+		public Stratum(int capacity) {
+			rows = new int[capacity];
+		}
+
+		/**
+		 * Adds a row to the stratum.
+		 * @param row Row index.
+		 * @param random Random number generator.
+		 * @return {@code true} if the sample has changed.
+		 */
+		public boolean add(int row, Random random) {
+			count++;
+			if (size < rows.length) {
+				rows[size++] = row;
+				return true;
+			}
+			long index = (long) (random.nextDouble()*count);
+			if (index < rows.length) {
+				rows[(int) index] = row;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Returns a uniform sample of the union of two strata.
+		 * @param a First stratum.
+		 * @param b Second stratum.
+		 * @param random Random number generator.
+		 * @return Merged stratum.
+		 */
+		public static Stratum merge(Stratum a, Stratum b, Random random) {
+			Stratum merged = new Stratum(a.rows.length);
+			merged.count = a.count + b.count;
+			int[] rowsA = Arrays.copyOf(a.rows, a.size);
+			int[] rowsB = Arrays.copyOf(b.rows, b.size);
+			int sizeA = rowsA.length, sizeB = rowsB.length;
+			long remainingA = a.count, remainingB = b.count;
+			while (merged.size < merged.rows.length && remainingA + remainingB > 0L) {
+				// Draw without replacement from the union of both populations
+				if (random.nextDouble()*(remainingA + remainingB) < remainingA) {
+					int i = random.nextInt(sizeA);
+					merged.rows[merged.size++] = rowsA[i];
+					rowsA[i] = rowsA[--sizeA];
+					remainingA--;
+				} else {
+					int i = random.nextInt(sizeB);
+					merged.rows[merged.size++] = rowsB[i];
+					rowsB[i] = rowsB[--sizeB];
+					remainingB--;
+				}
+			}
+			return merged;
+		}
+	}
+
+	/**
+	 * Initializes a new instance that samples the specified data source with
+	 * a random seed.
+	 * @param original Data source to be sampled.
+	 * @param size Maximal number of rows in the sample.
+	 * @param xCol Index of the column that contains the x values.
+	 * @param strataCount Number of strata.
+	 */
+	public StratifiedSample(DataSource original, int size, int xCol, int strataCount) {
+		this(original, size, xCol, strataCount, new Random().nextLong());
+	}
+
+	/**
+	 * Initializes a new instance that samples the specified data source.
+	 * @param original Data source to be sampled.
+	 * @param size Maximal number of rows in the sample.
+	 * @param xCol Index of the column that contains the x values.
+	 * @param strataCount Number of strata.
+	 * @param seed Seed of the random number generator.
+	 */
+	public StratifiedSample(DataSource original, int size, int xCol,
+			int strataCount, long seed) {
+		super(original, size, seed);
+		if (strataCount <= 0 || strataCount > size) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid number of strata: {0,number,integer}", strataCount)); //$NON-NLS-1$
+		}
+		if (!original.isColumnNumeric(xCol)) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Column {0,number,integer} isn't numeric.", xCol)); //$NON-NLS-1$
+		}
+		this.xCol = xCol;
+		this.strataCount = strataCount;
+		rebuild();
+	}
+
+	/**
+	 * Returns the index of the column that contains the x values.
+	 * @return Column index in the original data source.
+	 */
+	public int getXColumn() {
+		return xCol;
+	}
+
+	/**
+	 * Returns the number of strata.
+	 * @return Number of strata.
+	 */
+	public int getStrataCount() {
+		return strataCount;
+	}
+
+	@Override
+	protected void clear() {
+		strata = new Stratum[strataCount];
+		rangeStart = Double.NaN;
+		rangeWidth = 0.0;
+		rows = null;
+	}
+
+	@Override
+	protected boolean sample(int rowStart, int rowEnd) {
+		DataSource original = getOriginal();
+		double[] block = new double[Math.min(BLOCK_SIZE, Math.max(rowEnd - rowStart, 0))];
+
+		if (Double.isNaN(rangeStart)) {
+			// Initialize the range with the bounds of the rows
+			double min = Double.NaN, max = Double.NaN;
+			for (int blockStart = rowStart; blockStart < rowEnd; blockStart += block.length) {
+				int length = Math.min(block.length, rowEnd - blockStart);
+				DataUtils.getValues(original, xCol, blockStart, block, 0, length);
+				for (int i = 0; i < length; i++) {
+					double x = block[i];
+					if (!MathUtils.isCalculatable(x)) {
+						continue;
+					}
+					if (!(x >= min)) {
+						min = x;
+					}
+					if (!(x <= max)) {
+						max = x;
+					}
+				}
+			}
+			rangeStart = min;
+			rangeWidth = max - min;
+		}
+
+		boolean changed = false;
+		Random random = getRandom();
+		for (int blockStart = rowStart; blockStart < rowEnd; blockStart += block.length) {
+			int length = Math.min(block.length, rowEnd - blockStart);
+			DataUtils.getValues(original, xCol, blockStart, block, 0, length);
+			for (int i = 0; i < length; i++) {
+				double x = block[i];
+				if (!MathUtils.isCalculatable(x)) {
+					continue;
+				}
+				if (Double.isNaN(rangeStart)) {
+					rangeStart = x;
+				}
+				while (x < rangeStart || x > rangeStart + rangeWidth) {
+					expand(x);
+					changed = true;
+				}
+				int index = getStratumIndex(x);
+				if (strata[index] == null) {
+					strata[index] = new Stratum(getSize()/strataCount);
+				}
+				changed |= strata[index].add(blockStart + i, random);
+			}
+		}
+		if (changed) {
+			rows = null;
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns the index of the stratum that contains the specified value.
+	 * @param x Value inside the current range.
+	 * @return Index of the stratum.
+	 */
+	private int getStratumIndex(double x) {
+		if (rangeWidth == 0.0) {
+			return 0;
+		}
+		int index = (int) ((x - rangeStart)/rangeWidth*strataCount);
+		return MathUtils.limit(index, 0, strataCount - 1);
+	}
+
+	/**
+	 * Extends the range towards the specified value. If the range isn't
+	 * empty its width is doubled and adjacent strata are merged.
+	 * @param x Value outside the current range.
+	 */
+	private void expand(double x) {
+		if (rangeWidth == 0.0) {
+			// All previous values are equal
+			if (x > rangeStart) {
+				rangeWidth = x - rangeStart;
+			} else {
+				rangeWidth = rangeStart - x;
+				rangeStart = x;
+				strata[strataCount - 1] = strata[0];
+				strata[0] = null;
+			}
+			return;
+		}
+
+		boolean left = x < rangeStart;
+		Stratum[] merged = new Stratum[strataCount];
+		for (int i = 0; i < strataCount; i++) {
+			if (strata[i] == null) {
+				continue;
+			}
+			int index = left ? (strataCount + i)/2 : i/2;
+			if (merged[index] == null) {
+				merged[index] = strata[i];
+			} else {
+				merged[index] = Stratum.merge(merged[index], strata[i], getRandom());
+			}
+		}
+		strata = merged;
+		if (left) {
+			rangeStart -= rangeWidth;
+		}
+		rangeWidth *= 2.0;
+	}
+
+	@Override
+	public int getOriginalRow(int row) {
+		if (rows == null) {
+			rows = new int[getRowCount()];
+			int size = 0;
+			for (Stratum stratum : strata) {
+				if (stratum == null) {
+					continue;
+				}
+				System.arraycopy(stratum.rows, 0, rows, size, stratum.size);
+				Arrays.sort(rows, size, size + stratum.size);
+				size += stratum.size;
+			}
+		}
+		return rows[row];
+	}
+
+	/**
+	 * Returns the number of rows of the data source.
+	 * @return number of rows in the data source.
+	 */
+	public int getRowCount() {
+		int rowCount = 0;
+		for (Stratum stratum : strata) {
+			if (stratum != null) {
+				rowCount += stratum.size;
+			}
+		}
+		return rowCount;
+	}
+
+	/**
+	 * Returns the lower bound of the x range that is currently covered by
+	 * the strata.
+	 * @return Lower bound, or {@code NaN} if no values have been sampled.
+	 */
+	public double getRangeStart() {
+		return rangeStart;
+	}
+
+	/**
+	 * Returns the width of the x range that is currently covered by the
+	 * strata.
+	 * @return Width of the range.
+	 */
+	public double getRangeWidth() {
+		return rangeWidth;
+	}
+
+	/**
+	 * Custom deserialization method.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		// Normal deserialization
+		in.defaultReadObject();
+
+		// Update caches
+		rebuild();
+	}
+}
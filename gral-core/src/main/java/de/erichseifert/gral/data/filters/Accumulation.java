@@ -26,11 +26,11 @@ import java.util.Iterator;
 public class Accumulation<T extends Number & Comparable<T>> implements Filter<T> {
 	private final Iterable<T> data;
 
-	private static class AccumulationIterator<U extends Number> implements Iterator<Double> {
-		private final Iterator<U> wrappedIterator;
+	private static class AccumulationIterator extends FilterIterator {
+		private final Iterator<? extends Number> wrappedIterator;
 		private double accumulatedValue;
 
-		public AccumulationIterator(Iterator<U> wrappedIterator) {
+		public AccumulationIterator(Iterator<? extends Number> wrappedIterator) {
 			this.wrappedIterator = wrappedIterator;
 			accumulatedValue = 0.0;
 		}
@@ -41,8 +41,8 @@ public class Accumulation<T extends Number & Comparable<T>> implements Filter<T>
 		}
 
 		@Override
-		public Double next() {
-			accumulatedValue += wrappedIterator.next().doubleValue();
+		public double nextValue() {
+			accumulatedValue += nextValue(wrappedIterator);
 			return accumulatedValue;
 		}
 
@@ -58,6 +58,6 @@ public class Accumulation<T extends Number & Comparable<T>> implements Filter<T>
 
 	@Override
 	public Iterator<Double> iterator() {
-		return new AccumulationIterator<>(data.iterator());
+		return new AccumulationIterator(data.iterator());
 	}
 }
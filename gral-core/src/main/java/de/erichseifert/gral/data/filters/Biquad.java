@@ -0,0 +1,177 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.filters;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+import de.erichseifert.gral.data.DataSource;
+
+/**
+ * <p>Class that filters data values with a second-order recursive filter
+ * section (biquad). The coefficients for low-pass, high-pass, and
+ * band-pass filters are calculated from a cut-off or center frequency and
+ * a quality factor using the formulas of Bristow-Johnson's Audio EQ
+ * Cookbook. Appended rows are filtered in constant time per row (see
+ * {@link RecursiveFilter}).</p>
+ * <ul>
+ *   <li>Getting the filter type</li>
+ *   <li>Getting the frequency and the quality factor</li>
+ * </ul>
+ */
+public class Biquad extends RecursiveFilter {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = 5327812085916329734L;
+
+	/** Quality factor of a filter with maximally flat magnitude
+	response. */
+	public static final double Q_BUTTERWORTH = Math.sqrt(0.5);
+
+	/** Types of filters. */
+	public enum Type {
+		/** Attenuates frequencies above the cut-off frequency. */
+		LOW_PASS,
+		/** Attenuates frequencies below the cut-off frequency. */
+		HIGH_PASS,
+		/** Attenuates frequencies outside of a band around the center
+		frequency. The gain at the center frequency is one. */
+		BAND_PASS
+	}
+
+	/** Type of the filter. */
+	private final Type type;
+	/** Cut-off or center frequency relative to the sampling rate. */
+	private final double frequency;
+	/** Quality factor. */
+	private final double quality;
+	/** Filter coefficients. */
+	private transient double[] coefficients;
+
+	/**
+	 * Initializes a new instance with the specified data source, filter
+	 * design, direction, edge handling mode, and columns to be filtered.
+	 * @param original Data source to be filtered.
+	 * @param type Type of filter.
+	 * @param frequency Cut-off or center frequency in cycles per row, which
+	 *        must be in the range (0, 0.5).
+	 * @param quality Quality factor, which must be positive. Larger values
+	 *        result in a sharper transition or a narrower band.
+	 * @param zeroPhase {@code true} if the filter should be applied forwards
+	 *        and backwards.
+	 * @param mode Mode of filtering.
+	 * @param cols Column indexes.
+	 */
+	public Biquad(DataSource original, Type type, double frequency,
+			double quality, boolean zeroPhase, Mode mode, int... cols) {
+		super(original, zeroPhase, mode, cols);
+		if (!(frequency > 0.0 && frequency < 0.5)) {
+			throw new IllegalArgumentException(
+				"Invalid frequency: " + frequency); //$NON-NLS-1$
+		}
+		if (!(quality > 0.0)) {
+			throw new IllegalArgumentException(
+				"Invalid quality factor: " + quality); //$NON-NLS-1$
+		}
+		this.type = type;
+		this.frequency = frequency;
+		this.quality = quality;
+		updateCoefficients();
+		filter();
+	}
+
+	/**
+	 * Returns the type of the filter.
+	 * @return Filter type.
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the cut-off or center frequency of the filter.
+	 * @return Frequency in cycles per row.
+	 */
+	public double getFrequency() {
+		return frequency;
+	}
+
+	/**
+	 * Returns the quality factor of the filter.
+	 * @return Quality factor.
+	 */
+	public double getQuality() {
+		return quality;
+	}
+
+	/**
+	 * Calculates the filter coefficients for the current design.
+	 */
+	private void updateCoefficients() {
+		double w0 = 2.0*Math.PI*frequency;
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0)/(2.0*quality);
+		double b0, b1, b2;
+		switch (type) {
+			case HIGH_PASS:
+				b0 = (1.0 + cos)/2.0;
+				b1 = -(1.0 + cos);
+				b2 = b0;
+				break;
+			case BAND_PASS:
+				b0 = alpha;
+				b1 = 0.0;
+				b2 = -alpha;
+				break;
+			default:
+				b0 = (1.0 - cos)/2.0;
+				b1 = 1.0 - cos;
+				b2 = b0;
+				break;
+		}
+		double a0 = 1.0 + alpha;
+		coefficients = new double[] {
+			b0/a0, b1/a0, b2/a0, -2.0*cos/a0, (1.0 - alpha)/a0
+		};
+	}
+
+	@Override
+	protected double[] getCoefficients() {
+		return coefficients;
+	}
+
+	/**
+	 * Custom deserialization method.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		// Normal deserialization
+		in.defaultReadObject();
+
+		// Update caches
+		updateCoefficients();
+		dataUpdated(this);
+	}
+}
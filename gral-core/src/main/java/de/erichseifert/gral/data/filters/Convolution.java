@@ -23,9 +23,10 @@ package de.erichseifert.gral.data.filters;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.Arrays;
 
 import de.erichseifert.gral.data.DataSource;
-import de.erichseifert.gral.util.DataUtils;
+import de.erichseifert.gral.util.FastFourierTransform;
 import de.erichseifert.gral.util.MathUtils;
 
 /**
@@ -34,11 +35,23 @@ import de.erichseifert.gral.util.MathUtils;
  * <ul>
  *   <li>Getting and setting the {@code Kernel} used for convolution</li>
  * </ul>
+ *
+ * <p>Kernels with at least {@link #FFT_THRESHOLD} values are applied using
+ * the fast Fourier transform, which needs {@code O(n log k)} instead of
+ * {@code O(n k)} operations for {@code n} rows and {@code k} kernel values.
+ * The values at the borders are padded according to the mode, so both ways
+ * give the same results except for rounding errors.</p>
  */
 public class Convolution extends Filter2D {
 	/** Version id for serialization. */
 	private static final long serialVersionUID = 7155205321415314271L;
 
+	/** Minimal number of kernel values for which the convolution is
+	calculated using the fast Fourier transform. */
+	public static final int FFT_THRESHOLD = 64;
+	/** Minimal number of values of a single Fourier transform. */
+	private static final int FFT_MIN_SIZE = 4096;
+
 	/** Kernel that provides the values to convolve the data source. */
 	private final Kernel kernel;
 
@@ -66,41 +79,164 @@ public class Convolution extends Filter2D {
 
 	@Override
 	protected void filter() {
-		clear();
-		for (int rowIndex = 0; rowIndex < getRowCount(); rowIndex++) {
-			Double[] filteredRow = new Double[getColumnCountFiltered()];
-			for (int colIndex = 0; colIndex < filteredRow.length; colIndex++) {
-				int colIndexOriginal = getIndexOriginal(colIndex);
-				filteredRow[colIndex] = convolve(colIndexOriginal, rowIndex);
+		filter(0);
+	}
+
+	@Override
+	protected void filter(int rowStart) {
+		clear(rowStart);
+		int rowCount = getRowCount() - rowStart;
+		if (rowCount <= 0) {
+			return;
+		}
+
+		double[][] filtered = filterColumns(new ColumnFilter() {
+			@Override
+			public double[] filterColumn(int colIndex, int rowStart) {
+				return Convolution.this.filterColumn(colIndex, rowStart);
 			}
-			add(filteredRow);
+		}, rowStart);
+		for (int colIndex = 0; colIndex < filtered.length; colIndex++) {
+			add(colIndex, filtered[colIndex], 0, rowCount);
 		}
 	}
 
 	/**
-	 * Calculates the convolved value of the data with the specified column
-	 * and row.
-	 * @param col Column index.
-	 * @param row Row index.
-	 * @return Convolved value using the set kernel.
+	 * Convolves a single filtered column with the kernel starting with the
+	 * specified row.
+	 * @param colIndex Index of the filtered column.
+	 * @param rowStart Index of the first row that should be filtered.
+	 * @return Filtered values.
 	 */
-	private double convolve(int col, int row) {
+	private double[] filterColumn(int colIndex, int rowStart) {
+		int rowCount = getRowCount() - rowStart;
 		Kernel kernel = getKernel();
+		double[] weights = getWeights(kernel);
+		int minIndex = (kernel != null) ? kernel.getMinIndex() : 0;
+
+		double[] values = new double[rowCount + weights.length - 1];
+		getOriginalValues(getIndexOriginal(colIndex), rowStart + minIndex,
+			values, 0, values.length);
+		return convolve(values, weights, rowCount);
+	}
+
+	/**
+	 * Returns the values of the specified kernel in an array, starting with
+	 * the value at the lowest index.
+	 * @param kernel Kernel, or {@code null} for the identity.
+	 * @return Kernel values.
+	 */
+	static double[] getWeights(Kernel kernel) {
 		if (kernel == null) {
-			Comparable<?> original = getOriginal(col, row);
-			return DataUtils.getValueOrDefault((Number) original, Double.NaN);
+			return new double[] {1.0};
+		}
+		double[] weights = new double[kernel.size()];
+		int minIndex = kernel.getMinIndex();
+		for (int k = 0; k < weights.length; k++) {
+			weights[k] = kernel.get(minIndex + k);
+		}
+		return weights;
+	}
+
+	/**
+	 * Calculates the convolved values of the specified data values. Large
+	 * kernels are applied using the fast Fourier transform.
+	 * @param values Data values including the padding at the borders.
+	 * @param weights Kernel values.
+	 * @param length Number of convolved values.
+	 * @return Convolved values.
+	 */
+	static double[] convolve(double[] values, double[] weights, int length) {
+		if (weights.length >= FFT_THRESHOLD) {
+			return convolveFourier(values, weights, length);
+		}
+		return convolveDirect(values, weights, length);
+	}
+
+	@Override
+	protected int getSupportMinIndex() {
+		Kernel kernel = getKernel();
+		return (kernel != null) ? kernel.getMinIndex() : 0;
+	}
+
+	@Override
+	protected int getSupportMaxIndex() {
+		Kernel kernel = getKernel();
+		return (kernel != null) ? kernel.getMaxIndex() : 0;
+	}
+
+	/**
+	 * Calculates the convolved values by summing up the products of the
+	 * kernel values and the data values directly. If a value in the window
+	 * isn't calculatable, the first of these values will be the result.
+	 * @param values Data values including the padding at the borders.
+	 * @param weights Kernel values.
+	 * @param length Number of convolved values.
+	 * @return Convolved values.
+	 */
+	private static double[] convolveDirect(double[] values, double[] weights,
+			int length) {
+		double[] result = new double[length];
+		for (int row = 0; row < length; row++) {
+			double sum = 0.0;
+			for (int k = 0; k < weights.length; k++) {
+				double v = values[row + k];
+				if (!MathUtils.isCalculatable(v)) {
+					sum = v;
+					break;
+				}
+				sum += weights[k]*v;
+			}
+			result[row] = sum;
 		}
-		double sum = 0.0;
-		for (int k = kernel.getMinIndex(); k <= kernel.getMaxIndex(); k++) {
-			int r = row + k;
-			Comparable<?> original = getOriginal(col, r);
-			double v = DataUtils.getValueOrDefault((Number) original, Double.NaN);
-			if (!MathUtils.isCalculatable(v)) {
-				return v;
+		return result;
+	}
+
+	/**
+	 * Calculates the convolved values using the fast Fourier transform. The
+	 * values are processed in blocks of constant size (overlap-save method).
+	 * Results for windows that contain values that aren't calculatable are
+	 * the same as in {@link #convolveDirect(double[], double[], int)}.
+	 * @param values Data values including the padding at the borders.
+	 * @param weights Kernel values.
+	 * @param length Number of convolved values.
+	 * @return Convolved values.
+	 */
+	private static double[] convolveFourier(double[] values, double[] weights,
+			int length) {
+		int taps = weights.length;
+		double[] reversed = new double[taps];
+		for (int k = 0; k < taps; k++) {
+			reversed[k] = weights[taps - 1 - k];
+		}
+
+		double[] result = new double[length];
+		int size = FastFourierTransform.getPaddedSize(Math.max(FFT_MIN_SIZE, 4*taps));
+		int blockLength = size - 2*(taps - 1);
+		for (int blockStart = 0; blockStart < length; blockStart += blockLength) {
+			int blockEnd = Math.min(blockStart + blockLength, length);
+			double[] segment = Arrays.copyOfRange(values, blockStart, blockEnd + taps - 1);
+			for (int i = 0; i < segment.length; i++) {
+				if (!MathUtils.isCalculatable(segment[i])) {
+					segment[i] = 0.0;
+				}
+			}
+			double[] convolved = FastFourierTransform.convolve(segment, reversed);
+			System.arraycopy(convolved, taps - 1, result, blockStart, blockEnd - blockStart);
+		}
+
+		// Windows containing values that aren't calculatable
+		int invalid = 0;
+		for (int row = 0; row < length; row++) {
+			while (invalid < values.length &&
+					(invalid < row || MathUtils.isCalculatable(values[invalid]))) {
+				invalid++;
+			}
+			if (invalid < row + taps) {
+				result[row] = values[invalid];
 			}
-			sum += kernel.get(k) * v;
 		}
-		return sum;
+		return result;
 	}
 
 	/**
@@ -0,0 +1,302 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.filters;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.erichseifert.gral.data.DataSource;
+
+/**
+ * <p>Class that convolves grid data, like images, with a two dimensional
+ * kernel. Each column of the data source is a column of the grid and each
+ * row is a row of the grid. All columns must be numeric, otherwise an
+ * {@code IllegalArgumentException} will be thrown.</p>
+ *
+ * <p>Values outside of the grid are handled according to the mode, both
+ * horizontally and vertically. Separable kernels (see
+ * {@link Kernel2D#isSeparable()}) are applied in two one dimensional passes,
+ * which needs {@code O(w + h)} instead of {@code O(w h)} operations per
+ * value for a kernel of size {@code w} times {@code h}. If a thread pool has
+ * been set, tiles of columns are calculated in parallel.</p>
+ */
+public class Convolution2D extends Filter2D {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -8412706932852371495L;
+
+	/** Maximal number of columns of a tile that is calculated in a single
+	task. */
+	private static final int TILE_SIZE = 16;
+
+	/** Kernel that provides the values to convolve the data source. */
+	private final Kernel2D kernel;
+
+	/** Steps of the convolution. */
+	private enum Pass {
+		/** Read the original columns including the padding rows. */
+		READ,
+		/** Convolve the original columns with the vertical kernel. */
+		VERTICAL,
+		/** Convolve the rows with the horizontal kernel. */
+		HORIZONTAL,
+		/** Convolve with the whole kernel. */
+		FULL
+	}
+
+	/**
+	 * Task that calculates a tile of columns and splits itself into smaller
+	 * tasks if the tile is large.
+	 */
+	private static final class TileTask extends RecursiveAction {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 6074339508374716297L;
+
+		/** Filter that calculates the values. */
+		private final Convolution2D filter;
+		/** Step of the convolution. */
+		private final Pass pass;
+		/** Input columns including padding columns. */
+		private final double[][] source;
+		/** Array that receives the result columns. */
+		private final double[][] target;
+		/** Index of the first column. */
+		private final int colStart;
+		/** Index after the last column. */
+		private final int colEnd;
+
+		/**
+		 * Initializes a new task for the specified tile of columns.
+		 * @param filter Filter that calculates the values.
+		 * @param pass Step of the convolution.
+		 * @param source Input columns including padding columns.
+		 * @param target Array that receives the result columns.
+		 * @param colStart Index of the first column.
+		 * @param colEnd Index after the last column.
+		 */
+		public TileTask(Convolution2D filter, Pass pass, double[][] source,
+				double[][] target, int colStart, int colEnd) {
+			this.filter = filter;
+			this.pass = pass;
+			this.source = source;
+			this.target = target;
+			this.colStart = colStart;
+			this.colEnd = colEnd;
+		}
+
+		@Override
+		protected void compute() {
+			if (colEnd - colStart <= TILE_SIZE) {
+				filter.calculate(pass, source, target, colStart, colEnd);
+				return;
+			}
+			int colMid = (colStart + colEnd)/2;
+			invokeAll(
+				new TileTask(filter, pass, source, target, colStart, colMid),
+				new TileTask(filter, pass, source, target, colMid, colEnd)
+			);
+		}
+	}
+
+	/**
+	 * Initializes a new instance with the specified grid data source,
+	 * convolution kernel, and edge handling mode.
+	 * @param original Grid data source to be filtered.
+	 * @param kernel Kernel to be used.
+	 * @param mode Mode of filtering.
+	 */
+	@SuppressWarnings("unchecked")
+	public Convolution2D(DataSource original, Kernel2D kernel, Mode mode) {
+		super(original, mode);
+		for (int col = 0; col < original.getColumnCount(); col++) {
+			if (!original.isColumnNumeric(col)) {
+				throw new IllegalArgumentException(MessageFormat.format(
+					"Column {0,number,integer} isn't numeric and cannot be filtered.", //$NON-NLS-1$
+					col));
+			}
+		}
+		Class<? extends Comparable<?>>[] types =
+			new Class[original.getColumnCount()];
+		Arrays.fill(types, Double.class);
+		setColumnTypes(types);
+		this.kernel = kernel;
+		filter();
+	}
+
+	/**
+	 * Returns the kernel.
+	 * @return Kernel used for convolution.
+	 */
+	public Kernel2D getKernel() {
+		return kernel;
+	}
+
+	@Override
+	protected void filter() {
+		clear();
+		Kernel2D kernel = getKernel();
+		int colCount = getColumnCount();
+		if (kernel == null || colCount == 0 || getRowCount() == 0) {
+			return;
+		}
+
+		double[][] columns = new double[colCount][];
+		double[][] filtered = new double[colCount][];
+		if (kernel.isSeparable()) {
+			run(Pass.VERTICAL, null, columns);
+			run(Pass.HORIZONTAL, pad(columns, getRowCount()), filtered);
+		} else {
+			run(Pass.READ, null, columns);
+			run(Pass.FULL, pad(columns, getRowCount() + kernel.getHeight() - 1),
+				filtered);
+		}
+
+		for (int colIndex = 0; colIndex < colCount; colIndex++) {
+			add(colIndex, filtered[colIndex], 0, getRowCount());
+		}
+	}
+
+	/**
+	 * Calculates all columns of a step of the convolution, in parallel if a
+	 * thread pool has been set.
+	 * @param pass Step of the convolution.
+	 * @param source Input columns including padding columns.
+	 * @param target Array that receives the result columns.
+	 */
+	private void run(Pass pass, double[][] source, double[][] target) {
+		ForkJoinPool pool = getPool();
+		if (pool == null || target.length <= TILE_SIZE) {
+			calculate(pass, source, target, 0, target.length);
+		} else {
+			pool.invoke(new TileTask(this, pass, source, target, 0, target.length));
+		}
+	}
+
+	/**
+	 * Adds the padding columns before the first and after the last column
+	 * according to the mode. Padding columns refer to the arrays of the
+	 * columns they repeat.
+	 * @param columns Columns.
+	 * @param length Number of values in each column.
+	 * @return Columns including the padding columns.
+	 */
+	private double[][] pad(double[][] columns, int length) {
+		Kernel2D kernel = getKernel();
+		int colLast = columns.length - 1;
+		double[][] padded = new double[columns.length + kernel.getWidth() - 1][];
+		double[] constant = null;
+		for (int i = 0; i < padded.length; i++) {
+			int col = kernel.getMinIndexX() + i;
+			if (col >= 0 && col <= colLast) {
+				padded[i] = columns[col];
+			} else if (getMode() == Mode.OMIT || getMode() == Mode.ZERO) {
+				if (constant == null) {
+					constant = new double[length];
+					if (getMode() == Mode.OMIT) {
+						Arrays.fill(constant, Double.NaN);
+					}
+				}
+				padded[i] = constant;
+			} else {
+				padded[i] = columns[getPaddedIndex(getMode(), col, colLast)];
+			}
+		}
+		return padded;
+	}
+
+	/**
+	 * Calculates a tile of columns of a step of the convolution.
+	 * @param pass Step of the convolution.
+	 * @param source Input columns including padding columns.
+	 * @param target Array that receives the result columns.
+	 * @param colStart Index of the first column.
+	 * @param colEnd Index after the last column.
+	 */
+	private void calculate(Pass pass, double[][] source, double[][] target,
+			int colStart, int colEnd) {
+		Kernel2D kernel = getKernel();
+		int rowCount = getRowCount();
+		if (pass == Pass.READ) {
+			for (int col = colStart; col < colEnd; col++) {
+				target[col] = new double[rowCount + kernel.getHeight() - 1];
+				getOriginalValues(col, kernel.getMinIndexY(), target[col], 0,
+					target[col].length);
+			}
+		} else if (pass == Pass.VERTICAL) {
+			Kernel vertical = kernel.getVertical();
+			double[] weights = Convolution.getWeights(vertical);
+			double[] values = new double[rowCount + weights.length - 1];
+			for (int col = colStart; col < colEnd; col++) {
+				getOriginalValues(col, vertical.getMinIndex(), values, 0,
+					values.length);
+				target[col] = Convolution.convolve(values, weights, rowCount);
+			}
+		} else if (pass == Pass.HORIZONTAL) {
+			double[] weights = Convolution.getWeights(kernel.getHorizontal());
+			for (int col = colStart; col < colEnd; col++) {
+				double[] result = new double[rowCount];
+				for (int k = 0; k < weights.length; k++) {
+					double weight = weights[k];
+					double[] column = source[col + k];
+					for (int row = 0; row < rowCount; row++) {
+						result[row] += weight*column[row];
+					}
+				}
+				target[col] = result;
+			}
+		} else {
+			for (int col = colStart; col < colEnd; col++) {
+				double[] result = new double[rowCount];
+				for (int kx = 0; kx < kernel.getWidth(); kx++) {
+					double[] column = source[col + kx];
+					for (int ky = 0; ky < kernel.getHeight(); ky++) {
+						double weight = kernel.get(kernel.getMinIndexX() + kx,
+							kernel.getMinIndexY() + ky);
+						for (int row = 0; row < rowCount; row++) {
+							result[row] += weight*column[row + ky];
+						}
+					}
+				}
+				target[col] = result;
+			}
+		}
+	}
+
+	/**
+	 * Custom deserialization method.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		// Normal deserialization
+		in.defaultReadObject();
+
+		// Update caches
+		dataUpdated(this);
+	}
+}
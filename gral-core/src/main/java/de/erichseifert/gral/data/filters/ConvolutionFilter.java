@@ -22,33 +22,72 @@
 package de.erichseifert.gral.data.filters;
 
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-
-import de.erichseifert.gral.util.WindowIterator;
+import java.util.NoSuchElementException;
 
 public class ConvolutionFilter<T extends Number & Comparable<T>> implements Filter<T> {
-	private final List<Double> filtered;
-	private final Iterator<List<T>> windowIterator;
+	private final Iterable<T> data;
+	private final double[] weights;
 
-	public ConvolutionFilter(Iterable<T> data, Kernel kernel) {
-		filtered = new LinkedList<>();
+	private static class ConvolutionIterator extends FilterIterator {
+		private final Iterator<? extends Number> wrappedIterator;
+		private final double[] weights;
+		private final double[] window;
+		private int head;
+		private int count;
+
+		public ConvolutionIterator(Iterator<? extends Number> wrappedIterator, double[] weights) {
+			this.wrappedIterator = wrappedIterator;
+			this.weights = weights;
+			window = new double[weights.length];
+		}
 
-		windowIterator = new WindowIterator<>(data.iterator(), kernel.size());
+		@Override
+		public boolean hasNext() {
+			while (count < window.length - 1 && wrappedIterator.hasNext()) {
+				push(nextValue(wrappedIterator));
+			}
+			return count >= window.length - 1 && wrappedIterator.hasNext();
+		}
+
+		@Override
+		public double nextValue() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			push(nextValue(wrappedIterator));
 
-		while (windowIterator.hasNext()) {
-			List<T> window = windowIterator.next();
+			// The oldest value of the full window is located at head
 			double convolvedValue = 0.0;
-			for (int windowIndex = 0; windowIndex < window.size(); windowIndex++) {
-				int kernelIndex = windowIndex - kernel.getOffset();
-				convolvedValue += kernel.get(kernelIndex)*window.get(windowIndex).doubleValue();
+			int tailLength = window.length - head;
+			for (int i = 0; i < tailLength; i++) {
+				convolvedValue += weights[i]*window[head + i];
 			}
-			filtered.add(convolvedValue);
+			for (int i = tailLength; i < window.length; i++) {
+				convolvedValue += weights[i]*window[i - tailLength];
+			}
+			return convolvedValue;
+		}
+
+		private void push(double value) {
+			window[head] = value;
+			head = (head + 1) % window.length;
+			if (count < window.length) {
+				count++;
+			}
+		}
+	}
+
+	public ConvolutionFilter(Iterable<T> data, Kernel kernel) {
+		this.data = data;
+		weights = new double[kernel.size()];
+		for (int windowIndex = 0; windowIndex < weights.length; windowIndex++) {
+			int kernelIndex = windowIndex - kernel.getOffset();
+			weights[windowIndex] = kernel.get(kernelIndex);
 		}
 	}
 
 	@Override
 	public Iterator<Double> iterator() {
-		return filtered.iterator();
+		return new ConvolutionIterator(data.iterator(), weights);
 	}
 }
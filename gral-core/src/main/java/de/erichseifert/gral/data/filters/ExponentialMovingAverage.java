@@ -0,0 +1,138 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.filters;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+import de.erichseifert.gral.data.DataSource;
+
+/**
+ * <p>Class that calculates the exponential moving average of data values:</p>
+ * <pre>y[n] = alpha*x[n] + (1 - alpha)*y[n-1]</pre>
+ * <p>The smoothing factor {@code alpha} must be in the range (0, 1]. Small
+ * values result in stronger smoothing. Appended rows are filtered in
+ * constant time per row (see {@link RecursiveFilter}).</p>
+ * <ul>
+ *   <li>Setting and getting the smoothing factor</li>
+ * </ul>
+ */
+public class ExponentialMovingAverage extends RecursiveFilter {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -2883460162539178352L;
+
+	/** Smoothing factor. */
+	private double alpha;
+	/** Filter coefficients. */
+	private transient double[] coefficients;
+
+	/**
+	 * Initializes a new instance with the specified data source, smoothing
+	 * factor, edge handling mode, and columns to be filtered.
+	 * @param original Data source to be filtered.
+	 * @param alpha Smoothing factor in the range (0, 1].
+	 * @param mode Mode of filtering.
+	 * @param cols Column indexes.
+	 */
+	public ExponentialMovingAverage(DataSource original, double alpha,
+			Mode mode, int... cols) {
+		this(original, alpha, false, mode, cols);
+	}
+
+	/**
+	 * Initializes a new instance with the specified data source, smoothing
+	 * factor, direction, edge handling mode, and columns to be filtered.
+	 * @param original Data source to be filtered.
+	 * @param alpha Smoothing factor in the range (0, 1].
+	 * @param zeroPhase {@code true} if the filter should be applied forwards
+	 *        and backwards.
+	 * @param mode Mode of filtering.
+	 * @param cols Column indexes.
+	 */
+	public ExponentialMovingAverage(DataSource original, double alpha,
+			boolean zeroPhase, Mode mode, int... cols) {
+		super(original, zeroPhase, mode, cols);
+		checkAlpha(alpha);
+		this.alpha = alpha;
+		updateCoefficients();
+		filter();
+	}
+
+	/**
+	 * Returns the smoothing factor.
+	 * @return Smoothing factor.
+	 */
+	public double getAlpha() {
+		return alpha;
+	}
+
+	/**
+	 * Sets the smoothing factor.
+	 * @param alpha Smoothing factor in the range (0, 1].
+	 */
+	public void setAlpha(double alpha) {
+		checkAlpha(alpha);
+		this.alpha = alpha;
+		updateCoefficients();
+		dataUpdated(this);
+	}
+
+	/**
+	 * Checks whether the specified smoothing factor is valid.
+	 * @param alpha Smoothing factor.
+	 */
+	private static void checkAlpha(double alpha) {
+		if (!(alpha > 0.0 && alpha <= 1.0)) {
+			throw new IllegalArgumentException(
+				"Invalid smoothing factor: " + alpha); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Calculates the filter coefficients for the current smoothing factor.
+	 */
+	private void updateCoefficients() {
+		coefficients = new double[] {alpha, 0.0, 0.0, alpha - 1.0, 0.0};
+	}
+
+	@Override
+	protected double[] getCoefficients() {
+		return coefficients;
+	}
+
+	/**
+	 * Custom deserialization method.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		// Normal deserialization
+		in.defaultReadObject();
+
+		// Update caches
+		updateCoefficients();
+		dataUpdated(this);
+	}
+}
@@ -26,11 +26,16 @@ import java.io.ObjectInputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import de.erichseifert.gral.data.AbstractDataSource;
 import de.erichseifert.gral.data.DataChangeEvent;
 import de.erichseifert.gral.data.DataListener;
 import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.util.DataUtils;
+import de.erichseifert.gral.util.DoubleList;
 import de.erichseifert.gral.util.MathUtils;
 
 
@@ -45,10 +50,26 @@ import de.erichseifert.gral.util.MathUtils;
  *   <li>Filtering of multiple columns</li>
  * </ul>
  *
- * <p>Values of filtered columns are buffered. Access to unfiltered columns is
+ * <p>Values of filtered columns are buffered in primitive arrays, one per
+ * column, and are only boxed when they are accessed with
+ * {@link #get(int, int)}. Access to unfiltered columns is
  * delegated to the original data source. Derived classes must make sure the
  * caches are updated when deserialization is done. This can be done by calling
  * {@code dataUpdated(this)} in a custom deserialization method.</p>
+ *
+ * <p>Derived classes whose filtered values only depend on a bounded range of
+ * neighboring rows can declare this range by overriding
+ * {@link #getSupportMinIndex()} and {@link #getSupportMaxIndex()}, and
+ * implement {@link #filter(int)}. Rows that are appended to the original data
+ * source will then only cause the filtered rows at the end of the column to
+ * be calculated again, whose range reaches the new rows. Any other change
+ * causes all rows to be filtered again.</p>
+ *
+ * <p>Derived classes that calculate each column independently can pass a
+ * {@link ColumnFilter} to {@link #filterColumns(ColumnFilter, int)}. If a
+ * thread pool has been set with {@link #setPool(ForkJoinPool)}, the columns
+ * are then filtered in parallel. Listeners are notified after all columns
+ * have been filtered.</p>
  */
 public abstract class Filter2D extends AbstractDataSource
 		implements DataListener {
@@ -75,10 +96,68 @@ public abstract class Filter2D extends AbstractDataSource
 
 	/** Columns that should be filtered. */
 	private final int[] cols;
-	/** Data that was produced by the filter. */
-	private transient ArrayList<Double[]> rows;
+	/** Data that was produced by the filter, one list per filtered
+	column. */
+	private transient DoubleList[] columns;
 	/** Mode for handling. */
 	private Mode mode;
+	/** Thread pool that is used to filter columns in parallel. */
+	private transient ForkJoinPool pool;
+
+	/**
+	 * Calculation of the values of single filtered columns, which is used
+	 * with {@link Filter2D#filterColumns(ColumnFilter, int)}.
+	 */
+	protected interface ColumnFilter {
+		/**
+		 * Calculates the values of a single filtered column starting with
+		 * the specified row. Implementations may be called concurrently for
+		 * different columns, so they must not change state that is shared
+		 * between columns.
+		 * @param colIndex Index of the filtered column.
+		 * @param rowStart Index of the first row that should be filtered.
+		 * @return Filtered values.
+		 */
+		double[] filterColumn(int colIndex, int rowStart);
+	}
+
+	/**
+	 * Task that filters a single column.
+	 */
+	private static final class ColumnTask extends RecursiveAction {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -2365981364573203749L;
+
+		/** Calculation of the filtered values. */
+		private final ColumnFilter filter;
+		/** Index of the filtered column. */
+		private final int colIndex;
+		/** Index of the first row that should be filtered. */
+		private final int rowStart;
+		/** Array that receives the filtered values of all columns. */
+		private final double[][] result;
+
+		/**
+		 * Initializes a new task for the specified column.
+		 * @param filter Calculation of the filtered values.
+		 * @param colIndex Index of the filtered column.
+		 * @param rowStart Index of the first row that should be filtered.
+		 * @param result Array that receives the filtered values of all
+		 *        columns.
+		 */
+		public ColumnTask(ColumnFilter filter, int colIndex, int rowStart,
+				double[][] result) {
+			this.filter = filter;
+			this.colIndex = colIndex;
+			this.rowStart = rowStart;
+			this.result = result;
+		}
+
+		@Override
+		protected void compute() {
+			result[colIndex] = filter.filterColumn(colIndex, rowStart);
+		}
+	}
 
 	/**
 	 * Initializes a new instance with the specified data source, border
@@ -90,7 +169,7 @@ public abstract class Filter2D extends AbstractDataSource
 	 */
 	@SuppressWarnings("unchecked")
 	public Filter2D(DataSource original, Mode mode, int... cols) {
-		this.rows = new ArrayList<>(original.getRowCount());
+		this.columns = new DoubleList[0];
 		this.original = original;
 		this.mode = mode;
 
@@ -141,32 +220,139 @@ public abstract class Filter2D extends AbstractDataSource
 				return Double.NaN;
 			} else if (getMode() == Mode.ZERO) {
 				return 0.0;
-			} else if (getMode() == Mode.REPEAT) {
-				row = MathUtils.limit(row, 0, rowLast);
-			} else if (getMode() == Mode.MIRROR) {
-				int rem = Math.abs(row) / rowLast;
-				int mod = Math.abs(row) % rowLast;
-				if ((rem & 1) == 0) {
-					row = mod;
-				} else {
-					row = rowLast - mod;
-				}
-			} else if (getMode() == Mode.CIRCULAR) {
-				if (row >= 0) {
-					row = row % (rowLast + 1);
-				} else {
-					row = (row + 1) % (rowLast + 1) + rowLast;
-				}
 			}
+			row = getOriginalIndex(row, rowLast);
 		}
 		return original.get(col, row);
 	}
 
+	/**
+	 * Copies values of the original data source in the specified column into
+	 * an array. Rows outside of the original data source are handled
+	 * according to the current mode and values that aren't numeric are
+	 * stored as {@code NaN}.
+	 * @param col Column index.
+	 * @param rowStart Index of the first row, which may be negative.
+	 * @param values Array that receives the values.
+	 * @param offset Index in the array of the first value.
+	 * @param length Number of values to be copied.
+	 */
+	protected void getOriginalValues(int col, int rowStart, double[] values,
+			int offset, int length) {
+		int rowLast = original.getRowCount() - 1;
+		int inStart = MathUtils.limit(rowStart, 0, rowLast + 1);
+		int inEnd = MathUtils.limit(rowStart + length, inStart, rowLast + 1);
+		if (inEnd > inStart) {
+			DataUtils.getValues(original, col, inStart, values, offset + inStart - rowStart,
+				inEnd - inStart);
+		}
+		for (int i = 0; i < length; i++) {
+			int row = rowStart + i;
+			if (row >= 0 && row <= rowLast) {
+				continue;
+			}
+			if (getMode() == Mode.OMIT) {
+				values[offset + i] = Double.NaN;
+			} else if (getMode() == Mode.ZERO) {
+				values[offset + i] = 0.0;
+			} else {
+				DataUtils.getValues(original, col, getOriginalIndex(row, rowLast),
+					values, offset + i, 1);
+			}
+		}
+	}
+
+	/**
+	 * Copies values of a column that is stored in an array into another
+	 * array. Rows outside of the column are handled according to the
+	 * specified mode like in
+	 * {@link #getOriginalValues(int, int, double[], int, int)}.
+	 * @param column Array with the values of the column.
+	 * @param rowCount Number of rows in the column.
+	 * @param mode Border handling mode.
+	 * @param rowStart Index of the first row, which may be negative.
+	 * @param values Array that receives the values.
+	 * @param offset Index in the array of the first value.
+	 * @param length Number of values to be copied.
+	 */
+	static void getPaddedValues(double[] column, int rowCount, Mode mode,
+			int rowStart, double[] values, int offset, int length) {
+		int rowLast = rowCount - 1;
+		for (int i = 0; i < length; i++) {
+			int row = rowStart + i;
+			if (row >= 0 && row <= rowLast) {
+				values[offset + i] = column[row];
+			} else if (mode == Mode.OMIT) {
+				values[offset + i] = Double.NaN;
+			} else if (mode == Mode.ZERO) {
+				values[offset + i] = 0.0;
+			} else {
+				values[offset + i] = column[getPaddedIndex(mode, row, rowLast)];
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the original row that is used for a row outside
+	 * of the original data source by the modes {@code REPEAT},
+	 * {@code MIRROR}, and {@code CIRCULAR}.
+	 * @param row Row index outside of the original data source.
+	 * @param rowLast Index of the last row of the original data source.
+	 * @return Row index inside the original data source.
+	 */
+	private int getOriginalIndex(int row, int rowLast) {
+		return getPaddedIndex(getMode(), row, rowLast);
+	}
+
+	/**
+	 * Returns the index of the row inside of a column that is used for a
+	 * row outside of the column by the modes {@code REPEAT}, {@code MIRROR},
+	 * and {@code CIRCULAR}.
+	 * @param mode Border handling mode.
+	 * @param row Row index outside of the column.
+	 * @param rowLast Index of the last row of the column.
+	 * @return Row index inside the column.
+	 */
+	static int getPaddedIndex(Mode mode, int row, int rowLast) {
+		if (mode == Mode.REPEAT) {
+			row = MathUtils.limit(row, 0, rowLast);
+		} else if (mode == Mode.MIRROR && rowLast == 0) {
+			row = 0;
+		} else if (mode == Mode.MIRROR) {
+			int rem = Math.abs(row) / rowLast;
+			int mod = Math.abs(row) % rowLast;
+			if ((rem & 1) == 0) {
+				row = mod;
+			} else {
+				row = rowLast - mod;
+			}
+		} else if (mode == Mode.CIRCULAR) {
+			if (row >= 0) {
+				row = row % (rowLast + 1);
+			} else {
+				row = (row + 1) % (rowLast + 1) + rowLast;
+			}
+		}
+		return row;
+	}
+
 	/**
 	 * Clears this Filter2D.
 	 */
 	protected void clear() {
-		rows.clear();
+		for (DoubleList column : columns) {
+			column.clear();
+		}
+	}
+
+	/**
+	 * Removes all filtered rows starting with the specified row.
+	 * @param rowStart Index of the first row that will be removed.
+	 */
+	protected void clear(int rowStart) {
+		for (DoubleList column : columns) {
+			column.truncate(Math.max(Math.min(rowStart, column.size()), 0));
+		}
 	}
 
 	/**
@@ -174,7 +360,7 @@ public abstract class Filter2D extends AbstractDataSource
 	 * @param rowData Row data to be added.
 	 */
 	protected void add(Double[] rowData) {
-		rows.add(rowData);
+		add((Number[]) rowData);
 	}
 
 	/**
@@ -182,12 +368,53 @@ public abstract class Filter2D extends AbstractDataSource
 	 * @param rowData Row to be added.
 	 */
 	protected void add(Number[] rowData) {
-		Double[] doubleData = new Double[rowData.length];
-		int i = 0;
-		for (Number value : rowData) {
-			doubleData[i++] = value.doubleValue();
+		for (int colIndex = 0; colIndex < rowData.length; colIndex++) {
+			Number value = rowData[colIndex];
+			getColumnBuffer(colIndex).add(
+				(value != null) ? value.doubleValue() : Double.NaN);
+		}
+	}
+
+	/**
+	 * Appends values to a filtered column. Derived classes must make sure
+	 * that all filtered columns contain the same number of rows after
+	 * filtering.
+	 * @param colIndex Index of the filtered column.
+	 * @param values Array with the values to be added.
+	 * @param offset Index of the first value in the array.
+	 * @param length Number of values to be added.
+	 */
+	protected void add(int colIndex, double[] values, int offset, int length) {
+		getColumnBuffer(colIndex).add(values, offset, length);
+	}
+
+	/**
+	 * Returns the list with the values of the specified filtered column.
+	 * The list will be created if it doesn't exist.
+	 * @param colIndex Index of the filtered column.
+	 * @return List with values.
+	 */
+	private DoubleList getColumnBuffer(int colIndex) {
+		if (colIndex >= columns.length) {
+			int rowCount = getRowCountStored();
+			int colCountOld = columns.length;
+			columns = Arrays.copyOf(columns, colIndex + 1);
+			for (int i = colCountOld; i < columns.length; i++) {
+				columns[i] = new DoubleList(Math.max(rowCount, 16));
+			}
+		}
+		return columns[colIndex];
+	}
+
+	/**
+	 * Returns the number of rows that are stored for the filtered columns.
+	 * @return Number of stored rows.
+	 */
+	private int getRowCountStored() {
+		if (columns.length == 0) {
+			return 0;
 		}
-		rows.add(doubleData);
+		return columns[0].size();
 	}
 
 	/**
@@ -201,7 +428,17 @@ public abstract class Filter2D extends AbstractDataSource
 		if (colPos < 0) {
 			return original.get(col, row);
 		}
-		return rows.get(row)[colPos];
+		return columns[colPos].get(row);
+	}
+
+	@Override
+	protected void getValuesInRange(int col, int row, double[] values, int offset, int length) {
+		int colPos = getIndex(col);
+		if (colPos < 0) {
+			DataUtils.getValues(original, col, row, values, offset, length);
+			return;
+		}
+		columns[colPos].get(row, values, offset, length);
 	}
 
 	/**
@@ -217,8 +454,8 @@ public abstract class Filter2D extends AbstractDataSource
 			throw new IllegalArgumentException(
 				"Can't set value in unfiltered column."); //$NON-NLS-1$
 		}
-		Double old = rows.get(row)[colPos];
-		rows.get(row)[colPos] = value;
+		Double old = columns[colPos].set(row,
+			(value != null) ? value : Double.NaN);
 		notifyDataUpdated(new DataChangeEvent(this, col, row, old, value));
 		return old;
 	}
@@ -263,9 +500,39 @@ public abstract class Filter2D extends AbstractDataSource
 	 * @param events Optional event object describing the data values that
 	 *        have been added.
 	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public void dataAdded(DataSource source, DataChangeEvent... events) {
-		dataChanged(source, events);
+		int rowStart = getAppendedRowStart(events);
+		if (rowStart < 0) {
+			dataChanged(source, events);
+			notifyDataAdded(events);
+			return;
+		}
+
+		// The rows before the new rows are calculated again as well
+		int rowCountOld = getRowCountStored();
+		int colCount = getColumnCountFiltered();
+		Comparable[][] valuesOld = new Comparable[colCount][rowCountOld - rowStart];
+		for (int colPos = 0; colPos < colCount; colPos++) {
+			int col = getIndexOriginal(colPos);
+			for (int row = rowStart; row < rowCountOld; row++) {
+				valuesOld[colPos][row - rowStart] = get(col, row);
+			}
+		}
+		filter(rowStart);
 		notifyDataAdded(events);
+
+		List<DataChangeEvent> updated = new ArrayList<>();
+		for (int colPos = 0; colPos < colCount; colPos++) {
+			int col = getIndexOriginal(colPos);
+			for (int row = rowStart; row < rowCountOld; row++) {
+				updated.add(new DataChangeEvent(this, col, row,
+					valuesOld[colPos][row - rowStart], get(col, row)));
+			}
+		}
+		if (!updated.isEmpty()) {
+			notifyDataUpdated(updated.toArray(new DataChangeEvent[0]));
+		}
 	}
 
 	/**
@@ -306,6 +573,61 @@ public abstract class Filter2D extends AbstractDataSource
 		filter();
 	}
 
+	/**
+	 * Returns the index of the first filtered row that has to be calculated
+	 * again if the specified events only describe rows that were appended to
+	 * the original data source.
+	 * @param events Event objects.
+	 * @return Index of the first row that has to be filtered again, or
+	 *         {@code -1} if all rows have to be filtered again.
+	 */
+	private int getAppendedRowStart(DataChangeEvent... events) {
+		int rowCount = getRowCountStored();
+		if (events == null || events.length == 0 || rowCount == 0 ||
+				original.getRowCount() < rowCount) {
+			return -1;
+		}
+		for (DataChangeEvent event : events) {
+			if (event.getRow() < rowCount) {
+				return -1;
+			}
+		}
+
+		int minIndex = getSupportMinIndex();
+		int maxIndex = getSupportMaxIndex();
+		if (minIndex == Integer.MIN_VALUE || maxIndex == Integer.MAX_VALUE) {
+			return -1;
+		}
+		// Values before the first row depend on the number of rows
+		if (getMode() == Mode.CIRCULAR ||
+				(getMode() == Mode.MIRROR && -minIndex >= rowCount - 1)) {
+			return -1;
+		}
+		return MathUtils.limit(rowCount - maxIndex, 0, rowCount);
+	}
+
+	/**
+	 * Returns the lowest offset of an original row relative to a filtered row
+	 * that is used to calculate the filtered value. The default
+	 * implementation returns {@code Integer.MIN_VALUE}, i.e. the range is
+	 * unbounded.
+	 * @return Lowest row offset.
+	 */
+	protected int getSupportMinIndex() {
+		return Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Returns the highest offset of an original row relative to a filtered
+	 * row that is used to calculate the filtered value. The default
+	 * implementation returns {@code Integer.MAX_VALUE}, i.e. the range is
+	 * unbounded.
+	 * @return Highest row offset.
+	 */
+	protected int getSupportMaxIndex() {
+		return Integer.MAX_VALUE;
+	}
+
 	/**
 	 * Returns the index of the original column using the index of the
 	 * filtered column.
@@ -346,6 +668,70 @@ public abstract class Filter2D extends AbstractDataSource
 	 */
 	protected abstract void filter();
 
+	/**
+	 * Invokes the filtering routine for all rows starting with the specified
+	 * row. Implementations must keep the filtered rows before that row. The
+	 * default implementation filters all rows.
+	 * @param rowStart Index of the first row that should be filtered.
+	 */
+	protected void filter(int rowStart) {
+		filter();
+	}
+
+	/**
+	 * Calculates the values of all filtered columns starting with the
+	 * specified row using the specified calculation. If a thread pool
+	 * has been set, the columns are calculated in parallel and this method
+	 * returns after all of them are finished. The results are the same in
+	 * both cases.
+	 * @param filter Calculation of the values of single columns.
+	 * @param rowStart Index of the first row that should be filtered.
+	 * @return Filtered values, one array per filtered column.
+	 */
+	protected double[][] filterColumns(ColumnFilter filter, int rowStart) {
+		double[][] result = new double[getColumnCountFiltered()][];
+		ForkJoinPool pool = getPool();
+		if (pool == null || result.length < 2) {
+			for (int colIndex = 0; colIndex < result.length; colIndex++) {
+				result[colIndex] = filter.filterColumn(colIndex, rowStart);
+			}
+			return result;
+		}
+		final List<ColumnTask> tasks = new ArrayList<>(result.length);
+		for (int colIndex = 0; colIndex < result.length; colIndex++) {
+			tasks.add(new ColumnTask(filter, colIndex, rowStart, result));
+		}
+		pool.invoke(new RecursiveAction() {
+			/** Version id for serialization. */
+			private static final long serialVersionUID = 4739275920483816385L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the thread pool that is used to filter columns in parallel.
+	 * @return Thread pool, or {@code null} if columns are filtered
+	 *         sequentially.
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Sets the thread pool that is used to filter columns in parallel. The
+	 * thread pool isn't serialized.
+	 * @param pool Thread pool, or {@code null} if columns should be filtered
+	 *        sequentially.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
 	/**
 	 * Returns the Mode of this Filter2D.
 	 * @return Mode of filtering.
@@ -376,7 +762,7 @@ public abstract class Filter2D extends AbstractDataSource
 		in.defaultReadObject();
 
 		// Handle transient fields
-		rows = new ArrayList<>();
+		columns = new DoubleList[0];
 
 		// Update caches
 		original.addDataListener(this);
@@ -0,0 +1,65 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.filters;
+
+import java.util.Iterator;
+
+import de.erichseifert.gral.util.DataUtils;
+
+/**
+ * Abstract base class for lazy iterators of {@link Filter}s. Filtered
+ * values are calculated as primitive values when they are requested.
+ * Values are only boxed when they are accessed with {@link #next()}, and
+ * chained filters read values from each other with {@link #nextValue()}.
+ */
+abstract class FilterIterator implements Iterator<Double> {
+	/**
+	 * Returns the next filtered value as primitive value.
+	 * @return Next filtered value.
+	 * @throws java.util.NoSuchElementException if there are no more values.
+	 */
+	public abstract double nextValue();
+
+	@Override
+	public Double next() {
+		return nextValue();
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns the next value of the specified iterator as primitive value.
+	 * Values of other filters are read without boxing, {@code null} values
+	 * are returned as {@code NaN}.
+	 * @param iterator Iterator to read.
+	 * @return Next value of the iterator.
+	 */
+	protected static double nextValue(Iterator<? extends Number> iterator) {
+		if (iterator instanceof FilterIterator) {
+			return ((FilterIterator) iterator).nextValue();
+		}
+		return DataUtils.getValueOrDefault(iterator.next(), Double.NaN);
+	}
+}
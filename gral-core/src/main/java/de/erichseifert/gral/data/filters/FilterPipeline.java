@@ -0,0 +1,427 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.filters;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.util.DataUtils;
+import de.erichseifert.gral.util.SlidingMedian;
+
+/**
+ * <p>Filter2D that applies a sequence of filter operations to a data source
+ * at once. The result is the same as that of chained {@link Median},
+ * {@link Convolution}, and {@link Resize} filters, but no intermediate data
+ * sources are created: there is only one listener on the original data
+ * source, and each column is read once and passed through all operations as
+ * primitive array before the result is stored.</p>
+ *
+ * <p>Pipelines are created with a {@link Builder}:</p>
+ * <pre>
+ * DataSource filtered = new FilterPipeline.Builder(data)
+ *     .median(5, 2, Mode.REPEAT, 1)
+ *     .convolve(Kernel.getBinomial(9), Mode.REPEAT, 1)
+ *     .resize(800)
+ *     .build();
+ * </pre>
+ */
+public class FilterPipeline extends Filter2D {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = 4826147839264573159L;
+
+	/** Operations that are applied to the columns in this order. */
+	private final List<Stage> stages;
+
+	/**
+	 * Abstract base class for a single operation of a pipeline.
+	 */
+	private abstract static class Stage implements Serializable {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -3185742208496830264L;
+
+		/** Border handling mode. */
+		private final Mode mode;
+		/** Sorted indexes of the columns the operation is applied to. */
+		private final int[] cols;
+
+		/**
+		 * Initializes a new instance.
+		 * @param mode Border handling mode.
+		 * @param cols Indexes of the columns, or no indexes for all columns.
+		 */
+		public Stage(Mode mode, int... cols) {
+			this.mode = mode;
+			this.cols = Arrays.copyOf(cols, cols.length);
+			// A sorted array is necessary for binary search
+			Arrays.sort(this.cols);
+		}
+
+		/**
+		 * Returns the border handling mode.
+		 * @return Border handling mode.
+		 */
+		public Mode getMode() {
+			return mode;
+		}
+
+		/**
+		 * Returns the indexes of the columns the operation is applied to.
+		 * @return Column indexes, or an empty array for all columns.
+		 */
+		public int[] getColumns() {
+			return cols;
+		}
+
+		/**
+		 * Returns whether the operation is applied to the specified column.
+		 * @param col Column index.
+		 * @return {@code true} if the column is filtered.
+		 */
+		public boolean isFiltered(int col) {
+			return cols.length == 0 || Arrays.binarySearch(cols, col) >= 0;
+		}
+
+		/**
+		 * Returns the number of rows that result from the specified number
+		 * of input rows.
+		 * @param rowCount Number of input rows.
+		 * @return Number of resulting rows.
+		 */
+		public int getRowCount(int rowCount) {
+			return rowCount;
+		}
+
+		/**
+		 * Applies the operation to a column.
+		 * @param values Values of the column.
+		 * @param length Number of values.
+		 * @return Filtered values.
+		 */
+		public abstract double[] apply(double[] values, int length);
+	}
+
+	/**
+	 * Operation that calculates sliding medians like {@link Median}.
+	 */
+	private static class MedianStage extends Stage {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 2093628870529437401L;
+
+		/** Number of values in the window. */
+		private final int windowSize;
+		/** Offset from the current value to the last value of the window. */
+		private final int offset;
+
+		/**
+		 * Initializes a new instance.
+		 * @param windowSize Number of values in the window.
+		 * @param offset Offset from the current value to the last value of
+		 *        the window.
+		 * @param mode Border handling mode.
+		 * @param cols Indexes of the columns, or no indexes for all columns.
+		 */
+		public MedianStage(int windowSize, int offset, Mode mode, int... cols) {
+			super(mode, cols);
+			this.windowSize = windowSize;
+			this.offset = offset;
+		}
+
+		@Override
+		public double[] apply(double[] values, int length) {
+			// The window is pre-filled with the rows before the first row
+			int prefillCount = Math.max(windowSize - offset, 0);
+			SlidingMedian window = new SlidingMedian(
+				Math.max(windowSize, prefillCount));
+			double[] windowValues = new double[Math.max(prefillCount, length)];
+			getPaddedValues(values, length, getMode(), offset - windowSize,
+				windowValues, 0, prefillCount);
+			for (int i = 0; i < prefillCount; i++) {
+				window.add(windowValues[i]);
+			}
+
+			getPaddedValues(values, length, getMode(), windowSize - offset,
+				windowValues, 0, length);
+			double[] medians = new double[length];
+			Median.median(window, windowSize, windowValues, length, medians);
+			return medians;
+		}
+	}
+
+	/**
+	 * Operation that convolves values with a kernel like
+	 * {@link Convolution}.
+	 */
+	private static class ConvolutionStage extends Stage {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -6602318412815574893L;
+
+		/** Kernel that provides the values to convolve the data. */
+		private final Kernel kernel;
+
+		/**
+		 * Initializes a new instance.
+		 * @param kernel Kernel to be used.
+		 * @param mode Border handling mode.
+		 * @param cols Indexes of the columns, or no indexes for all columns.
+		 */
+		public ConvolutionStage(Kernel kernel, Mode mode, int... cols) {
+			super(mode, cols);
+			this.kernel = kernel;
+		}
+
+		@Override
+		public double[] apply(double[] values, int length) {
+			double[] weights = Convolution.getWeights(kernel);
+			int minIndex = (kernel != null) ? kernel.getMinIndex() : 0;
+			double[] padded = new double[length + weights.length - 1];
+			getPaddedValues(values, length, getMode(), minIndex,
+				padded, 0, padded.length);
+			return Convolution.convolve(padded, weights, length);
+		}
+	}
+
+	/**
+	 * Operation that changes the number of rows by averaging like
+	 * {@link Resize}.
+	 */
+	private static class ResizeStage extends Stage {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 7539912584402178325L;
+
+		/** Number of resulting rows. */
+		private final int rows;
+
+		/**
+		 * Initializes a new instance.
+		 * @param rows Number of resulting rows.
+		 */
+		public ResizeStage(int rows) {
+			super(Mode.ZERO);
+			this.rows = rows;
+		}
+
+		@Override
+		public int getRowCount(int rowCount) {
+			return rows;
+		}
+
+		@Override
+		public double[] apply(double[] values, int length) {
+			return Resize.average(values, length, rows);
+		}
+	}
+
+	/**
+	 * Class to create {@code FilterPipeline} instances. The operations are
+	 * applied in the order they are added.
+	 */
+	public static class Builder {
+		/** Original data source. */
+		private final DataSource original;
+		/** Operations that have been added. */
+		private final List<Stage> stages;
+
+		/**
+		 * Initializes a new builder for a pipeline that filters the
+		 * specified data source.
+		 * @param original Data source to be filtered.
+		 */
+		public Builder(DataSource original) {
+			this.original = original;
+			stages = new ArrayList<>();
+		}
+
+		/**
+		 * Adds an operation that calculates the median of a sliding window
+		 * like {@link Median}.
+		 * @param windowSize Number of rows to be used for the calculation of
+		 *        the median.
+		 * @param offset Offset from the current filtered value to the last
+		 *        value of the window.
+		 * @param mode Mode of filtering.
+		 * @param cols Column indexes, or no indexes for all columns.
+		 * @return This builder.
+		 */
+		public Builder median(int windowSize, int offset, Mode mode, int... cols) {
+			if (windowSize <= 0) {
+				throw new IllegalArgumentException(MessageFormat.format(
+					"Invalid window size: {0,number,integer}", windowSize)); //$NON-NLS-1$
+			}
+			stages.add(new MedianStage(windowSize, offset, mode, cols));
+			return this;
+		}
+
+		/**
+		 * Adds an operation that convolves the data with a kernel like
+		 * {@link Convolution}.
+		 * @param kernel Kernel to be used.
+		 * @param mode Mode of filtering.
+		 * @param cols Column indexes, or no indexes for all columns.
+		 * @return This builder.
+		 */
+		public Builder convolve(Kernel kernel, Mode mode, int... cols) {
+			stages.add(new ConvolutionStage(kernel, mode, cols));
+			return this;
+		}
+
+		/**
+		 * Adds an operation that changes the number of rows of all columns
+		 * by averaging like {@link Resize}. All columns of the original data
+		 * source must be numeric.
+		 * @param rows Number of rows.
+		 * @return This builder.
+		 */
+		public Builder resize(int rows) {
+			if (rows <= 0) {
+				throw new IllegalArgumentException(MessageFormat.format(
+					"Invalid number of rows: {0,number,integer}", rows)); //$NON-NLS-1$
+			}
+			for (int col = 0; col < original.getColumnCount(); col++) {
+				if (!original.isColumnNumeric(col)) {
+					throw new IllegalArgumentException(MessageFormat.format(
+						"Column {0,number,integer} isn't numeric and cannot be filtered.", //$NON-NLS-1$
+						col));
+				}
+			}
+			stages.add(new ResizeStage(rows));
+			return this;
+		}
+
+		/**
+		 * Creates a new pipeline that applies all operations that have been
+		 * added.
+		 * @return New pipeline.
+		 */
+		public FilterPipeline build() {
+			return new FilterPipeline(original, stages);
+		}
+	}
+
+	/**
+	 * Initializes a new instance with the specified data source and
+	 * operations.
+	 * @param original Data source to be filtered.
+	 * @param stages Operations.
+	 */
+	private FilterPipeline(DataSource original, List<Stage> stages) {
+		super(original, Mode.ZERO, getColumns(stages));
+		this.stages = Collections.unmodifiableList(new ArrayList<>(stages));
+		filter();
+	}
+
+	/**
+	 * Returns the indexes of all columns that are filtered by at least one
+	 * of the specified operations.
+	 * @param stages Operations.
+	 * @return Column indexes, or an empty array for all columns.
+	 */
+	private static int[] getColumns(List<Stage> stages) {
+		SortedSet<Integer> cols = new TreeSet<>();
+		for (Stage stage : stages) {
+			if (stage.getColumns().length == 0) {
+				return new int[0];
+			}
+			for (int col : stage.getColumns()) {
+				cols.add(col);
+			}
+		}
+		int[] colsArray = new int[cols.size()];
+		int i = 0;
+		for (int col : cols) {
+			colsArray[i++] = col;
+		}
+		return colsArray;
+	}
+
+	@Override
+	public int getRowCount() {
+		int rowCount = super.getRowCount();
+		if (stages != null) {
+			for (Stage stage : stages) {
+				rowCount = stage.getRowCount(rowCount);
+			}
+		}
+		return rowCount;
+	}
+
+	@Override
+	protected void filter() {
+		clear();
+		if (stages == null) {
+			return;
+		}
+		double[][] filtered = filterColumns(new ColumnFilter() {
+			@Override
+			public double[] filterColumn(int colIndex, int rowStart) {
+				return FilterPipeline.this.filterColumn(colIndex);
+			}
+		}, 0);
+		for (int colIndex = 0; colIndex < filtered.length; colIndex++) {
+			add(colIndex, filtered[colIndex], 0, getRowCount());
+		}
+	}
+
+	/**
+	 * Applies all stages of the pipeline to a single filtered column.
+	 * @param colIndex Index of the filtered column.
+	 * @return Filtered values.
+	 */
+	private double[] filterColumn(int colIndex) {
+		DataSource original = getOriginal();
+		int colIndexOriginal = getIndexOriginal(colIndex);
+		int rowCount = original.getRowCount();
+		double[] values = new double[rowCount];
+		DataUtils.getValues(original, colIndexOriginal, 0, values, 0, rowCount);
+		for (Stage stage : stages) {
+			if (stage.isFiltered(colIndexOriginal)) {
+				values = stage.apply(values, rowCount);
+			}
+			rowCount = stage.getRowCount(rowCount);
+		}
+		return values;
+	}
+
+	/**
+	 * Custom deserialization method.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		// Normal deserialization
+		in.defaultReadObject();
+
+		// Update caches
+		dataUpdated(this);
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.filters;
+
+import java.io.Serializable;
+
+/**
+ * <p>Class that represents a two dimensional array of coefficients for a
+ * weighted filtering of grid data.</p>
+ * <p>Functionality includes:</p>
+ * <ul>
+ *   <li>Creation from two one dimensional kernels</li>
+ *   <li>Detection of separable kernels</li>
+ * </ul>
+ *
+ * <p>A kernel is separable if it is the product of a horizontal and a
+ * vertical kernel, like binomial and Gaussian kernels. Separable kernels can
+ * be applied to grid data with two one dimensional passes.</p>
+ */
+public class Kernel2D implements Serializable {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -4280398541938174829L;
+
+	/** Relative tolerance that is used to detect separable kernels. */
+	private static final double SEPARABILITY_TOLERANCE = 1e-12;
+
+	/** Kernel values, one array per row. */
+	private final double[][] values;
+	/** Index of the kernel's center column. */
+	private final int offsetX;
+	/** Index of the kernel's center row. */
+	private final int offsetY;
+	/** Horizontal factor of a separable kernel, or {@code null}. */
+	private final Kernel horizontal;
+	/** Vertical factor of a separable kernel, or {@code null}. */
+	private final Kernel vertical;
+
+	/**
+	 * Creates a new kernel with the specified offsets and values.
+	 * @param offsetX Offset to the first column in the kernel.
+	 * @param offsetY Offset to the first row in the kernel.
+	 * @param values Array of kernel values, one array per row. All rows must
+	 *        have the same length.
+	 */
+	public Kernel2D(int offsetX, int offsetY, double[][] values) {
+		int width = (values.length > 0) ? values[0].length : 0;
+		this.values = new double[values.length][];
+		for (int y = 0; y < values.length; y++) {
+			if (values[y].length != width) {
+				throw new IllegalArgumentException(
+					"All rows of a kernel must have the same length."); //$NON-NLS-1$
+			}
+			this.values[y] = values[y].clone();
+		}
+		this.offsetX = offsetX;
+		this.offsetY = offsetY;
+
+		Kernel[] factors = separate();
+		horizontal = (factors != null) ? factors[0] : null;
+		vertical = (factors != null) ? factors[1] : null;
+	}
+
+	/**
+	 * Creates a new kernel with the specified values and offsets being half
+	 * the width and height of this kernel (rounded down).
+	 * @param values Array of kernel values, one array per row.
+	 */
+	public Kernel2D(double[][] values) {
+		this((values.length > 0) ? values[0].length/2 : 0, values.length/2, values);
+	}
+
+	/**
+	 * Creates a new separable kernel which is the product of the specified
+	 * horizontal and vertical kernels.
+	 * @param horizontal Kernel that is applied along the rows.
+	 * @param vertical Kernel that is applied along the columns.
+	 */
+	public Kernel2D(Kernel horizontal, Kernel vertical) {
+		this(horizontal.getOffset(), vertical.getOffset(),
+			product(horizontal, vertical));
+	}
+
+	/**
+	 * Returns a square kernel of specified size with binomial coefficients.
+	 * @param size Width and height of the kernel.
+	 * @return Kernel.
+	 */
+	public static Kernel2D getBinomial(int size) {
+		Kernel kernel = Kernel.getBinomial(size);
+		return new Kernel2D(kernel, kernel);
+	}
+
+	/**
+	 * Returns the products of the values of two kernels.
+	 * @param horizontal Kernel that is applied along the rows.
+	 * @param vertical Kernel that is applied along the columns.
+	 * @return Kernel values, one array per row.
+	 */
+	private static double[][] product(Kernel horizontal, Kernel vertical) {
+		double[][] values = new double[vertical.size()][horizontal.size()];
+		for (int y = 0; y < values.length; y++) {
+			double v = vertical.get(vertical.getMinIndex() + y);
+			for (int x = 0; x < values[y].length; x++) {
+				values[y][x] = v*horizontal.get(horizontal.getMinIndex() + x);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Splits this kernel into a horizontal and a vertical kernel whose
+	 * product is this kernel. The row and the column of the value with
+	 * the largest magnitude are used as factors.
+	 * @return Horizontal and vertical kernel, or {@code null} if this kernel
+	 *         isn't separable.
+	 */
+	private Kernel[] separate() {
+		int pivotX = 0;
+		int pivotY = 0;
+		double pivot = 0.0;
+		for (int y = 0; y < getHeight(); y++) {
+			for (int x = 0; x < getWidth(); x++) {
+				if (Math.abs(values[y][x]) > Math.abs(pivot)) {
+					pivot = values[y][x];
+					pivotX = x;
+					pivotY = y;
+				}
+			}
+		}
+
+		double[] h = new double[getWidth()];
+		double[] v = new double[getHeight()];
+		if (pivot != 0.0) {
+			for (int x = 0; x < h.length; x++) {
+				h[x] = values[pivotY][x]/pivot;
+			}
+			for (int y = 0; y < v.length; y++) {
+				v[y] = values[y][pivotX];
+			}
+		}
+
+		double tolerance = SEPARABILITY_TOLERANCE*Math.abs(pivot);
+		for (int y = 0; y < getHeight(); y++) {
+			for (int x = 0; x < getWidth(); x++) {
+				if (!(Math.abs(values[y][x] - v[y]*h[x]) <= tolerance)) {
+					return null;
+				}
+			}
+		}
+		return new Kernel[] {new Kernel(offsetX, h), new Kernel(offsetY, v)};
+	}
+
+	/**
+	 * Returns the value at the specified position of this kernel. If the
+	 * position exceeds the minimum or maximum indexes, 0.0 is returned.
+	 * @param x Horizontal index.
+	 * @param y Vertical index.
+	 * @return Value at the specified position.
+	 */
+	public double get(int x, int y) {
+		if (x < getMinIndexX() || x > getMaxIndexX() ||
+				y < getMinIndexY() || y > getMaxIndexY()) {
+			return 0.0;
+		}
+		return values[y - getMinIndexY()][x - getMinIndexX()];
+	}
+
+	/**
+	 * Returns the number of columns of this kernel.
+	 * @return Width.
+	 */
+	public int getWidth() {
+		return (values.length > 0) ? values[0].length : 0;
+	}
+
+	/**
+	 * Returns the number of rows of this kernel.
+	 * @return Height.
+	 */
+	public int getHeight() {
+		return values.length;
+	}
+
+	/**
+	 * Returns the horizontal offset of this kernel.
+	 * @return Horizontal offset.
+	 */
+	public int getOffsetX() {
+		return offsetX;
+	}
+
+	/**
+	 * Returns the vertical offset of this kernel.
+	 * @return Vertical offset.
+	 */
+	public int getOffsetY() {
+		return offsetY;
+	}
+
+	/**
+	 * Returns the index of the "leftmost" column.
+	 * @return Minimal horizontal index.
+	 */
+	public int getMinIndexX() {
+		return -getOffsetX();
+	}
+
+	/**
+	 * Returns the index of the "rightmost" column.
+	 * @return Maximal horizontal index.
+	 */
+	public int getMaxIndexX() {
+		return getWidth() - getOffsetX() - 1;
+	}
+
+	/**
+	 * Returns the index of the "topmost" row.
+	 * @return Minimal vertical index.
+	 */
+	public int getMinIndexY() {
+		return -getOffsetY();
+	}
+
+	/**
+	 * Returns the index of the "bottommost" row.
+	 * @return Maximal vertical index.
+	 */
+	public int getMaxIndexY() {
+		return getHeight() - getOffsetY() - 1;
+	}
+
+	/**
+	 * Returns whether this kernel is the product of a horizontal and a
+	 * vertical kernel.
+	 * @return {@code true} if the kernel is separable.
+	 */
+	public boolean isSeparable() {
+		return horizontal != null;
+	}
+
+	/**
+	 * Returns the horizontal factor of a separable kernel.
+	 * @return Kernel that is applied along the rows, or {@code null} if this
+	 *         kernel isn't separable.
+	 */
+	public Kernel getHorizontal() {
+		return horizontal;
+	}
+
+	/**
+	 * Returns the vertical factor of a separable kernel.
+	 * @return Kernel that is applied along the columns, or {@code null} if
+	 *         this kernel isn't separable.
+	 */
+	public Kernel getVertical() {
+		return vertical;
+	}
+}
@@ -23,11 +23,9 @@ package de.erichseifert.gral.data.filters;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.util.ArrayList;
-import java.util.List;
 
 import de.erichseifert.gral.data.DataSource;
-import de.erichseifert.gral.util.MathUtils;
+import de.erichseifert.gral.util.SlidingMedian;
 
 
 /**
@@ -68,67 +66,114 @@ public class Median extends Filter2D {
 
 	@Override
 	protected void filter() {
-		clear();
+		filter(0);
+	}
+
+	@Override
+	protected void filter(int rowStart) {
+		clear(rowStart);
 		if (getWindowSize() <= 0) {
 			return;
 		}
-		List<List<Double>> colWindows =
-				new ArrayList<>(getColumnCount());
-		for (int colIndex = 0; colIndex < getColumnCountFiltered(); colIndex++) {
-			int colIndexOriginal = getIndexOriginal(colIndex);
-			List<Double> window = new ArrayList<>(getWindowSize());
-			colWindows.add(window);
-			// Pre-fill window
-			for (int rowIndex = getOffset() - getWindowSize(); rowIndex < 0; rowIndex++) {
-				Comparable<?> vOrig = getOriginal(colIndexOriginal, rowIndex);
-				double v = ((Number) vOrig).doubleValue();
-				window.add(v);
-			}
+		int rowCount = getRowCount() - rowStart;
+		if (rowCount <= 0) {
+			return;
 		}
-		for (int rowIndex = 0; rowIndex < getRowCount(); rowIndex++) {
-			Double[] filteredRow = new Double[getColumnCountFiltered()];
-			for (int colIndex = 0; colIndex < filteredRow.length; colIndex++) {
-				List<Double> window = colWindows.get(colIndex);
-				if (window.size() >= getWindowSize()) {
-					window.remove(0);
-				}
-				int colIndexOriginal = getIndexOriginal(colIndex);
-				Comparable<?> vOrig = getOriginal(colIndexOriginal,
-						rowIndex - getOffset() + getWindowSize());
-				double v = ((Number) vOrig).doubleValue();
-				window.add(v);
-				filteredRow[colIndex] = median(window);
+		double[][] medians = filterColumns(new ColumnFilter() {
+			@Override
+			public double[] filterColumn(int colIndex, int rowStart) {
+				return Median.this.filterColumn(colIndex, rowStart);
 			}
-			add(filteredRow);
+		}, rowStart);
+		for (int colIndex = 0; colIndex < medians.length; colIndex++) {
+			add(colIndex, medians[colIndex], 0, rowCount);
 		}
 	}
 
 	/**
-	 * Calculates the median for the specified values in the window.
-	 * @param w List of values the median will be calculated for.
-	 * @return Median.
+	 * Calculates the medians of a single filtered column starting with the
+	 * specified row.
+	 * @param colIndex Index of the filtered column.
+	 * @param rowStart Index of the first row that should be filtered.
+	 * @return Filtered values.
 	 */
-	private double median(List<Double> w) {
-		if (w.size() == 1) {
-			return w.get(0);
+	private double[] filterColumn(int colIndex, int rowStart) {
+		int rowCount = getRowCount() - rowStart;
+		// The window is pre-filled with the rows before the first row
+		int prefillCount = Math.max(getWindowSize() - getOffset(), 0);
+		// Restore the window as it was after the row before rowStart
+		int windowCount = (prefillCount >= getWindowSize()) ? prefillCount
+				: Math.min(getWindowSize(), prefillCount + rowStart);
+		SlidingMedian window = new SlidingMedian(
+				Math.max(getWindowSize(), prefillCount));
+
+		double[] values = new double[Math.max(rowCount, 1)];
+		double[] medians = new double[rowCount];
+		int colIndexOriginal = getIndexOriginal(colIndex);
+		for (int i = prefillCount + rowStart - windowCount; i < prefillCount + rowStart; i++) {
+			int rowIndex = (i < prefillCount)
+					? getOffset() - getWindowSize() + i
+					: i - prefillCount - getOffset() + getWindowSize();
+			getOriginalValues(colIndexOriginal, rowIndex, values, 0, 1);
+			window.add(values[0]);
 		}
-		List<Double> window = new ArrayList<>(w.size());
-		for (Double v : w) {
-			if (!MathUtils.isCalculatable(v)) {
-				return Double.NaN;
+
+		getOriginalValues(colIndexOriginal,
+			rowStart - getOffset() + getWindowSize(), values, 0, rowCount);
+		median(window, getWindowSize(), values, rowCount, medians);
+		return medians;
+	}
+
+	/**
+	 * Slides a window over the specified values and calculates the median
+	 * after each value has been added.
+	 * @param window Window that contains the values before the first value.
+	 * @param windowSize Number of values in the window.
+	 * @param values Values to be added to the window.
+	 * @param length Number of values.
+	 * @param medians Array that receives the medians.
+	 */
+	static void median(SlidingMedian window, int windowSize, double[] values,
+			int length, double[] medians) {
+		for (int i = 0; i < length; i++) {
+			if (window.size() >= windowSize) {
+				window.removeFirst();
 			}
-			window.add(v);
+			window.add(values[i]);
+			medians[i] = median(window);
+		}
+	}
+
+	@Override
+	protected int getSupportMinIndex() {
+		if (getWindowSize() <= 0) {
+			return Integer.MIN_VALUE;
+		}
+		return Math.min(getOffset() - getWindowSize(), 1 - getOffset());
+	}
+
+	@Override
+	protected int getSupportMaxIndex() {
+		if (getWindowSize() <= 0) {
+			return Integer.MAX_VALUE;
+		}
+		return getWindowSize() - getOffset();
+	}
+
+	/**
+	 * Calculates the median for the specified values in the window.
+	 * @param window Window with the values the median will be calculated
+	 *        for.
+	 * @return Median, or {@code NaN} if a value isn't calculatable.
+	 */
+	private static double median(SlidingMedian window) {
+		if (window.size() == 1) {
+			return window.get(0);
 		}
-		int medianIndex = MathUtils.randomizedSelect(
-				window, 0, window.size() - 1, window.size()/2);
-		double median = window.get(medianIndex);
-		if ((window.size() & 1) == 0) {
-			int medianUpperIndex = MathUtils.randomizedSelect(
-					window, 0, window.size() - 1, window.size()/2 + 1);
-			double medianUpper = window.get(medianUpperIndex);
-			median = (median + medianUpper)/2.0;
+		if (window.getInvalidCount() > 0) {
+			return Double.NaN;
 		}
-		return median;
+		return window.getMedian();
 	}
 
 	/**
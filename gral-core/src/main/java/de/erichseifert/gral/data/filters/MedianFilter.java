@@ -22,31 +22,56 @@
 package de.erichseifert.gral.data.filters;
 
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.NoSuchElementException;
 
-import de.erichseifert.gral.data.statistics.Statistics;
-import de.erichseifert.gral.util.WindowIterator;
+import de.erichseifert.gral.util.SlidingMedian;
 
 public class MedianFilter<T extends Number & Comparable<T>> implements Filter<T> {
-	private final List<Double> filtered;
-	private final Iterator<List<T>> windowIterator;
+	private final Iterable<T> data;
+	private final int windowSize;
 
-	public MedianFilter(Iterable<T> data, int windowSize) {
-		filtered = new LinkedList<>();
+	private static class MedianIterator extends FilterIterator {
+		private final Iterator<? extends Number> wrappedIterator;
+		private final SlidingMedian window;
+
+		public MedianIterator(Iterator<? extends Number> wrappedIterator, int windowSize) {
+			this.wrappedIterator = wrappedIterator;
+			window = new SlidingMedian(windowSize);
+		}
+
+		@Override
+		public boolean hasNext() {
+			int windowSize = window.getCapacity();
+			while (window.size() < windowSize - 1 && wrappedIterator.hasNext()) {
+				window.add(nextValue(wrappedIterator));
+			}
+			return window.size() >= windowSize - 1 && wrappedIterator.hasNext();
+		}
 
-		windowIterator = new WindowIterator<>(data.iterator(), windowSize);
+		@Override
+		public double nextValue() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			if (window.size() == window.getCapacity()) {
+				window.removeFirst();
+			}
+			window.add(nextValue(wrappedIterator));
+			return window.getMedian();
+		}
+	}
 
-		while (windowIterator.hasNext()) {
-			List<T> window = windowIterator.next();
-			Statistics windowStatistics = new Statistics(window);
-			double median = windowStatistics.get(Statistics.MEDIAN);
-			filtered.add(median);
+	public MedianFilter(Iterable<T> data, int windowSize) {
+		if (windowSize <= 0) {
+			throw new IllegalArgumentException(
+				"Invalid window size: " + windowSize); //$NON-NLS-1$
 		}
+		this.data = data;
+		this.windowSize = windowSize;
 	}
 
 	@Override
 	public Iterator<Double> iterator() {
-		return filtered.iterator();
+		return new MedianIterator(data.iterator(), windowSize);
 	}
 }
@@ -0,0 +1,300 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.filters;
+
+import java.util.Arrays;
+
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.util.MathUtils;
+
+/**
+ * <p>Abstract class for recursive (infinite impulse response) filters of
+ * up to second order. Each filtered value is calculated from the current
+ * and the two previous original values, and from the two previous filtered
+ * values:</p>
+ * <pre>y[n] = b0*x[n] + b1*x[n-1] + b2*x[n-2] - a1*y[n-1] - a2*y[n-2]</pre>
+ *
+ * <p>The filter state is kept for each column, so rows that are appended to
+ * the original data source are filtered in constant time per row. Values
+ * that aren't calculatable are passed through and don't change the
+ * state.</p>
+ *
+ * <p>The mode determines the state before the first row: with
+ * {@code ZERO} the filter starts at rest, with the other modes it starts in
+ * the steady state of the first calculatable value. For {@code MIRROR} and
+ * {@code CIRCULAR} the filter additionally runs over padding rows before
+ * the first row, whose number depends on how fast the filter settles.</p>
+ *
+ * <p>In zero-phase mode the filter is applied forwards and then backwards,
+ * which removes the delay of the filtered values and squares the magnitude
+ * response. Both borders are padded according to the mode, except for
+ * {@code OMIT}, and all rows are filtered again on every change.</p>
+ */
+public abstract class RecursiveFilter extends Filter2D {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = 8102849531563628432L;
+
+	/** Relative magnitude of the impulse response after which the filter
+	is regarded as settled. */
+	private static final double SETTLING_THRESHOLD = 1e-3;
+
+	/** Number of values of the filter state: two previous original and two
+	previous filtered values. */
+	private static final int STATE_SIZE = 4;
+
+	/** Decides whether the filter is applied forwards and backwards. */
+	private boolean zeroPhase;
+	/** Filter states after the last row, one per filtered column. */
+	private transient double[][] states;
+
+	/**
+	 * Initializes a new instance with the specified data source, direction,
+	 * border handling and columns to be filtered.
+	 * @param original Data source to be filtered.
+	 * @param zeroPhase {@code true} if the filter should be applied forwards
+	 *        and backwards.
+	 * @param mode Border handling mode to be used.
+	 * @param cols Indexes of numeric columns to be filtered.
+	 */
+	public RecursiveFilter(DataSource original, boolean zeroPhase, Mode mode,
+			int... cols) {
+		super(original, mode, cols);
+		this.zeroPhase = zeroPhase;
+	}
+
+	/**
+	 * Returns the normalized filter coefficients {@code b0}, {@code b1},
+	 * {@code b2}, {@code a1}, and {@code a2}.
+	 * @return Array with five coefficients, or {@code null} if the filter
+	 *         isn't initialized yet.
+	 */
+	protected abstract double[] getCoefficients();
+
+	/**
+	 * Returns whether the filter is applied forwards and backwards.
+	 * @return {@code true} if the filtered values have no phase shift.
+	 */
+	public boolean isZeroPhase() {
+		return zeroPhase;
+	}
+
+	/**
+	 * Sets whether the filter is applied forwards and backwards.
+	 * @param zeroPhase {@code true} if the filtered values should have no
+	 *        phase shift.
+	 */
+	public void setZeroPhase(boolean zeroPhase) {
+		this.zeroPhase = zeroPhase;
+		dataUpdated(this);
+	}
+
+	/**
+	 * Returns whether appended rows can be filtered using the stored filter
+	 * states.
+	 * @return {@code true} if the filter can continue with appended rows.
+	 */
+	private boolean isIncremental() {
+		Mode mode = getMode();
+		return !isZeroPhase() &&
+			(mode == Mode.OMIT || mode == Mode.ZERO || mode == Mode.REPEAT);
+	}
+
+	@Override
+	protected int getSupportMinIndex() {
+		// Previous rows are represented by the stored filter state
+		return isIncremental() ? 0 : Integer.MIN_VALUE;
+	}
+
+	@Override
+	protected int getSupportMaxIndex() {
+		return isIncremental() ? 0 : Integer.MAX_VALUE;
+	}
+
+	@Override
+	protected void filter() {
+		filter(0);
+	}
+
+	@Override
+	protected void filter(int rowStart) {
+		if (states == null || !isIncremental()) {
+			rowStart = 0;
+		}
+		clear(rowStart);
+		if (rowStart == 0) {
+			states = null;
+		}
+		int rowCount = getRowCount() - rowStart;
+		if (rowCount <= 0 || getCoefficients() == null) {
+			return;
+		}
+		if (states == null) {
+			states = new double[getColumnCountFiltered()][];
+		}
+		double[][] filtered = filterColumns(new ColumnFilter() {
+			@Override
+			public double[] filterColumn(int colIndex, int rowStart) {
+				return RecursiveFilter.this.filterColumn(colIndex, rowStart);
+			}
+		}, rowStart);
+		for (int colIndex = 0; colIndex < filtered.length; colIndex++) {
+			add(colIndex, filtered[colIndex], 0, rowCount);
+		}
+	}
+
+	/**
+	 * Applies the recursive filter to a single filtered column starting with
+	 * the specified row.
+	 * @param colIndex Index of the filtered column.
+	 * @param rowStart Index of the first row that should be filtered.
+	 * @return Filtered values.
+	 */
+	private double[] filterColumn(int colIndex, int rowStart) {
+		double[] coefficients = getCoefficients();
+		int colIndexOriginal = getIndexOriginal(colIndex);
+		int rowCount = getRowCount();
+
+		if (rowStart > 0) {
+			double[] values = new double[rowCount - rowStart];
+			getOriginalValues(colIndexOriginal, rowStart, values, 0, values.length);
+			filter(coefficients, states[colIndex], values, false);
+			return values;
+		}
+
+		int padLength = getPadLength(coefficients, rowCount);
+		int padLengthEnd = isZeroPhase() ? padLength : 0;
+		double[] values = new double[padLength + rowCount + padLengthEnd];
+		getOriginalValues(colIndexOriginal, -padLength, values, 0, values.length);
+
+		double[] state = createState();
+		filter(coefficients, state, values, false);
+		states[colIndex] = state;
+
+		if (isZeroPhase()) {
+			filter(coefficients, createState(), values, true);
+		}
+		return Arrays.copyOfRange(values, padLength, padLength + rowCount);
+	}
+
+	/**
+	 * Returns the number of padding rows at the borders of a column.
+	 * @param coefficients Filter coefficients.
+	 * @param rowCount Number of rows in the column.
+	 * @return Number of padding rows.
+	 */
+	private int getPadLength(double[] coefficients, int rowCount) {
+		Mode mode = getMode();
+		if (mode == Mode.OMIT || (!isZeroPhase() &&
+				(mode == Mode.ZERO || mode == Mode.REPEAT))) {
+			return 0;
+		}
+		int padLength = getSettlingLength(coefficients);
+		if (mode == Mode.MIRROR) {
+			return Math.min(padLength, Math.max(rowCount - 1, 0));
+		} else if (mode == Mode.CIRCULAR) {
+			return Math.min(padLength, rowCount);
+		}
+		return padLength;
+	}
+
+	/**
+	 * Returns the number of rows after which the impulse response of a
+	 * stable filter has decayed below {@link #SETTLING_THRESHOLD}. The
+	 * decay is determined by the pole with the largest magnitude.
+	 * @param coefficients Filter coefficients.
+	 * @return Number of rows.
+	 */
+	private static int getSettlingLength(double[] coefficients) {
+		double a1 = coefficients[3];
+		double a2 = coefficients[4];
+		double radius;
+		double discriminant = a1*a1 - 4.0*a2;
+		if (discriminant < 0.0) {
+			radius = Math.sqrt(a2);
+		} else {
+			double root = Math.sqrt(discriminant);
+			radius = Math.max(Math.abs(-a1 + root), Math.abs(-a1 - root))/2.0;
+		}
+		// Non-recursive part of the filter
+		int length = 2;
+		if (radius > 0.0 && radius < 1.0) {
+			length += (int) Math.ceil(Math.log(SETTLING_THRESHOLD)/Math.log(radius));
+		}
+		return length;
+	}
+
+	/**
+	 * Initializes a filter state. With the mode {@code ZERO} the filter
+	 * starts at rest, otherwise the state is undefined until the first
+	 * calculatable value is filtered, which defines the steady state.
+	 * @return Filter state.
+	 */
+	private double[] createState() {
+		double[] state = new double[STATE_SIZE];
+		if (getMode() != Mode.ZERO) {
+			Arrays.fill(state, Double.NaN);
+		}
+		return state;
+	}
+
+	/**
+	 * Filters values in place and updates the filter state.
+	 * @param coefficients Filter coefficients.
+	 * @param state Two previous original values and two previous filtered
+	 *        values, or {@code NaN} values if the filter should start in
+	 *        the steady state of the first calculatable value.
+	 * @param values Values to be filtered.
+	 * @param reverse {@code true} if the values should be filtered
+	 *        backwards.
+	 */
+	private static void filter(double[] coefficients, double[] state,
+			double[] values, boolean reverse) {
+		double b0 = coefficients[0], b1 = coefficients[1], b2 = coefficients[2];
+		double a1 = coefficients[3], a2 = coefficients[4];
+		double x1 = state[0], x2 = state[1], y1 = state[2], y2 = state[3];
+		for (int j = 0; j < values.length; j++) {
+			int i = reverse ? values.length - 1 - j : j;
+			double x = values[i];
+			if (!MathUtils.isCalculatable(x)) {
+				continue;
+			}
+			if (Double.isNaN(y1)) {
+				double denominator = 1.0 + a1 + a2;
+				double gain = (denominator != 0.0) ? (b0 + b1 + b2)/denominator : 0.0;
+				x1 = x;
+				x2 = x;
+				y1 = gain*x;
+				y2 = gain*x;
+			}
+			double y = b0*x + b1*x1 + b2*x2 - a1*y1 - a2*y2;
+			x2 = x1;
+			x1 = x;
+			y2 = y1;
+			y1 = y;
+			values[i] = y;
+		}
+		state[0] = x1;
+		state[1] = x2;
+		state[2] = y1;
+		state[3] = y2;
+	}
+}
@@ -23,27 +23,56 @@ package de.erichseifert.gral.data.filters;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.text.MessageFormat;
 import java.util.Arrays;
-import java.util.Iterator;
 
-import de.erichseifert.gral.data.Column;
 import de.erichseifert.gral.data.DataSource;
-import de.erichseifert.gral.data.DataTable;
-import de.erichseifert.gral.data.Record;
+import de.erichseifert.gral.util.DataUtils;
+import de.erichseifert.gral.util.MathUtils;
 
 /**
- * Filter2D to change the size of equally spaced data sources. All columns of the
- * data sources must be numeric, otherwise an {@code IllegalArgumentException}
- * will be thrown. The values of the scaled result are created by averaging.
+ * <p>Filter2D to change the size of equally spaced data sources. All columns
+ * of the data sources must be numeric, otherwise an
+ * {@code IllegalArgumentException} will be thrown.</p>
+ *
+ * <p>By default, the values of the scaled result are created by averaging.
+ * Each value of the result is the weighted mean of the original values that
+ * overlap its interval, which takes {@code O(n + m)} time for {@code n}
+ * original and {@code m} resulting rows.</p>
+ *
+ * <p>Alternatively, the number of rows can be reduced using the
+ * Largest-Triangle-Three-Buckets algorithm (see Steinarsson (2013):
+ * Downsampling Time Series for Visual Representation). It selects original
+ * rows that preserve the visual shape of a series, so peaks don't get
+ * flattened like by averaging.</p>
  */
 public class Resize extends Filter2D {
 	/** Version id for serialization. */
 	private static final long serialVersionUID = -5601162872352170735L;
 
+	/** Number of rows that are read from the original data source at once. */
+	private static final int BLOCK_SIZE = 1024;
+
+	/** Methods that can be used to calculate the resized data. */
+	public enum Method {
+		/** Values are averaged over the intervals of the new rows and
+		columns. */
+		AVERAGE,
+		/** Rows are selected with the Largest-Triangle-Three-Buckets
+		algorithm. Only the number of rows can be reduced. */
+		LTTB
+	}
+
 	/** Number of columns. */
 	private final int cols;
 	/** Number of rows. */
 	private final int rows;
+	/** Method that is used to resize the data. */
+	private final Method method;
+	/** Column with x values for the LTTB method. */
+	private final int xCol;
+	/** Column with y values for the LTTB method. */
+	private final int yCol;
 
 	/**
 	 * Initializes a new data source from an original data source and a
@@ -56,9 +85,62 @@ public class Resize extends Filter2D {
 		super(data, Mode.ZERO);
 		this.cols = cols;
 		this.rows = rows;
+		this.method = Method.AVERAGE;
+		this.xCol = -1;
+		this.yCol = -1;
+		filter();
+	}
+
+	/**
+	 * Initializes a new data source that reduces the number of rows of an
+	 * original data source using the Largest-Triangle-Three-Buckets
+	 * algorithm.
+	 * @param data Original data source.
+	 * @param method Method that is used to select the rows.
+	 * @param rows Maximal number of rows for new data source.
+	 * @param xCol Index of the column with x values.
+	 * @param yCol Index of the column with y values.
+	 * @see #lttb(DataSource, int, int, int)
+	 */
+	private Resize(DataSource data, Method method, int rows, int xCol, int yCol) {
+		super(data, Mode.ZERO);
+		for (int col : new int[] {xCol, yCol}) {
+			if (!data.isColumnNumeric(col)) {
+				throw new IllegalArgumentException(MessageFormat.format(
+					"Column {0,number,integer} isn't numeric.", col)); //$NON-NLS-1$
+			}
+		}
+		this.cols = 0;
+		this.rows = rows;
+		this.method = method;
+		this.xCol = xCol;
+		this.yCol = yCol;
 		filter();
 	}
 
+	/**
+	 * Creates a new data source that reduces the number of rows of an
+	 * original data source using the Largest-Triangle-Three-Buckets
+	 * algorithm. All columns of the selected rows are contained in the
+	 * result.
+	 * @param data Original data source.
+	 * @param rows Maximal number of rows for new data source.
+	 * @param xCol Index of the column with x values.
+	 * @param yCol Index of the column with y values.
+	 * @return Data source with the selected rows.
+	 */
+	public static Resize lttb(DataSource data, int rows, int xCol, int yCol) {
+		return new Resize(data, Method.LTTB, rows, xCol, yCol);
+	}
+
+	/**
+	 * Returns the method that is used to resize the data.
+	 * @return Resizing method.
+	 */
+	public Method getMethod() {
+		return method;
+	}
+
 	@Override
 	public int getColumnCount() {
 		if (cols <= 0) {
@@ -72,19 +154,31 @@ public class Resize extends Filter2D {
 		if (rows <= 0) {
 			return super.getRowCount();
 		}
+		if (method == Method.LTTB) {
+			return Math.min(rows, super.getRowCount());
+		}
 		return rows;
 	}
 
 	@Override
 	public Comparable<?> get(int col, int row) {
 		if ((cols <= 0 || cols == getOriginal().getColumnCount()) &&
-			(rows <= 0 || rows == getOriginal().getRowCount())) {
+			(rows <= 0 || getRowCount() == getOriginal().getRowCount())) {
 			return getOriginal(col, row);
 		}
 		return super.get(col, row);
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	protected void getValuesInRange(int col, int row, double[] values, int offset, int length) {
+		if ((cols <= 0 || cols == getOriginal().getColumnCount()) &&
+			(rows <= 0 || getRowCount() == getOriginal().getRowCount())) {
+			getOriginalValues(col, row, values, offset, length);
+			return;
+		}
+		super.getValuesInRange(col, row, values, offset, length);
+	}
+
 	@Override
 	protected void filter() {
 		clear();
@@ -93,103 +187,242 @@ public class Resize extends Filter2D {
 				&& (getColumnCount() == original.getColumnCount())) {
 			return;
 		}
-
-		DataSource data = original;
-		if (getRowCount() != original.getRowCount()) {
-			Class[] dataTypes = new Class[original.getColumnCount()];
-			Arrays.fill(dataTypes, Double.class);
-			DataTable avgRows = new DataTable(dataTypes);
-			fillWithEmptyRows(avgRows, getRowCount());
-
-			double step = original.getRowCount() / (double) getRowCount();
-			for (int colIndex = 0; colIndex < original.getColumnCount(); colIndex++) {
-				Column colData = original.getColumn(colIndex);
-				for (int rowIndex = 0; rowIndex < getRowCount(); rowIndex++) {
-					double start = rowIndex*step;
-					double end   = (rowIndex + 1)*step;
-					avgRows.set(colIndex, rowIndex,
-							average(colData, start, end));
+		double[][] data;
+		if (method == Method.LTTB) {
+			data = getRows(selectRows(getRowCount()));
+		} else {
+			data = filterColumns(new ColumnFilter() {
+				@Override
+				public double[] filterColumn(int colIndex, int rowStart) {
+					return averageColumn(colIndex, getRowCount());
 				}
-			}
-			data = avgRows;
-		}
-		if (getColumnCount() != original.getColumnCount()) {
-			Class[] dataTypes = new Class[getColumnCount()];
-			Arrays.fill(dataTypes, Double.class);
-			DataTable avgCols = new DataTable(dataTypes);
-			fillWithEmptyRows(avgCols, data.getRowCount());
-
-			double step = original.getColumnCount() / (double) getColumnCount();
-			for (int rowIndex = 0; rowIndex < data.getRowCount(); rowIndex++) {
-				Record rowData = data.getRecord(rowIndex);
-				for (int colIndex = 0; colIndex < getColumnCount(); colIndex++) {
-					double start = colIndex*step;
-					double end   = (colIndex + 1)*step;
-					avgCols.set(colIndex, rowIndex,
-							average(rowData, start, end));
+			}, 0);
+			if (getColumnCount() != original.getColumnCount()) {
+				double[][] avgCols = new double[getColumnCount()][getRowCount()];
+				double[] rowValues = new double[original.getColumnCount()];
+				for (int rowIndex = 0; rowIndex < getRowCount(); rowIndex++) {
+					for (int colIndex = 0; colIndex < rowValues.length; colIndex++) {
+						rowValues[colIndex] = data[colIndex][rowIndex];
+					}
+					Average average = new Average(rowValues.length, getColumnCount());
+					for (double value : rowValues) {
+						average.add(value);
+					}
+					double[] averages = average.get();
+					for (int colIndex = 0; colIndex < averages.length; colIndex++) {
+						avgCols[colIndex][rowIndex] = averages[colIndex];
+					}
 				}
+				data = avgCols;
 			}
-			data = avgCols;
 		}
 
-		for (int rowIndex = 0; rowIndex < data.getRowCount(); rowIndex++) {
-			Record row = data.getRecord(rowIndex);
-			Double[] rowValues = new Double[row.size()];
-			for (int columnIndex = 0; columnIndex < rowValues.length; columnIndex++) {
-				rowValues[columnIndex] = row.get(columnIndex);
+		for (int colIndex = 0; colIndex < data.length; colIndex++) {
+			add(colIndex, data[colIndex], 0, getRowCount());
+		}
+	}
+
+	/**
+	 * Calculates the averages of a column of the original data source for
+	 * the specified number of rows.
+	 * @param col Column index.
+	 * @param rowCount Number of resulting rows.
+	 * @return Averaged values.
+	 */
+	private double[] averageColumn(int col, int rowCount) {
+		DataSource original = getOriginal();
+		int rowCountOriginal = original.getRowCount();
+		double[] block = new double[Math.min(BLOCK_SIZE, rowCountOriginal)];
+		if (rowCount == rowCountOriginal) {
+			double[] values = new double[rowCount];
+			DataUtils.getValues(original, col, 0, values, 0, rowCount);
+			return values;
+		}
+		Average average = new Average(rowCountOriginal, rowCount);
+		for (int blockStart = 0; blockStart < rowCountOriginal; blockStart += block.length) {
+			int length = Math.min(block.length, rowCountOriginal - blockStart);
+			DataUtils.getValues(original, col, blockStart, block, 0, length);
+			for (int i = 0; i < length; i++) {
+				average.add(block[i]);
 			}
-			add(rowValues);
 		}
+		return average.get();
 	}
 
 	/**
-	 * Utility method that fills a data table with empty rows.
-	 * @param data Data table that should be filled.
-	 * @param count Number of rows that were added.
+	 * Calculates the averages of the specified values for a different
+	 * number of rows.
+	 * @param values Values.
+	 * @param length Number of values.
+	 * @param rowCount Number of resulting rows.
+	 * @return Averaged values.
 	 */
-	private static void fillWithEmptyRows(DataTable data, int count) {
-		while (data.getRowCount() < count) {
-			Double[] emptyRow = new Double[data.getColumnCount()];
-			Arrays.fill(emptyRow, 0.0);
-			data.add(emptyRow);
+	static double[] average(double[] values, int length, int rowCount) {
+		if (rowCount == length) {
+			return Arrays.copyOf(values, length);
+		}
+		Average average = new Average(length, rowCount);
+		for (int i = 0; i < length; i++) {
+			average.add(values[i]);
 		}
+		return average.get();
 	}
 
-	private static <T> Iterator<T> advance(Iterator<T> iterator, int elementCount) {
-		for (int elementIndex = 0; elementIndex < elementCount; elementIndex++) {
-			iterator.next();
+	/**
+	 * Calculates weighted averages of a sequence of values over a different
+	 * number of equally sized intervals. The values are added one after
+	 * another and each value is added to the sums of all intervals it
+	 * overlaps, so each value and each interval is visited only once.
+	 */
+	private static final class Average {
+		/** Number of values in each interval. */
+		private final double step;
+		/** Sums of the intervals. */
+		private final double[] sums;
+		/** Index of the next value. */
+		private int index;
+		/** Index of the first interval that overlaps the next value. */
+		private int interval;
+
+		/**
+		 * Initializes a new instance.
+		 * @param count Number of values.
+		 * @param intervalCount Number of intervals.
+		 */
+		public Average(int count, int intervalCount) {
+			step = count/(double) intervalCount;
+			sums = new double[intervalCount];
+		}
+
+		/**
+		 * Adds the next value.
+		 * @param value Value.
+		 */
+		public void add(double value) {
+			double pos = index;
+			double end = index + 1;
+			while (interval < sums.length) {
+				double intervalEnd = (interval + 1)*step;
+				if (intervalEnd < end) {
+					sums[interval++] += (intervalEnd - pos)*value;
+					pos = intervalEnd;
+				} else {
+					sums[interval] += (end - pos)*value;
+					if (intervalEnd == end) {
+						interval++;
+					}
+					break;
+				}
+			}
+			index++;
+		}
+
+		/**
+		 * Returns the averages of all intervals.
+		 * @return Averages.
+		 */
+		public double[] get() {
+			double[] averages = new double[sums.length];
+			for (int i = 0; i < averages.length; i++) {
+				averages[i] = sums[i]/step;
+			}
+			return averages;
 		}
-		return iterator;
 	}
 
 	/**
-	 * Calculates the arithmetic mean of all values between start and end.
-	 * @param data Values.
-	 * @param start Start index.
-	 * @param end End index.
-	 * @return Arithmetic mean.
+	 * Selects rows of the original data source with the
+	 * Largest-Triangle-Three-Buckets algorithm. The first and the last row
+	 * are always selected and the remaining rows are divided into buckets of
+	 * equal size. From each bucket the row is selected that forms the
+	 * largest triangle with the previously selected row and the average of
+	 * the next bucket.
+	 * @param rowCount Number of rows to be selected.
+	 * @return Indexes of the selected rows in ascending order.
 	 */
-	private static double average(Iterable<? extends Comparable<?>> data, double start, double end) {
-		int startFloor = (int) Math.floor(start);
-		int startCeil  = (int) Math.ceil(start);
-		int endFloor = (int) Math.floor(end);
-		int endCeil = (int) Math.ceil(end);
-
-		double sum = 0.0;
-		Iterator<? extends Comparable<?>> dataIterator = data.iterator();
-		advance(dataIterator, startFloor);
-		for (int i = startFloor; i < endCeil; i++) {
-			Number number = (Number) dataIterator.next();
-			double val = number.doubleValue();
-			if (i == startFloor && startCeil != start) {
-				sum += (startCeil - start) * val;
-			} else if (i == endCeil - 1 && endFloor != end) {
-				sum += (end - endFloor) * val;
+	private int[] selectRows(int rowCount) {
+		DataSource original = getOriginal();
+		int rowCountOriginal = original.getRowCount();
+		int[] selected = new int[rowCount];
+		if (rowCount == 0) {
+			return selected;
+		}
+		selected[rowCount - 1] = rowCountOriginal - 1;
+		selected[0] = 0;
+		if (rowCount < 3) {
+			return selected;
+		}
+
+		double bucketSize = (rowCountOriginal - 2)/(double) (rowCount - 2);
+		double[] pointA = new double[2];
+		DataUtils.getValues(original, xCol, 0, pointA, 0, 1);
+		DataUtils.getValues(original, yCol, 0, pointA, 1, 1);
+		double[] x = new double[(int) Math.ceil(bucketSize) + 1];
+		double[] y = new double[x.length];
+		for (int bucket = 0; bucket < rowCount - 2; bucket++) {
+			// Average of the next bucket
+			int nextStart = (int) ((bucket + 1)*bucketSize) + 1;
+			int nextEnd = Math.min((int) ((bucket + 2)*bucketSize) + 1, rowCountOriginal);
+			DataUtils.getValues(original, xCol, nextStart, x, 0, nextEnd - nextStart);
+			DataUtils.getValues(original, yCol, nextStart, y, 0, nextEnd - nextStart);
+			double avgX = 0.0, avgY = 0.0;
+			int n = 0;
+			for (int i = 0; i < nextEnd - nextStart; i++) {
+				if (MathUtils.isCalculatable(x[i]) && MathUtils.isCalculatable(y[i])) {
+					avgX += x[i];
+					avgY += y[i];
+					n++;
+				}
+			}
+			if (n > 0) {
+				avgX /= n;
+				avgY /= n;
 			} else {
-				sum += val;
+				// Fall back to the last point if the next bucket has no
+				// valid points
+				DataUtils.getValues(original, xCol, rowCountOriginal - 1, x, 0, 1);
+				DataUtils.getValues(original, yCol, rowCountOriginal - 1, y, 0, 1);
+				avgX = x[0];
+				avgY = y[0];
+			}
+
+			// Point of the current bucket with the largest triangle
+			int start = (int) (bucket*bucketSize) + 1;
+			int end = (int) ((bucket + 1)*bucketSize) + 1;
+			DataUtils.getValues(original, xCol, start, x, 0, end - start);
+			DataUtils.getValues(original, yCol, start, y, 0, end - start);
+			double maxArea = -1.0;
+			int maxIndex = 0;
+			for (int i = 0; i < end - start; i++) {
+				double area = Math.abs((pointA[0] - avgX)*(y[i] - pointA[1]) -
+					(pointA[0] - x[i])*(avgY - pointA[1]));
+				if (area > maxArea) {
+					maxArea = area;
+					maxIndex = i;
+				}
+			}
+			selected[bucket + 1] = start + maxIndex;
+			pointA[0] = x[maxIndex];
+			pointA[1] = y[maxIndex];
+		}
+		return selected;
+	}
+
+	/**
+	 * Returns the values of all columns of the specified rows of the original
+	 * data source.
+	 * @param rowIndexes Indexes of the rows.
+	 * @return Values, one array per column.
+	 */
+	private double[][] getRows(int[] rowIndexes) {
+		DataSource original = getOriginal();
+		double[][] data = new double[original.getColumnCount()][rowIndexes.length];
+		for (int colIndex = 0; colIndex < data.length; colIndex++) {
+			for (int i = 0; i < rowIndexes.length; i++) {
+				DataUtils.getValues(original, colIndex, rowIndexes[i], data[colIndex], i, 1);
 			}
 		}
-		return sum / (end - start);
+		return data;
 	}
 
 	/**
@@ -0,0 +1,528 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.statistics;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.erichseifert.gral.data.AbstractDataSource;
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.util.DataUtils;
+import de.erichseifert.gral.util.DoubleList;
+import de.erichseifert.gral.util.MathUtils;
+
+/**
+ * <p>View that groups the rows of a data source by the values of a key
+ * column and aggregates other columns for each group. The first column
+ * contains the distinct key values in the order of their first occurrence,
+ * each further column contains the result of an {@link Aggregate}. Supported
+ * aggregates are the number of values ({@link Statistics#N}), the sum
+ * ({@link Statistics#SUM}), the arithmetic mean ({@link Statistics#MEAN}),
+ * the minimum ({@link Statistics#MIN}), and the maximum
+ * ({@link Statistics#MAX}).</p>
+ *
+ * <p>The aggregates are stored as primitive values. When rows are appended to
+ * the original data source, only the new rows are added to the aggregates and
+ * events are only sent for the groups that have changed. Any other change
+ * causes a complete recalculation.</p>
+ *
+ * <p>Example that counts the events and sums up the durations per category,
+ * e.g. for a {@code BarPlot} or a {@code PiePlot}:</p>
+ * <pre>
+ * DataSource categories = new GroupedStatistics(events, 0,
+ *     new GroupedStatistics.Aggregate(1, Statistics.N),
+ *     new GroupedStatistics.Aggregate(1, Statistics.SUM));
+ * </pre>
+ */
+public class GroupedStatistics extends AbstractDataSource
+		implements DataListener {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = 6190633262394811745L;
+
+	/** Number of rows that are read from the original data source at once. */
+	private static final int BLOCK_SIZE = 1024;
+
+	/** Data source that provides the values. */
+	private final DataSource data;
+	/** Index of the column that contains the group keys. */
+	private final int keyCol;
+	/** Aggregates that are calculated for each group. */
+	private final Aggregate[] aggregates;
+
+	/** Distinct key values in order of their first occurrence. */
+	private transient List<Comparable<?>> keys;
+	/** Mapping from key values to group indexes. */
+	private transient Map<Comparable<?>, Integer> groups;
+	/** Accumulated values for each aggregate. */
+	private transient Accumulator[] accumulators;
+	/** Number of rows of the original data source that were processed. */
+	private transient int processedRowCount;
+
+	/**
+	 * Definition of a value that is calculated for each group: a column of
+	 * the original data source and a statistical key.
+	 */
+	public static final class Aggregate implements Serializable {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -8330745116011659452L;
+
+		/** Index of the aggregated column. */
+		private final int col;
+		/** Statistical key of the aggregate. */
+		private final String key;
+
+		/**
+		 * Initializes a new aggregate for the specified column and
+		 * statistical key.
+		 * @param col Index of a numeric column in the original data source.
+		 * @param key One of {@link Statistics#N}, {@link Statistics#SUM},
+		 *        {@link Statistics#MEAN}, {@link Statistics#MIN}, or
+		 *        {@link Statistics#MAX}.
+		 */
+		public Aggregate(int col, String key) {
+			if (!Statistics.N.equals(key) && !Statistics.SUM.equals(key) &&
+					!Statistics.MEAN.equals(key) && !Statistics.MIN.equals(key) &&
+					!Statistics.MAX.equals(key)) {
+				throw new IllegalArgumentException(MessageFormat.format(
+					"Unsupported aggregate: {0}", key)); //$NON-NLS-1$
+			}
+			this.col = col;
+			this.key = key;
+		}
+
+		/**
+		 * Returns the index of the aggregated column.
+		 * @return Column index in the original data source.
+		 */
+		public int getColumn() {
+			return col;
+		}
+
+		/**
+		 * Returns the statistical key of the aggregate.
+		 * @return Statistical key.
+		 */
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * Primitive running values of a single aggregate for all groups.
+	 */
+	private static final class Accumulator {
+		/** Statistical key of the aggregate. */
+		private final String key;
+		/** Number of valid values per group. */
+		private final DoubleList n;
+		/** Sum, minimum, or maximum per group. */
+		private final DoubleList value;
+
+		/**
+		 * Initializes a new accumulator without any groups.
+		 * @param key Statistical key of the aggregate.
+		 */
+		public Accumulator(String key) {
+			this.key = key;
+			n = new DoubleList();
+			value = new DoubleList();
+		}
+
+		/**
+		 * Adds a new group.
+		 */
+		public void addGroup() {
+			n.add(0.0);
+			value.add((Statistics.MIN.equals(key) || Statistics.MAX.equals(key))
+				? Double.NaN : 0.0);
+		}
+
+		/**
+		 * Adds a value to the specified group.
+		 * @param group Group index.
+		 * @param v Value to be added.
+		 */
+		public void add(int group, double v) {
+			if (!MathUtils.isCalculatable(v)) {
+				return;
+			}
+			n.set(group, n.get(group) + 1.0);
+			double current = value.get(group);
+			if (Statistics.MIN.equals(key)) {
+				if (!(v >= current)) {
+					value.set(group, v);
+				}
+			} else if (Statistics.MAX.equals(key)) {
+				if (!(v <= current)) {
+					value.set(group, v);
+				}
+			} else {
+				value.set(group, current + v);
+			}
+		}
+
+		/**
+		 * Returns the aggregated value of the specified group.
+		 * @param group Group index.
+		 * @return Aggregated value.
+		 */
+		public double get(int group) {
+			if (Statistics.N.equals(key)) {
+				return n.get(group);
+			} else if (Statistics.MEAN.equals(key)) {
+				double count = n.get(group);
+				return (count > 0.0) ? value.get(group)/count : Double.NaN;
+			}
+			return value.get(group);
+		}
+	}
+
+	/**
+	 * Initializes a new instance that groups the rows of the specified data
+	 * source by the values of a key column and calculates the specified
+	 * aggregates for each group.
+	 * @param data Data source to be analyzed.
+	 * @param keyCol Index of the column containing the group keys.
+	 * @param aggregates Values that should be calculated for each group.
+	 */
+	@SuppressWarnings("unchecked")
+	public GroupedStatistics(DataSource data, int keyCol, Aggregate... aggregates) {
+		this.data = data;
+		this.keyCol = keyCol;
+		this.aggregates = Arrays.copyOf(aggregates, aggregates.length);
+
+		Class<? extends Comparable<?>>[] typesOrig = data.getColumnTypes();
+		Class<? extends Comparable<?>>[] types = new Class[aggregates.length + 1];
+		types[0] = typesOrig[keyCol];
+		for (int i = 0; i < aggregates.length; i++) {
+			int col = aggregates[i].getColumn();
+			if (!data.isColumnNumeric(col)) {
+				throw new IllegalArgumentException(MessageFormat.format(
+					"Column {0,number,integer} isn't numeric and cannot be aggregated.", //$NON-NLS-1$
+					col));
+			}
+			types[i + 1] = Double.class;
+		}
+		setColumnTypes(types);
+
+		reset();
+		update(null);
+		this.data.addDataListener(this);
+	}
+
+	/**
+	 * Returns the data source that is analyzed.
+	 * @return Data source.
+	 */
+	public DataSource getData() {
+		return data;
+	}
+
+	/**
+	 * Returns the index of the column containing the group keys.
+	 * @return Column index in the original data source.
+	 */
+	public int getKeyColumn() {
+		return keyCol;
+	}
+
+	/**
+	 * Returns the aggregates that are calculated for each group.
+	 * @return Array of aggregates.
+	 */
+	public Aggregate[] getAggregates() {
+		return Arrays.copyOf(aggregates, aggregates.length);
+	}
+
+	/**
+	 * Returns the index of the group with the specified key.
+	 * @param key Key value.
+	 * @return Row index of the group, or {@code -1} if the key doesn't exist.
+	 */
+	public int indexOf(Comparable<?> key) {
+		Integer group = groups.get(key);
+		return (group != null) ? group : -1;
+	}
+
+	/**
+	 * Returns the row with the specified index.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell
+	 */
+	public Comparable<?> get(int col, int row) {
+		if (col == 0) {
+			return keys.get(row);
+		}
+		return accumulators[col - 1].get(row);
+	}
+
+	@Override
+	protected void getValuesInRange(int col, int row, double[] values, int offset, int length) {
+		for (int i = 0; i < length; i++) {
+			values[offset + i] = (col == 0)
+				? DataUtils.getValueOrNaN(keys.get(row + i))
+				: accumulators[col - 1].get(row + i);
+		}
+	}
+
+	/**
+	 * Returns the number of rows of the data source.
+	 * @return number of rows in the data source.
+	 */
+	public int getRowCount() {
+		return keys.size();
+	}
+
+	/**
+	 * Discards all groups.
+	 */
+	private void reset() {
+		keys = new ArrayList<>();
+		groups = new HashMap<>();
+		accumulators = new Accumulator[aggregates.length];
+		for (int i = 0; i < aggregates.length; i++) {
+			accumulators[i] = new Accumulator(aggregates[i].getKey());
+		}
+		processedRowCount = 0;
+	}
+
+	/**
+	 * Adds all rows of the original data source that haven't been processed
+	 * yet to the aggregates.
+	 * @param changed Optional map that receives the indexes of all groups
+	 *        that have changed together with their previous values, or
+	 *        {@code null} for new groups.
+	 */
+	private void update(Map<Integer, Comparable<?>[]> changed) {
+		int rowCount = data.getRowCount();
+		int[] groupIndexes = new int[Math.min(BLOCK_SIZE, Math.max(rowCount - processedRowCount, 0))];
+		double[] block = new double[groupIndexes.length];
+		for (int blockStart = processedRowCount; blockStart < rowCount; blockStart += block.length) {
+			int length = Math.min(block.length, rowCount - blockStart);
+
+			// Find or create the groups
+			for (int i = 0; i < length; i++) {
+				Comparable<?> key = data.get(keyCol, blockStart + i);
+				Integer group = groups.get(key);
+				if (group == null) {
+					group = keys.size();
+					groups.put(key, group);
+					keys.add(key);
+					for (Accumulator accumulator : accumulators) {
+						accumulator.addGroup();
+					}
+					if (changed != null) {
+						changed.put(group, null);
+					}
+				} else if (changed != null && !changed.containsKey(group)) {
+					changed.put(group, getRowValues(group));
+				}
+				groupIndexes[i] = group;
+			}
+
+			// Aggregate the values column by column
+			for (int aggregateIndex = 0; aggregateIndex < aggregates.length; aggregateIndex++) {
+				DataUtils.getValues(data, aggregates[aggregateIndex].getColumn(), blockStart, block, 0, length);
+				Accumulator accumulator = accumulators[aggregateIndex];
+				for (int i = 0; i < length; i++) {
+					accumulator.add(groupIndexes[i], block[i]);
+				}
+			}
+		}
+		processedRowCount = Math.max(rowCount, processedRowCount);
+	}
+
+	/**
+	 * Returns the current values of all columns in the specified row.
+	 * @param row Row index.
+	 * @return Values of the row.
+	 */
+	private Comparable<?>[] getRowValues(int row) {
+		Comparable<?>[] values = new Comparable<?>[getColumnCount()];
+		for (int col = 0; col < values.length; col++) {
+			values[col] = get(col, row);
+		}
+		return values;
+	}
+
+	/**
+	 * Returns whether the specified events only describe rows that were
+	 * appended after the rows that have already been processed.
+	 * @param events Event objects.
+	 * @return {@code true} if only new rows were appended.
+	 */
+	private boolean isAppended(DataChangeEvent... events) {
+		if (events == null || events.length == 0 ||
+				data.getRowCount() < processedRowCount) {
+			return false;
+		}
+		for (DataChangeEvent event : events) {
+			if (event.getRow() < processedRowCount) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Calculates all groups again and notifies listeners of the groups that
+	 * have been added, changed, or removed.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void rebuild() {
+		int colCount = getColumnCount();
+		int rowCountOld = getRowCount();
+		Comparable[][] rowsOld = new Comparable[rowCountOld][colCount];
+		for (int row = 0; row < rowCountOld; row++) {
+			for (int col = 0; col < colCount; col++) {
+				rowsOld[row][col] = get(col, row);
+			}
+		}
+
+		reset();
+		update(null);
+
+		int rowCount = getRowCount();
+		List<DataChangeEvent> added = new ArrayList<>();
+		List<DataChangeEvent> updated = new ArrayList<>();
+		List<DataChangeEvent> removed = new ArrayList<>();
+		for (int row = 0; row < Math.max(rowCount, rowCountOld); row++) {
+			for (int col = 0; col < colCount; col++) {
+				if (row >= rowCount) {
+					removed.add(new DataChangeEvent(this, col, row, rowsOld[row][col], null));
+					continue;
+				}
+				Comparable valueNew = get(col, row);
+				if (row >= rowCountOld) {
+					added.add(new DataChangeEvent(this, col, row, null, valueNew));
+				} else if (valueNew == null ? rowsOld[row][col] != null
+						: !valueNew.equals(rowsOld[row][col])) {
+					updated.add(new DataChangeEvent(this, col, row, rowsOld[row][col], valueNew));
+				}
+			}
+		}
+		if (!removed.isEmpty()) {
+			notifyDataRemoved(removed.toArray(new DataChangeEvent[0]));
+		}
+		if (!updated.isEmpty()) {
+			notifyDataUpdated(updated.toArray(new DataChangeEvent[0]));
+		}
+		if (!added.isEmpty()) {
+			notifyDataAdded(added.toArray(new DataChangeEvent[0]));
+		}
+	}
+
+	/**
+	 * Method that is invoked when data has been added.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been added.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void dataAdded(DataSource source, DataChangeEvent... events) {
+		if (!isAppended(events)) {
+			rebuild();
+			return;
+		}
+
+		Map<Integer, Comparable<?>[]> changed = new LinkedHashMap<>();
+		update(changed);
+
+		List<DataChangeEvent> added = new ArrayList<>();
+		List<DataChangeEvent> updated = new ArrayList<>();
+		for (Map.Entry<Integer, Comparable<?>[]> entry : changed.entrySet()) {
+			int row = entry.getKey();
+			Comparable[] valuesOld = entry.getValue();
+			for (int col = 0; col < getColumnCount(); col++) {
+				Comparable valueNew = get(col, row);
+				if (valuesOld == null) {
+					added.add(new DataChangeEvent(this, col, row, null, valueNew));
+				} else if (col > 0 && !valueNew.equals(valuesOld[col])) {
+					updated.add(new DataChangeEvent(this, col, row, valuesOld[col], valueNew));
+				}
+			}
+		}
+		if (!updated.isEmpty()) {
+			notifyDataUpdated(updated.toArray(new DataChangeEvent[0]));
+		}
+		if (!added.isEmpty()) {
+			notifyDataAdded(added.toArray(new DataChangeEvent[0]));
+		}
+	}
+
+	/**
+	 * Method that is invoked when data has been updated.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been updated.
+	 */
+	public void dataUpdated(DataSource source, DataChangeEvent... events) {
+		rebuild();
+	}
+
+	/**
+	 * Method that is invoked when data has been removed.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been removed.
+	 */
+	public void dataRemoved(DataSource source, DataChangeEvent... events) {
+		rebuild();
+	}
+
+	/**
+	 * Custom deserialization method.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		// Normal deserialization
+		in.defaultReadObject();
+
+		// Update caches
+		reset();
+		update(null);
+
+		// Restore listeners
+		data.addDataListener(this);
+	}
+}
@@ -81,14 +81,18 @@ public class Histogram2D extends AbstractHistogram2D {
 
 		// Create equally spaced breaks
 		int count = getData().getColumnCount();
+		double[] rowMin = null;
+		double[] rowMax = null;
 		if (orientation == Orientation.HORIZONTAL) {
 			count = getData().getRowCount();
+			rowMin = RowStatistics.get(getData(), Statistics.MIN);
+			rowMax = RowStatistics.get(getData(), Statistics.MAX);
 		}
 		for (int index = 0; index < count; index++) {
 			double min, max;
 			if (orientation == Orientation.HORIZONTAL) {
-				min = ((Number) getData().getRowStatistics(Statistics.MIN).get(0, index)).doubleValue();
-				max = ((Number) getData().getRowStatistics(Statistics.MAX).get(0, index)).doubleValue();
+				min = rowMin[index];
+				max = rowMax[index];
 			} else {
 				min = ((Number) getData().getColumnStatistics(Statistics.MIN).get(index, 0)).doubleValue();
 				max = ((Number) getData().getColumnStatistics(Statistics.MAX).get(index, 0)).doubleValue();
@@ -0,0 +1,462 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.statistics;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+import de.erichseifert.gral.data.AbstractDataSource;
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.util.DataUtils;
+import de.erichseifert.gral.util.DoubleList;
+import de.erichseifert.gral.util.FastFourierTransform;
+import de.erichseifert.gral.util.MathUtils;
+
+/**
+ * <p>View that estimates the probability density of a numeric column using
+ * a kernel density estimation. The data source contains two columns: evenly
+ * spaced positions in the first column and the estimated density at these
+ * positions in the second column. It can be plotted directly, e.g. as a
+ * line plot.</p>
+ *
+ * <p>The values are distributed onto the grid of positions with linear
+ * binning and the binned counts are convolved with the kernel using the fast
+ * Fourier transform. Thus, the estimation takes {@code O(n + m log m)} time
+ * for {@code n} values and {@code m} grid positions. If no bandwidth is set,
+ * it is chosen automatically with Silverman's rule of thumb. Values that are
+ * not numeric or not calculatable are ignored.</p>
+ *
+ * <p>The estimation is calculated lazily: changes of the original data
+ * source only invalidate the results, which will be calculated again as
+ * soon as they are accessed.</p>
+ */
+public class KernelDensity extends AbstractDataSource
+		implements DataListener {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = 3390712290745376185L;
+
+	/** Index of the column containing the positions. */
+	public static final int COL_X = 0;
+	/** Index of the column containing the estimated density. */
+	public static final int COL_DENSITY = 1;
+
+	/** Number of rows that are read from the original data source at once. */
+	private static final int BLOCK_SIZE = 1024;
+
+	/** Kernel functions that can be used for the estimation. */
+	public enum KernelType {
+		/** Kernel function of the standard normal distribution. Its influence
+		is limited to four times the bandwidth. */
+		GAUSSIAN(3.0, 4.0),
+		/** Parabolic kernel function with a support of one bandwidth. */
+		EPANECHNIKOV(1.0, 1.0);
+
+		/** Margin left and right of the values in multiples of the
+		bandwidth. */
+		private final double margin;
+		/** Distance from the center in multiples of the bandwidth after
+		which the kernel function will be neglected. */
+		private final double radius;
+
+		/**
+		 * Initializes a new instance with the specified extent.
+		 * @param margin Margin left and right of the values in multiples
+		 *        of the bandwidth.
+		 * @param radius Radius of the kernel in multiples of the bandwidth.
+		 */
+		private KernelType(double margin, double radius) {
+			this.margin = margin;
+			this.radius = radius;
+		}
+
+		/**
+		 * Returns the value of the kernel function at the specified
+		 * position.
+		 * @param u Position in multiples of the bandwidth.
+		 * @return Value of the kernel function.
+		 */
+		public double get(double u) {
+			switch (this) {
+			case EPANECHNIKOV:
+				return (Math.abs(u) <= 1.0) ? 0.75*(1.0 - u*u) : 0.0;
+			default:
+				return Math.exp(-0.5*u*u)/Math.sqrt(2.0*Math.PI);
+			}
+		}
+	}
+
+	/** Data source that provides the values. */
+	private final DataSource data;
+	/** Index of the analyzed column. */
+	private final int dataCol;
+	/** Number of positions in the grid. */
+	private final int gridSize;
+	/** Kernel function. */
+	private final KernelType kernelType;
+	/** Bandwidth of the kernel or {@code NaN} for an automatic bandwidth. */
+	private double bandwidth;
+
+	/** Cached positions. */
+	private transient double[] positions;
+	/** Cached density values. */
+	private transient double[] densities;
+	/** Bandwidth that was used to calculate the cached values. */
+	private transient double bandwidthUsed;
+	/** Flag that indicates whether the cached values are valid. */
+	private transient boolean valid;
+
+	/**
+	 * Initializes a new instance that estimates the density of the specified
+	 * column with a Gaussian kernel and an automatic bandwidth.
+	 * @param data Data source that provides the values.
+	 * @param col Index of the column that should be analyzed.
+	 * @param gridSize Number of positions at which the density will be
+	 *        estimated.
+	 */
+	public KernelDensity(DataSource data, int col, int gridSize) {
+		this(data, col, gridSize, KernelType.GAUSSIAN, Double.NaN);
+	}
+
+	/**
+	 * Initializes a new instance that estimates the density of the specified
+	 * column.
+	 * @param data Data source that provides the values.
+	 * @param col Index of the column that should be analyzed.
+	 * @param gridSize Number of positions at which the density will be
+	 *        estimated.
+	 * @param kernelType Kernel function.
+	 * @param bandwidth Bandwidth of the kernel, or {@code NaN} to determine
+	 *        the bandwidth automatically.
+	 */
+	@SuppressWarnings("unchecked")
+	public KernelDensity(DataSource data, int col, int gridSize,
+			KernelType kernelType, double bandwidth) {
+		if (gridSize < 2) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid grid size: {0,number,integer}", gridSize)); //$NON-NLS-1$
+		}
+		if (!data.isColumnNumeric(col)) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Column {0,number,integer} isn't numeric.", col)); //$NON-NLS-1$
+		}
+		this.data = data;
+		this.dataCol = col;
+		this.gridSize = gridSize;
+		this.kernelType = kernelType;
+		setBandwidthValue(bandwidth);
+		setColumnTypes(Double.class, Double.class);
+
+		this.data.addDataListener(this);
+	}
+
+	/**
+	 * Returns the data source that is analyzed.
+	 * @return Data source.
+	 */
+	public DataSource getData() {
+		return data;
+	}
+
+	/**
+	 * Returns the index of the analyzed column.
+	 * @return Column index in the original data source.
+	 */
+	public int getDataColumn() {
+		return dataCol;
+	}
+
+	/**
+	 * Returns the number of positions at which the density is estimated.
+	 * @return Number of grid positions.
+	 */
+	public int getGridSize() {
+		return gridSize;
+	}
+
+	/**
+	 * Returns the kernel function.
+	 * @return Kernel function.
+	 */
+	public KernelType getKernelType() {
+		return kernelType;
+	}
+
+	/**
+	 * Returns the bandwidth that is used for the estimation. If the
+	 * bandwidth is determined automatically the value for the current data
+	 * will be returned.
+	 * @return Bandwidth of the kernel.
+	 */
+	public double getBandwidth() {
+		update();
+		return bandwidthUsed;
+	}
+
+	/**
+	 * Sets the bandwidth of the kernel. A value of {@code NaN} or a value
+	 * that is not positive means that the bandwidth will be determined
+	 * automatically.
+	 * @param bandwidth Bandwidth of the kernel.
+	 */
+	public void setBandwidth(double bandwidth) {
+		setBandwidthValue(bandwidth);
+		invalidate();
+	}
+
+	/**
+	 * Discards the estimation and notifies listeners that all values of the
+	 * grid may have changed. The estimation is calculated again when it is
+	 * requested.
+	 */
+	private void invalidate() {
+		valid = false;
+		DataChangeEvent[] events = new DataChangeEvent[2*gridSize];
+		for (int row = 0; row < gridSize; row++) {
+			events[2*row] = new DataChangeEvent(this, COL_X, row, null, null);
+			events[2*row + 1] = new DataChangeEvent(this, COL_DENSITY, row, null, null);
+		}
+		notifyDataUpdated(events);
+	}
+
+	/**
+	 * Stores the specified bandwidth.
+	 * @param bandwidth Bandwidth of the kernel.
+	 */
+	private void setBandwidthValue(double bandwidth) {
+		this.bandwidth = (bandwidth > 0.0 && !Double.isInfinite(bandwidth))
+			? bandwidth : Double.NaN;
+	}
+
+	/**
+	 * Returns whether the bandwidth is determined automatically.
+	 * @return {@code true} if the bandwidth is chosen automatically.
+	 */
+	public boolean isBandwidthAutomatic() {
+		return Double.isNaN(bandwidth);
+	}
+
+	/**
+	 * Returns the row with the specified index.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell
+	 */
+	public Comparable<?> get(int col, int row) {
+		update();
+		return (col == COL_X) ? positions[row] : densities[row];
+	}
+
+	@Override
+	protected void getValuesInRange(int col, int row, double[] values, int offset, int length) {
+		update();
+		double[] column = (col == COL_X) ? positions : densities;
+		System.arraycopy(column, row, values, offset, length);
+	}
+
+	/**
+	 * Returns the number of rows of the data source.
+	 * @return number of rows in the data source.
+	 */
+	public int getRowCount() {
+		update();
+		return positions.length;
+	}
+
+	/**
+	 * Calculates the estimation if the cached results are invalid.
+	 */
+	private void update() {
+		if (valid) {
+			return;
+		}
+		double[] values = readValues();
+		int n = values.length;
+		if (n == 0) {
+			positions = new double[0];
+			densities = new double[0];
+			bandwidthUsed = bandwidth;
+			valid = true;
+			return;
+		}
+		Arrays.sort(values);
+
+		double h = bandwidth;
+		if (isBandwidthAutomatic()) {
+			h = getSilvermanBandwidth(values);
+		}
+
+		// Grid
+		double margin = kernelType.margin*h;
+		double start = values[0] - margin;
+		double step = (values[n - 1] + margin - start)/(gridSize - 1);
+		double[] x = new double[gridSize];
+		for (int i = 0; i < gridSize; i++) {
+			x[i] = start + i*step;
+		}
+
+		// Linear binning
+		double[] counts = new double[gridSize];
+		for (double value : values) {
+			double pos = (value - start)/step;
+			int i = (int) Math.floor(pos);
+			if (i < 0) {
+				counts[0] += 1.0;
+			} else if (i >= gridSize - 1) {
+				counts[gridSize - 1] += 1.0;
+			} else {
+				double frac = pos - i;
+				counts[i] += 1.0 - frac;
+				counts[i + 1] += frac;
+			}
+		}
+
+		// Kernel weights at the grid offsets
+		int radius = (int) Math.min(gridSize - 1,
+			Math.ceil(kernelType.radius*h/step));
+		double[] weights = new double[2*radius + 1];
+		double scale = 1.0/(n*h);
+		for (int k = -radius; k <= radius; k++) {
+			weights[k + radius] = kernelType.get(k*step/h)*scale;
+		}
+
+		double[] convolved = FastFourierTransform.convolve(counts, weights);
+		double[] density = new double[gridSize];
+		for (int i = 0; i < gridSize; i++) {
+			// Remove negative rounding errors of the transform
+			density[i] = Math.max(convolved[i + radius], 0.0);
+		}
+
+		positions = x;
+		densities = density;
+		bandwidthUsed = h;
+		valid = true;
+	}
+
+	/**
+	 * Reads all calculatable values of the analyzed column.
+	 * @return Array of values.
+	 */
+	private double[] readValues() {
+		int rowCount = data.getRowCount();
+		DoubleList values = new DoubleList(rowCount);
+		double[] block = new double[Math.min(BLOCK_SIZE, rowCount)];
+		for (int blockStart = 0; blockStart < rowCount; blockStart += block.length) {
+			int length = Math.min(block.length, rowCount - blockStart);
+			DataUtils.getValues(data, dataCol, blockStart, block, 0, length);
+			for (int i = 0; i < length; i++) {
+				if (MathUtils.isCalculatable(block[i])) {
+					values.add(block[i]);
+				}
+			}
+		}
+		return values.toArray();
+	}
+
+	/**
+	 * Returns the bandwidth according to Silverman's rule of thumb
+	 * {@code 0.9 min(sd, IQR/1.34) n^(-1/5)}.
+	 * @param values Sorted values.
+	 * @return Bandwidth of the kernel.
+	 */
+	private static double getSilvermanBandwidth(double[] values) {
+		int n = values.length;
+		double mean = 0.0;
+		for (double value : values) {
+			mean += value;
+		}
+		mean /= n;
+		double sumOfDiffSquares = 0.0;
+		for (double value : values) {
+			double diff = value - mean;
+			sumOfDiffSquares += diff*diff;
+		}
+		double sd = (n > 1) ? Math.sqrt(sumOfDiffSquares/(n - 1.0)) : 0.0;
+		double iqr = MathUtils.quantile(values, n, 0.75) -
+			MathUtils.quantile(values, n, 0.25);
+
+		double spread = Math.min(sd, iqr/1.34);
+		if (!(spread > 0.0)) {
+			spread = Math.max(sd, iqr/1.34);
+		}
+		if (!(spread > 0.0)) {
+			// All values are equal
+			spread = Math.max(Math.abs(mean)*0.1, 1.0);
+		}
+		return 0.9*spread*Math.pow(n, -0.2);
+	}
+
+	/**
+	 * Method that is invoked when data has been added.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been added.
+	 */
+	public void dataAdded(DataSource source, DataChangeEvent... events) {
+		invalidate();
+	}
+
+	/**
+	 * Method that is invoked when data has been updated.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been updated.
+	 */
+	public void dataUpdated(DataSource source, DataChangeEvent... events) {
+		invalidate();
+	}
+
+	/**
+	 * Method that is invoked when data has been removed.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been removed.
+	 */
+	public void dataRemoved(DataSource source, DataChangeEvent... events) {
+		invalidate();
+	}
+
+	/**
+	 * Custom deserialization method.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		// Normal deserialization
+		in.defaultReadObject();
+
+		// Restore listeners
+		data.addDataListener(this);
+	}
+}
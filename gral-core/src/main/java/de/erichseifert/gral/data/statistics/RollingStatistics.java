@@ -0,0 +1,484 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.statistics;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.text.MessageFormat;
+
+import de.erichseifert.gral.data.AbstractDataSource;
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.util.DataUtils;
+import de.erichseifert.gral.util.DoubleList;
+import de.erichseifert.gral.util.MathUtils;
+
+/**
+ * <p>View that calculates statistics of a numeric column over a moving window
+ * of rows. Each row of this data source contains the arithmetic mean, the
+ * sample standard deviation, the minimum, and the maximum of the last
+ * {@code windowSize} values up to and including the same row of the original
+ * data source. Values that are not numeric or not calculatable are ignored.</p>
+ *
+ * <p>The statistics are updated with constant amortized cost per row: sums
+ * are maintained with a compensated summation and minimum and maximum are
+ * tracked with monotonic queues. When rows are appended to the original data
+ * source only the new rows are calculated. Any other change causes a complete
+ * recalculation.</p>
+ *
+ * <p>Example for a moving average over 50 samples of column 1:</p>
+ * <pre>
+ * DataSource rolling = new RollingStatistics(data, 1, 50);
+ * DataSource movingAverage = new DataSeries(rolling, RollingStatistics.COL_MEAN);
+ * </pre>
+ */
+public class RollingStatistics extends AbstractDataSource
+		implements DataListener {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -1460950467291519342L;
+
+	/** Index of the column containing the arithmetic mean. */
+	public static final int COL_MEAN = 0;
+	/** Index of the column containing the sample standard deviation. */
+	public static final int COL_STANDARD_DEVIATION = 1;
+	/** Index of the column containing the minimum. */
+	public static final int COL_MIN = 2;
+	/** Index of the column containing the maximum. */
+	public static final int COL_MAX = 3;
+
+	/** Number of rows that are read from the original data source at once. */
+	private static final int BLOCK_SIZE = 1024;
+
+	/** Data source that provides the values. */
+	private final DataSource data;
+	/** Index of the analyzed column. */
+	private final int dataCol;
+	/** Number of rows in the window. */
+	private final int windowSize;
+
+	/** Cached results, one list per column. */
+	private transient DoubleList[] results;
+	/** State of the window after the last calculated row. */
+	private transient SlidingWindow window;
+
+	/**
+	 * Sum of floating point values that uses a compensation term to reduce
+	 * the numerical error caused by adding and subtracting many values
+	 * (Kahan-Babuška-Neumaier summation).
+	 */
+	private static final class CompensatedSum {
+		/** Uncompensated sum. */
+		private double sum;
+		/** Accumulated rounding error. */
+		private double compensation;
+
+		/**
+		 * Adds a value to the sum.
+		 * @param value Value to be added.
+		 */
+		public void add(double value) {
+			double t = sum + value;
+			if (Math.abs(sum) >= Math.abs(value)) {
+				compensation += (sum - t) + value;
+			} else {
+				compensation += (value - t) + sum;
+			}
+			sum = t;
+		}
+
+		/**
+		 * Returns the compensated sum.
+		 * @return Current sum.
+		 */
+		public double get() {
+			return sum + compensation;
+		}
+
+		/**
+		 * Resets the sum to zero.
+		 */
+		public void clear() {
+			sum = 0.0;
+			compensation = 0.0;
+		}
+	}
+
+	/**
+	 * Accumulators for a fixed number of the most recent values. Values are
+	 * pushed one by one and the oldest value leaves the window as soon as it
+	 * is full.
+	 */
+	private static final class SlidingWindow {
+		/** Ring buffer with the values in the window. */
+		private final double[] values;
+		/** Ring buffer of positions with decreasing values. */
+		private final int[] maxQueue;
+		/** Ring buffer of positions with increasing values. */
+		private final int[] minQueue;
+		/** Number of values that were pushed. */
+		private int count;
+		/** Number of valid values in the window. */
+		private int n;
+		/** Reference value to reduce cancellation when calculating the
+		variance. */
+		private double shift;
+		/** Sum of the valid values minus the shift. */
+		private final CompensatedSum sum;
+		/** Sum of the squared valid values minus the shift. */
+		private final CompensatedSum sum2;
+		/** Head and length of the maximum queue. */
+		private int maxHead, maxLength;
+		/** Head and length of the minimum queue. */
+		private int minHead, minLength;
+
+		/**
+		 * Initializes a new empty window.
+		 * @param size Maximal number of values in the window.
+		 */
+		public SlidingWindow(int size) {
+			values = new double[size];
+			maxQueue = new int[size];
+			minQueue = new int[size];
+			sum = new CompensatedSum();
+			sum2 = new CompensatedSum();
+		}
+
+		/**
+		 * Adds a new value and removes the oldest value if the window is full.
+		 * @param value New value.
+		 */
+		public void push(double value) {
+			int size = values.length;
+			int pos = count;
+			if (pos >= size) {
+				double old = values[pos % size];
+				if (MathUtils.isCalculatable(old)) {
+					remove(old);
+				}
+				int first = pos - size + 1;
+				if (maxLength > 0 && maxQueue[maxHead] < first) {
+					maxHead = (maxHead + 1) % size;
+					maxLength--;
+				}
+				if (minLength > 0 && minQueue[minHead] < first) {
+					minHead = (minHead + 1) % size;
+					minLength--;
+				}
+			}
+			values[pos % size] = value;
+			count++;
+			if (!MathUtils.isCalculatable(value)) {
+				return;
+			}
+
+			if (n == 0) {
+				shift = value;
+			}
+			n++;
+			double d = value - shift;
+			sum.add(d);
+			sum2.add(d*d);
+
+			while (maxLength > 0 &&
+					values[maxQueue[(maxHead + maxLength - 1) % size] % size] <= value) {
+				maxLength--;
+			}
+			maxQueue[(maxHead + maxLength) % size] = pos;
+			maxLength++;
+			while (minLength > 0 &&
+					values[minQueue[(minHead + minLength - 1) % size] % size] >= value) {
+				minLength--;
+			}
+			minQueue[(minHead + minLength) % size] = pos;
+			minLength++;
+		}
+
+		/**
+		 * Removes a valid value from the sums.
+		 * @param value Value leaving the window.
+		 */
+		private void remove(double value) {
+			n--;
+			if (n == 0) {
+				// Start again without accumulated rounding errors
+				sum.clear();
+				sum2.clear();
+				return;
+			}
+			double d = value - shift;
+			sum.add(-d);
+			sum2.add(-d*d);
+		}
+
+		/**
+		 * Returns the arithmetic mean of the valid values in the window.
+		 * @return Mean, or {@code NaN} if the window contains no valid values.
+		 */
+		public double getMean() {
+			if (n == 0) {
+				return Double.NaN;
+			}
+			return shift + sum.get()/n;
+		}
+
+		/**
+		 * Returns the sample standard deviation of the valid values in the
+		 * window.
+		 * @return Standard deviation, or {@code NaN} if the window contains
+		 *         less than two valid values.
+		 */
+		public double getStandardDeviation() {
+			if (n < 2) {
+				return Double.NaN;
+			}
+			double s = sum.get();
+			double sumOfDiffSquares = Math.max(sum2.get() - s*s/n, 0.0);
+			return Math.sqrt(sumOfDiffSquares/(n - 1.0));
+		}
+
+		/**
+		 * Returns the smallest valid value in the window.
+		 * @return Minimum, or {@code NaN} if the window contains no valid
+		 *         values.
+		 */
+		public double getMin() {
+			if (minLength == 0) {
+				return Double.NaN;
+			}
+			return values[minQueue[minHead] % values.length];
+		}
+
+		/**
+		 * Returns the largest valid value in the window.
+		 * @return Maximum, or {@code NaN} if the window contains no valid
+		 *         values.
+		 */
+		public double getMax() {
+			if (maxLength == 0) {
+				return Double.NaN;
+			}
+			return values[maxQueue[maxHead] % values.length];
+		}
+	}
+
+	/**
+	 * Initializes a new instance that calculates moving statistics of the
+	 * specified column.
+	 * @param data Data source to be analyzed.
+	 * @param col Index of a numeric column.
+	 * @param windowSize Number of rows in the moving window.
+	 */
+	@SuppressWarnings("unchecked")
+	public RollingStatistics(DataSource data, int col, int windowSize) {
+		if (windowSize <= 0) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid window size: {0,number,integer}", windowSize)); //$NON-NLS-1$
+		}
+		if (!data.isColumnNumeric(col)) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Column {0,number,integer} isn't numeric.", col)); //$NON-NLS-1$
+		}
+		this.data = data;
+		this.dataCol = col;
+		this.windowSize = windowSize;
+		setColumnTypes(Double.class, Double.class, Double.class, Double.class);
+
+		reset();
+		update();
+		this.data.addDataListener(this);
+	}
+
+	/**
+	 * Returns the data source that is analyzed.
+	 * @return Data source.
+	 */
+	public DataSource getData() {
+		return data;
+	}
+
+	/**
+	 * Returns the index of the analyzed column.
+	 * @return Column index in the original data source.
+	 */
+	public int getDataColumn() {
+		return dataCol;
+	}
+
+	/**
+	 * Returns the number of rows in the moving window.
+	 * @return Window size.
+	 */
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	/**
+	 * Returns the row with the specified index.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell
+	 */
+	public Comparable<?> get(int col, int row) {
+		return results[col].get(row);
+	}
+
+	@Override
+	protected void getValuesInRange(int col, int row, double[] values, int offset, int length) {
+		results[col].get(row, values, offset, length);
+	}
+
+	/**
+	 * Returns the number of rows of the data source.
+	 * @return number of rows in the data source.
+	 */
+	public int getRowCount() {
+		return results[COL_MEAN].size();
+	}
+
+	/**
+	 * Discards all cached results and the state of the window.
+	 */
+	private void reset() {
+		results = new DoubleList[getColumnCount()];
+		for (int col = 0; col < results.length; col++) {
+			results[col] = new DoubleList(data.getRowCount());
+		}
+		window = new SlidingWindow(windowSize);
+	}
+
+	/**
+	 * Calculates the statistics for all rows of the original data source
+	 * that haven't been processed yet.
+	 */
+	private void update() {
+		int rowCount = data.getRowCount();
+		double[] block = new double[Math.min(BLOCK_SIZE, Math.max(rowCount - getRowCount(), 0))];
+		for (int blockStart = getRowCount(); blockStart < rowCount; blockStart += block.length) {
+			int length = Math.min(block.length, rowCount - blockStart);
+			DataUtils.getValues(data, dataCol, blockStart, block, 0, length);
+			for (int i = 0; i < length; i++) {
+				window.push(block[i]);
+				results[COL_MEAN].add(window.getMean());
+				results[COL_STANDARD_DEVIATION].add(window.getStandardDeviation());
+				results[COL_MIN].add(window.getMin());
+				results[COL_MAX].add(window.getMax());
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the specified events only describe rows that were
+	 * appended after the rows that have already been processed.
+	 * @param events Event objects.
+	 * @return {@code true} if only new rows were appended.
+	 */
+	private boolean isAppended(DataChangeEvent... events) {
+		if (events == null || events.length == 0 ||
+				data.getRowCount() < getRowCount()) {
+			return false;
+		}
+		for (DataChangeEvent event : events) {
+			if (event.getRow() < getRowCount()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Method that is invoked when data has been added.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been added.
+	 */
+	public void dataAdded(DataSource source, DataChangeEvent... events) {
+		if (!isAppended(events)) {
+			reset();
+			update();
+			notifyDataAdded(events);
+			return;
+		}
+		int rowStart = getRowCount();
+		update();
+		int rowCount = getRowCount();
+		DataChangeEvent[] added =
+			new DataChangeEvent[(rowCount - rowStart)*getColumnCount()];
+		int i = 0;
+		for (int row = rowStart; row < rowCount; row++) {
+			for (int col = 0; col < getColumnCount(); col++) {
+				added[i++] = new DataChangeEvent(this, col, row, null, results[col].get(row));
+			}
+		}
+		notifyDataAdded(added);
+	}
+
+	/**
+	 * Method that is invoked when data has been updated.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been updated.
+	 */
+	public void dataUpdated(DataSource source, DataChangeEvent... events) {
+		reset();
+		update();
+		notifyDataUpdated(events);
+	}
+
+	/**
+	 * Method that is invoked when data has been removed.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been removed.
+	 */
+	public void dataRemoved(DataSource source, DataChangeEvent... events) {
+		reset();
+		update();
+		notifyDataRemoved(events);
+	}
+
+	/**
+	 * Custom deserialization method.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		// Normal deserialization
+		in.defaultReadObject();
+
+		// Update caches
+		reset();
+		update();
+
+		// Restore listeners
+		data.addDataListener(this);
+	}
+}
@@ -0,0 +1,325 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.statistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.util.DataUtils;
+import de.erichseifert.gral.util.MathUtils;
+
+/**
+ * <p>Utility class that calculates a single statistical value for each row of
+ * a data source and returns the results as an array of primitive values.</p>
+ *
+ * <p>In contrast to creating a {@link Statistics} object for every row, the
+ * data source is read column by column in blocks of consecutive rows and only
+ * the requested value is calculated. Basic statistics like count, sum, mean,
+ * minimum, maximum and variance are accumulated directly; other values are
+ * calculated with {@code Statistics} from the row values of each block.
+ * Optionally, blocks of rows can be processed in parallel.</p>
+ *
+ * <p>Example that determines the minimum of all rows:</p>
+ * <pre>
+ * double[] rowMinimums = RowStatistics.get(data, Statistics.MIN);
+ * </pre>
+ */
+public abstract class RowStatistics {
+	/** Number of rows that are read from each column at once. */
+	private static final int BLOCK_SIZE = 1024;
+	/** Minimal number of rows for each parallel task. */
+	private static final int PARALLEL_THRESHOLD = 8*BLOCK_SIZE;
+
+	/**
+	 * Default constructor that prevents creation of class.
+	 */
+	private RowStatistics() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Task that processes a range of rows and splits itself into smaller
+	 * tasks if the range is large.
+	 */
+	private static final class RowRangeTask extends RecursiveAction {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 2790126862232893744L;
+
+		/** Data source to be analyzed. */
+		private final DataSource data;
+		/** Requested statistical value. */
+		private final String key;
+		/** Array that receives the results. */
+		private final double[] result;
+		/** Index of the first row. */
+		private final int rowStart;
+		/** Index after the last row. */
+		private final int rowEnd;
+
+		/**
+		 * Initializes a new task for the specified range of rows.
+		 * @param data Data source to be analyzed.
+		 * @param key Requested statistical value.
+		 * @param result Array that receives the results.
+		 * @param rowStart Index of the first row.
+		 * @param rowEnd Index after the last row.
+		 */
+		public RowRangeTask(DataSource data, String key, double[] result,
+				int rowStart, int rowEnd) {
+			this.data = data;
+			this.key = key;
+			this.result = result;
+			this.rowStart = rowStart;
+			this.rowEnd = rowEnd;
+		}
+
+		@Override
+		protected void compute() {
+			int rowCount = rowEnd - rowStart;
+			if (rowCount <= PARALLEL_THRESHOLD) {
+				fill(data, key, result, rowStart, rowEnd);
+				return;
+			}
+			// Split at a block boundary
+			int rowMid = rowStart + (rowCount/2/BLOCK_SIZE)*BLOCK_SIZE;
+			invokeAll(
+				new RowRangeTask(data, key, result, rowStart, rowMid),
+				new RowRangeTask(data, key, result, rowMid, rowEnd)
+			);
+		}
+	}
+
+	/**
+	 * Calculates the specified statistical value for each row of a data
+	 * source. Only numeric and calculatable values are taken into account.
+	 * @param data Data source to be analyzed.
+	 * @param key Requested statistical value, e.g. {@link Statistics#MIN}.
+	 * @return Array with one value per row.
+	 */
+	public static double[] get(DataSource data, String key) {
+		return get(data, key, null);
+	}
+
+	/**
+	 * Calculates the specified statistical value for each row of a data
+	 * source using the specified thread pool. Only numeric and calculatable
+	 * values are taken into account. The data source must not be changed
+	 * during the calculation.
+	 * @param data Data source to be analyzed.
+	 * @param key Requested statistical value, e.g. {@link Statistics#MIN}.
+	 * @param pool Thread pool used to process blocks of rows in parallel, or
+	 *        {@code null} if the rows should be processed sequentially.
+	 * @return Array with one value per row.
+	 */
+	public static double[] get(DataSource data, String key, ForkJoinPool pool) {
+		int rowCount = data.getRowCount();
+		double[] result = new double[rowCount];
+		if (pool == null || rowCount <= PARALLEL_THRESHOLD) {
+			fill(data, key, result, 0, rowCount);
+		} else {
+			pool.invoke(new RowRangeTask(data, key, result, 0, rowCount));
+		}
+		return result;
+	}
+
+	/**
+	 * Calculates the statistical value for a range of rows.
+	 * @param data Data source to be analyzed.
+	 * @param key Requested statistical value.
+	 * @param result Array that receives the results.
+	 * @param rowStart Index of the first row.
+	 * @param rowEnd Index after the last row.
+	 */
+	private static void fill(DataSource data, String key, double[] result,
+			int rowStart, int rowEnd) {
+		int colCount = data.getColumnCount();
+		int blockSize = Math.min(BLOCK_SIZE, rowEnd - rowStart);
+		double[] block = new double[blockSize];
+		// Accumulators for each row of a block
+		double[] n = new double[blockSize];
+		double[] acc = new double[blockSize];
+		double[] acc2 = new double[blockSize];
+
+		for (int blockStart = rowStart; blockStart < rowEnd; blockStart += blockSize) {
+			int length = Math.min(blockSize, rowEnd - blockStart);
+			if (!accumulate(data, key, colCount, blockStart, length, block, n, acc, acc2)) {
+				calculate(data, key, colCount, blockStart, length, block, result);
+				continue;
+			}
+			for (int i = 0; i < length; i++) {
+				result[blockStart + i] = getResult(key, n[i], acc[i], acc2[i]);
+			}
+		}
+	}
+
+	/**
+	 * Accumulates the values of a block of rows for statistics that can be
+	 * calculated in a single pass without storing the values.
+	 * @param data Data source to be analyzed.
+	 * @param key Requested statistical value.
+	 * @param colCount Number of columns.
+	 * @param row Index of the first row in the block.
+	 * @param length Number of rows in the block.
+	 * @param block Buffer for column values.
+	 * @param n Number of valid values per row.
+	 * @param acc First accumulator per row.
+	 * @param acc2 Second accumulator per row.
+	 * @return {@code true} if the key is supported, {@code false} otherwise.
+	 */
+	private static boolean accumulate(DataSource data, String key, int colCount,
+			int row, int length, double[] block, double[] n, double[] acc, double[] acc2) {
+		if (key == null) {
+			return false;
+		}
+		int power = 0;
+		boolean isMin = false;
+		boolean isMax = false;
+		boolean isMoment = false;
+		switch (key) {
+			case Statistics.N:
+				break;
+			case Statistics.SUM:
+				power = 1;
+				break;
+			case Statistics.SUM2:
+				power = 2;
+				break;
+			case Statistics.SUM3:
+				power = 3;
+				break;
+			case Statistics.SUM4:
+				power = 4;
+				break;
+			case Statistics.MIN:
+				isMin = true;
+				break;
+			case Statistics.MAX:
+				isMax = true;
+				break;
+			case Statistics.MEAN:
+			case Statistics.SUM_OF_DIFF_SQUARES:
+			case Statistics.VARIANCE:
+			case Statistics.POPULATION_VARIANCE:
+				isMoment = true;
+				break;
+			default:
+				return false;
+		}
+
+		for (int i = 0; i < length; i++) {
+			n[i] = 0.0;
+			acc[i] = (isMin || isMax) ? Double.NaN : 0.0;
+			acc2[i] = 0.0;
+		}
+
+		for (int col = 0; col < colCount; col++) {
+			DataUtils.getValues(data, col, row, block, 0, length);
+			for (int i = 0; i < length; i++) {
+				double val = block[i];
+				if (!MathUtils.isCalculatable(val)) {
+					continue;
+				}
+				n[i]++;
+				if (isMin) {
+					if (!(val >= acc[i])) {
+						acc[i] = val;
+					}
+				} else if (isMax) {
+					if (!(val <= acc[i])) {
+						acc[i] = val;
+					}
+				} else if (isMoment) {
+					// Same update as in Statistics to get identical results
+					double delta = val - acc[i];
+					double deltaN = delta/n[i];
+					acc[i] += deltaN;
+					acc2[i] += delta*deltaN*(n[i] - 1.0);
+				} else if (power == 1) {
+					acc[i] += val;
+				} else if (power == 2) {
+					acc[i] += val*val;
+				} else if (power == 3) {
+					acc[i] += val*val*val;
+				} else if (power == 4) {
+					double val2 = val*val;
+					acc[i] += val2*val2;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the final statistical value for a row from the accumulated
+	 * values.
+	 * @param key Requested statistical value.
+	 * @param n Number of valid values.
+	 * @param acc First accumulator.
+	 * @param acc2 Second accumulator.
+	 * @return Statistical value.
+	 */
+	private static double getResult(String key, double n, double acc, double acc2) {
+		switch (key) {
+			case Statistics.N:
+				return n;
+			case Statistics.SUM_OF_DIFF_SQUARES:
+				return acc2;
+			case Statistics.VARIANCE:
+				return acc2/(n - 1.0);
+			case Statistics.POPULATION_VARIANCE:
+				return acc2/n;
+			default:
+				return acc;
+		}
+	}
+
+	/**
+	 * Calculates statistics that require all values of a row at once, e.g.
+	 * quantiles, using a {@code Statistics} object for each row.
+	 * @param data Data source to be analyzed.
+	 * @param key Requested statistical value.
+	 * @param colCount Number of columns.
+	 * @param row Index of the first row in the block.
+	 * @param length Number of rows in the block.
+	 * @param block Buffer for column values.
+	 * @param result Array that receives the results.
+	 */
+	private static void calculate(DataSource data, String key, int colCount,
+			int row, int length, double[] block, double[] result) {
+		double[][] values = new double[colCount][length];
+		for (int col = 0; col < colCount; col++) {
+			DataUtils.getValues(data, col, row, block, 0, length);
+			System.arraycopy(block, 0, values[col], 0, length);
+		}
+		List<Double> rowValues = new ArrayList<>(colCount);
+		for (int i = 0; i < length; i++) {
+			rowValues.clear();
+			for (int col = 0; col < colCount; col++) {
+				rowValues.add(values[col][i]);
+			}
+			result[row + i] = new Statistics(rowValues).get(key);
+		}
+	}
+}
@@ -70,6 +70,17 @@ public abstract class AbstractDataReader extends IOCapabilitiesStorage
 		return (T) settings.get(key);
 	}
 
+	/**
+	 * Returns whether the setting for the specified key has been set
+	 * explicitly instead of using the default value.
+	 * @param key key of the setting
+	 * @return {@code true} if the setting has been set, otherwise
+	 *         {@code false}
+	 */
+	protected boolean isSettingSet(String key) {
+		return settings.containsKey(key);
+	}
+
 	/**
 	 * Sets the setting for the specified key.
 	 * @param <T> value type
@@ -0,0 +1,264 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import java.io.ObjectStreamException;
+
+import de.erichseifert.gral.data.AbstractDataSource;
+import de.erichseifert.gral.data.DataTable;
+
+
+/**
+ * <p>Read-only data source that provides the samples of audio data. Each
+ * column contains the samples of one channel, and each row belongs to one
+ * frame. The samples are stored as primitive values in the range of 16-bit
+ * audio, i.e. from -32768 to 32767, and are scaled with a factor and an
+ * offset when they are requested.</p>
+ * <p>To draw long waveforms, the smallest and the largest sample of many
+ * ranges of rows can be determined with
+ * {@link #getEnvelope(int, int, int, double[], double[])}. If a min/max
+ * pyramid has been built, the time that is needed depends only on the
+ * number of ranges, not on the number of rows.</p>
+ * <p>Instances are created by {@link AudioReader}. When serialized, the
+ * values are copied to a {@link DataTable}.</p>
+ */
+public class AudioData extends AbstractDataSource {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = 5207341925384616420L;
+
+	/** Samples of each channel. */
+	private final transient float[][] samples;
+	/** Number of frames. */
+	private final int frameCount;
+	/** Number of frames per second. */
+	private final float sampleRate;
+	/** Factor that is used to scale the samples. */
+	private final double factor;
+	/** Offset that is added to the scaled samples. */
+	private final double offset;
+	/** Minimums of each channel for each level of the pyramid, or
+	{@code null}. Level {@code k} combines {@code 2^(k+1)} frames. */
+	private final transient float[][][] minimums;
+	/** Maximums of each channel for each level of the pyramid, or
+	{@code null}. */
+	private final transient float[][][] maximums;
+
+	/**
+	 * Initializes a new instance with the specified samples.
+	 * @param samples Samples of each channel.
+	 * @param frameCount Number of frames.
+	 * @param sampleRate Number of frames per second.
+	 * @param factor Factor that is used to scale the samples.
+	 * @param offset Offset that is added to the scaled samples.
+	 * @param pyramid Whether a min/max pyramid should be built.
+	 */
+	@SuppressWarnings("unchecked")
+	AudioData(float[][] samples, int frameCount, float sampleRate,
+			double factor, double offset, boolean pyramid) {
+		this.samples = samples;
+		this.frameCount = frameCount;
+		this.sampleRate = sampleRate;
+		this.factor = factor;
+		this.offset = offset;
+
+		Class<? extends Comparable<?>>[] types = new Class[samples.length];
+		for (int col = 0; col < types.length; col++) {
+			types[col] = Double.class;
+		}
+		setColumnTypes(types);
+
+		if (pyramid) {
+			minimums = new float[samples.length][][];
+			maximums = new float[samples.length][][];
+			for (int col = 0; col < samples.length; col++) {
+				buildPyramid(col);
+			}
+		} else {
+			minimums = null;
+			maximums = null;
+		}
+	}
+
+	/**
+	 * Builds the min/max pyramid of the specified channel.
+	 * @param col Index of the channel.
+	 */
+	private void buildPyramid(int col) {
+		int levelCount = 0;
+		for (int length = frameCount; length > 1; length = (length + 1)/2) {
+			levelCount++;
+		}
+		float[][] mins = new float[levelCount][];
+		float[][] maxs = new float[levelCount][];
+		float[] values = samples[col];
+		int length = frameCount;
+		for (int level = 0; level < levelCount; level++) {
+			float[] childMins = (level == 0) ? values : mins[level - 1];
+			float[] childMaxs = (level == 0) ? values : maxs[level - 1];
+			int childLength = length;
+			length = (length + 1)/2;
+			mins[level] = new float[length];
+			maxs[level] = new float[length];
+			for (int i = 0; i < length; i++) {
+				int child = 2*i;
+				float min = childMins[child];
+				float max = childMaxs[child];
+				if (child + 1 < childLength) {
+					min = Math.min(min, childMins[child + 1]);
+					max = Math.max(max, childMaxs[child + 1]);
+				}
+				mins[level][i] = min;
+				maxs[level][i] = max;
+			}
+		}
+		minimums[col] = mins;
+		maximums[col] = maxs;
+	}
+
+	@Override
+	public Comparable<?> get(int col, int row) {
+		if (row < 0 || row >= frameCount) {
+			throw new IndexOutOfBoundsException(String.valueOf(row));
+		}
+		return samples[col][row]*factor + offset;
+	}
+
+	@Override
+	protected void getValuesInRange(int col, int row, double[] values, int offset, int length) {
+		float[] channel = samples[col];
+		for (int i = 0; i < length; i++) {
+			values[offset + i] = channel[row + i]*factor + this.offset;
+		}
+	}
+
+	@Override
+	public int getRowCount() {
+		return frameCount;
+	}
+
+	/**
+	 * Returns the number of frames per second.
+	 * @return Sample rate.
+	 */
+	public float getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * Returns whether a min/max pyramid has been built.
+	 * @return {@code true} if the pyramid is available.
+	 */
+	public boolean hasPyramid() {
+		return minimums != null;
+	}
+
+	/**
+	 * Determines the smallest and the largest scaled sample of consecutive
+	 * ranges of rows. The rows from {@code row} to
+	 * {@code row + length - 1} are divided into as many ranges as the
+	 * arrays have elements. Ranges that contain no rows are {@code NaN}.
+	 * @param col Index of the channel.
+	 * @param row Index of the first row.
+	 * @param length Number of rows.
+	 * @param minimums Array that receives the smallest sample of each range.
+	 * @param maximums Array that receives the largest sample of each range.
+	 */
+	public void getEnvelope(int col, int row, int length,
+			double[] minimums, double[] maximums) {
+		int bins = minimums.length;
+		float[] range = new float[2];
+		for (int bin = 0; bin < bins; bin++) {
+			long start = row + (long) bin*length/bins;
+			long end = row + (long) (bin + 1)*length/bins;
+			start = Math.max(start, 0);
+			end = Math.min(end, frameCount);
+			if (start >= end) {
+				minimums[bin] = Double.NaN;
+				maximums[bin] = Double.NaN;
+				continue;
+			}
+			getRange(col, (int) start, (int) end, range);
+			double min = range[0]*factor + offset;
+			double max = range[1]*factor + offset;
+			minimums[bin] = Math.min(min, max);
+			maximums[bin] = Math.max(min, max);
+		}
+	}
+
+	/**
+	 * Determines the smallest and the largest unscaled sample of a range of
+	 * rows.
+	 * @param col Index of the channel.
+	 * @param start Index of the first row.
+	 * @param end Index after the last row.
+	 * @param range Array that receives the minimum and the maximum.
+	 */
+	private void getRange(int col, int start, int end, float[] range) {
+		float min = Float.POSITIVE_INFINITY;
+		float max = Float.NEGATIVE_INFINITY;
+		float[] values = samples[col];
+		if (this.minimums == null) {
+			for (int i = start; i < end; i++) {
+				min = Math.min(min, values[i]);
+				max = Math.max(max, values[i]);
+			}
+		} else {
+			// Walk up the pyramid and take the nodes at the borders
+			float[][] mins = this.minimums[col];
+			float[][] maxs = this.maximums[col];
+			float[] levelMins = values;
+			float[] levelMaxs = values;
+			int level = 0;
+			while (start < end) {
+				if ((start & 1) != 0) {
+					min = Math.min(min, levelMins[start]);
+					max = Math.max(max, levelMaxs[start]);
+					start++;
+				}
+				if ((end & 1) != 0) {
+					end--;
+					min = Math.min(min, levelMins[end]);
+					max = Math.max(max, levelMaxs[end]);
+				}
+				start >>= 1;
+				end >>= 1;
+				if (start < end) {
+					levelMins = mins[level];
+					levelMaxs = maxs[level];
+					level++;
+				}
+			}
+		}
+		range[0] = min;
+		range[1] = max;
+	}
+
+	/**
+	 * Replaces this object by a {@code DataTable} with the same values for
+	 * serialization.
+	 * @return Table with the same values.
+	 * @throws ObjectStreamException if the object can't be replaced.
+	 */
+	protected Object writeReplace() throws ObjectStreamException {
+		return new DataTable(this);
+	}
+}
@@ -23,22 +23,47 @@ package de.erichseifert.gral.io.data;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.Arrays;
 
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
 import de.erichseifert.gral.data.DataSource;
-import de.erichseifert.gral.data.DataTable;
 import de.erichseifert.gral.io.IOCapabilities;
 import de.erichseifert.gral.util.Messages;
 
 
 /**
- * Class that reads a data source from a binary image file. This class
- * shouldn't be used directly but using the {@link DataReaderFactory}.
+ * <p>Class that reads a data source from an audio file. This class
+ * shouldn't be used directly but using the {@link DataReaderFactory}.</p>
+ * <p>The returned {@link AudioData} contains one column for each channel
+ * and one row for each frame. Signed and unsigned PCM with 8, 16, 24, or 32
+ * bits as well as 32-bit floating point samples are supported; other
+ * encodings are converted to 16-bit PCM if possible. All samples are
+ * normalized to the range of 16-bit audio, i.e. from -32768 to 32767, and
+ * scaled with the settings {@link #FACTOR} and {@link #OFFSET}. A min/max
+ * pyramid for drawing waveforms is built if the setting {@link #PYRAMID} is
+ * enabled.</p>
  */
 public class AudioReader extends AbstractDataReader {
+	/** Key for specifying a {@link Number} value that defines the factor
+	which is used to scale the samples. */
+	public static final String FACTOR = "factor"; //$NON-NLS-1$
+	/** Key for specifying a {@link Number} value that defines the offset
+	which is added to the scaled samples. */
+	public static final String OFFSET = "offset"; //$NON-NLS-1$
+	/** Key for specifying a {@link Boolean} value that decides whether a
+	min/max pyramid is built for drawing waveforms. */
+	public static final String PYRAMID = "pyramid"; //$NON-NLS-1$
+
+	/** Number of bytes that are decoded at once. */
+	private static final int BLOCK_SIZE = 64*1024;
+	/** Initial number of frames if the length of the stream is unknown. */
+	private static final int INITIAL_CAPACITY = 64*1024;
+
 	static {
 		addCapabilities(new IOCapabilities(
 			"WAV", //$NON-NLS-1$
@@ -54,8 +79,9 @@ public class AudioReader extends AbstractDataReader {
 	 */
 	public AudioReader(String mimeType) {
 		super(mimeType);
-		setDefault("factor", 1.0); //$NON-NLS-1$
-		setDefault("offset", 0.0); //$NON-NLS-1$
+		setDefault(FACTOR, 1.0);
+		setDefault(OFFSET, 0.0);
+		setDefault(PYRAMID, false);
 	}
 
 	/**
@@ -66,7 +92,6 @@ public class AudioReader extends AbstractDataReader {
 	 * @throws IOException when the file format is not valid or when
 	 *         experiencing an error during file operations.
 	 */
-	@SuppressWarnings("unchecked")
 	public DataSource read(InputStream input, Class<? extends Comparable<?>>... types)
 			throws IOException {
 		AudioInputStream audio;
@@ -75,31 +100,151 @@ public class AudioReader extends AbstractDataReader {
 		} catch (UnsupportedAudioFileException e) {
 			throw new IOException(e);
 		}
+		audio = getDecodableStream(audio);
 
-		// FIXME Should the types parameter be used?
-		DataTable data = new DataTable(Double.class);
+		double factor = this.<Number>getSetting(FACTOR).doubleValue();
+		double offset = this.<Number>getSetting(OFFSET).doubleValue();
+		Boolean pyramid = getSetting(PYRAMID);
 
-		double factor = this.<Number>getSetting("factor") //$NON-NLS-1$
-			.doubleValue();
-		double offset = this.<Number>getSetting("offset") //$NON-NLS-1$
-			.doubleValue();
-
-		int sampleSize = audio.getFormat().getSampleSizeInBits();
-		byte[] samples = new byte[sampleSize/8];
+		AudioFormat format = audio.getFormat();
+		int channels = format.getChannels();
+		int frameSize = format.getFrameSize();
+		int capacity = INITIAL_CAPACITY;
+		long frameLength = audio.getFrameLength();
+		if (frameLength != AudioSystem.NOT_SPECIFIED) {
+			if (frameLength > Integer.MAX_VALUE) {
+				throw new IOException(MessageFormat.format(
+					"Too many frames: {0,number,integer}", frameLength)); //$NON-NLS-1$
+			}
+			capacity = (int) frameLength;
+		}
+		float[][] samples = new float[channels][capacity];
 
 		// see: http://www.jsresources.org/faq_audio.html#reconstruct_samples
-		while (audio.read(samples) >= 0) {
-			int b = samples[0];
-			if (samples.length == 1) {
-				b = b << 8;
-			} else if (samples.length == 2) {
-				b = (b & 0xFF) | (samples[1] << 8);
+		byte[] block = new byte[Math.max(1, BLOCK_SIZE/frameSize)*frameSize];
+		int frameCount = 0;
+		int length;
+		while ((length = readBlock(audio, block)) > 0) {
+			int blockFrames = length/frameSize;
+			if (frameCount + blockFrames > samples[0].length) {
+				int newCapacity = Math.max(frameCount + blockFrames,
+					(int) Math.min(2L*samples[0].length, Integer.MAX_VALUE));
+				for (int c = 0; c < channels; c++) {
+					samples[c] = Arrays.copyOf(samples[c], newCapacity);
+				}
+			}
+			decode(format, block, blockFrames, samples, frameCount);
+			frameCount += blockFrames;
+		}
+		if (frameCount < samples[0].length) {
+			for (int c = 0; c < channels; c++) {
+				samples[c] = Arrays.copyOf(samples[c], frameCount);
+			}
+		}
+
+		return new AudioData(samples, frameCount, format.getFrameRate(),
+			factor, offset, pyramid);
+	}
+
+	/**
+	 * Returns a stream with an encoding that can be decoded. Streams that
+	 * aren't encoded as PCM are converted to signed 16-bit PCM.
+	 * @param audio Audio stream.
+	 * @return Audio stream with PCM encoding.
+	 * @throws IOException if the encoding isn't supported.
+	 */
+	private static AudioInputStream getDecodableStream(AudioInputStream audio)
+			throws IOException {
+		AudioFormat format = audio.getFormat();
+		AudioFormat.Encoding encoding = format.getEncoding();
+		int bits = format.getSampleSizeInBits();
+		if (AudioFormat.Encoding.PCM_SIGNED.equals(encoding) ||
+				AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding)) {
+			if (bits == 8 || bits == 16 || bits == 24 || bits == 32) {
+				return audio;
+			}
+		} else if (AudioFormat.Encoding.PCM_FLOAT.equals(encoding)) {
+			if (bits == 32) {
+				return audio;
+			}
+		} else {
+			AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+				format.getSampleRate(), 16, format.getChannels(),
+				2*format.getChannels(), format.getSampleRate(), false);
+			if (AudioSystem.isConversionSupported(pcm, format)) {
+				return AudioSystem.getAudioInputStream(pcm, audio);
 			}
-			double v = factor*b + offset;
-			data.add(v);
 		}
+		throw new IOException(MessageFormat.format(
+			"Unsupported audio format: {0}", format)); //$NON-NLS-1$
+	}
 
-		return data;
+	/**
+	 * Fills the specified buffer with complete frames from the stream.
+	 * @param audio Audio stream.
+	 * @param block Buffer.
+	 * @return Number of bytes that have been read.
+	 * @throws IOException if reading failed.
+	 */
+	private static int readBlock(AudioInputStream audio, byte[] block)
+			throws IOException {
+		int length = 0;
+		while (length < block.length) {
+			int count = audio.read(block, length, block.length - length);
+			if (count < 0) {
+				break;
+			}
+			length += count;
+		}
+		return length;
+	}
+
+	/**
+	 * Decodes a block of frames.
+	 * @param format Format of the frames.
+	 * @param block Encoded frames.
+	 * @param frameCount Number of frames in the block.
+	 * @param samples Samples of each channel.
+	 * @param frameStart Index of the first frame of the block.
+	 */
+	private static void decode(AudioFormat format, byte[] block, int frameCount,
+			float[][] samples, int frameStart) {
+		int channels = format.getChannels();
+		int bits = format.getSampleSizeInBits();
+		int bytes = bits/8;
+		int frameSize = format.getFrameSize();
+		boolean bigEndian = format.isBigEndian();
+		boolean unsigned = AudioFormat.Encoding.PCM_UNSIGNED.equals(format.getEncoding());
+		boolean floating = AudioFormat.Encoding.PCM_FLOAT.equals(format.getEncoding());
+		// Normalize to the range of 16-bit samples
+		float scale = floating ? 32768f : (float) Math.pow(2.0, 16 - bits);
+
+		for (int c = 0; c < channels; c++) {
+			float[] channel = samples[c];
+			int pos = c*bytes;
+			for (int i = 0; i < frameCount; i++, pos += frameSize) {
+				int value = 0;
+				if (bigEndian) {
+					for (int b = 0; b < bytes; b++) {
+						value = (value << 8) | (block[pos + b] & 0xFF);
+					}
+				} else {
+					for (int b = bytes - 1; b >= 0; b--) {
+						value = (value << 8) | (block[pos + b] & 0xFF);
+					}
+				}
+				float sample;
+				if (floating) {
+					sample = Float.intBitsToFloat(value);
+				} else if (unsigned) {
+					sample = (float) ((value & 0xFFFFFFFFL) - (1L << (bits - 1)));
+				} else {
+					// Sign extension
+					sample = (value << (32 - bits)) >> (32 - bits);
+				}
+				channel[frameStart + i] = sample*scale;
+			}
+		}
 	}
 
 }
@@ -0,0 +1,543 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.erichseifert.gral.data.MutableDataSource;
+import de.erichseifert.gral.util.DataUtils;
+
+/**
+ * <p>Class that follows a CSV or TSV file which is appended continuously,
+ * like the {@code tail -f} command. Every time the file is polled, only the
+ * complete rows that have been appended since the last poll are parsed and
+ * added to a {@code MutableDataSource}. The rows are added in batches, so
+ * listeners of the data sink are notified once per batch.</p>
+ * <p>If the file becomes shorter than the content that has been read, or if
+ * the path refers to a different file, the file is considered to be
+ * truncated or rotated and it is read from the beginning. Rows that have
+ * already been added are kept. A different file is detected by its file
+ * key, or by its creation time on file systems without file keys.</p>
+ * <p>The first row of the file is considered a header and skipped if it
+ * can't be parsed, or always if {@link #setSkippingHeader(boolean)} has been
+ * enabled. Other rows that can't be parsed are skipped, and an exception
+ * for the first of them is thrown after all valid rows have been added.</p>
+ * <p>The file can be polled manually with {@link #poll()}, or a background
+ * thread can be started with {@link #start()}. The thread polls the file in
+ * the specified interval, or as soon as the file system reports a
+ * modification if a {@code WatchService} is used. The rows are added to the
+ * data sink from the background thread.</p>
+ * <p>{@code CSVFollower} instances are usually created with
+ * {@link CSVReader#follow(File, MutableDataSource)}.</p>
+ */
+public class CSVFollower implements Closeable {
+	/** Default number of milliseconds between two polls. */
+	public static final long DEFAULT_INTERVAL = 1000L;
+
+	/** Initial size of the buffer for content that has been read. */
+	private static final int BUFFER_SIZE = 64*1024;
+	/** Minimal number of bytes that are read at once. */
+	private static final int MIN_READ_SIZE = 4096;
+
+	/** Path of the followed file. */
+	private final Path path;
+	/** Character that separates columns. */
+	private final char separator;
+	/** Character set of the file. */
+	private final Charset charset;
+	/** Data sink that receives the rows. */
+	private final MutableDataSource target;
+
+	/** Number of milliseconds between two polls. */
+	private volatile long interval;
+	/** Decides whether the file system is watched for modifications. */
+	private volatile boolean watching;
+
+	/** Key that identifies the followed file, or {@code null}. */
+	private Object fileKey;
+	/** Creation time of the followed file, or {@code null}. */
+	private FileTime creationTime;
+	/** Position in the file up to which the content has been read. */
+	private long position;
+	/** Content that has been read but not parsed yet. */
+	private byte[] pending;
+	/** Number of bytes in the pending content. */
+	private int pendingLength;
+	/** Number of pending bytes that have been searched for row ends. */
+	private int scanned;
+	/** Decides whether the content after the scanned bytes is quoted. */
+	private boolean quoted;
+	/** Number of rows that have been read since the beginning of the file. */
+	private int fileRowCount;
+	/** First error of the current poll, or {@code null}. */
+	private Exception parseError;
+
+	/** Decides whether the first row of the file is always skipped. */
+	private volatile boolean skippingHeader;
+
+	/** Background thread that polls the file, or {@code null}. */
+	private Thread thread;
+	/** Last error of the background thread, or {@code null}. */
+	private volatile Exception error;
+
+	/**
+	 * Initializes a new instance that follows the specified file and adds
+	 * all rows to the specified data sink. The platform's default character
+	 * set is used.
+	 * @param file File to be followed.
+	 * @param separator Character that separates columns.
+	 * @param target Data sink that receives the rows.
+	 */
+	public CSVFollower(File file, char separator, MutableDataSource target) {
+		this(file, separator, Charset.defaultCharset(), target);
+	}
+
+	/**
+	 * Initializes a new instance that follows the specified file and adds
+	 * all rows to the specified data sink. The character set must encode
+	 * quotes and line breaks as single bytes.
+	 * @param file File to be followed.
+	 * @param separator Character that separates columns.
+	 * @param charset Character set of the file.
+	 * @param target Data sink that receives the rows.
+	 */
+	public CSVFollower(File file, char separator, Charset charset,
+			MutableDataSource target) {
+		if (!MappedCSVParser.isSupported(charset)) {
+			throw new IllegalArgumentException(
+				"Unsupported character set: " + charset); //$NON-NLS-1$
+		}
+		this.path = file.toPath();
+		this.separator = separator;
+		this.charset = charset;
+		this.target = target;
+		interval = DEFAULT_INTERVAL;
+		pending = new byte[BUFFER_SIZE];
+	}
+
+	/**
+	 * Reads the content that has been appended to the file since the last
+	 * poll and adds all complete rows to the data sink. An incomplete last
+	 * row is kept until it is completed. Rows that are not valid are
+	 * skipped; after all other rows have been added, an exception for the
+	 * first invalid row is thrown.
+	 * @return Number of rows that have been added.
+	 * @throws IOException when the content is not valid or when experiencing
+	 *         an error during file operations.
+	 */
+	public synchronized int poll() throws IOException {
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			// The file has been rotated but not created again yet
+			return 0;
+		}
+
+		Object key = attributes.fileKey();
+		FileTime created = attributes.creationTime();
+		boolean rotated = isRotated(fileKey, creationTime, key, created);
+		if (rotated || attributes.size() < position) {
+			position = 0L;
+			pendingLength = 0;
+			scanned = 0;
+			quoted = false;
+			fileRowCount = 0;
+		}
+		fileKey = key;
+		creationTime = created;
+		if (attributes.size() == position) {
+			return 0;
+		}
+
+		int rowCount = 0;
+		parseError = null;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			channel.position(position);
+			while (true) {
+				if (pending.length - pendingLength < MIN_READ_SIZE) {
+					pending = Arrays.copyOf(pending, 2*pending.length);
+				}
+				int count = channel.read(ByteBuffer.wrap(
+					pending, pendingLength, pending.length - pendingLength));
+				if (count <= 0) {
+					break;
+				}
+				position += count;
+				pendingLength += count;
+
+				int rowEnd = getRowEnd();
+				if (rowEnd > 0) {
+					try {
+						rowCount += parse(rowEnd);
+					} finally {
+						System.arraycopy(pending, rowEnd, pending, 0,
+							pendingLength - rowEnd);
+						pendingLength -= rowEnd;
+						scanned -= rowEnd;
+					}
+				}
+			}
+		}
+		if (parseError instanceof IOException) {
+			throw (IOException) parseError;
+		} else if (parseError != null) {
+			throw (RuntimeException) parseError;
+		}
+		return rowCount;
+	}
+
+	/**
+	 * Returns whether the path refers to a different file than at the last
+	 * poll. Files are compared by their keys. If the file system doesn't
+	 * provide keys, e.g. on Windows, they are compared by their creation
+	 * times.
+	 * @param oldKey Key of the file at the last poll, or {@code null}.
+	 * @param oldCreationTime Creation time of the file at the last poll, or
+	 *        {@code null}.
+	 * @param key Key of the current file, or {@code null}.
+	 * @param creationTime Creation time of the current file, or
+	 *        {@code null}.
+	 * @return {@code true} if the file has been replaced.
+	 */
+	static boolean isRotated(Object oldKey, FileTime oldCreationTime,
+			Object key, FileTime creationTime) {
+		if (oldKey != null && key != null) {
+			return !oldKey.equals(key);
+		}
+		return oldCreationTime != null && creationTime != null &&
+			!oldCreationTime.equals(creationTime);
+	}
+
+	/**
+	 * Searches the pending content for row ends outside of quotes.
+	 * A carriage return at the end of the content isn't considered as row
+	 * end before the next byte is known.
+	 * @return Index after the last complete row, or {@code 0} if there is no
+	 *         complete row.
+	 */
+	private int getRowEnd() {
+		int rowEnd = 0;
+		int i = scanned;
+		for (; i < pendingLength; i++) {
+			byte b = pending[i];
+			if (b == '"') {
+				quoted = !quoted;
+			} else if (!quoted) {
+				if (b == '\n') {
+					rowEnd = i + 1;
+				} else if (b == '\r') {
+					if (i + 1 == pendingLength) {
+						break;
+					} else if (pending[i + 1] != '\n') {
+						rowEnd = i + 1;
+					}
+				}
+			}
+		}
+		scanned = i;
+		return rowEnd;
+	}
+
+	/**
+	 * Parses the complete rows at the beginning of the pending content and
+	 * adds them to the data sink at once. The first row of the file is
+	 * skipped if it is a header. If a row isn't valid, the rows are parsed
+	 * one by one, invalid rows are skipped, and the first error is stored.
+	 * @param length Number of bytes.
+	 * @return Number of rows that have been added.
+	 */
+	private int parse(int length) {
+		CharBuffer chars = charset.decode(ByteBuffer.wrap(pending, 0, length));
+		char[] content = chars.array();
+		int start = chars.arrayOffset() + chars.position();
+		int end = start + chars.remaining();
+
+		if (fileRowCount == 0 && start < end) {
+			int rowEnd = CSVSchema.getRowEnd(content, start, end);
+			if (isSkippingHeader() ||
+					parse(content, start, rowEnd, new ArrayList<List<Comparable<?>>>()) != null) {
+				start = rowEnd;
+				fileRowCount++;
+			}
+		}
+
+		List<List<Comparable<?>>> rows = new ArrayList<>();
+		if (parse(content, start, end, rows) != null) {
+			// Parse each row separately to skip only invalid rows
+			rows.clear();
+			for (int rowStart = start; rowStart < end;) {
+				int rowEnd = CSVSchema.getRowEnd(content, rowStart, end);
+				Exception error = parse(content, rowStart, rowEnd, rows);
+				if (error != null && parseError == null) {
+					parseError = error;
+				}
+				rowStart = rowEnd;
+				fileRowCount++;
+			}
+		} else {
+			fileRowCount += rows.size();
+		}
+		if (!rows.isEmpty()) {
+			DataUtils.addAll(target, rows);
+		}
+		return rows.size();
+	}
+
+	/**
+	 * Parses the specified characters and appends the rows to the specified
+	 * list if all of them are valid.
+	 * @param content Content.
+	 * @param start Index of the first character.
+	 * @param end Index after the last character.
+	 * @param rows List that receives the rows.
+	 * @return Error, or {@code null} if the content is valid.
+	 */
+	private Exception parse(char[] content, int start, int end,
+			List<List<Comparable<?>>> rows) {
+		List<List<Comparable<?>>> parsed = new ArrayList<>();
+		CSVParser parser = new CSVParser(
+			separator, target.getColumnTypes(), parsed);
+		parser.setRowCount(fileRowCount);
+		try {
+			parser.parse(content, start, end - start);
+			parser.finish();
+		} catch (IOException | RuntimeException e) {
+			return e;
+		}
+		rows.addAll(parsed);
+		return null;
+	}
+
+	/**
+	 * Starts a background thread that polls the file until this instance
+	 * is closed. Errors are stored and can be queried with
+	 * {@link #getError()}; the thread keeps polling afterwards.
+	 * @throws IllegalStateException if the thread has already been started.
+	 */
+	public synchronized void start() {
+		if (thread != null) {
+			throw new IllegalStateException("Already started."); //$NON-NLS-1$
+		}
+		thread = new Thread(new Runnable() {
+			public void run() {
+				follow();
+			}
+		}, "CSVFollower " + path.getFileName()); //$NON-NLS-1$
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Polls the file until the current thread is interrupted.
+	 */
+	private void follow() {
+		WatchService watcher = null;
+		try {
+			watcher = createWatcher();
+			while (!Thread.currentThread().isInterrupted()) {
+				step(watcher);
+			}
+		} catch (IOException e) {
+			error = e;
+		} catch (InterruptedException e) {
+			// Stop following
+		} finally {
+			if (watcher != null) {
+				try {
+					watcher.close();
+				} catch (IOException e) {
+					error = e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a service that watches the directory of the file for
+	 * modifications if the file system should be watched.
+	 * @return Watch service, or {@code null} if the file system isn't
+	 *         watched.
+	 * @throws IOException if the service can't be created.
+	 */
+	WatchService createWatcher() throws IOException {
+		if (!isWatching()) {
+			return null;
+		}
+		WatchService watcher = FileSystems.getDefault().newWatchService();
+		path.toAbsolutePath().getParent().register(watcher,
+			StandardWatchEventKinds.ENTRY_CREATE,
+			StandardWatchEventKinds.ENTRY_MODIFY);
+		return watcher;
+	}
+
+	/**
+	 * Polls the file once and waits until the next poll is due. Errors are
+	 * stored and can be queried with {@link #getError()}.
+	 * @param watcher Service that watches the directory of the file, or
+	 *        {@code null} if the interval should be waited.
+	 * @throws InterruptedException if the current thread is interrupted
+	 *         while waiting.
+	 */
+	void step(WatchService watcher) throws InterruptedException {
+		try {
+			poll();
+		} catch (IOException | RuntimeException e) {
+			error = e;
+		}
+		if (watcher != null) {
+			// Wait for any change in the directory, but not longer than the
+			// interval
+			WatchKey watchKey = watcher.poll(getInterval(), TimeUnit.MILLISECONDS);
+			if (watchKey != null) {
+				watchKey.pollEvents();
+				watchKey.reset();
+			}
+		} else {
+			Thread.sleep(getInterval());
+		}
+	}
+
+	/**
+	 * Stops the background thread and waits until it has finished.
+	 * @throws IOException if the current thread is interrupted while
+	 *         waiting.
+	 */
+	public void close() throws IOException {
+		Thread thread;
+		synchronized (this) {
+			thread = this.thread;
+			this.thread = null;
+		}
+		if (thread == null) {
+			return;
+		}
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Returns the data sink that receives the rows.
+	 * @return Data sink.
+	 */
+	public MutableDataSource getTarget() {
+		return target;
+	}
+
+	/**
+	 * Returns the number of milliseconds between two polls of the
+	 * background thread.
+	 * @return Interval in milliseconds.
+	 */
+	public long getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Sets the number of milliseconds between two polls of the background
+	 * thread. If a {@code WatchService} is used, this is the maximal time
+	 * between two polls.
+	 * @param interval Interval in milliseconds.
+	 */
+	public void setInterval(long interval) {
+		if (interval <= 0L) {
+			throw new IllegalArgumentException(
+				"Invalid interval: " + interval); //$NON-NLS-1$
+		}
+		this.interval = interval;
+	}
+
+	/**
+	 * Returns whether the background thread uses a {@code WatchService} to
+	 * poll the file as soon as it has been modified.
+	 * @return {@code true} if modifications are watched, otherwise
+	 *         {@code false}.
+	 */
+	public boolean isWatching() {
+		return watching;
+	}
+
+	/**
+	 * Sets whether the background thread uses a {@code WatchService} to
+	 * poll the file as soon as it has been modified. The setting is applied
+	 * when the thread is started.
+	 * @param watching {@code true} if modifications should be watched,
+	 *        otherwise {@code false}.
+	 */
+	public void setWatching(boolean watching) {
+		this.watching = watching;
+	}
+
+	/**
+	 * Returns whether the first row of the file is always skipped. If it
+	 * isn't, the first row is only skipped if it can't be parsed.
+	 * @return {@code true} if the first row is always skipped, otherwise
+	 *         {@code false}.
+	 */
+	public boolean isSkippingHeader() {
+		return skippingHeader;
+	}
+
+	/**
+	 * Sets whether the first row of the file is always skipped. This is
+	 * necessary for header rows that are valid content, e.g. if all columns
+	 * contain text. The setting also applies to truncated or rotated files.
+	 * @param skippingHeader {@code true} if the first row should always be
+	 *        skipped, otherwise {@code false}.
+	 */
+	public void setSkippingHeader(boolean skippingHeader) {
+		this.skippingHeader = skippingHeader;
+	}
+
+	/**
+	 * Returns the last error of the background thread.
+	 * @return Exception, or {@code null} if no error occurred.
+	 */
+	public Exception getError() {
+		return error;
+	}
+}
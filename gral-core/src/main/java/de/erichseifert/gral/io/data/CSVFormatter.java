@@ -0,0 +1,369 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.util.DataUtils;
+
+/**
+ * <p>Class that formats blocks of rows of a {@code DataSource} as CSV or TSV
+ * content into a reusable character buffer.</p>
+ * <p>Numeric columns are read as primitive values. Floating point numbers
+ * are written with the fewest digits that are necessary to read the same
+ * value again, in the same notation as {@link Double#toString(double)}.
+ * Numbers that need more than 15 significant digits, or whose decimal
+ * exponent is very small or very large, are formatted by
+ * {@code Double.toString}. Empty cells are written as empty text, and text
+ * which contains separators, quotes, or line breaks is quoted.</p>
+ */
+final class CSVFormatter {
+	/** Initial size of the character buffer. */
+	private static final int BUFFER_SIZE = 64*1024;
+	/** Maximal number of significant digits that are formatted directly. */
+	private static final int MAX_DIGITS = 15;
+
+	/** Ways of reading and formatting the cells of a column. */
+	private enum Kind {
+		/** Primitive floating point values. */
+		DOUBLE,
+		/** Primitive integer values. */
+		INTEGER,
+		/** {@code Long} values. */
+		LONG,
+		/** Other values that are converted to text. */
+		TEXT
+	}
+
+	/** Data source that is formatted. */
+	private final DataSource data;
+	/** Character that separates columns. */
+	private final char separator;
+	/** Formatting kinds of the columns. */
+	private final Kind[] kinds;
+	/** Buffers for the primitive values of a block of rows. */
+	private final double[][] values;
+	/** Buffer for the digits of a number. */
+	private final char[] digits;
+
+	/** Formatted content. */
+	private char[] chars;
+	/** Number of formatted characters. */
+	private int length;
+
+	/**
+	 * Initializes a new formatter for the specified data source.
+	 * @param data Data source that is formatted.
+	 * @param separator Character that separates columns.
+	 */
+	public CSVFormatter(DataSource data, char separator) {
+		this.data = data;
+		this.separator = separator;
+		Class<? extends Comparable<?>>[] types = data.getColumnTypes();
+		kinds = new Kind[types.length];
+		values = new double[types.length][];
+		for (int col = 0; col < types.length; col++) {
+			Class<?> type = types[col];
+			if (Double.class.equals(type)) {
+				kinds[col] = Kind.DOUBLE;
+			} else if (Integer.class.equals(type) || Short.class.equals(type) ||
+					Byte.class.equals(type)) {
+				kinds[col] = Kind.INTEGER;
+			} else if (Long.class.equals(type)) {
+				kinds[col] = Kind.LONG;
+			} else {
+				kinds[col] = Kind.TEXT;
+			}
+		}
+		digits = new char[20];
+		chars = new char[BUFFER_SIZE];
+	}
+
+	/**
+	 * Appends the specified rows to the formatted content. Each row ends
+	 * with a carriage return and a line feed.
+	 * @param rowStart Index of the first row.
+	 * @param rowCount Number of rows.
+	 */
+	public void format(int rowStart, int rowCount) {
+		// Read primitive values of the whole block
+		for (int col = 0; col < kinds.length; col++) {
+			if (kinds[col] == Kind.DOUBLE || kinds[col] == Kind.INTEGER) {
+				if (values[col] == null || values[col].length < rowCount) {
+					values[col] = new double[rowCount];
+				}
+				DataUtils.getValues(data, col, rowStart, values[col], 0, rowCount);
+			}
+		}
+
+		for (int i = 0; i < rowCount; i++) {
+			for (int col = 0; col < kinds.length; col++) {
+				if (col > 0) {
+					append(separator);
+				}
+				Kind kind = kinds[col];
+				if (kind == Kind.DOUBLE || kind == Kind.INTEGER) {
+					double value = values[col][i];
+					if (Double.isNaN(value) && data.get(col, rowStart + i) == null) {
+						continue;
+					} else if (kind == Kind.DOUBLE) {
+						append(value);
+					} else {
+						append((long) value);
+					}
+				} else {
+					Comparable<?> cell = data.get(col, rowStart + i);
+					if (cell == null) {
+						continue;
+					} else if (kind == Kind.LONG) {
+						append(((Number) cell).longValue());
+					} else {
+						appendText(String.valueOf(cell));
+					}
+				}
+			}
+			append('\r');
+			append('\n');
+		}
+	}
+
+	/**
+	 * Writes the formatted content and clears it.
+	 * @param writer Writer that receives the content.
+	 * @throws IOException if writing failed.
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		writer.write(chars, 0, length);
+		length = 0;
+	}
+
+	/**
+	 * Returns the formatted content.
+	 * @return Formatted content.
+	 */
+	@Override
+	public String toString() {
+		return new String(chars, 0, length);
+	}
+
+	/**
+	 * Makes sure that the specified number of characters can be appended.
+	 * @param count Number of characters.
+	 */
+	private void ensureCapacity(int count) {
+		if (length + count > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(2*chars.length, length + count));
+		}
+	}
+
+	/**
+	 * Appends a single character.
+	 * @param c Character.
+	 */
+	private void append(char c) {
+		ensureCapacity(1);
+		chars[length++] = c;
+	}
+
+	/**
+	 * Appends the characters of the specified text.
+	 * @param text Text.
+	 */
+	private void append(String text) {
+		ensureCapacity(text.length());
+		text.getChars(0, text.length(), chars, length);
+		length += text.length();
+	}
+
+	/**
+	 * Appends the specified text. The text is quoted if it contains the
+	 * separator, quotes, or line breaks, or if it starts or ends with white
+	 * space.
+	 * @param text Text.
+	 */
+	private void appendText(String text) {
+		boolean quote = !text.isEmpty() && (text.charAt(0) <= ' ' ||
+			text.charAt(text.length() - 1) <= ' ');
+		for (int i = 0; i < text.length() && !quote; i++) {
+			char c = text.charAt(i);
+			quote = c == separator || c == '"' || c == '\r' || c == '\n';
+		}
+		if (!quote) {
+			append(text);
+			return;
+		}
+		append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"') {
+				append('"');
+			}
+			append(c);
+		}
+		append('"');
+	}
+
+	/**
+	 * Appends the decimal digits of an integer number.
+	 * @param value Number.
+	 */
+	void append(long value) {
+		if (value == Long.MIN_VALUE) {
+			append(String.valueOf(value));
+			return;
+		}
+		if (value < 0L) {
+			append('-');
+			value = -value;
+		}
+		int count = getDigits(value);
+		ensureCapacity(count);
+		System.arraycopy(digits, digits.length - count, chars, length, count);
+		length += count;
+	}
+
+	/**
+	 * Stores the decimal digits of a positive number at the end of the
+	 * digit buffer.
+	 * @param value Positive number.
+	 * @return Number of digits.
+	 */
+	private int getDigits(long value) {
+		int i = digits.length;
+		do {
+			digits[--i] = (char) ('0' + value % 10L);
+			value /= 10L;
+		} while (value != 0L);
+		return digits.length - i;
+	}
+
+	/**
+	 * Appends a floating point number with the fewest digits that are
+	 * necessary to read the same value again.
+	 * @param value Number.
+	 */
+	void append(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			append(Double.toString(value));
+			return;
+		}
+		boolean negative = Double.doubleToRawLongBits(value) < 0L;
+		double abs = Math.abs(value);
+		if (abs == 0.0) {
+			append(negative ? "-0.0" : "0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+			return;
+		}
+
+		// Find the shortest decimal number m*10^-scale that is parsed to
+		// the same value. Each candidate is calculated and checked with a
+		// single correctly rounded operation on exactly representable
+		// numbers, which is also what parsing does.
+		double[] powers = CSVParser.POWERS_OF_TEN;
+		int exponent = (int) Math.floor(Math.log10(abs));
+		for (int digitCount = 1; digitCount <= MAX_DIGITS; digitCount++) {
+			int scale = digitCount - 1 - exponent;
+			if (Math.abs(scale) >= powers.length) {
+				break;
+			}
+			double mantissa;
+			boolean exact;
+			if (scale >= 0) {
+				mantissa = Math.rint(abs*powers[scale]);
+				exact = mantissa/powers[scale] == abs;
+			} else {
+				mantissa = Math.rint(abs/powers[-scale]);
+				exact = mantissa*powers[-scale] == abs;
+			}
+			if (mantissa > CSVParser.MAX_EXACT_MANTISSA) {
+				break;
+			} else if (exact) {
+				if (negative) {
+					append('-');
+				}
+				appendDecimal((long) mantissa, scale);
+				return;
+			}
+		}
+		append(Double.toString(value));
+	}
+
+	/**
+	 * Appends the positive number m*10^-scale in the notation of
+	 * {@link Double#toString(double)}.
+	 * @param mantissa Decimal digits.
+	 * @param scale Number of digits after the decimal point.
+	 */
+	private void appendDecimal(long mantissa, int scale) {
+		while (scale > 0 && mantissa % 10L == 0L) {
+			mantissa /= 10L;
+			scale--;
+		}
+		int count = getDigits(mantissa);
+		int first = digits.length - count;
+		int exponent = count - 1 - scale;
+		ensureCapacity(count + 32);
+		if (exponent >= -3 && exponent < 7) {
+			if (scale <= 0) {
+				// Integer
+				System.arraycopy(digits, first, chars, length, count);
+				length += count;
+				for (int i = 0; i < -scale; i++) {
+					chars[length++] = '0';
+				}
+				chars[length++] = '.';
+				chars[length++] = '0';
+			} else if (count > scale) {
+				// Integer and fractional part
+				int integerDigits = count - scale;
+				System.arraycopy(digits, first, chars, length, integerDigits);
+				length += integerDigits;
+				chars[length++] = '.';
+				System.arraycopy(digits, first + integerDigits, chars, length, scale);
+				length += scale;
+			} else {
+				// Fractional part only
+				chars[length++] = '0';
+				chars[length++] = '.';
+				for (int i = 0; i < scale - count; i++) {
+					chars[length++] = '0';
+				}
+				System.arraycopy(digits, first, chars, length, count);
+				length += count;
+			}
+		} else {
+			// Scientific notation
+			chars[length++] = digits[first];
+			chars[length++] = '.';
+			if (count > 1) {
+				System.arraycopy(digits, first + 1, chars, length, count - 1);
+				length += count - 1;
+			} else {
+				chars[length++] = '0';
+			}
+			chars[length++] = 'E';
+			append((long) exponent);
+		}
+	}
+}
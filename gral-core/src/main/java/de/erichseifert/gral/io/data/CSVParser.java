@@ -0,0 +1,876 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.erichseifert.gral.data.MutableDataSource;
+import de.erichseifert.gral.util.DataUtils;
+
+/**
+ * <p>Class that parses CSV or TSV content in a single pass and appends the
+ * resulting rows to a {@code MutableDataSource} or to a list. The content
+ * can be passed in chunks of arbitrary size, quotes and line breaks may be
+ * split across chunks.</p>
+ * <p>Cells of numeric columns are parsed directly from the character buffer
+ * into primitive column buffers without creating intermediate strings. The
+ * rows are added to the data sink in batches.</p>
+ */
+final class CSVParser {
+	/** Number of characters that are read from a {@code Reader} at once. */
+	static final int CHUNK_SIZE = 64*1024;
+	/** Default number of rows that are added to the data sink at once. */
+	static final int BATCH_SIZE = 4096;
+
+	/** Maximal number of significant digits that will be parsed exactly. */
+	private static final int MAX_DIGITS = 18;
+	/** Value that is returned for invalid timestamps. */
+	static final long INVALID_TIMESTAMP = Long.MIN_VALUE;
+	/** Number of milliseconds per day. */
+	private static final long MILLIS_PER_DAY = 24L*60L*60L*1000L;
+	/** Largest integer that can be represented exactly as double. */
+	static final long MAX_EXACT_MANTISSA = 1L << 53;
+	/** Powers of ten that can be represented exactly as double. */
+	static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+		1e21, 1e22
+	};
+
+	/** Ways of storing the cells of a column. */
+	private enum Kind {
+		/** {@code Double} values stored as primitive {@code double}. */
+		DOUBLE,
+		/** {@code Long} values stored as primitive {@code long}. */
+		LONG,
+		/** {@code Integer} values stored as primitive {@code long}. */
+		INTEGER,
+		/** {@code Short} values stored as primitive {@code long}. */
+		SHORT,
+		/** {@code Byte} values stored as primitive {@code long}. */
+		BYTE,
+		/** Timestamps stored as milliseconds since 1970-01-01 in a
+		{@code Long} column. */
+		TIMESTAMP,
+		/** {@code String} values. */
+		STRING,
+		/** Values that are parsed with a static parse method. */
+		OTHER
+	}
+
+	/** States of the parser. */
+	private enum State {
+		/** Unquoted cell content. */
+		UNQUOTED,
+		/** Quoted cell content. */
+		QUOTED,
+		/** A quote inside quoted cell content that might be escaped. */
+		QUOTE
+	}
+
+	/** Character that separates columns. */
+	private final char separator;
+	/** Data types of the columns. */
+	private final Class<? extends Comparable<?>>[] types;
+	/** Storage kinds of the columns. */
+	private final Kind[] kinds;
+	/** Methods for parsing cells of columns with kind {@code OTHER}. */
+	private final Method[] parseMethods;
+	/** Data sink that receives the rows, or {@code null}. */
+	private final MutableDataSource target;
+	/** List that receives the rows if there is no data sink. */
+	private final List<List<Comparable<?>>> rows;
+	/** Maximal number of rows in a batch. */
+	private final int batchSize;
+
+	/** Primitive floating point cells of the current batch. */
+	private final double[][] doubles;
+	/** Primitive integer cells of the current batch. */
+	private final long[][] longs;
+	/** Other cells of the current batch. */
+	private final Object[][] objects;
+	/** Flags for empty numeric cells of the current batch. */
+	private final boolean[][] empty;
+	/** Number of rows in the current batch. */
+	private int batchRowCount;
+
+	/** Content of the current cell. */
+	private char[] cell;
+	/** Length of the content of the current cell. */
+	private int cellLength;
+	/** Current state of the parser. */
+	private State state;
+	/** Decides whether the next character is skipped if it is a line feed. */
+	private boolean skipLineFeed;
+	/** Decides whether the current row contains any characters. */
+	private boolean rowPending;
+	/** Index of the current row. */
+	private int rowIndex;
+	/** Index of the current column. */
+	private int colIndex;
+
+	/**
+	 * Initializes a new parser that adds all rows to the specified data sink.
+	 * @param separator Character that separates columns.
+	 * @param types Data types of the columns.
+	 * @param target Data sink that receives the rows.
+	 */
+	public CSVParser(char separator, Class<? extends Comparable<?>>[] types,
+			MutableDataSource target) {
+		this(separator, types, target, BATCH_SIZE);
+	}
+
+	/**
+	 * Initializes a new parser that adds all rows to the specified data sink
+	 * in batches of the specified size.
+	 * @param separator Character that separates columns.
+	 * @param types Data types of the columns.
+	 * @param target Data sink that receives the rows.
+	 * @param batchSize Maximal number of rows that are added at once.
+	 */
+	public CSVParser(char separator, Class<? extends Comparable<?>>[] types,
+			MutableDataSource target, int batchSize) {
+		this(new CSVSchema(separator, types), target, null, batchSize);
+	}
+
+	/**
+	 * Initializes a new parser for the specified schema that adds all rows
+	 * to the specified data sink.
+	 * @param schema Separator and column types.
+	 * @param target Data sink that receives the rows.
+	 */
+	public CSVParser(CSVSchema schema, MutableDataSource target) {
+		this(schema, target, null, BATCH_SIZE);
+	}
+
+	/**
+	 * Initializes a new parser that appends all rows to the specified list.
+	 * @param separator Character that separates columns.
+	 * @param types Data types of the columns.
+	 * @param rows List that receives the rows.
+	 */
+	public CSVParser(char separator, Class<? extends Comparable<?>>[] types,
+			List<List<Comparable<?>>> rows) {
+		this(new CSVSchema(separator, types), null, rows, BATCH_SIZE);
+	}
+
+	/**
+	 * Initializes a new parser for the specified schema that appends all
+	 * rows to the specified list.
+	 * @param schema Separator and column types.
+	 * @param rows List that receives the rows.
+	 */
+	public CSVParser(CSVSchema schema, List<List<Comparable<?>>> rows) {
+		this(schema, null, rows, BATCH_SIZE);
+	}
+
+	/**
+	 * Initializes a new parser that adds all rows either to the specified
+	 * data sink or to the specified list.
+	 * @param schema Separator and column types.
+	 * @param target Data sink that receives the rows, or {@code null}.
+	 * @param rows List that receives the rows if there is no data sink.
+	 * @param batchSize Maximal number of rows that are added at once.
+	 */
+	private CSVParser(CSVSchema schema, MutableDataSource target,
+			List<List<Comparable<?>>> rows, int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid batch size: {0,number,integer}", batchSize)); //$NON-NLS-1$
+		}
+		separator = schema.getSeparator();
+		types = schema.getColumnTypes();
+		this.target = target;
+		this.rows = rows;
+		this.batchSize = batchSize;
+
+		kinds = new Kind[types.length];
+		parseMethods = new Method[types.length];
+		doubles = new double[types.length][];
+		longs = new long[types.length][];
+		objects = new Object[types.length][];
+		empty = new boolean[types.length][];
+		for (int col = 0; col < types.length; col++) {
+			Kind kind = schema.isTimestamp(col) ? Kind.TIMESTAMP : getKind(types[col]);
+			kinds[col] = kind;
+			if (kind == Kind.DOUBLE) {
+				doubles[col] = new double[batchSize];
+				empty[col] = new boolean[batchSize];
+			} else if (kind == Kind.STRING || kind == Kind.OTHER) {
+				objects[col] = new Object[batchSize];
+				if (kind == Kind.OTHER) {
+					parseMethods[col] = getParseMethod(types[col]);
+				}
+			} else {
+				longs[col] = new long[batchSize];
+				empty[col] = new boolean[batchSize];
+			}
+		}
+
+		cell = new char[64];
+		state = State.UNQUOTED;
+	}
+
+	/**
+	 * Returns how the cells of a column with the specified type are stored.
+	 * @param type Data type of the column.
+	 * @return Storage kind.
+	 */
+	private static Kind getKind(Class<?> type) {
+		if (Double.class.equals(type)) {
+			return Kind.DOUBLE;
+		} else if (Long.class.equals(type)) {
+			return Kind.LONG;
+		} else if (Integer.class.equals(type)) {
+			return Kind.INTEGER;
+		} else if (Short.class.equals(type)) {
+			return Kind.SHORT;
+		} else if (Byte.class.equals(type)) {
+			return Kind.BYTE;
+		} else if (String.class.equals(type)) {
+			return Kind.STRING;
+		}
+		return Kind.OTHER;
+	}
+
+	/**
+	 * Parses all content of the specified reader and adds all remaining rows
+	 * to the data sink.
+	 * @param reader Reader that provides the content.
+	 * @throws IOException when the content is not valid or when experiencing
+	 *         an error during read operations.
+	 */
+	public void parse(Reader reader) throws IOException {
+		char[] buffer = new char[CHUNK_SIZE];
+		int length;
+		while ((length = reader.read(buffer)) != -1) {
+			parse(buffer, 0, length);
+		}
+		finish();
+	}
+
+	/**
+	 * Parses a chunk of content. Rows are added to the data sink as soon as a
+	 * batch is complete.
+	 * @param chars Buffer that contains the content.
+	 * @param offset Index of the first character.
+	 * @param length Number of characters.
+	 * @throws IOException when the content is not valid.
+	 */
+	public void parse(char[] chars, int offset, int length) throws IOException {
+		int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			char c = chars[i];
+			if (skipLineFeed) {
+				skipLineFeed = false;
+				if (c == '\n') {
+					continue;
+				}
+			}
+			rowPending = true;
+
+			if (state == State.QUOTED) {
+				if (c == '"') {
+					state = State.QUOTE;
+				} else {
+					append(c);
+				}
+				continue;
+			} else if (state == State.QUOTE) {
+				state = State.UNQUOTED;
+				if (c == '"') {
+					// Escaped quote
+					state = State.QUOTED;
+					append(c);
+					continue;
+				}
+			}
+
+			if (c == separator) {
+				endCell();
+			} else if (c == '\n') {
+				endRow();
+			} else if (c == '\r') {
+				endRow();
+				skipLineFeed = true;
+			} else if (c == '"') {
+				state = State.QUOTED;
+			} else {
+				append(c);
+			}
+		}
+	}
+
+	/**
+	 * Finishes the last row if there was no trailing line break and adds all
+	 * remaining rows to the data sink.
+	 * @throws IOException when the content is not valid.
+	 */
+	public void finish() throws IOException {
+		if (rowPending) {
+			endRow();
+		}
+		flush();
+	}
+
+	/**
+	 * Returns the number of rows that have been parsed completely.
+	 * @return Number of rows.
+	 */
+	public int getRowCount() {
+		return rowIndex;
+	}
+
+	/**
+	 * Sets the number of rows that have been parsed before the content that
+	 * is passed to this parser. The number is used for the line numbers in
+	 * error messages.
+	 * @param rowCount Number of rows that have been parsed before.
+	 */
+	public void setRowCount(int rowCount) {
+		rowIndex = rowCount;
+	}
+
+	/**
+	 * Appends a character to the content of the current cell.
+	 * @param c Character.
+	 */
+	private void append(char c) {
+		if (cellLength == cell.length) {
+			cell = Arrays.copyOf(cell, 2*cell.length);
+		}
+		cell[cellLength++] = c;
+	}
+
+	/**
+	 * Stores the content of the current cell in the current batch.
+	 * @throws IOException if the content doesn't match the column type.
+	 */
+	private void endCell() throws IOException {
+		// Check for a valid number of columns
+		if (colIndex >= types.length) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Too many columns in line {0,number,integer}: got {1,number,integer}, but expected {2,number,integer}.", //$NON-NLS-1$
+				rowIndex + 1, colIndex + 1, types.length));
+		}
+
+		// Trim white space
+		int start = 0;
+		int end = cellLength;
+		while (start < end && cell[start] <= ' ') {
+			start++;
+		}
+		while (end > start && cell[end - 1] <= ' ') {
+			end--;
+		}
+
+		int row = batchRowCount;
+		int col = colIndex;
+		Kind kind = kinds[col];
+		if (kind == Kind.STRING) {
+			objects[col][row] = new String(cell, start, end - start);
+		} else if (kind == Kind.OTHER) {
+			objects[col][row] = parseOther(start, end);
+		} else if (start == end) {
+			empty[col][row] = true;
+		} else if (kind == Kind.DOUBLE) {
+			empty[col][row] = false;
+			doubles[col][row] = parseDouble(start, end);
+		} else if (kind == Kind.TIMESTAMP) {
+			empty[col][row] = false;
+			longs[col][row] = parseTimestamp(start, end);
+		} else {
+			empty[col][row] = false;
+			longs[col][row] = parseLong(kind, start, end);
+		}
+
+		colIndex++;
+		cellLength = 0;
+	}
+
+	/**
+	 * Finishes the current row and adds the current batch to the data sink
+	 * if it is complete.
+	 * @throws IOException if the content of a cell doesn't match the column
+	 *         type.
+	 */
+	private void endRow() throws IOException {
+		endCell();
+		// Check for a valid number of columns
+		if (colIndex < types.length) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Not enough columns in line {0,number,integer}: got {1,number,integer}, but expected {2,number,integer}.", //$NON-NLS-1$
+				rowIndex + 1, colIndex, types.length));
+		}
+		colIndex = 0;
+		rowIndex++;
+		rowPending = false;
+		batchRowCount++;
+		if (batchRowCount == batchSize) {
+			flush();
+		}
+	}
+
+	/**
+	 * Adds all rows of the current batch to the data sink.
+	 */
+	private void flush() {
+		if (batchRowCount == 0) {
+			return;
+		}
+		List<List<Comparable<?>>> batch = new ArrayList<>(batchRowCount);
+		for (int row = 0; row < batchRowCount; row++) {
+			Comparable<?>[] values = new Comparable<?>[types.length];
+			for (int col = 0; col < values.length; col++) {
+				values[col] = getValue(col, row);
+			}
+			batch.add(Arrays.asList(values));
+		}
+		batchRowCount = 0;
+		if (target != null) {
+			DataUtils.addAll(target, batch);
+		} else {
+			rows.addAll(batch);
+		}
+	}
+
+	/**
+	 * Returns the value of a cell in the current batch.
+	 * @param col Column index.
+	 * @param row Row index in the current batch.
+	 * @return Boxed value.
+	 */
+	private Comparable<?> getValue(int col, int row) {
+		Kind kind = kinds[col];
+		if (kind == Kind.STRING || kind == Kind.OTHER) {
+			Comparable<?> value = (Comparable<?>) objects[col][row];
+			objects[col][row] = null;
+			return value;
+		} else if (empty[col][row]) {
+			return null;
+		}
+		switch (kind) {
+			case DOUBLE:
+				return doubles[col][row];
+			case LONG:
+			case TIMESTAMP:
+				return longs[col][row];
+			case INTEGER:
+				return (int) longs[col][row];
+			case SHORT:
+				return (short) longs[col][row];
+			default:
+				return (byte) longs[col][row];
+		}
+	}
+
+	/**
+	 * Parses a floating point number in the current cell. Decimal numbers
+	 * with up to 18 significant digits whose value and power of ten can be
+	 * represented exactly are converted without creating a string. All
+	 * other notations are parsed by {@link Double#parseDouble(String)}.
+	 * @param start Index of the first character.
+	 * @param end Index after the last character.
+	 * @return Parsed value.
+	 * @throws IOException if the content isn't a valid number.
+	 */
+	private double parseDouble(int start, int end) throws IOException {
+		int i = start;
+		boolean negative = false;
+		if (cell[i] == '-' || cell[i] == '+') {
+			negative = cell[i] == '-';
+			i++;
+		}
+
+		long mantissa = 0L;
+		int digits = 0;
+		int exponent = 0;
+		boolean exact = true;
+		boolean hasDigits = false;
+		// Integer part
+		for (; i < end && cell[i] >= '0' && cell[i] <= '9'; i++) {
+			hasDigits = true;
+			if (digits < MAX_DIGITS) {
+				mantissa = 10L*mantissa + (cell[i] - '0');
+				if (mantissa != 0L) {
+					digits++;
+				}
+			} else {
+				exponent++;
+				exact = false;
+			}
+		}
+		// Fractional part
+		if (i < end && cell[i] == '.') {
+			i++;
+			for (; i < end && cell[i] >= '0' && cell[i] <= '9'; i++) {
+				hasDigits = true;
+				if (digits < MAX_DIGITS) {
+					mantissa = 10L*mantissa + (cell[i] - '0');
+					exponent--;
+					if (mantissa != 0L) {
+						digits++;
+					}
+				} else {
+					exact = false;
+				}
+			}
+		}
+		// Exponent
+		if (hasDigits && i < end && (cell[i] == 'e' || cell[i] == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && (cell[i] == '-' || cell[i] == '+')) {
+				negativeExponent = cell[i] == '-';
+				i++;
+			}
+			int exponentValue = 0;
+			boolean hasExponentDigits = false;
+			for (; i < end && cell[i] >= '0' && cell[i] <= '9'; i++) {
+				hasExponentDigits = true;
+				if (exponentValue < 10000) {
+					exponentValue = 10*exponentValue + (cell[i] - '0');
+				}
+			}
+			if (!hasExponentDigits) {
+				exact = false;
+			}
+			exponent += negativeExponent ? -exponentValue : exponentValue;
+		}
+
+		if (hasDigits && exact && i == end && mantissa <= MAX_EXACT_MANTISSA &&
+				Math.abs(exponent) < POWERS_OF_TEN.length) {
+			double value = mantissa;
+			if (exponent >= 0) {
+				value *= POWERS_OF_TEN[exponent];
+			} else {
+				value /= POWERS_OF_TEN[-exponent];
+			}
+			return negative ? -value : value;
+		}
+
+		String content = new String(cell, start, end - start);
+		try {
+			return Double.parseDouble(content);
+		} catch (NumberFormatException e) {
+			throw getTypeMismatch(content);
+		}
+	}
+
+	/**
+	 * Parses an integer number of the specified kind in the current cell.
+	 * Decimal numbers with up to 18 digits are converted without creating a
+	 * string. All other notations are parsed by the methods of the
+	 * respective type.
+	 * @param kind Storage kind of the column.
+	 * @param start Index of the first character.
+	 * @param end Index after the last character.
+	 * @return Parsed value.
+	 * @throws IOException if the content isn't a valid number of the
+	 *         specified kind.
+	 */
+	private long parseLong(Kind kind, int start, int end) throws IOException {
+		int i = start;
+		boolean negative = false;
+		if (cell[i] == '-' || cell[i] == '+') {
+			negative = cell[i] == '-';
+			i++;
+		}
+		long value = 0L;
+		boolean valid = i < end && end - i <= MAX_DIGITS;
+		for (; valid && i < end; i++) {
+			char c = cell[i];
+			if (c < '0' || c > '9') {
+				valid = false;
+			}
+			value = 10L*value + (c - '0');
+		}
+		if (valid) {
+			value = negative ? -value : value;
+			if (kind == Kind.LONG
+					|| (kind == Kind.INTEGER && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+					|| (kind == Kind.SHORT && value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+					|| (kind == Kind.BYTE && value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)) {
+				return value;
+			}
+		}
+
+		String content = new String(cell, start, end - start);
+		try {
+			switch (kind) {
+				case LONG:
+					return Long.parseLong(content);
+				case INTEGER:
+					return Integer.parseInt(content);
+				case SHORT:
+					return Short.parseShort(content);
+				default:
+					return Byte.parseByte(content);
+			}
+		} catch (NumberFormatException e) {
+			throw getTypeMismatch(content);
+		}
+	}
+
+	/**
+	 * Parses a timestamp in the current cell.
+	 * @param start Index of the first character.
+	 * @param end Index after the last character.
+	 * @return Milliseconds since 1970-01-01 00:00 UTC.
+	 * @throws IOException if the content isn't a valid timestamp.
+	 */
+	private long parseTimestamp(int start, int end) throws IOException {
+		long value = parseTimestamp(cell, start, end);
+		if (value == INVALID_TIMESTAMP) {
+			throw getTypeMismatch(new String(cell, start, end - start));
+		}
+		return value;
+	}
+
+	/**
+	 * Parses a timestamp in ISO 8601 notation like {@code 2019-12-31},
+	 * {@code 2019-12-31 23:59}, or {@code 2019-12-31T23:59:59.999+01:00}.
+	 * Timestamps without time zone are interpreted as UTC.
+	 * @param chars Characters.
+	 * @param start Index of the first character.
+	 * @param end Index after the last character.
+	 * @return Milliseconds since 1970-01-01 00:00 UTC, or
+	 *         {@link #INVALID_TIMESTAMP} if the characters are not a valid
+	 *         timestamp.
+	 */
+	static long parseTimestamp(char[] chars, int start, int end) {
+		// Date
+		if (end - start < 10 || chars[start + 4] != '-' || chars[start + 7] != '-') {
+			return INVALID_TIMESTAMP;
+		}
+		int year = parseDigits(chars, start, 4);
+		int month = parseDigits(chars, start + 5, 2);
+		int day = parseDigits(chars, start + 8, 2);
+		if (year < 0 || month < 1 || month > 12 || day < 1 ||
+				day > getDaysInMonth(year, month)) {
+			return INVALID_TIMESTAMP;
+		}
+		int i = start + 10;
+
+		// Time
+		long millis = 0L;
+		if (i < end && (chars[i] == 'T' || chars[i] == ' ')) {
+			if (end - i < 6 || chars[i + 3] != ':') {
+				return INVALID_TIMESTAMP;
+			}
+			int hour = parseDigits(chars, i + 1, 2);
+			int minute = parseDigits(chars, i + 4, 2);
+			int second = 0;
+			i += 6;
+			if (i < end && chars[i] == ':') {
+				second = (end - i >= 3) ? parseDigits(chars, i + 1, 2) : -1;
+				i += 3;
+				if (i < end && (chars[i] == '.' || chars[i] == ',')) {
+					i++;
+					int fractionStart = i;
+					for (int scale = 100; i < end && chars[i] >= '0' && chars[i] <= '9'; i++) {
+						millis += scale*(chars[i] - '0');
+						scale /= 10;
+					}
+					if (i == fractionStart) {
+						return INVALID_TIMESTAMP;
+					}
+				}
+			}
+			if (hour < 0 || hour > 23 || minute < 0 || minute > 59 ||
+					second < 0 || second > 59) {
+				return INVALID_TIMESTAMP;
+			}
+			millis += ((hour*60L + minute)*60L + second)*1000L;
+
+			// Time zone
+			if (i < end && chars[i] == 'Z') {
+				i++;
+			} else if (i < end && (chars[i] == '+' || chars[i] == '-')) {
+				int sign = (chars[i] == '-') ? -1 : 1;
+				if (end - i < 3) {
+					return INVALID_TIMESTAMP;
+				}
+				int offsetHours = parseDigits(chars, i + 1, 2);
+				int offsetMinutes = 0;
+				i += 3;
+				if (i < end) {
+					if (chars[i] == ':') {
+						i++;
+					}
+					offsetMinutes = (end - i >= 2) ? parseDigits(chars, i, 2) : -1;
+					i += 2;
+				}
+				if (offsetHours < 0 || offsetHours > 23 ||
+						offsetMinutes < 0 || offsetMinutes > 59) {
+					return INVALID_TIMESTAMP;
+				}
+				millis -= sign*(offsetHours*60L + offsetMinutes)*60L*1000L;
+			}
+		}
+		if (i != end) {
+			return INVALID_TIMESTAMP;
+		}
+		return getEpochDay(year, month, day)*MILLIS_PER_DAY + millis;
+	}
+
+	/**
+	 * Parses a fixed number of decimal digits.
+	 * @param chars Characters.
+	 * @param start Index of the first digit.
+	 * @param count Number of digits.
+	 * @return Parsed value, or {@code -1} if a character isn't a digit.
+	 */
+	private static int parseDigits(char[] chars, int start, int count) {
+		int value = 0;
+		for (int i = start; i < start + count; i++) {
+			char c = chars[i];
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = 10*value + (c - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the number of days in a month of the Gregorian calendar.
+	 * @param year Year.
+	 * @param month Month from 1 to 12.
+	 * @return Number of days.
+	 */
+	private static int getDaysInMonth(int year, int month) {
+		if (month == 2) {
+			boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+			return leap ? 29 : 28;
+		}
+		return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+	}
+
+	/**
+	 * Returns the number of days between 1970-01-01 and the specified date
+	 * of the proleptic Gregorian calendar.
+	 * @param year Year.
+	 * @param month Month from 1 to 12.
+	 * @param day Day of month.
+	 * @return Number of days.
+	 */
+	private static long getEpochDay(int year, int month, int day) {
+		// Count years from March so that leap days are at the end of a year
+		long y = (month <= 2) ? year - 1 : year;
+		long era = ((y >= 0L) ? y : y - 399L)/400L;
+		long yearOfEra = y - era*400L;
+		long dayOfYear = (153L*(month > 2 ? month - 3 : month + 9) + 2L)/5L + day - 1L;
+		long dayOfEra = 365L*yearOfEra + yearOfEra/4L - yearOfEra/100L + dayOfYear;
+		return era*146097L + dayOfEra - 719468L;
+	}
+
+	/**
+	 * Parses the current cell with the parse method of its column.
+	 * @param start Index of the first character.
+	 * @param end Index after the last character.
+	 * @return Parsed value, or {@code null} if the cell is empty and cannot
+	 *         be parsed.
+	 * @throws IOException if the content doesn't match the column type.
+	 */
+	private Comparable<?> parseOther(int start, int end) throws IOException {
+		Method parseMethod = parseMethods[colIndex];
+		String content = new String(cell, start, end - start);
+		if (parseMethod == null) {
+			throw new RuntimeException(MessageFormat.format(
+				"Could not find method for parsing data type {0} in column {1,number,integer}.", //$NON-NLS-1$
+				types[colIndex].getSimpleName(), colIndex));
+		}
+		try {
+			return (Comparable<?>) parseMethod.invoke(null, content);
+		} catch (IllegalArgumentException e) {
+			throw new RuntimeException(MessageFormat.format(
+				"Could not invoke method for parsing data type {0} in column {1,number,integer}.", //$NON-NLS-1$
+				types[colIndex].getSimpleName(), colIndex));
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(MessageFormat.format(
+				"Could not access method for parsing data type {0} in column {1,number,integer}.", //$NON-NLS-1$
+				types[colIndex].getSimpleName(), colIndex));
+		} catch (InvocationTargetException e) {
+			if (content.isEmpty()) {
+				return null;
+			}
+			throw getTypeMismatch(content);
+		}
+	}
+
+	/**
+	 * Returns an exception for cell content that doesn't match the type of
+	 * the current column.
+	 * @param content Cell content.
+	 * @return Exception describing the mismatch.
+	 */
+	private IOException getTypeMismatch(String content) {
+		return new IOException(MessageFormat.format(
+			"Type mismatch in line {0,number,integer}, column {1,number,integer}: got \"{2}\", but expected {3} value.", //$NON-NLS-1$
+			rowIndex + 1, colIndex + 1, content, types[colIndex].getSimpleName()));
+	}
+
+	/**
+	 * Returns a method that can return a parsed value of the specified type.
+	 * @param c Desired type.
+	 * @return Method that parses a data type.
+	 */
+	static Method getParseMethod(Class<?> c) {
+		Method parse = null;
+
+		if (String.class.isAssignableFrom(c)) {
+			try {
+				parse = String.class.getMethod("valueOf", Object.class);
+			} catch (NoSuchMethodException e) {
+			}
+		} else {
+			for (Method m : c.getMethods()) {
+				boolean isStatic = m.toString().contains("static"); //$NON-NLS-1$
+				if (!isStatic) {
+					continue;
+				}
+				Class<?>[] types = m.getParameterTypes();
+				boolean hasStringParameter =
+					(types.length == 1) && String.class.equals(types[0]);
+				if (!hasStringParameter) {
+					continue;
+				}
+				// Check method name for a pattern like "parseInt*" for Integer or
+				// "parseSho*" for Short to avoid collisions
+				if (!m.getName().startsWith("parse" + c.getSimpleName().substring(0, 3))) {  //$NON-NLS-1$
+					continue;
+				}
+				parse = m;
+			}
+		}
+
+		return parse;
+	}
+}
@@ -21,24 +21,23 @@
  */
 package de.erichseifert.gral.io.data;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.text.MessageFormat;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Scanner;
-import java.util.regex.Pattern;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import de.erichseifert.gral.data.DataSource;
 import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.MutableDataSource;
 import de.erichseifert.gral.io.IOCapabilities;
 import de.erichseifert.gral.util.Messages;
-import de.erichseifert.gral.util.StatefulTokenizer;
-import de.erichseifert.gral.util.StatefulTokenizer.Token;
 
 
 /**
@@ -53,6 +52,18 @@ import de.erichseifert.gral.util.StatefulTokenizer.Token;
  * DataReader reader = factory.get("text/csv");
  * reader.read(new FileInputStream(filename), Integer.class, Double.class);
  * </pre>
+ * <p>Files can also be read with {@link #read(File, Class[])}, which maps the
+ * file to memory and parses it in parallel if a thread pool has been set
+ * with {@link #setPool(ForkJoinPool)}. Files that are appended continuously
+ * can be followed with {@link #follow(File, MutableDataSource)}.</p>
+ * <p>If no column types are passed, the separator, a header row and the
+ * column types are inferred from the first lines of the content. A
+ * separator that has been set explicitly with {@link #SEPARATOR_CHAR} is
+ * always used; the default separator of the MIME type is only preferred
+ * over other separators that divide the lines equally well. Columns
+ * are read as {@code Long}, {@code Double}, or {@code String} values;
+ * timestamps in ISO 8601 notation are read as {@code Long} milliseconds
+ * since 1970-01-01 UTC.</p>
  * @see <a href="http://tools.ietf.org/html/rfc4180">RFC 4180</a>
  */
 public class CSVReader extends AbstractDataReader {
@@ -60,6 +71,41 @@ public class CSVReader extends AbstractDataReader {
 	delimiting character used to separate columns. */
 	public static final String SEPARATOR_CHAR = "separator"; //$NON-NLS-1$
 
+	/** Key for specifying an {@link Integer} value that defines the number
+	of lines that are used to infer the column types if no types are
+	specified. */
+	public static final String SAMPLE_SIZE = "sampleSize"; //$NON-NLS-1$
+
+	/** Default number of lines that are used to infer column types. */
+	private static final int DEFAULT_SAMPLE_SIZE = 10000;
+
+	/** Thread pool that is used to parse files in parallel. */
+	private ForkJoinPool pool;
+
+	/**
+	 * Beginning of CSV content that is used to infer the column types.
+	 */
+	private static final class Sample {
+		/** Characters. */
+		public final char[] chars;
+		/** Number of characters. */
+		public final int length;
+		/** Decides whether the sample contains all content. */
+		public final boolean complete;
+
+		/**
+		 * Initializes a new sample.
+		 * @param chars Characters.
+		 * @param length Number of characters.
+		 * @param complete Whether the sample contains all content.
+		 */
+		public Sample(char[] chars, int length, boolean complete) {
+			this.chars = chars;
+			this.length = length;
+			this.complete = complete;
+		}
+	}
+
 	static {
 		addCapabilities(new IOCapabilities(
 			"CSV", //$NON-NLS-1$
@@ -77,54 +123,6 @@ public class CSVReader extends AbstractDataReader {
 		));
 	}
 
-	/**
-	 * Token types for analyzing CSV or TSV input.
-	 */
-	private enum CSVTokenType {
-		/** Type for text tokens containing empty content. */
-		EMPTY_SPACE,
-		/** Type for text tokens containing value content. */
-		TEXT,
-		/** Type for quotes that may wrap value content. */
-		QUOTE,
-		/** Type for row separators. */
-		ROW_SEPARATOR,
-		/** Type for column separators. */
-		COLUMN_SEPARATOR,
-	}
-
-	/**
-	 *
-	 */
-	private static final class CSVTokenizer extends StatefulTokenizer {
-		/**
-		 * Initializes a new tokenizer instance with a grammar to analyze CSV
-		 * or TSV content. The character that separates columns must be
-		 * provided.
-		 * @param separator Column separator character.
-		 */
-		public CSVTokenizer(char separator) {
-			addJoinedType(CSVTokenType.TEXT);
-			addIgnoredType(CSVTokenType.QUOTE);
-
-			// Basic Set of rules for analyzing CSV content
-			putRules(
-				new Rule("\n|\r\n|\r", CSVTokenType.ROW_SEPARATOR),
-				new Rule(Pattern.quote(String.valueOf(separator)),
-						CSVTokenType.COLUMN_SEPARATOR),
-				new Rule("\"", CSVTokenType.QUOTE, "quoted"),
-				new Rule("[ \t]+", CSVTokenType.EMPTY_SPACE),
-				new Rule(".", CSVTokenType.TEXT)
-			);
-			// Set of rules that is valid inside quoted content
-			putRules("quoted",
-				new Rule("(\")\"", CSVTokenType.TEXT),
-				new Rule("\"", CSVTokenType.QUOTE, "#pop"),
-				new Rule(".", CSVTokenType.TEXT)
-			);
-		}
-	}
-
 	/**
 	 * Creates a new instance with the specified MIME type. The delimiter is
 	 * set depending on the MIME type parameter. By default a comma is used as
@@ -138,10 +136,14 @@ public class CSVReader extends AbstractDataReader {
 		} else {
 			setDefault(SEPARATOR_CHAR, ',');
 		}
+		setDefault(SAMPLE_SIZE, DEFAULT_SAMPLE_SIZE);
 	}
 
 	/**
-	 * Returns a DataSource that was imported.
+	 * Returns a DataSource that was imported. If no types are specified, the
+	 * separator, a header row, and the column types are inferred from the
+	 * first lines of the input. The number of lines is defined by the
+	 * setting {@link #SAMPLE_SIZE}.
 	 * @param input Input to be read.
 	 * @param types Number types for the columns of the DataSource.
 	 * @return DataSource Imported data.
@@ -150,141 +152,150 @@ public class CSVReader extends AbstractDataReader {
 	 */
 	public DataSource read(InputStream input, Class<? extends Comparable<?>>... types)
 			throws IOException {
-		// Read all contents from the input stream
-		Scanner scanner = new Scanner(input).useDelimiter("\\Z");
-		String content = scanner.next();
+		return read(new InputStreamReader(input), types);
+	}
 
-		// Tokenize the string
+	/**
+	 * Returns a DataSource that was imported from the specified file. The
+	 * file is mapped to memory and parsed in parallel if a thread pool has
+	 * been set. Files that are larger than 2 GiB are mapped in several
+	 * windows. Files that use a character set which cannot be divided at
+	 * single bytes are read sequentially.
+	 * The platform's default character set is used. If no types are
+	 * specified, they are inferred like in
+	 * {@link #read(InputStream, Class[])}.
+	 * @param file File to be read.
+	 * @param types Number types for the columns of the DataSource.
+	 * @return DataSource Imported data.
+	 * @throws IOException when the file format is not valid or when
+	 *         experiencing an error during file operations.
+	 */
+	public DataSource read(File file, Class<? extends Comparable<?>>... types)
+			throws IOException {
 		Character separator = getSetting(SEPARATOR_CHAR);
-		CSVTokenizer tokenizer = new CSVTokenizer(separator);
-		List<Token> tokens = tokenizer.tokenize(content);
-
-		// Add row token if there was no trailing line break
-		Token lastToken = tokens.get(tokens.size() - 1);
-		if (lastToken.getType() != CSVTokenType.ROW_SEPARATOR) {
-			Token eof = new Token(lastToken.getEnd(), lastToken.getEnd(),
-				CSVTokenType.ROW_SEPARATOR, "");
-			tokens.add(eof);
-		}
-
-		// Find methods for all column data types that can be used to convert
-		// the text to the column data type
-		Map<Class<? extends Comparable<?>>, Method> parseMethods =
-				new HashMap<>();
-		for (Class<? extends Comparable<?>> type : types) {
-			if (parseMethods.containsKey(type)) {
-				continue;
+		Charset charset = Charset.defaultCharset();
+		try (FileChannel channel = FileChannel.open(
+				file.toPath(), StandardOpenOption.READ)) {
+			if (!MappedCSVParser.isSupported(charset)) {
+				return read(new InputStreamReader(
+					Channels.newInputStream(channel), charset), types);
 			}
-			Method parseMethod = getParseMethod(type);
-			if (parseMethod != null) {
-				parseMethods.put(type, parseMethod);
+
+			CSVSchema schema;
+			if (types.length > 0) {
+				schema = new CSVSchema(separator, types);
+			} else {
+				Sample sample = readSample(new InputStreamReader(
+					Channels.newInputStream(channel), charset));
+				schema = CSVSchema.infer(
+					sample.chars, sample.length, sample.complete, separator,
+					isSettingSet(SEPARATOR_CHAR));
 			}
+			DataTable data = new DataTable(schema.getColumnTypes());
+			MappedCSVParser parser = new MappedCSVParser(
+				schema, charset, getPool(), MappedCSVParser.MIN_CHUNK_SIZE);
+			parser.parse(channel, schema.hasHeader(), data);
+			return data;
 		}
+	}
 
-		// Process the data and store the data.
-		DataTable data = new DataTable(types);
-		List<Comparable<?>> row = new LinkedList<>();
-		int rowIndex = 0;
-		int colIndex = 0;
-		StringBuilder cellContent = new StringBuilder();
-		for (Token token : tokens) {
-			if (token.getType() == CSVTokenType.TEXT ||
-					token.getType() == CSVTokenType.EMPTY_SPACE) {
-				// Store the token text
-				cellContent.append(token.getContent());
-			} else if (token.getType() == CSVTokenType.COLUMN_SEPARATOR ||
-					token.getType() == CSVTokenType.ROW_SEPARATOR) {
-				// Check for a valid number of columns
-				if (colIndex >= types.length) {
-					throw new IllegalArgumentException(MessageFormat.format(
-						"Too many columns in line {0,number,integer}: got {1,number,integer}, but expected {2,number,integer}.", //$NON-NLS-1$
-						rowIndex + 1, colIndex + 1, types.length));
-				}
-
-				// We need to add the cell to the row in both cases because
-				// rows don't have a trailing column token
-				Class<? extends Comparable<?>> colType = types[colIndex];
-				Method parseMethod = parseMethods.get(colType);
-				Comparable<?> cell = null;
-				try {
-					cell = (Comparable<?>) parseMethod.invoke(
-						null, cellContent.toString().trim());
-
-				} catch (IllegalArgumentException e) {
-					throw new RuntimeException(MessageFormat.format(
-						"Could not invoke method for parsing data type {0} in column {1,number,integer}.", //$NON-NLS-1$
-						types[colIndex].getSimpleName(), colIndex));
-				} catch (IllegalAccessException e) {
-					throw new RuntimeException(MessageFormat.format(
-						"Could not access method for parsing data type {0} in column {1,number,integer}.", //$NON-NLS-1$
-						types[colIndex].getSimpleName(), colIndex));
-				} catch (InvocationTargetException e) {
-					if (cellContent.length() > 0) {
-						throw new IOException(MessageFormat.format(
-							"Type mismatch in line {0,number,integer}, column {1,number,integer}: got \"{2}\", but expected {3} value.", //$NON-NLS-1$
-							rowIndex + 1, colIndex + 1, cellContent.toString(), colType.getSimpleName()));
-					}
-				}
-				row.add(cell);
-				colIndex++;
-
-				if (token.getType() == CSVTokenType.ROW_SEPARATOR) {
-					// Check for a valid number of columns
-					if (row.size() < types.length) {
-						throw new IllegalArgumentException(MessageFormat.format(
-							"Not enough columns in line {0,number,integer}: got {1,number,integer}, but expected {2,number,integer}.", //$NON-NLS-1$
-							rowIndex + 1, row.size(), types.length));
-					}
-
-					// Add the row to the table
-					data.add(row);
-					rowIndex++;
-
-					// Start a new row
-					row.clear();
-					colIndex = 0;
-				}
-				cellContent = new StringBuilder();
-			}
+	/**
+	 * Returns a DataSource that was imported from the specified reader. If
+	 * no types are specified, they are inferred from the first lines.
+	 * @param reader Reader that provides the content.
+	 * @param types Number types for the columns of the DataSource.
+	 * @return DataSource Imported data.
+	 * @throws IOException when the file format is not valid or when
+	 *         experiencing an error during file operations.
+	 */
+	private DataSource read(Reader reader, Class<? extends Comparable<?>>... types)
+			throws IOException {
+		Character separator = getSetting(SEPARATOR_CHAR);
+		if (types.length > 0) {
+			DataTable data = new DataTable(types);
+			CSVParser parser = new CSVParser(separator, types, data);
+			parser.parse(reader);
+			return data;
 		}
 
+		Sample sample = readSample(reader);
+		CSVSchema schema = CSVSchema.infer(
+			sample.chars, sample.length, sample.complete, separator,
+			isSettingSet(SEPARATOR_CHAR));
+		DataTable data = new DataTable(schema.getColumnTypes());
+		CSVParser parser = new CSVParser(schema, data);
+		int start = 0;
+		if (schema.hasHeader()) {
+			start = CSVSchema.getRowEnd(sample.chars, 0, sample.length);
+		}
+		parser.parse(sample.chars, start, sample.length - start);
+		parser.parse(reader);
 		return data;
 	}
 
 	/**
-	 * Returns a method that can return a parsed value of the specified type.
-	 * @param c Desired type.
-	 * @return Method that parses a data type.
+	 * Reads the first lines from the specified reader. The number of lines
+	 * is defined by the setting {@link #SAMPLE_SIZE}.
+	 * @param reader Reader that provides the content.
+	 * @return Sample of the content.
+	 * @throws IOException when experiencing an error during read operations.
 	 */
-	private static Method getParseMethod(Class<?> c) {
-		Method parse = null;
-
-		if (String.class.isAssignableFrom(c)) {
-			try {
-				parse = String.class.getMethod("valueOf", Object.class);
-			} catch (NoSuchMethodException e) {
+	private Sample readSample(Reader reader) throws IOException {
+		Number sampleSize = getSetting(SAMPLE_SIZE);
+		char[] chars = new char[CSVParser.CHUNK_SIZE];
+		int length = 0;
+		int lineCount = 0;
+		// A carriage return at the end might be followed by a line feed
+		while (lineCount < sampleSize.intValue() ||
+				(length > 0 && chars[length - 1] == '\r')) {
+			if (length == chars.length) {
+				chars = Arrays.copyOf(chars, 2*chars.length);
 			}
-		} else {
-			for (Method m : c.getMethods()) {
-				boolean isStatic = m.toString().contains("static"); //$NON-NLS-1$
-				if (!isStatic) {
-					continue;
-				}
-				Class<?>[] types = m.getParameterTypes();
-				boolean hasStringParameter =
-					(types.length == 1) && String.class.equals(types[0]);
-				if (!hasStringParameter) {
-					continue;
-				}
-				// Check method name for a pattern like "parseInt*" for Integer or
-				// "parseSho*" for Short to avoid collisions
-				if (!m.getName().startsWith("parse" + c.getSimpleName().substring(0, 3))) {  //$NON-NLS-1$
-					continue;
+			int count = reader.read(chars, length, chars.length - length);
+			if (count == -1) {
+				return new Sample(chars, length, true);
+			}
+			for (int i = length; i < length + count; i++) {
+				// A carriage return followed by a line feed ends one line
+				if (chars[i] == '\r' ||
+						(chars[i] == '\n' && (i == 0 || chars[i - 1] != '\r'))) {
+					lineCount++;
 				}
-				parse = m;
 			}
+			length += count;
 		}
+		return new Sample(chars, length, false);
+	}
 
-		return parse;
+	/**
+	 * Returns an object that follows the specified file and adds all rows
+	 * that are appended to the file to the specified data sink. The column
+	 * types of the data sink are used to parse the rows. The file isn't read
+	 * before {@link CSVFollower#poll()} or {@link CSVFollower#start()} is
+	 * called.
+	 * @param file File to be followed.
+	 * @param target Data sink that receives the rows.
+	 * @return Object that follows the file.
+	 */
+	public CSVFollower follow(File file, MutableDataSource target) {
+		Character separator = getSetting(SEPARATOR_CHAR);
+		return new CSVFollower(file, separator, target);
+	}
+
+	/**
+	 * Returns the thread pool that is used to parse files in parallel.
+	 * @return Thread pool, or {@code null} if files are parsed sequentially.
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Sets the thread pool that is used to parse files in parallel.
+	 * @param pool Thread pool, or {@code null} if files should be parsed
+	 *        sequentially.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
 	}
 }
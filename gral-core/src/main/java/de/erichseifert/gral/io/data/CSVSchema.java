@@ -0,0 +1,532 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Class that describes the layout of CSV or TSV content: the character
+ * that separates columns, the data types of the columns, which columns
+ * contain timestamps, and the names of the columns if the content starts
+ * with a header row.</p>
+ * <p>A schema can be inferred from a sample of the content with
+ * {@link #infer(char[], int, boolean, char)}. Columns are detected as
+ * {@code Long}, {@code Double}, timestamps that are stored as {@code Long}
+ * milliseconds, or {@code String} values.</p>
+ */
+final class CSVSchema {
+	/** Characters that are tried when the separator is detected. */
+	private static final char[] SEPARATORS = {',', ';', '\t', '|'};
+
+	/** Character that separates columns. */
+	private final char separator;
+	/** Data types of the columns. */
+	private final Class<? extends Comparable<?>>[] types;
+	/** Flags for columns that contain timestamps. */
+	private final boolean[] timestamps;
+	/** Names of the columns, or {@code null} if there is no header. */
+	private final String[] header;
+
+	/**
+	 * Initializes a new schema without timestamps and header.
+	 * @param separator Character that separates columns.
+	 * @param types Data types of the columns.
+	 */
+	public CSVSchema(char separator, Class<? extends Comparable<?>>[] types) {
+		this(separator, types, new boolean[types.length], null);
+	}
+
+	/**
+	 * Initializes a new schema.
+	 * @param separator Character that separates columns.
+	 * @param types Data types of the columns.
+	 * @param timestamps Flags for columns that contain timestamps. The
+	 *        types of these columns must be {@code Long}.
+	 * @param header Names of the columns, or {@code null} if there is no
+	 *        header.
+	 */
+	public CSVSchema(char separator, Class<? extends Comparable<?>>[] types,
+			boolean[] timestamps, String[] header) {
+		this.separator = separator;
+		this.types = Arrays.copyOf(types, types.length);
+		this.timestamps = Arrays.copyOf(timestamps, types.length);
+		this.header = (header != null) ? Arrays.copyOf(header, header.length) : null;
+		for (int col = 0; col < types.length; col++) {
+			if (this.timestamps[col] && !Long.class.equals(types[col])) {
+				throw new IllegalArgumentException(
+					"Timestamps must be stored in Long columns: " + types[col]); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * Returns the character that separates columns.
+	 * @return Separator.
+	 */
+	public char getSeparator() {
+		return separator;
+	}
+
+	/**
+	 * Returns the data types of the columns.
+	 * @return Data types.
+	 */
+	public Class<? extends Comparable<?>>[] getColumnTypes() {
+		return Arrays.copyOf(types, types.length);
+	}
+
+	/**
+	 * Returns whether the specified column contains timestamps.
+	 * @param col Column index.
+	 * @return {@code true} if the column contains timestamps, otherwise
+	 *         {@code false}.
+	 */
+	public boolean isTimestamp(int col) {
+		return timestamps[col];
+	}
+
+	/**
+	 * Returns whether the content starts with a header row.
+	 * @return {@code true} if there is a header, otherwise {@code false}.
+	 */
+	public boolean hasHeader() {
+		return header != null;
+	}
+
+	/**
+	 * Returns the names of the columns.
+	 * @return Names of the columns, or {@code null} if there is no header.
+	 */
+	public String[] getHeader() {
+		return (header != null) ? Arrays.copyOf(header, header.length) : null;
+	}
+
+	/**
+	 * Infers a schema from a sample of CSV or TSV content. The separator is
+	 * inferred like with
+	 * {@link #infer(char[], int, boolean, char, boolean)}, and the specified
+	 * separator is only preferred over other separators that divide the
+	 * rows equally well.
+	 * @param chars Sample content.
+	 * @param length Number of characters in the sample.
+	 * @param complete Whether the sample contains all content. Otherwise,
+	 *        the last row of the sample is ignored as it may be incomplete.
+	 * @param preferredSeparator Separator that is preferred.
+	 * @return Inferred schema.
+	 * @throws IOException if the sample is not valid, or if no separator
+	 *         divides all rows into the same number of columns.
+	 */
+	public static CSVSchema infer(char[] chars, int length, boolean complete,
+			char preferredSeparator) throws IOException {
+		return infer(chars, length, complete, preferredSeparator, false);
+	}
+
+	/**
+	 * Infers a schema from a sample of CSV or TSV content. If the separator
+	 * is fixed, the specified separator is used. Otherwise, the separator is
+	 * the character that occurs the same number of times in all rows of the
+	 * sample and divides them into most columns. Separators that only occur
+	 * as part of cell content, i.e. commas between digits like decimal
+	 * commas, or separators that are followed by a space like in text, are
+	 * only used if there is no other separator. The first row is a header if
+	 * its cells don't match the types of the other rows.
+	 * @param chars Sample content.
+	 * @param length Number of characters in the sample.
+	 * @param complete Whether the sample contains all content. Otherwise,
+	 *        the last row of the sample is ignored as it may be incomplete.
+	 * @param preferredSeparator Separator that is used if it is fixed, or
+	 *        that is preferred over other separators that divide the rows
+	 *        equally well.
+	 * @param fixedSeparator Whether the preferred separator is always used.
+	 * @return Inferred schema.
+	 * @throws IOException if the sample is not valid, or if the separator
+	 *         doesn't divide all rows into the same number of columns.
+	 */
+	@SuppressWarnings("unchecked")
+	public static CSVSchema infer(char[] chars, int length, boolean complete,
+			char preferredSeparator, boolean fixedSeparator) throws IOException {
+		int sampleEnd = complete ? length : getLastRowEnd(chars, length);
+
+		char separator = preferredSeparator;
+		int separatorCount = getSeparatorCount(chars, sampleEnd, preferredSeparator);
+		char raggedSeparator = preferredSeparator;
+		boolean ragged = separatorCount < 0;
+		if (!fixedSeparator) {
+			// Find the separator that divides all rows into most columns,
+			// preferring separators that aren't part of the cell content
+			separatorCount = 0;
+			boolean embedded = true;
+			char[] candidates = new char[SEPARATORS.length + 1];
+			candidates[0] = preferredSeparator;
+			System.arraycopy(SEPARATORS, 0, candidates, 1, SEPARATORS.length);
+			for (char candidate : candidates) {
+				int count = getSeparatorCount(chars, sampleEnd, candidate);
+				if (count < 0) {
+					if (!ragged) {
+						raggedSeparator = candidate;
+						ragged = true;
+					}
+					continue;
+				} else if (count == 0) {
+					continue;
+				}
+				boolean candidateEmbedded = isEmbedded(chars, sampleEnd, candidate);
+				if (separatorCount == 0 || (embedded && !candidateEmbedded) ||
+						(embedded == candidateEmbedded && count > separatorCount)) {
+					separator = candidate;
+					separatorCount = count;
+					embedded = candidateEmbedded;
+				}
+			}
+		}
+		if (ragged && separatorCount <= 0) {
+			throw new IOException(MessageFormat.format(
+				"Inconsistent number of columns: separator \"{0}\" occurs a different number of times in the rows.", //$NON-NLS-1$
+				raggedSeparator));
+		}
+		int columnCount = separatorCount + 1;
+
+		// Split the sample into cells
+		Class<? extends Comparable<?>>[] stringTypes = new Class[columnCount];
+		Arrays.fill(stringTypes, String.class);
+		List<List<Comparable<?>>> rows = new ArrayList<>();
+		CSVParser parser = new CSVParser(new CSVSchema(separator, stringTypes), rows);
+		parser.parse(chars, 0, sampleEnd);
+		parser.finish();
+
+		// Determine column types without the first row
+		ColumnType[] columnTypes = new ColumnType[columnCount];
+		Arrays.fill(columnTypes, ColumnType.EMPTY);
+		for (int row = 1; row < rows.size(); row++) {
+			update(columnTypes, rows.get(row));
+		}
+
+		// The first row is a header if none of its cells matches the types
+		boolean header = false;
+		if (rows.size() >= 2) {
+			boolean mismatch = false;
+			boolean match = false;
+			List<Comparable<?>> first = rows.get(0);
+			for (int col = 0; col < columnCount; col++) {
+				ColumnType type = columnTypes[col];
+				if (type == ColumnType.EMPTY || type == ColumnType.STRING) {
+					continue;
+				}
+				String cell = (String) first.get(col);
+				if (cell.isEmpty() || type.matches(cell)) {
+					match = true;
+				} else {
+					mismatch = true;
+				}
+			}
+			header = mismatch && !match;
+		}
+		if (!header && !rows.isEmpty()) {
+			update(columnTypes, rows.get(0));
+		}
+
+		Class<? extends Comparable<?>>[] types = new Class[columnCount];
+		boolean[] timestamps = new boolean[columnCount];
+		for (int col = 0; col < columnCount; col++) {
+			types[col] = columnTypes[col].getType();
+			timestamps[col] = columnTypes[col] == ColumnType.TIMESTAMP;
+		}
+		String[] names = null;
+		if (header) {
+			names = rows.get(0).toArray(new String[columnCount]);
+		}
+		return new CSVSchema(separator, types, timestamps, names);
+	}
+
+	/**
+	 * Types that are detected for columns. The first types that matches a
+	 * value is the most specific one.
+	 */
+	private enum ColumnType {
+		/** Column without any values. */
+		EMPTY,
+		/** Integer numbers. */
+		LONG,
+		/** Floating point numbers. */
+		DOUBLE,
+		/** Timestamps in ISO 8601 notation. */
+		TIMESTAMP,
+		/** Arbitrary text. */
+		STRING;
+
+		/**
+		 * Returns whether the specified cell content matches this type.
+		 * @param cell Cell content.
+		 * @return {@code true} if the content matches, otherwise
+		 *         {@code false}.
+		 */
+		public boolean matches(String cell) {
+			switch (this) {
+				case LONG:
+					return isLong(cell);
+				case DOUBLE:
+					return isDouble(cell);
+				case TIMESTAMP:
+					char[] chars = cell.toCharArray();
+					return CSVParser.parseTimestamp(chars, 0, chars.length) !=
+						CSVParser.INVALID_TIMESTAMP;
+				default:
+					return this == STRING;
+			}
+		}
+
+		/**
+		 * Returns the data type of columns with this type.
+		 * @return Data type.
+		 */
+		public Class<? extends Comparable<?>> getType() {
+			switch (this) {
+				case LONG:
+				case TIMESTAMP:
+					return Long.class;
+				case DOUBLE:
+					return Double.class;
+				default:
+					return String.class;
+			}
+		}
+	}
+
+	/**
+	 * Generalizes the column types so that they match the cells of the
+	 * specified row.
+	 * @param columnTypes Column types.
+	 * @param row Cells.
+	 */
+	private static void update(ColumnType[] columnTypes, List<Comparable<?>> row) {
+		for (int col = 0; col < columnTypes.length; col++) {
+			String cell = (String) row.get(col);
+			if (cell.isEmpty()) {
+				continue;
+			}
+			ColumnType type = columnTypes[col];
+			if (type == ColumnType.EMPTY) {
+				// Use the most specific type for the first value
+				type = ColumnType.LONG;
+				while (!type.matches(cell)) {
+					type = ColumnType.values()[type.ordinal() + 1];
+				}
+			} else if (!type.matches(cell)) {
+				// Integers are also floating point numbers, but other types
+				// can only be generalized to text
+				boolean isDouble = type == ColumnType.LONG && ColumnType.DOUBLE.matches(cell);
+				type = isDouble ? ColumnType.DOUBLE : ColumnType.STRING;
+			}
+			columnTypes[col] = type;
+		}
+	}
+
+	/**
+	 * Returns whether the specified text is an integer number that fits into
+	 * a {@code long} value.
+	 * @param text Text.
+	 * @return {@code true} if the text is a {@code long} value, otherwise
+	 *         {@code false}.
+	 */
+	private static boolean isLong(String text) {
+		int start = (text.charAt(0) == '-' || text.charAt(0) == '+') ? 1 : 0;
+		int digits = text.length() - start;
+		if (digits == 0) {
+			return false;
+		}
+		for (int i = start; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		if (digits < 19) {
+			return true;
+		}
+		try {
+			Long.parseLong(text);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns whether the specified text is a decimal floating point number.
+	 * @param text Text.
+	 * @return {@code true} if the text is a {@code double} value, otherwise
+	 *         {@code false}.
+	 */
+	private static boolean isDouble(String text) {
+		int i = (text.charAt(0) == '-' || text.charAt(0) == '+') ? 1 : 0;
+		String unsigned = text.substring(i);
+		if ("NaN".equals(unsigned) || "Infinity".equals(unsigned)) { //$NON-NLS-1$ //$NON-NLS-2$
+			return true;
+		}
+		int length = text.length();
+		int digits = 0;
+		for (; i < length && Character.isDigit(text.charAt(i)); i++) {
+			digits++;
+		}
+		if (i < length && text.charAt(i) == '.') {
+			for (i++; i < length && Character.isDigit(text.charAt(i)); i++) {
+				digits++;
+			}
+		}
+		if (digits == 0) {
+			return false;
+		}
+		if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+			i++;
+			if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+				i++;
+			}
+			int exponentStart = i;
+			for (; i < length && Character.isDigit(text.charAt(i)); i++) {
+			}
+			if (i == exponentStart) {
+				return false;
+			}
+		}
+		return i == length;
+	}
+
+	/**
+	 * Returns the number of times the specified character occurs outside of
+	 * quotes in each row.
+	 * @param chars Content.
+	 * @param length Number of characters.
+	 * @param separator Character that is counted.
+	 * @return Number of occurrences per row, {@code 0} if there are no rows,
+	 *         or {@code -1} if the number differs between rows.
+	 */
+	private static int getSeparatorCount(char[] chars, int length, char separator) {
+		int result = -1;
+		int count = 0;
+		boolean quoted = false;
+		boolean rowPending = false;
+		for (int i = 0; i < length; i++) {
+			char c = chars[i];
+			rowPending = true;
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (quoted) {
+				continue;
+			} else if (c == separator) {
+				count++;
+			} else if (c == '\n' || (c == '\r' && (i + 1 == length || chars[i + 1] != '\n'))) {
+				if (result >= 0 && result != count) {
+					return -1;
+				}
+				result = count;
+				count = 0;
+				rowPending = false;
+			}
+		}
+		if (rowPending) {
+			if (result >= 0 && result != count) {
+				return -1;
+			}
+			result = count;
+		}
+		return Math.max(result, 0);
+	}
+
+	/**
+	 * Returns whether all occurrences of a separator outside of quotes look
+	 * like part of the cell content. This is the case for commas between
+	 * digits, e.g. decimal commas, and for separators that are followed by
+	 * a space, e.g. in text.
+	 * @param chars Content.
+	 * @param length Number of characters.
+	 * @param separator Separator.
+	 * @return {@code true} if the separator occurs and all occurrences look
+	 *         like cell content, otherwise {@code false}.
+	 */
+	private static boolean isEmbedded(char[] chars, int length, char separator) {
+		boolean embedded = false;
+		boolean quoted = false;
+		for (int i = 0; i < length; i++) {
+			char c = chars[i];
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (!quoted && c == separator) {
+				char next = (i + 1 < length) ? chars[i + 1] : '\n';
+				boolean decimal = separator == ',' && i > 0 &&
+					Character.isDigit(chars[i - 1]) && Character.isDigit(next);
+				if (!decimal && next != ' ') {
+					return false;
+				}
+				embedded = true;
+			}
+		}
+		return embedded;
+	}
+
+	/**
+	 * Returns the index after the first row end outside of quotes.
+	 * @param chars Content.
+	 * @param start Index where the search starts.
+	 * @param end Index after the last character.
+	 * @return Index after the first row end, or {@code end} if there is no
+	 *         row end.
+	 */
+	static int getRowEnd(char[] chars, int start, int end) {
+		boolean quoted = false;
+		for (int i = start; i < end; i++) {
+			char c = chars[i];
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (!quoted && (c == '\n' ||
+					(c == '\r' && (i + 1 == end || chars[i + 1] != '\n')))) {
+				return i + 1;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Returns the index after the last row end outside of quotes.
+	 * @param chars Content.
+	 * @param length Number of characters.
+	 * @return Index after the last row end, or {@code 0} if there is no row
+	 *         end.
+	 */
+	private static int getLastRowEnd(char[] chars, int length) {
+		int rowEnd = 0;
+		boolean quoted = false;
+		for (int i = 0; i < length; i++) {
+			char c = chars[i];
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (!quoted && (c == '\n' ||
+					(c == '\r' && i + 1 < length && chars[i + 1] != '\n'))) {
+				rowEnd = i + 1;
+			}
+		}
+		return rowEnd;
+	}
+}
@@ -24,6 +24,12 @@ package de.erichseifert.gral.io.data;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.GZIPOutputStream;
 
 import de.erichseifert.gral.data.DataSource;
 import de.erichseifert.gral.io.IOCapabilities;
@@ -36,7 +42,12 @@ import de.erichseifert.gral.util.Messages;
  * delimiter character. The delimiter is chosen based on the file type but can
  * also be set manually. By default the comma character will be used as a
  * delimiter for separating columns. Lines end with a carriage return and a
- * line feed character.</p>
+ * line feed character. Empty cells are written as empty text, and text that
+ * contains separators, quotes, or line breaks is quoted.</p>
+ * <p>The output can be compressed with gzip by enabling the setting
+ * {@link #GZIP}. If a thread pool has been set with
+ * {@link #setPool(ForkJoinPool)}, blocks of rows are formatted in
+ * parallel.</p>
  * <p>{@code CSVWriter} instances should be obtained by the
  * {@link DataWriterFactory} rather than being created manually:</p>
  * <pre>
@@ -50,6 +61,49 @@ public class CSVWriter extends AbstractDataWriter {
 	/** Key for specifying a {@link Character} value that defines the
 	delimiting character used to separate columns. */
 	public static final String SEPARATOR_CHAR = CSVReader.SEPARATOR_CHAR;
+	/** Key for specifying a {@link Boolean} value that decides whether the
+	output is compressed with gzip. */
+	public static final String GZIP = "gzip"; //$NON-NLS-1$
+
+	/** Number of rows that are formatted at once. */
+	private static final int BLOCK_SIZE = 1024;
+	/** Size of the buffer for compressed output. */
+	private static final int BUFFER_SIZE = 64*1024;
+
+	/** Thread pool that is used to format blocks of rows in parallel. */
+	private ForkJoinPool pool;
+
+	/**
+	 * Task that formats a block of rows.
+	 */
+	private static final class BlockTask extends RecursiveAction {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -4426512830911395622L;
+
+		/** Formatter that receives the rows. */
+		private final CSVFormatter formatter;
+		/** Index of the first row. */
+		private final int rowStart;
+		/** Number of rows. */
+		private final int rowCount;
+
+		/**
+		 * Initializes a new task for the specified rows.
+		 * @param formatter Formatter that receives the rows.
+		 * @param rowStart Index of the first row.
+		 * @param rowCount Number of rows.
+		 */
+		public BlockTask(CSVFormatter formatter, int rowStart, int rowCount) {
+			this.formatter = formatter;
+			this.rowStart = rowStart;
+			this.rowCount = rowCount;
+		}
+
+		@Override
+		protected void compute() {
+			formatter.format(rowStart, rowCount);
+		}
+	}
 
 	static {
 		addCapabilities(new IOCapabilities(
@@ -81,33 +135,84 @@ public class CSVWriter extends AbstractDataWriter {
 		} else {
 			setDefault(SEPARATOR_CHAR, ','); //$NON-NLS-1$
 		}
+		setDefault(GZIP, false);
 	}
 
 	/**
-	 * Stores the specified data source.
+	 * Stores the specified data source. The output stream is closed
+	 * afterwards.
 	 * @param data DataSource to be stored.
 	 * @param output OutputStream to be written to.
 	 * @throws IOException if writing the data failed
 	 */
 	public void write(DataSource data, OutputStream output) throws IOException {
 		Character separator = getSetting(SEPARATOR_CHAR);
-		OutputStreamWriter writer = new OutputStreamWriter(output);
-
-		int i = 0;
-		int colCount = data.getColumnCount();
-		for (Comparable<?> cell : data) {
-			writer.write(String.valueOf(cell));
-
-			int col = i % colCount;
-			if (col < colCount - 1) {
-				writer.write(separator);
-			} else {
-				writer.write("\r\n"); //$NON-NLS-1$
+		Boolean gzip = getSetting(GZIP);
+		if (gzip) {
+			output = new GZIPOutputStream(output, BUFFER_SIZE);
+		}
+
+		try (Writer writer = new OutputStreamWriter(output)) {
+			int rowCount = data.getRowCount();
+			ForkJoinPool pool = getPool();
+			if (pool == null) {
+				CSVFormatter formatter = new CSVFormatter(data, separator);
+				for (int rowStart = 0; rowStart < rowCount; rowStart += BLOCK_SIZE) {
+					formatter.format(rowStart, Math.min(BLOCK_SIZE, rowCount - rowStart));
+					formatter.writeTo(writer);
+				}
+				return;
+			}
+
+			// Format several blocks in parallel and write them in order
+			CSVFormatter[] formatters = new CSVFormatter[2*pool.getParallelism()];
+			for (int i = 0; i < formatters.length; i++) {
+				formatters[i] = new CSVFormatter(data, separator);
+			}
+			int rowsPerPass = formatters.length*BLOCK_SIZE;
+			for (int passStart = 0; passStart < rowCount; passStart += rowsPerPass) {
+				final List<BlockTask> tasks = new ArrayList<>(formatters.length);
+				for (int i = 0; i < formatters.length; i++) {
+					int rowStart = passStart + i*BLOCK_SIZE;
+					if (rowStart >= rowCount) {
+						break;
+					}
+					tasks.add(new BlockTask(formatters[i], rowStart,
+						Math.min(BLOCK_SIZE, rowCount - rowStart)));
+				}
+				pool.invoke(new RecursiveAction() {
+					/** Version id for serialization. */
+					private static final long serialVersionUID = 1672539403876712985L;
+
+					@Override
+					protected void compute() {
+						invokeAll(tasks);
+					}
+				});
+				for (BlockTask task : tasks) {
+					task.formatter.writeTo(writer);
+				}
 			}
-			i++;
 		}
+	}
 
-		writer.close();
+	/**
+	 * Returns the thread pool that is used to format blocks of rows in
+	 * parallel.
+	 * @return Thread pool, or {@code null} if rows are formatted
+	 *         sequentially.
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
 	}
 
+	/**
+	 * Sets the thread pool that is used to format blocks of rows in
+	 * parallel. The blocks are still written in order.
+	 * @param pool Thread pool, or {@code null} if rows should be formatted
+	 *        sequentially.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
 }
@@ -0,0 +1,313 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import de.erichseifert.gral.data.AbstractDataSource;
+import de.erichseifert.gral.data.DataTable;
+
+
+/**
+ * <p>Read-only data source that provides the values of a file in the binary
+ * columnar format of GRAL. The values are read directly from the blocks of
+ * the file, which are usually mapped to memory, without creating an object
+ * for each cell. Compressed blocks are decompressed once when the file is
+ * read.</p>
+ * <p>Besides the values, the minimum and the maximum of each column and of
+ * each block of rows are available without reading the values.</p>
+ * <p>Instances are created by {@link ColumnarReader}. When serialized, the
+ * values are copied to a {@link DataTable}.</p>
+ */
+public class ColumnarData extends AbstractDataSource {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -2961218604431580475L;
+
+	/** Number of rows. */
+	private final int rowCount;
+	/** Number of rows in each block. */
+	private final int blockSize;
+	/** Number of blocks in each column. */
+	private final int blockCount;
+	/** Type code of each column. */
+	private final byte[] codes;
+	/** Values of each block, ordered by column and block. */
+	private final transient ByteBuffer[] blocks;
+	/** Bit masks of empty cells of each block, or {@code null}. */
+	private final transient ByteBuffer[] masks;
+	/** Minimum of each block. */
+	private final double[] minimums;
+	/** Maximum of each block. */
+	private final double[] maximums;
+
+	/**
+	 * Initializes a new instance with the specified blocks.
+	 * @param types Data types of the columns.
+	 * @param codes Type code of each column.
+	 * @param rowCount Number of rows.
+	 * @param blockSize Number of rows in each block.
+	 * @param blocks Values of each block, ordered by column and block.
+	 * @param masks Bit masks of empty cells of each block, or {@code null}
+	 *        for blocks without empty cells.
+	 * @param minimums Minimum of each block.
+	 * @param maximums Maximum of each block.
+	 */
+	ColumnarData(Class<? extends Comparable<?>>[] types, byte[] codes,
+			int rowCount, int blockSize, ByteBuffer[] blocks, ByteBuffer[] masks,
+			double[] minimums, double[] maximums) {
+		super(types);
+		this.codes = codes;
+		this.rowCount = rowCount;
+		this.blockSize = blockSize;
+		this.blockCount = (codes.length > 0) ? blocks.length/codes.length : 0;
+		this.blocks = blocks;
+		this.masks = masks;
+		this.minimums = minimums;
+		this.maximums = maximums;
+	}
+
+	@Override
+	public Comparable<?> get(int col, int row) {
+		if (row < 0 || row >= rowCount) {
+			throw new IndexOutOfBoundsException(String.valueOf(row));
+		}
+		int index = col*blockCount + row/blockSize;
+		int i = row % blockSize;
+		if (isNull(masks[index], i)) {
+			return null;
+		}
+		ByteBuffer block = blocks[index];
+		switch (codes[col]) {
+		case ColumnarFormat.TYPE_DOUBLE:
+			return block.getDouble(8*i);
+		case ColumnarFormat.TYPE_FLOAT:
+			return block.getFloat(4*i);
+		case ColumnarFormat.TYPE_LONG:
+			return block.getLong(8*i);
+		case ColumnarFormat.TYPE_INTEGER:
+			return block.getInt(4*i);
+		case ColumnarFormat.TYPE_SHORT:
+			return block.getShort(2*i);
+		case ColumnarFormat.TYPE_BYTE:
+			return block.get(i);
+		default:
+			return getText(block, i, getBlockLength(row/blockSize));
+		}
+	}
+
+	@Override
+	protected void getValuesInRange(int col, int row, double[] values, int offset, int length) {
+		byte code = codes[col];
+		if (code == ColumnarFormat.TYPE_STRING) {
+			// Text is never a number
+			Arrays.fill(values, offset, offset + length, Double.NaN);
+			return;
+		}
+		int end = row + length;
+		int r = row;
+		while (r < end) {
+			int index = col*blockCount + r/blockSize;
+			int start = r % blockSize;
+			int count = Math.min(end - r, blockSize - start);
+			int pos = offset + r - row;
+			ByteBuffer block = blocks[index];
+			switch (code) {
+			case ColumnarFormat.TYPE_DOUBLE:
+				ByteBuffer view = block.duplicate();
+				view.position(8*start);
+				view.asDoubleBuffer().get(values, pos, count);
+				break;
+			case ColumnarFormat.TYPE_FLOAT:
+				for (int i = 0; i < count; i++) {
+					values[pos + i] = block.getFloat(4*(start + i));
+				}
+				break;
+			case ColumnarFormat.TYPE_LONG:
+				for (int i = 0; i < count; i++) {
+					values[pos + i] = block.getLong(8*(start + i));
+				}
+				break;
+			case ColumnarFormat.TYPE_INTEGER:
+				for (int i = 0; i < count; i++) {
+					values[pos + i] = block.getInt(4*(start + i));
+				}
+				break;
+			case ColumnarFormat.TYPE_SHORT:
+				for (int i = 0; i < count; i++) {
+					values[pos + i] = block.getShort(2*(start + i));
+				}
+				break;
+			default:
+				for (int i = 0; i < count; i++) {
+					values[pos + i] = block.get(start + i);
+				}
+				break;
+			}
+			ByteBuffer mask = masks[index];
+			if (mask != null) {
+				for (int i = 0; i < count; i++) {
+					if (isNull(mask, start + i)) {
+						values[pos + i] = Double.NaN;
+					}
+				}
+			}
+			r += count;
+		}
+	}
+
+	@Override
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns the number of rows in each block.
+	 * @return Number of rows.
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Returns the number of blocks in each column.
+	 * @return Number of blocks.
+	 */
+	public int getBlockCount() {
+		return blockCount;
+	}
+
+	/**
+	 * Returns the smallest value of the specified column.
+	 * @param col Index of the column.
+	 * @return Minimum, or {@code NaN} if the column doesn't contain numbers.
+	 */
+	public double getMinimum(int col) {
+		double minimum = Double.NaN;
+		for (int block = 0; block < blockCount; block++) {
+			double value = getMinimum(col, block);
+			if (!Double.isNaN(value) && !(value >= minimum)) {
+				minimum = value;
+			}
+		}
+		return minimum;
+	}
+
+	/**
+	 * Returns the largest value of the specified column.
+	 * @param col Index of the column.
+	 * @return Maximum, or {@code NaN} if the column doesn't contain numbers.
+	 */
+	public double getMaximum(int col) {
+		double maximum = Double.NaN;
+		for (int block = 0; block < blockCount; block++) {
+			double value = getMaximum(col, block);
+			if (!Double.isNaN(value) && !(value <= maximum)) {
+				maximum = value;
+			}
+		}
+		return maximum;
+	}
+
+	/**
+	 * Returns the smallest value of the specified column in the specified
+	 * block of rows.
+	 * @param col Index of the column.
+	 * @param block Index of the block.
+	 * @return Minimum, or {@code NaN} if the block doesn't contain numbers.
+	 */
+	public double getMinimum(int col, int block) {
+		return minimums[getIndex(col, block)];
+	}
+
+	/**
+	 * Returns the largest value of the specified column in the specified
+	 * block of rows.
+	 * @param col Index of the column.
+	 * @param block Index of the block.
+	 * @return Maximum, or {@code NaN} if the block doesn't contain numbers.
+	 */
+	public double getMaximum(int col, int block) {
+		return maximums[getIndex(col, block)];
+	}
+
+	/**
+	 * Returns the index of the specified block in the arrays of blocks.
+	 * @param col Index of the column.
+	 * @param block Index of the block.
+	 * @return Index of the block.
+	 */
+	private int getIndex(int col, int block) {
+		if (col < 0 || col >= codes.length || block < 0 || block >= blockCount) {
+			throw new IndexOutOfBoundsException();
+		}
+		return col*blockCount + block;
+	}
+
+	/**
+	 * Returns the number of rows in the specified block.
+	 * @param block Index of the block.
+	 * @return Number of rows.
+	 */
+	private int getBlockLength(int block) {
+		return (int) Math.min(blockSize, rowCount - (long) block*blockSize);
+	}
+
+	/**
+	 * Decodes the text of the specified cell.
+	 * @param block Values of a block.
+	 * @param i Index of the row in the block.
+	 * @param length Number of rows in the block.
+	 * @return Text.
+	 */
+	private static String getText(ByteBuffer block, int i, int length) {
+		int start = block.getInt(4*i);
+		int end = block.getInt(4*(i + 1));
+		byte[] bytes = new byte[end - start];
+		ByteBuffer content = block.duplicate();
+		content.position(4*(length + 1) + start);
+		content.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns whether the specified cell of a block is empty.
+	 * @param mask Bit mask of empty cells, or {@code null}.
+	 * @param i Index of the row in the block.
+	 * @return {@code true} if the cell is empty.
+	 */
+	private static boolean isNull(ByteBuffer mask, int i) {
+		return mask != null && ((mask.get(i >> 3) >> (i & 7)) & 1) != 0;
+	}
+
+	/**
+	 * Replaces this object by a {@code DataTable} with the same values for
+	 * serialization, because the blocks can't be serialized.
+	 * @return Table with the same values.
+	 * @throws ObjectStreamException if the object can't be replaced.
+	 */
+	protected Object writeReplace() throws ObjectStreamException {
+		return new DataTable(this);
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+/**
+ * <p>Constants and helper methods for the binary columnar data format of
+ * GRAL. All numbers are stored in big-endian byte order. A file has the
+ * following layout:</p>
+ * <ol>
+ *   <li>Header: magic bytes, number of columns, number of rows, number of
+ *   rows per block, and one type code for each column.</li>
+ *   <li>Blocks: for each column, the values of all blocks of rows. Each
+ *   block starts with flags, its decoded length and its stored length,
+ *   followed by the payload, which is optionally compressed with
+ *   deflate.</li>
+ *   <li>Footer: for each column and block, the position of the block in the
+ *   file and the minimum and the maximum of its values.</li>
+ *   <li>Trailer: the position of the footer and the magic bytes.</li>
+ * </ol>
+ * <p>A decoded payload starts with a bit mask that marks empty cells if the
+ * block contains any. Numbers are stored as an array of the primitive type
+ * of the column; empty floating point cells are stored as {@code NaN}. Text
+ * is stored as the positions of all cells in the UTF-8 encoded content,
+ * followed by the content.</p>
+ */
+abstract class ColumnarFormat {
+	/** MIME type of the format. */
+	static final String MIME_TYPE = "application/x-gral-columnar"; //$NON-NLS-1$
+	/** Bytes at the beginning and at the end of each file. */
+	static final byte[] MAGIC = {'G', 'R', 'A', 'L', 'C', 'O', 'L', '1'};
+	/** Number of bytes in the header without the column types. */
+	static final int HEADER_SIZE = MAGIC.length + 3*4;
+	/** Number of bytes in the header of a block. */
+	static final int BLOCK_HEADER_SIZE = 1 + 2*4;
+	/** Number of bytes in a footer entry of a block. */
+	static final int FOOTER_ENTRY_SIZE = 3*8;
+	/** Number of bytes in the trailer. */
+	static final int TRAILER_SIZE = 8 + MAGIC.length;
+
+	/** Flag for blocks with compressed payload. */
+	static final int FLAG_COMPRESSED = 1;
+	/** Flag for blocks that contain empty cells. */
+	static final int FLAG_NULLS = 2;
+
+	/** Type code for {@code Double} columns. */
+	static final byte TYPE_DOUBLE = 1;
+	/** Type code for {@code Float} columns. */
+	static final byte TYPE_FLOAT = 2;
+	/** Type code for {@code Long} columns. */
+	static final byte TYPE_LONG = 3;
+	/** Type code for {@code Integer} columns. */
+	static final byte TYPE_INTEGER = 4;
+	/** Type code for {@code Short} columns. */
+	static final byte TYPE_SHORT = 5;
+	/** Type code for {@code Byte} columns. */
+	static final byte TYPE_BYTE = 6;
+	/** Type code for {@code String} columns. */
+	static final byte TYPE_STRING = 7;
+
+	/** Data types that belong to the type codes. */
+	private static final Class<?>[] TYPES = {
+		null, Double.class, Float.class, Long.class, Integer.class,
+		Short.class, Byte.class, String.class
+	};
+	/** Number of bytes per value that belong to the type codes. */
+	private static final int[] VALUE_SIZES = {0, 8, 4, 8, 4, 2, 1, 4};
+
+	/**
+	 * Default constructor that prevents creation of class.
+	 */
+	private ColumnarFormat() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns the type code for the specified data type.
+	 * @param type Data type of a column.
+	 * @return Type code, or {@code 0} if the data type is not supported.
+	 */
+	static byte getTypeCode(Class<?> type) {
+		for (byte code = 1; code < TYPES.length; code++) {
+			if (TYPES[code].equals(type)) {
+				return code;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the data type for the specified type code.
+	 * @param code Type code.
+	 * @return Data type, or {@code null} if the code is not valid.
+	 */
+	@SuppressWarnings("unchecked")
+	static Class<? extends Comparable<?>> getType(byte code) {
+		if (code <= 0 || code >= TYPES.length) {
+			return null;
+		}
+		return (Class<? extends Comparable<?>>) TYPES[code];
+	}
+
+	/**
+	 * Returns the number of bytes that are stored per value. For text, this
+	 * is the size of a position.
+	 * @param code Type code.
+	 * @return Number of bytes per value.
+	 */
+	static int getValueSize(byte code) {
+		return VALUE_SIZES[code];
+	}
+
+	/**
+	 * Returns the number of bytes of a bit mask for the specified number of
+	 * cells.
+	 * @param rowCount Number of cells.
+	 * @return Number of bytes.
+	 */
+	static int getMaskSize(int rowCount) {
+		return (int) ((rowCount + 7L)/8);
+	}
+}
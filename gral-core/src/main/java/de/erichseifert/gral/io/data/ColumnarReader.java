@@ -0,0 +1,394 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.io.IOCapabilities;
+import de.erichseifert.gral.util.Messages;
+
+
+/**
+ * <p>Class that creates a {@code DataSource} from a file in the binary
+ * columnar format of GRAL, which is written by {@link ColumnarWriter}. The
+ * returned {@link ColumnarData} reads the values directly from the blocks
+ * of the file instead of copying them row by row.</p>
+ * <p>{@code ColumnarReader} instances should be obtained by the
+ * {@link DataReaderFactory} rather than being created manually:</p>
+ * <pre>
+ * DataReaderFactory factory = DataReaderFactory.getInstance();
+ * DataReader reader = factory.get("application/x-gral-columnar");
+ * reader.read(new FileInputStream(filename));
+ * </pre>
+ * <p>Files should be read with {@link #read(File, Class[])}, which maps the
+ * file to memory instead of reading it completely.</p>
+ */
+public class ColumnarReader extends AbstractDataReader {
+	/** Size of the buffer that is used to read streams. */
+	private static final int BUFFER_SIZE = 64*1024;
+
+	/**
+	 * Content of a file in the columnar format.
+	 */
+	private static abstract class Content {
+		/**
+		 * Returns the size of the content.
+		 * @return Number of bytes.
+		 */
+		public abstract long size();
+
+		/**
+		 * Returns a range of the content.
+		 * @param position Index of the first byte.
+		 * @param length Number of bytes.
+		 * @return Buffer that contains the bytes.
+		 * @throws IOException when experiencing an error during read
+		 *         operations.
+		 */
+		public abstract ByteBuffer get(long position, int length)
+			throws IOException;
+	}
+
+	/**
+	 * Content that is stored completely in a buffer.
+	 */
+	private static final class BufferContent extends Content {
+		/** Buffer. */
+		private final ByteBuffer buffer;
+
+		/**
+		 * Initializes a new instance with the specified buffer.
+		 * @param buffer Buffer that contains the whole content.
+		 */
+		public BufferContent(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public long size() {
+			return buffer.limit();
+		}
+
+		@Override
+		public ByteBuffer get(long position, int length) {
+			ByteBuffer range = buffer.duplicate();
+			range.position((int) position);
+			range.limit((int) position + length);
+			return range.slice();
+		}
+	}
+
+	/**
+	 * Content of a file that is larger than a single buffer. Each range is
+	 * mapped separately.
+	 */
+	private static final class ChannelContent extends Content {
+		/** Channel of the file. */
+		private final FileChannel channel;
+		/** Size of the file. */
+		private final long size;
+
+		/**
+		 * Initializes a new instance with the specified file channel.
+		 * @param channel Channel of the file.
+		 * @throws IOException if the size can't be determined.
+		 */
+		public ChannelContent(FileChannel channel) throws IOException {
+			this.channel = channel;
+			this.size = channel.size();
+		}
+
+		@Override
+		public long size() {
+			return size;
+		}
+
+		@Override
+		public ByteBuffer get(long position, int length) throws IOException {
+			return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+		}
+	}
+
+	static {
+		addCapabilities(new IOCapabilities(
+			"GRAL", //$NON-NLS-1$
+			Messages.getString("DataIO.gralDescription"), //$NON-NLS-1$
+			ColumnarFormat.MIME_TYPE,
+			new String[] {"gralc"} //$NON-NLS-1$
+		));
+	}
+
+	/**
+	 * Creates a new instance with the specified MIME type.
+	 * @param mimeType MIME type of the file format to be read.
+	 */
+	public ColumnarReader(String mimeType) {
+		super(mimeType);
+	}
+
+	/**
+	 * Returns a DataSource that was imported. The stream is read
+	 * completely. If types are specified, they must match the column types
+	 * that are stored in the input.
+	 * @param input Input to be read.
+	 * @param types Number types for the columns of the DataSource.
+	 * @return DataSource Imported data.
+	 * @throws IOException when the file format is not valid or when
+	 *         experiencing an error during file operations.
+	 */
+	public DataSource read(InputStream input, Class<? extends Comparable<?>>... types)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int count;
+		while ((count = input.read(buffer)) != -1) {
+			bytes.write(buffer, 0, count);
+		}
+		return read(new BufferContent(ByteBuffer.wrap(bytes.toByteArray())), types);
+	}
+
+	/**
+	 * Returns a DataSource that was imported from the specified file. The
+	 * file is mapped to memory, and the values are read directly from the
+	 * mapped blocks. If types are specified, they must match the column
+	 * types that are stored in the file.
+	 * @param file File to be read.
+	 * @param types Number types for the columns of the DataSource.
+	 * @return DataSource Imported data.
+	 * @throws IOException when the file format is not valid or when
+	 *         experiencing an error during file operations.
+	 */
+	public DataSource read(File file, Class<? extends Comparable<?>>... types)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(
+				file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				return read(new ChannelContent(channel), types);
+			}
+			return read(new BufferContent(channel.map(
+				FileChannel.MapMode.READ_ONLY, 0, size)), types);
+		}
+	}
+
+	/**
+	 * Returns a DataSource with the blocks of the specified content.
+	 * @param content Content in the columnar format.
+	 * @param types Number types for the columns of the DataSource.
+	 * @return DataSource Imported data.
+	 * @throws IOException when the file format is not valid or when
+	 *         experiencing an error during file operations.
+	 */
+	private static DataSource read(Content content, Class<? extends Comparable<?>>... types)
+			throws IOException {
+		long size = content.size();
+		if (size < ColumnarFormat.HEADER_SIZE + ColumnarFormat.TRAILER_SIZE) {
+			throw invalid("File is too short"); //$NON-NLS-1$
+		}
+		ByteBuffer header = content.get(0, ColumnarFormat.HEADER_SIZE);
+		checkMagic(header);
+		int columnCount = header.getInt();
+		int rowCount = header.getInt();
+		int blockSize = header.getInt();
+		if (columnCount < 0 || rowCount < 0 || blockSize <= 0 ||
+				(long) ColumnarFormat.HEADER_SIZE + columnCount +
+				ColumnarFormat.TRAILER_SIZE > size) {
+			throw invalid("Invalid header"); //$NON-NLS-1$
+		}
+
+		byte[] codes = new byte[columnCount];
+		content.get(ColumnarFormat.HEADER_SIZE, columnCount).get(codes);
+		Class<? extends Comparable<?>>[] columnTypes = new Class[columnCount];
+		for (int col = 0; col < columnCount; col++) {
+			columnTypes[col] = ColumnarFormat.getType(codes[col]);
+			if (columnTypes[col] == null) {
+				throw invalid(MessageFormat.format(
+					"Unknown type code {0,number,integer} in column {1,number,integer}", //$NON-NLS-1$
+					codes[col], col));
+			}
+		}
+		if (types.length > 0 && !Arrays.equals(types, columnTypes)) {
+			throw new IOException(MessageFormat.format(
+				"Column types {0} don''t match the stored types {1}.", //$NON-NLS-1$
+				Arrays.toString(types), Arrays.toString(columnTypes)));
+		}
+
+		ByteBuffer trailer = content.get(
+			size - ColumnarFormat.TRAILER_SIZE, ColumnarFormat.TRAILER_SIZE);
+		long footerOffset = trailer.getLong();
+		checkMagic(trailer);
+		int blockCount = (int) (((long) rowCount + blockSize - 1)/blockSize);
+		long footerSize = (long) columnCount*blockCount*ColumnarFormat.FOOTER_ENTRY_SIZE;
+		if (footerOffset < 0 || footerSize > Integer.MAX_VALUE ||
+				footerOffset + footerSize != size - ColumnarFormat.TRAILER_SIZE) {
+			throw invalid("Invalid footer"); //$NON-NLS-1$
+		}
+
+		int entryCount = columnCount*blockCount;
+		long[] offsets = new long[entryCount + 1];
+		double[] minimums = new double[entryCount];
+		double[] maximums = new double[entryCount];
+		ByteBuffer footer = content.get(footerOffset, (int) footerSize);
+		for (int index = 0; index < entryCount; index++) {
+			offsets[index] = footer.getLong();
+			minimums[index] = footer.getDouble();
+			maximums[index] = footer.getDouble();
+		}
+		offsets[entryCount] = footerOffset;
+
+		ByteBuffer[] blocks = new ByteBuffer[entryCount];
+		ByteBuffer[] masks = new ByteBuffer[entryCount];
+		Inflater inflater = new Inflater();
+		try {
+			for (int col = 0; col < columnCount; col++) {
+				for (int block = 0; block < blockCount; block++) {
+					int index = col*blockCount + block;
+					int length = (int) Math.min(blockSize, rowCount - (long) block*blockSize);
+					long blockLength = offsets[index + 1] - offsets[index];
+					if (offsets[index] < 0 ||
+							blockLength < ColumnarFormat.BLOCK_HEADER_SIZE ||
+							blockLength > Integer.MAX_VALUE) {
+						throw invalid(MessageFormat.format(
+							"Invalid position of block {0,number,integer} in column {1,number,integer}", //$NON-NLS-1$
+							block, col));
+					}
+					ByteBuffer stored = content.get(offsets[index], (int) blockLength);
+					int flags = stored.get(0);
+					ByteBuffer payload = decode(stored, inflater);
+					if ((flags & ColumnarFormat.FLAG_NULLS) != 0) {
+						masks[index] = slice(payload, ColumnarFormat.getMaskSize(length));
+					}
+					long valuesSize;
+					if (codes[col] == ColumnarFormat.TYPE_STRING) {
+						valuesSize = payload.remaining();
+					} else {
+						valuesSize = (long) length*ColumnarFormat.getValueSize(codes[col]);
+					}
+					if (valuesSize > payload.remaining()) {
+						throw invalid("Invalid block length"); //$NON-NLS-1$
+					}
+					blocks[index] = slice(payload, (int) valuesSize);
+				}
+			}
+		} catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw invalid("Invalid block"); //$NON-NLS-1$
+		} finally {
+			inflater.end();
+		}
+
+		return new ColumnarData(columnTypes, codes, rowCount, blockSize,
+			blocks, masks, minimums, maximums);
+	}
+
+	/**
+	 * Returns the decoded payload of a block. Payloads that aren't
+	 * compressed are shared with the stored block.
+	 * @param block Stored block with its header.
+	 * @param inflater Decompressor.
+	 * @return Buffer with the decoded payload.
+	 * @throws IOException if the block is not valid.
+	 */
+	private static ByteBuffer decode(ByteBuffer block, Inflater inflater)
+			throws IOException {
+		int flags = block.get();
+		int rawLength = block.getInt();
+		int storedLength = block.getInt();
+		if (rawLength < 0 || storedLength != block.remaining()) {
+			throw invalid("Invalid block length"); //$NON-NLS-1$
+		}
+		if ((flags & ColumnarFormat.FLAG_COMPRESSED) == 0) {
+			if (rawLength != storedLength) {
+				throw invalid("Invalid block length"); //$NON-NLS-1$
+			}
+			return block.slice();
+		}
+
+		byte[] stored = new byte[storedLength];
+		block.get(stored);
+		byte[] raw = new byte[rawLength];
+		inflater.reset();
+		inflater.setInput(stored);
+		try {
+			int length = 0;
+			while (length < rawLength && !inflater.finished()) {
+				int count = inflater.inflate(raw, length, rawLength - length);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += count;
+			}
+			if (length != rawLength) {
+				throw invalid("Invalid compressed block"); //$NON-NLS-1$
+			}
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		}
+		return ByteBuffer.wrap(raw);
+	}
+
+	/**
+	 * Returns the specified number of bytes from the current position of the
+	 * buffer and advances the position.
+	 * @param buffer Buffer.
+	 * @param length Number of bytes.
+	 * @return Buffer that shares the bytes.
+	 */
+	private static ByteBuffer slice(ByteBuffer buffer, int length) {
+		ByteBuffer range = buffer.slice();
+		range.limit(length);
+		buffer.position(buffer.position() + length);
+		return range;
+	}
+
+	/**
+	 * Checks the magic bytes at the current position of the buffer.
+	 * @param buffer Buffer.
+	 * @throws IOException if the bytes don't match.
+	 */
+	private static void checkMagic(ByteBuffer buffer) throws IOException {
+		byte[] magic = new byte[ColumnarFormat.MAGIC.length];
+		buffer.get(magic);
+		if (!Arrays.equals(magic, ColumnarFormat.MAGIC)) {
+			throw invalid("Missing magic bytes"); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Returns an exception for invalid content.
+	 * @param message Description of the problem.
+	 * @return Exception.
+	 */
+	private static IOException invalid(String message) {
+		return new IOException("Invalid columnar data: " + message); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,386 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.zip.Deflater;
+
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.io.IOCapabilities;
+import de.erichseifert.gral.util.DataUtils;
+import de.erichseifert.gral.util.Messages;
+
+
+/**
+ * <p>Class that writes all values of a {@code DataSource} to a binary file
+ * which stores the values column by column. Each column is divided into
+ * blocks of rows that contain the values as an array of the primitive type
+ * of the column, and the minimum and the maximum of each block is stored at
+ * the end of the file. Columns of type {@code Double}, {@code Float},
+ * {@code Long}, {@code Integer}, {@code Short}, {@code Byte}, and
+ * {@code String} are supported. The blocks can be compressed by enabling
+ * the setting {@link #COMPRESSION}.</p>
+ * <p>{@code ColumnarWriter} instances should be obtained by the
+ * {@link DataWriterFactory} rather than being created manually:</p>
+ * <pre>
+ * DataWriterFactory factory = DataWriterFactory.getInstance();
+ * DataWriter writer = factory.get("application/x-gral-columnar");
+ * writer.write(data, new FileOutputStream(filename));
+ * </pre>
+ * @see ColumnarReader
+ */
+public class ColumnarWriter extends AbstractDataWriter {
+	/** Key for specifying an {@link Integer} value that defines the number
+	of rows in each block. */
+	public static final String BLOCK_SIZE = "blockSize"; //$NON-NLS-1$
+	/** Key for specifying a {@link Boolean} value that decides whether the
+	blocks are compressed. */
+	public static final String COMPRESSION = "compression"; //$NON-NLS-1$
+
+	/** Default number of rows in each block. */
+	private static final int DEFAULT_BLOCK_SIZE = 64*1024;
+	/** Size of the output buffer. */
+	private static final int BUFFER_SIZE = 64*1024;
+
+	/**
+	 * Values of a column in a block of rows.
+	 */
+	private static final class Block {
+		/** Decoded payload. */
+		public final byte[] payload;
+		/** Decides whether the block contains empty cells. */
+		public final boolean nulls;
+		/** Minimum of the values. */
+		public final double minimum;
+		/** Maximum of the values. */
+		public final double maximum;
+
+		/**
+		 * Initializes a new block.
+		 * @param payload Decoded payload.
+		 * @param nulls Whether the block contains empty cells.
+		 * @param minimum Minimum of the values.
+		 * @param maximum Maximum of the values.
+		 */
+		public Block(byte[] payload, boolean nulls, double minimum, double maximum) {
+			this.payload = payload;
+			this.nulls = nulls;
+			this.minimum = minimum;
+			this.maximum = maximum;
+		}
+	}
+
+	static {
+		addCapabilities(new IOCapabilities(
+			"GRAL", //$NON-NLS-1$
+			Messages.getString("DataIO.gralDescription"), //$NON-NLS-1$
+			ColumnarFormat.MIME_TYPE,
+			new String[] {"gralc"} //$NON-NLS-1$
+		));
+	}
+
+	/**
+	 * Creates a new instance with the specified MIME-Type.
+	 * @param mimeType MIME-Type of the output file.
+	 */
+	public ColumnarWriter(String mimeType) {
+		super(mimeType);
+		setDefault(BLOCK_SIZE, DEFAULT_BLOCK_SIZE);
+		setDefault(COMPRESSION, false);
+	}
+
+	/**
+	 * Stores the specified data source. The output stream is closed
+	 * afterwards.
+	 * @param data DataSource to be stored.
+	 * @param output OutputStream to be written to.
+	 * @throws IOException if writing the data failed, or if the type of a
+	 *         column is not supported
+	 */
+	public void write(DataSource data, OutputStream output) throws IOException {
+		Number blockSizeSetting = getSetting(BLOCK_SIZE);
+		int blockSize = blockSizeSetting.intValue();
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid block size: {0,number,integer}", //$NON-NLS-1$
+				blockSize));
+		}
+		Boolean compression = getSetting(COMPRESSION);
+
+		int columnCount = data.getColumnCount();
+		int rowCount = data.getRowCount();
+		Class<? extends Comparable<?>>[] types = data.getColumnTypes();
+		byte[] codes = new byte[columnCount];
+		for (int col = 0; col < columnCount; col++) {
+			codes[col] = ColumnarFormat.getTypeCode(types[col]);
+			if (codes[col] == 0) {
+				throw new IOException(MessageFormat.format(
+					"Unsupported type of column {0,number,integer}: {1}", //$NON-NLS-1$
+					col, types[col].getName()));
+			}
+		}
+		int blockCount = (int) (((long) rowCount + blockSize - 1)/blockSize);
+		long[] offsets = new long[columnCount*blockCount];
+		double[] minimums = new double[offsets.length];
+		double[] maximums = new double[offsets.length];
+
+		Deflater deflater = null;
+		if (compression) {
+			deflater = new Deflater(Deflater.BEST_SPEED);
+		}
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(output, BUFFER_SIZE))) {
+			out.write(ColumnarFormat.MAGIC);
+			out.writeInt(columnCount);
+			out.writeInt(rowCount);
+			out.writeInt(blockSize);
+			out.write(codes);
+			long position = ColumnarFormat.HEADER_SIZE + columnCount;
+
+			double[] values = new double[Math.min(blockSize, rowCount)];
+			byte[] compressed = null;
+			for (int col = 0; col < columnCount; col++) {
+				for (int block = 0; block < blockCount; block++) {
+					int rowStart = block*blockSize;
+					int length = Math.min(blockSize, rowCount - rowStart);
+					Block encoded = encode(data, col, codes[col], rowStart, length, values);
+					byte[] payload = encoded.payload;
+
+					int flags = encoded.nulls ? ColumnarFormat.FLAG_NULLS : 0;
+					byte[] stored = payload;
+					int storedLength = payload.length;
+					if (deflater != null) {
+						if (compressed == null || compressed.length < payload.length) {
+							compressed = new byte[payload.length];
+						}
+						int compressedLength = deflate(deflater, payload, compressed);
+						// Blocks that don't get smaller are stored as they are
+						if (compressedLength >= 0) {
+							flags |= ColumnarFormat.FLAG_COMPRESSED;
+							stored = compressed;
+							storedLength = compressedLength;
+						}
+					}
+
+					int index = col*blockCount + block;
+					offsets[index] = position;
+					minimums[index] = encoded.minimum;
+					maximums[index] = encoded.maximum;
+
+					out.writeByte(flags);
+					out.writeInt(payload.length);
+					out.writeInt(storedLength);
+					out.write(stored, 0, storedLength);
+					position += ColumnarFormat.BLOCK_HEADER_SIZE + storedLength;
+				}
+			}
+
+			for (int index = 0; index < offsets.length; index++) {
+				out.writeLong(offsets[index]);
+				out.writeDouble(minimums[index]);
+				out.writeDouble(maximums[index]);
+			}
+			out.writeLong(position);
+			out.write(ColumnarFormat.MAGIC);
+		} finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+	}
+
+	/**
+	 * Encodes the values of a column in a block of rows.
+	 * @param data Data source.
+	 * @param col Index of the column.
+	 * @param code Type code of the column.
+	 * @param rowStart Index of the first row.
+	 * @param rowCount Number of rows.
+	 * @param values Buffer for numeric values.
+	 * @return Encoded block.
+	 */
+	private static Block encode(DataSource data, int col, byte code,
+			int rowStart, int rowCount, double[] values) {
+		boolean[] nulls = new boolean[rowCount];
+		boolean hasNulls = false;
+		double minimum = Double.POSITIVE_INFINITY;
+		double maximum = Double.NEGATIVE_INFINITY;
+
+		if (code == ColumnarFormat.TYPE_STRING) {
+			byte[][] texts = new byte[rowCount][];
+			int textLength = 0;
+			for (int i = 0; i < rowCount; i++) {
+				Comparable<?> value = data.get(col, rowStart + i);
+				if (value == null) {
+					nulls[i] = true;
+					hasNulls = true;
+					texts[i] = new byte[0];
+				} else {
+					texts[i] = value.toString().getBytes(StandardCharsets.UTF_8);
+				}
+				textLength += texts[i].length;
+			}
+			ByteBuffer payload = allocate(rowCount, hasNulls,
+				4*(rowCount + 1) + textLength);
+			putMask(payload, nulls, hasNulls);
+			int offset = 0;
+			for (byte[] text : texts) {
+				payload.putInt(offset);
+				offset += text.length;
+			}
+			payload.putInt(offset);
+			for (byte[] text : texts) {
+				payload.put(text);
+			}
+			return new Block(payload.array(), hasNulls, Double.NaN, Double.NaN);
+		}
+
+		long[] longs = null;
+		if (code == ColumnarFormat.TYPE_LONG) {
+			// Long values can't be represented exactly as double values
+			longs = new long[rowCount];
+			for (int i = 0; i < rowCount; i++) {
+				Comparable<?> value = data.get(col, rowStart + i);
+				if (value instanceof Number) {
+					longs[i] = ((Number) value).longValue();
+					values[i] = longs[i];
+				} else {
+					values[i] = Double.NaN;
+				}
+			}
+		} else {
+			DataUtils.getValues(data, col, rowStart, values, 0, rowCount);
+		}
+		for (int i = 0; i < rowCount; i++) {
+			double value = values[i];
+			if (Double.isNaN(value)) {
+				if (!(data.get(col, rowStart + i) instanceof Number)) {
+					nulls[i] = true;
+					hasNulls = true;
+				}
+				continue;
+			}
+			if (value < minimum) {
+				minimum = value;
+			}
+			if (value > maximum) {
+				maximum = value;
+			}
+		}
+		if (minimum > maximum) {
+			minimum = Double.NaN;
+			maximum = Double.NaN;
+		}
+
+		ByteBuffer payload = allocate(rowCount, hasNulls,
+			rowCount*ColumnarFormat.getValueSize(code));
+		putMask(payload, nulls, hasNulls);
+		switch (code) {
+		case ColumnarFormat.TYPE_DOUBLE:
+			payload.asDoubleBuffer().put(values, 0, rowCount);
+			break;
+		case ColumnarFormat.TYPE_FLOAT:
+			for (int i = 0; i < rowCount; i++) {
+				payload.putFloat((float) values[i]);
+			}
+			break;
+		case ColumnarFormat.TYPE_LONG:
+			payload.asLongBuffer().put(longs, 0, rowCount);
+			break;
+		case ColumnarFormat.TYPE_INTEGER:
+			for (int i = 0; i < rowCount; i++) {
+				payload.putInt(nulls[i] ? 0 : (int) values[i]);
+			}
+			break;
+		case ColumnarFormat.TYPE_SHORT:
+			for (int i = 0; i < rowCount; i++) {
+				payload.putShort(nulls[i] ? 0 : (short) values[i]);
+			}
+			break;
+		default:
+			for (int i = 0; i < rowCount; i++) {
+				payload.put(nulls[i] ? 0 : (byte) values[i]);
+			}
+			break;
+		}
+		return new Block(payload.array(), hasNulls, minimum, maximum);
+	}
+
+	/**
+	 * Allocates the payload of a block.
+	 * @param rowCount Number of rows.
+	 * @param nulls Whether the block contains empty cells.
+	 * @param valuesSize Number of bytes of the values.
+	 * @return Buffer for the payload.
+	 */
+	private static ByteBuffer allocate(int rowCount, boolean nulls, int valuesSize) {
+		int maskSize = nulls ? ColumnarFormat.getMaskSize(rowCount) : 0;
+		return ByteBuffer.allocate(maskSize + valuesSize);
+	}
+
+	/**
+	 * Writes the bit mask of empty cells if the block contains any.
+	 * @param payload Buffer for the payload.
+	 * @param nulls Flags for the empty cells.
+	 * @param hasNulls Whether the block contains empty cells.
+	 */
+	private static void putMask(ByteBuffer payload, boolean[] nulls, boolean hasNulls) {
+		if (!hasNulls) {
+			return;
+		}
+		byte[] mask = new byte[ColumnarFormat.getMaskSize(nulls.length)];
+		for (int i = 0; i < nulls.length; i++) {
+			if (nulls[i]) {
+				mask[i >> 3] |= 1 << (i & 7);
+			}
+		}
+		payload.put(mask);
+	}
+
+	/**
+	 * Compresses the specified payload.
+	 * @param deflater Compressor.
+	 * @param payload Decoded payload.
+	 * @param compressed Buffer for the compressed payload.
+	 * @return Number of compressed bytes, or {@code -1} if the compressed
+	 *         payload isn't smaller than the decoded payload.
+	 */
+	private static int deflate(Deflater deflater, byte[] payload, byte[] compressed) {
+		deflater.reset();
+		deflater.setInput(payload);
+		deflater.finish();
+		int length = 0;
+		while (!deflater.finished() && length < payload.length) {
+			length += deflater.deflate(compressed, length, payload.length - length);
+		}
+		if (!deflater.finished() || length >= payload.length) {
+			return -1;
+		}
+		return length;
+	}
+}
@@ -24,21 +24,35 @@ package de.erichseifert.gral.io.data;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
 
 import javax.imageio.ImageIO;
 
 import de.erichseifert.gral.data.DataSource;
-import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.RasterData;
+import de.erichseifert.gral.data.RasterData.Channel;
 import de.erichseifert.gral.io.IOCapabilities;
 import de.erichseifert.gral.util.Messages;
 
 
 /**
- * Class that reads a data source from a binary image file. This class
- * shouldn't be used directly but using the {@link DataReaderFactory}.
+ * <p>Class that reads a data source from a binary image file. This class
+ * shouldn't be used directly but using the {@link DataReaderFactory}.</p>
+ * <p>The returned data source is a read-only {@link RasterData} view of the
+ * decoded image that provides one color channel of each pixel. The channel
+ * is selected with the setting {@link #CHANNEL}, and the values are scaled
+ * with the settings {@link #FACTOR} and {@link #OFFSET}.</p>
  */
 public class ImageReader extends AbstractDataReader {
+	/** Key for specifying a {@link Channel} value that defines the color
+	channel which is read. */
+	public static final String CHANNEL = "channel"; //$NON-NLS-1$
+	/** Key for specifying a {@link Number} value that defines the factor
+	which is used to scale the channel values. */
+	public static final String FACTOR = "factor"; //$NON-NLS-1$
+	/** Key for specifying a {@link Number} value that defines the offset
+	which is added to the scaled channel values. */
+	public static final String OFFSET = "offset"; //$NON-NLS-1$
+
 	static {
 		addCapabilities(new IOCapabilities(
 			"BMP", //$NON-NLS-1$
@@ -84,8 +98,9 @@ public class ImageReader extends AbstractDataReader {
 	 */
 	public ImageReader(String mimeType) {
 		super(mimeType);
-		setDefault("factor", 1.0); //$NON-NLS-1$
-		setDefault("offset", 0.0); //$NON-NLS-1$
+		setDefault(CHANNEL, Channel.RED);
+		setDefault(FACTOR, 1.0);
+		setDefault(OFFSET, 0.0);
 	}
 
 	/**
@@ -96,36 +111,17 @@ public class ImageReader extends AbstractDataReader {
 	 * @throws IOException when the file format is not valid or when
 	 *         experiencing an error during file operations.
 	 */
-	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public DataSource read(InputStream input, Class<? extends Comparable<?>>... types)
 			throws IOException {
 		BufferedImage image = ImageIO.read(input);
-
-		int w = image.getWidth();
-		int h = image.getHeight();
-
-		Class[] colTypes = new Class[w];
-		Arrays.fill(colTypes, Double.class);
-		DataTable data = new DataTable(colTypes);
-
-		double factor = this.<Number>getSetting("factor").doubleValue(); //$NON-NLS-1$
-		double offset = this.<Number>getSetting("offset").doubleValue(); //$NON-NLS-1$
-
-		int[] pixelData = new int[w];
-		Double[] rowData = new Double[w];
-		for (int y = 0; y < h; y++) {
-			image.getRGB(0, y, pixelData.length, 1, pixelData, 0, 0);
-			for (int x = 0; x < pixelData.length; x++) {
-				//double a = (pixelData[x] >> 24) & 0xFF;
-				double r = (pixelData[x] >> 16) & 0xFF;
-				//double g = (pixelData[x] >>  8) & 0xFF;
-				//double b = (pixelData[x] >>  0) & 0xFF;
-				rowData[x] = r*factor + offset;
-			}
-			data.add(rowData);
+		if (image == null) {
+			throw new IOException("Unsupported image format."); //$NON-NLS-1$
 		}
 
-		return data;
+		Channel channel = getSetting(CHANNEL);
+		double factor = this.<Number>getSetting(FACTOR).doubleValue();
+		double offset = this.<Number>getSetting(OFFSET).doubleValue();
+		return new RasterData(image, channel, factor, offset);
 	}
 
 }
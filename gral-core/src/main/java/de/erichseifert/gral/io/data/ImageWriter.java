@@ -21,26 +21,63 @@
  */
 package de.erichseifert.gral.io.data;
 
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.text.MessageFormat;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
 
 import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageOutputStream;
 
 import de.erichseifert.gral.data.DataSource;
 import de.erichseifert.gral.io.IOCapabilities;
-import de.erichseifert.gral.util.MathUtils;
+import de.erichseifert.gral.plots.colors.ContinuousColorMapper;
+import de.erichseifert.gral.util.DataUtils;
 import de.erichseifert.gral.util.Messages;
 
 
 /**
- * Class that writes a data source to a binary image file. This class
- * shouldn't be used directly but using the {@link DataWriterFactory}.
+ * <p>Class that writes a data source to a binary image file. This class
+ * shouldn't be used directly but using the {@link DataWriterFactory}.</p>
+ * <p>Each cell of the data source becomes a pixel. The values are scaled
+ * with the settings {@link #FACTOR} and {@link #OFFSET} and limited to the
+ * range of the bit depth that is defined by {@link #BIT_DEPTH}: 0 to 255 for
+ * 8 bits, and 0 to 65535 for 16 bits. By default, a grayscale image is
+ * written. If a color mapper is set with {@link #COLOR_MAPPER}, an RGB image
+ * is written whose colors are looked up in a table that is created from the
+ * color mapper. Cells without a number are written as black pixels.</p>
+ * <p>Not all image formats support all bit depths.</p>
  */
 public class ImageWriter extends AbstractDataWriter {
+	/** Key for specifying a {@link Number} value that defines the factor
+	which is used to scale the values. */
+	public static final String FACTOR = ImageReader.FACTOR;
+	/** Key for specifying a {@link Number} value that defines the offset
+	which is added to the scaled values. */
+	public static final String OFFSET = ImageReader.OFFSET;
+	/** Key for specifying an {@link Integer} value that defines the number
+	of bits per channel. Valid values are 8 and 16. */
+	public static final String BIT_DEPTH = "bitDepth"; //$NON-NLS-1$
+	/** Key for specifying a {@link ContinuousColorMapper} instance that maps
+	the values to colors. The scaled values are divided by the largest value
+	of the bit depth, so the color mapper receives values between 0 and 1.
+	If no color mapper is set, a grayscale image is written. */
+	public static final String COLOR_MAPPER = "colorMapper"; //$NON-NLS-1$
+
+	/** Number of rows of pixels that are read at once. */
+	private static final int STRIP_HEIGHT = 64;
+
 	static {
 		addCapabilities(new IOCapabilities(
 			"BMP", //$NON-NLS-1$
@@ -86,8 +123,10 @@ public class ImageWriter extends AbstractDataWriter {
 	 */
 	public ImageWriter(String mimeType) {
 		super(mimeType);
-		setDefault("factor", 1.0); //$NON-NLS-1$
-		setDefault("offset", 0.0); //$NON-NLS-1$
+		setDefault(FACTOR, 1.0);
+		setDefault(OFFSET, 0.0);
+		setDefault(BIT_DEPTH, 8);
+		setDefault(COLOR_MAPPER, null);
 	}
 
 	/**
@@ -97,41 +136,211 @@ public class ImageWriter extends AbstractDataWriter {
 	 * @throws IOException if writing the data failed
 	 */
 	public void write(DataSource data, OutputStream output) throws IOException {
+		double factor = this.<Number>getSetting(FACTOR).doubleValue();
+		double offset = this.<Number>getSetting(OFFSET).doubleValue();
+		int bitDepth = this.<Number>getSetting(BIT_DEPTH).intValue();
+		ContinuousColorMapper colorMapper = getSetting(COLOR_MAPPER);
+		if (bitDepth != 8 && bitDepth != 16) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid bit depth: {0,number,integer}", bitDepth)); //$NON-NLS-1$
+		}
+		int max = (1 << bitDepth) - 1;
+
+		BufferedImage image = createImage(data.getColumnCount(),
+			data.getRowCount(), bitDepth, colorMapper != null);
+		if (colorMapper == null) {
+			fillGray(image, data, factor, offset, max);
+		} else {
+			fillColor(image, data, factor, offset, max, createTable(colorMapper, max));
+		}
+
+		Iterator<javax.imageio.ImageWriter> writers =
+			ImageIO.getImageWritersByMIMEType(getMimeType());
+		if (!writers.hasNext()) {
+			throw new IOException(MessageFormat.format(
+				"No writer found for MIME type {0}.", getMimeType())); //$NON-NLS-1$
+		}
+		javax.imageio.ImageWriter writer = writers.next();
+		try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(output)) {
+			writer.setOutput(imageOutput);
+			writer.write(image);
+		} finally {
+			writer.dispose();
+		}
+	}
+
+	/**
+	 * Creates an image that stores the pixels in a single array.
+	 * @param w Width of the image.
+	 * @param h Height of the image.
+	 * @param bitDepth Number of bits per channel.
+	 * @param color {@code true} for an RGB image, {@code false} for a
+	 *        grayscale image.
+	 * @return Image.
+	 */
+	private static BufferedImage createImage(int w, int h, int bitDepth, boolean color) {
+		if (bitDepth == 8) {
+			return new BufferedImage(w, h,
+				color ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_BYTE_GRAY);
+		}
+		if (!color) {
+			return new BufferedImage(w, h, BufferedImage.TYPE_USHORT_GRAY);
+		}
+		ComponentColorModel colorModel = new ComponentColorModel(
+			ColorSpace.getInstance(ColorSpace.CS_sRGB), false, false,
+			Transparency.OPAQUE, DataBuffer.TYPE_USHORT);
+		WritableRaster raster = colorModel.createCompatibleWritableRaster(w, h);
+		return new BufferedImage(colorModel, raster, false, null);
+	}
+
+	/**
+	 * Reads a strip of rows from the data source. The values of each column
+	 * are stored consecutively.
+	 * @param data Data source.
+	 * @param y Index of the first row.
+	 * @param height Number of rows.
+	 * @param values Array that receives the values.
+	 */
+	private static void readStrip(DataSource data, int y, int height, double[] values) {
 		int w = data.getColumnCount();
-		int h = data.getRowCount();
-
-		double factor = this.<Number>getSetting("factor").doubleValue(); //$NON-NLS-1$
-		double offset = this.<Number>getSetting("offset").doubleValue(); //$NON-NLS-1$
-
-		byte[] pixelData = new byte[w*h];
-		int pos = 0;
-		for (int y = 0; y < h; y++) {
-			for (int x = 0; x < w; x++) {
-				Comparable<?> cell = data.get(x, y);
-				if (!(cell instanceof Number)) {
-					continue;
+		for (int x = 0; x < w; x++) {
+			DataUtils.getValues(data, x, y, values, x*height, height);
+		}
+	}
+
+	/**
+	 * Returns the pixel value for the specified cell value.
+	 * @param value Cell value.
+	 * @param factor Factor that is used to scale the value.
+	 * @param offset Offset that is added to the scaled value.
+	 * @param max Largest pixel value.
+	 * @return Pixel value, or {@code 0} if the cell contains no number.
+	 */
+	private static int toPixel(double value, double factor, double offset, int max) {
+		double scaled = value*factor + offset;
+		if (!(scaled > 0.0)) {
+			return 0;
+		}
+		if (scaled >= max) {
+			return max;
+		}
+		return (int) Math.round(scaled);
+	}
+
+	/**
+	 * Writes the values of a data source to a grayscale image.
+	 * @param image Image with 8 or 16 bits per pixel.
+	 * @param data Data source.
+	 * @param factor Factor that is used to scale the values.
+	 * @param offset Offset that is added to the scaled values.
+	 * @param max Largest pixel value.
+	 */
+	private static void fillGray(BufferedImage image, DataSource data,
+			double factor, double offset, int max) {
+		int w = image.getWidth();
+		int h = image.getHeight();
+		DataBuffer buffer = image.getRaster().getDataBuffer();
+		byte[] bytes = null;
+		short[] shorts = null;
+		if (buffer instanceof DataBufferByte) {
+			bytes = ((DataBufferByte) buffer).getData();
+		} else {
+			shorts = ((DataBufferUShort) buffer).getData();
+		}
+
+		double[] values = new double[w*Math.min(STRIP_HEIGHT, h)];
+		for (int y = 0; y < h; y += STRIP_HEIGHT) {
+			int height = Math.min(STRIP_HEIGHT, h - y);
+			readStrip(data, y, height, values);
+			for (int row = 0; row < height; row++) {
+				int pos = (y + row)*w;
+				for (int x = 0; x < w; x++) {
+					int pixel = toPixel(values[x*height + row], factor, offset, max);
+					if (bytes != null) {
+						bytes[pos + x] = (byte) pixel;
+					} else {
+						shorts[pos + x] = (short) pixel;
+					}
 				}
-				Number numericCell = (Number) cell;
-				double value = numericCell.doubleValue()*factor + offset;
-				byte v = (byte) Math.round(MathUtils.limit(value, 0.0, 255.0));
-				pixelData[pos++] = v;
 			}
 		}
+	}
 
-        BufferedImage image =
-        	new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
-        image.getRaster().setDataElements(0, 0, w, h, pixelData);
-
-        Iterator<javax.imageio.ImageWriter> writers =
-        	ImageIO.getImageWritersByMIMEType(getMimeType());
-        try {
-        	javax.imageio.ImageWriter writer = writers.next();
-        	writer.setOutput(ImageIO.createImageOutputStream(output));
-        	writer.write(image);
-        } catch (NoSuchElementException e) {
-        	throw new IOException(MessageFormat.format(
-        			"No writer found for MIME type {0}.", getMimeType())); //$NON-NLS-1$
-        }
+	/**
+	 * Writes the values of a data source to an RGB image.
+	 * @param image Image with 8 or 16 bits per channel.
+	 * @param data Data source.
+	 * @param factor Factor that is used to scale the values.
+	 * @param offset Offset that is added to the scaled values.
+	 * @param max Largest pixel value.
+	 * @param table Red, green, and blue channel for each pixel value.
+	 */
+	private static void fillColor(BufferedImage image, DataSource data,
+			double factor, double offset, int max, int[] table) {
+		int w = image.getWidth();
+		int h = image.getHeight();
+		DataBuffer buffer = image.getRaster().getDataBuffer();
+		int[] ints = null;
+		short[] shorts = null;
+		if (buffer instanceof DataBufferInt) {
+			ints = ((DataBufferInt) buffer).getData();
+		} else {
+			shorts = ((DataBufferUShort) buffer).getData();
+		}
+
+		double[] values = new double[w*Math.min(STRIP_HEIGHT, h)];
+		for (int y = 0; y < h; y += STRIP_HEIGHT) {
+			int height = Math.min(STRIP_HEIGHT, h - y);
+			readStrip(data, y, height, values);
+			for (int row = 0; row < height; row++) {
+				int pos = (y + row)*w;
+				for (int x = 0; x < w; x++) {
+					double value = values[x*height + row];
+					if (Double.isNaN(value)) {
+						continue;
+					}
+					int pixel = toPixel(value, factor, offset, max);
+					if (ints != null) {
+						ints[pos + x] = table[pixel];
+					} else {
+						int i = 3*(pos + x);
+						shorts[i] = (short) table[3*pixel];
+						shorts[i + 1] = (short) table[3*pixel + 1];
+						shorts[i + 2] = (short) table[3*pixel + 2];
+					}
+				}
+			}
+		}
 	}
 
+	/**
+	 * Creates a table with the colors of all pixel values. For 8 bits per
+	 * channel, the table contains one packed RGB value for each pixel value.
+	 * For 16 bits per channel, it contains three channel values for each
+	 * pixel value.
+	 * @param colorMapper Color mapper.
+	 * @param max Largest pixel value.
+	 * @return Table of colors.
+	 */
+	private static int[] createTable(ContinuousColorMapper colorMapper, int max) {
+		boolean packed = max == 255;
+		int[] table = new int[(max + 1)*(packed ? 1 : 3)];
+		float[] components = new float[3];
+		for (int i = 0; i <= max; i++) {
+			Paint paint = colorMapper.get((double) i/max);
+			if (!(paint instanceof Color)) {
+				continue;
+			}
+			Color color = (Color) paint;
+			if (packed) {
+				table[i] = color.getRGB() & 0xFFFFFF;
+			} else {
+				color.getRGBColorComponents(components);
+				for (int c = 0; c < 3; c++) {
+					table[3*i + c] = Math.round(components[c]*max);
+				}
+			}
+		}
+		return table;
+	}
 }
@@ -0,0 +1,537 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.erichseifert.gral.data.MutableDataSource;
+import de.erichseifert.gral.util.DataUtils;
+
+/**
+ * <p>Class that parses CSV or TSV content from a byte buffer, usually a
+ * memory-mapped file, using several threads.</p>
+ * <p>The buffer is divided into chunks of similar size. The quotes in all
+ * chunks are counted in parallel to determine whether a chunk starts inside
+ * quoted content. Afterwards, the start of each chunk is moved to the next
+ * line break outside of quotes and the chunks are parsed in parallel.
+ * Finally, the rows of all chunks are added to the data sink in the order of
+ * the chunks.</p>
+ * <p>Files that are larger than a single buffer are mapped in windows. Each
+ * window except for the last one ends at the beginning of a row outside of
+ * quoted content, so the next window always starts outside of quotes. The
+ * chunks of each window are parsed in parallel.</p>
+ * <p>The content must use a character set that encodes quotes and line
+ * breaks as single bytes, which never occur inside other characters. This is
+ * true for UTF-8 and for the usual single byte character sets.</p>
+ */
+final class MappedCSVParser {
+	/** Default minimal number of bytes in a chunk. */
+	static final int MIN_CHUNK_SIZE = 1024*1024;
+	/** Maximal number of bytes of a file that are mapped at once. */
+	static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+	/** Number of chunks per thread that are used to balance the load. */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/** Separator and column types. */
+	private final CSVSchema schema;
+	/** Character set of the content. */
+	private final Charset charset;
+	/** Thread pool, or {@code null} if content is parsed sequentially. */
+	private final ForkJoinPool pool;
+	/** Minimal number of bytes in a chunk. */
+	private final int minChunkSize;
+
+	/**
+	 * Task that determines whether a range of bytes contains an odd number
+	 * of quotes.
+	 */
+	private static final class QuoteTask extends RecursiveAction {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -6125208530296718429L;
+
+		/** Content. */
+		private final ByteBuffer buffer;
+		/** Index of the chunk. */
+		private final int chunk;
+		/** Index of the first byte. */
+		private final int start;
+		/** Index after the last byte. */
+		private final int end;
+		/** Array that receives the results of all chunks. */
+		private final boolean[] odd;
+
+		/**
+		 * Initializes a new task for the specified chunk.
+		 * @param buffer Content.
+		 * @param chunk Index of the chunk.
+		 * @param start Index of the first byte.
+		 * @param end Index after the last byte.
+		 * @param odd Array that receives the results of all chunks.
+		 */
+		public QuoteTask(ByteBuffer buffer, int chunk, int start, int end,
+				boolean[] odd) {
+			this.buffer = buffer;
+			this.chunk = chunk;
+			this.start = start;
+			this.end = end;
+			this.odd = odd;
+		}
+
+		@Override
+		protected void compute() {
+			boolean result = false;
+			for (int i = start; i < end; i++) {
+				if (buffer.get(i) == '"') {
+					result = !result;
+				}
+			}
+			odd[chunk] = result;
+		}
+	}
+
+	/**
+	 * Task that parses a chunk of content.
+	 */
+	private static final class ParseTask extends RecursiveAction {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 2931576408513870157L;
+
+		/** Parser settings. */
+		private final MappedCSVParser settings;
+		/** Content. */
+		private final ByteBuffer buffer;
+		/** Index of the first byte. */
+		private final int start;
+		/** Index after the last byte. */
+		private final int end;
+		/** Rows that have been parsed. */
+		private final List<List<Comparable<?>>> rows;
+		/** Error that occurred while parsing, or {@code null}. */
+		private Exception error;
+
+		/**
+		 * Initializes a new task for the specified range of bytes.
+		 * @param settings Parser settings.
+		 * @param buffer Content.
+		 * @param start Index of the first byte.
+		 * @param end Index after the last byte.
+		 */
+		public ParseTask(MappedCSVParser settings, ByteBuffer buffer,
+				int start, int end) {
+			this.settings = settings;
+			this.buffer = buffer;
+			this.start = start;
+			this.end = end;
+			rows = new ArrayList<>();
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				settings.parse(buffer, start, end, rows);
+			} catch (IOException | RuntimeException e) {
+				error = e;
+			}
+		}
+	}
+
+	/**
+	 * Initializes a new parser.
+	 * @param separator Character that separates columns.
+	 * @param types Data types of the columns.
+	 * @param charset Character set of the content.
+	 * @param pool Thread pool, or {@code null} if the content should be
+	 *        parsed sequentially.
+	 */
+	public MappedCSVParser(char separator,
+			Class<? extends Comparable<?>>[] types, Charset charset,
+			ForkJoinPool pool) {
+		this(separator, types, charset, pool, MIN_CHUNK_SIZE);
+	}
+
+	/**
+	 * Initializes a new parser with the specified minimal chunk size.
+	 * @param separator Character that separates columns.
+	 * @param types Data types of the columns.
+	 * @param charset Character set of the content.
+	 * @param pool Thread pool, or {@code null} if the content should be
+	 *        parsed sequentially.
+	 * @param minChunkSize Minimal number of bytes in a chunk.
+	 */
+	public MappedCSVParser(char separator,
+			Class<? extends Comparable<?>>[] types, Charset charset,
+			ForkJoinPool pool, int minChunkSize) {
+		this(new CSVSchema(separator, types), charset, pool, minChunkSize);
+	}
+
+	/**
+	 * Initializes a new parser for the specified schema.
+	 * @param schema Separator and column types.
+	 * @param charset Character set of the content.
+	 * @param pool Thread pool, or {@code null} if the content should be
+	 *        parsed sequentially.
+	 * @param minChunkSize Minimal number of bytes in a chunk.
+	 */
+	public MappedCSVParser(CSVSchema schema, Charset charset,
+			ForkJoinPool pool, int minChunkSize) {
+		this.schema = schema;
+		this.charset = charset;
+		this.pool = pool;
+		this.minChunkSize = Math.max(1, minChunkSize);
+	}
+
+	/**
+	 * Returns whether content in the specified character set can be divided
+	 * at single bytes.
+	 * @param charset Character set.
+	 * @return {@code true} if quotes and line breaks are encoded as single
+	 *         bytes, otherwise {@code false}.
+	 */
+	public static boolean isSupported(Charset charset) {
+		String specialChars = "\r\n\""; //$NON-NLS-1$
+		byte[] bytes = specialChars.getBytes(charset);
+		if (bytes.length != specialChars.length()) {
+			return false;
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			if (bytes[i] != specialChars.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses the content of the specified file and adds all rows to the
+	 * specified data sink. The file is mapped to memory in windows of at most
+	 * {@link #MAX_WINDOW_SIZE} bytes.
+	 * @param channel Channel of the file.
+	 * @param skipHeader Whether the first row is a header that is skipped.
+	 * @param target Data sink that receives the rows.
+	 * @throws IOException when the content is not valid or when
+	 *         experiencing an error during file operations.
+	 */
+	public void parse(FileChannel channel, boolean skipHeader,
+			MutableDataSource target) throws IOException {
+		parse(channel, skipHeader, MAX_WINDOW_SIZE, target);
+	}
+
+	/**
+	 * Parses the content of the specified file and adds all rows to the
+	 * specified data sink. The file is mapped to memory in windows of at most
+	 * the specified size.
+	 * @param channel Channel of the file.
+	 * @param skipHeader Whether the first row is a header that is skipped.
+	 * @param windowSize Maximal number of bytes that are mapped at once.
+	 * @param target Data sink that receives the rows.
+	 * @throws IOException when the content is not valid, when a row is larger
+	 *         than a window, or when experiencing an error during file
+	 *         operations.
+	 */
+	void parse(FileChannel channel, boolean skipHeader, int windowSize,
+			MutableDataSource target) throws IOException {
+		long size = channel.size();
+		long position = 0L;
+		int rowCount = 0;
+		do {
+			int length = (int) Math.min(windowSize, size - position);
+			boolean complete = position + length == size;
+			ByteBuffer buffer = channel.map(
+				FileChannel.MapMode.READ_ONLY, position, length);
+			if (skipHeader) {
+				buffer.position(getRowStart(buffer, 0, length, false));
+				skipHeader = false;
+			}
+			int start = buffer.position();
+			int rowCountOld = target.getRowCount();
+			int end = parse(buffer, complete, rowCount, target);
+			if (!complete && end == start) {
+				throw new IOException(MessageFormat.format(
+					"Row at byte {0,number,integer} is larger than {1,number,integer} bytes.", //$NON-NLS-1$
+					position + start, windowSize));
+			}
+			rowCount += target.getRowCount() - rowCountOld;
+			position += end;
+		} while (position < size);
+	}
+
+	/**
+	 * Parses the content between the position and the limit of the specified
+	 * buffer and adds all rows to the specified data sink.
+	 * @param buffer Content.
+	 * @param target Data sink that receives the rows.
+	 * @throws IOException when the content is not valid.
+	 */
+	public void parse(ByteBuffer buffer, MutableDataSource target)
+			throws IOException {
+		parse(buffer, true, 0, target);
+	}
+
+	/**
+	 * Parses the content between the position and the limit of the specified
+	 * buffer and adds all rows to the specified data sink. If the content is
+	 * incomplete, only the rows before the last line break outside of quotes
+	 * are parsed.
+	 * @param buffer Content.
+	 * @param complete Whether the content ends with the last row.
+	 * @param rowCount Number of rows that have been parsed before.
+	 * @param target Data sink that receives the rows.
+	 * @return Index after the last byte that has been parsed.
+	 * @throws IOException when the content is not valid.
+	 */
+	private int parse(ByteBuffer buffer, boolean complete, int rowCount,
+			MutableDataSource target) throws IOException {
+		int start = buffer.position();
+		int end = buffer.limit();
+		int parallelism = (pool != null) ? pool.getParallelism() : 1;
+		int chunkCount = (int) Math.min(
+			(long) CHUNKS_PER_THREAD*parallelism, (end - start)/minChunkSize);
+		if (pool == null || chunkCount < 2) {
+			if (!complete) {
+				end = Math.max(start, getLastRowStart(buffer, start, end, false));
+			}
+			CSVParser parser = new CSVParser(schema, target);
+			parser.setRowCount(rowCount);
+			parse(buffer, start, end, parser);
+			return end;
+		}
+
+		// Count quotes in approximate chunks
+		int[] bounds = new int[chunkCount + 1];
+		for (int chunk = 0; chunk <= chunkCount; chunk++) {
+			bounds[chunk] = start + (int) ((long) (end - start)*chunk/chunkCount);
+		}
+		boolean[] odd = new boolean[chunkCount];
+		List<QuoteTask> quoteTasks = new ArrayList<>(chunkCount);
+		for (int chunk = 0; chunk < chunkCount; chunk++) {
+			quoteTasks.add(new QuoteTask(
+				buffer, chunk, bounds[chunk], bounds[chunk + 1], odd));
+		}
+		invokeAll(quoteTasks);
+
+		if (!complete) {
+			// End the content at the last row that starts outside of quotes
+			boolean[] quotedAtStart = new boolean[chunkCount];
+			for (int chunk = 1; chunk < chunkCount; chunk++) {
+				quotedAtStart[chunk] = quotedAtStart[chunk - 1] ^ odd[chunk - 1];
+			}
+			int rowStart = -1;
+			for (int chunk = chunkCount - 1; chunk >= 0 && rowStart < 0; chunk--) {
+				rowStart = getLastRowStart(buffer, bounds[chunk],
+					bounds[chunk + 1], quotedAtStart[chunk]);
+			}
+			if (rowStart < 0) {
+				return start;
+			}
+			end = rowStart;
+		}
+
+		// Move chunk boundaries to the beginning of rows
+		boolean quoted = false;
+		for (int chunk = 1; chunk < chunkCount; chunk++) {
+			quoted ^= odd[chunk - 1];
+			if (bounds[chunk - 1] >= bounds[chunk]) {
+				// The previous chunk already covers the beginning of this one
+				bounds[chunk] = bounds[chunk - 1];
+			} else {
+				bounds[chunk] = Math.min(
+					getRowStart(buffer, bounds[chunk], end, quoted), end);
+			}
+		}
+		bounds[chunkCount] = end;
+
+		// Parse chunks
+		List<ParseTask> parseTasks = new ArrayList<>(chunkCount);
+		for (int chunk = 0; chunk < chunkCount; chunk++) {
+			parseTasks.add(new ParseTask(
+				this, buffer, bounds[chunk], bounds[chunk + 1]));
+		}
+		invokeAll(parseTasks);
+
+		for (ParseTask task : parseTasks) {
+			if (task.error != null) {
+				// Parse everything again to report the correct line
+				CSVParser parser = new CSVParser(
+					schema, new ArrayList<List<Comparable<?>>>());
+				parser.setRowCount(rowCount);
+				parse(buffer, start, end, parser);
+				if (task.error instanceof IOException) {
+					throw (IOException) task.error;
+				}
+				throw (RuntimeException) task.error;
+			}
+		}
+		for (ParseTask task : parseTasks) {
+			if (!task.rows.isEmpty()) {
+				DataUtils.addAll(target, task.rows);
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Runs the specified tasks in the thread pool and waits for all of them.
+	 * @param tasks Tasks.
+	 */
+	private void invokeAll(final List<? extends RecursiveAction> tasks) {
+		pool.invoke(new RecursiveAction() {
+			/** Version id for serialization. */
+			private static final long serialVersionUID = -3820539764250918732L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * Returns the index of the first row that starts at or after the
+	 * specified index.
+	 * @param buffer Content.
+	 * @param start Index where the search starts.
+	 * @param end Index after the last byte.
+	 * @param quoted Whether the content at the start index is quoted.
+	 * @return Index of the first byte of the row, or {@code end} if there is
+	 *         no further row.
+	 */
+	static int getRowStart(ByteBuffer buffer, int start, int end,
+			boolean quoted) {
+		for (int i = start; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b == '"') {
+				quoted = !quoted;
+			} else if (!quoted) {
+				if (b == '\n') {
+					return i + 1;
+				} else if (b == '\r' && (i + 1 == end || buffer.get(i + 1) != '\n')) {
+					return i + 1;
+				}
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Returns the index after the last line break outside of quotes in the
+	 * specified range. A carriage return at the limit of the buffer isn't
+	 * considered a line break, because a line feed might follow.
+	 * @param buffer Content.
+	 * @param start Index where the search starts.
+	 * @param end Index after the last byte.
+	 * @param quoted Whether the content at the start index is quoted.
+	 * @return Index of the first byte after the last line break, or
+	 *         {@code -1} if there is no line break in the range.
+	 */
+	static int getLastRowStart(ByteBuffer buffer, int start, int end,
+			boolean quoted) {
+		int rowStart = -1;
+		int limit = buffer.limit();
+		for (int i = start; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b == '"') {
+				quoted = !quoted;
+			} else if (!quoted) {
+				if (b == '\n') {
+					rowStart = i + 1;
+				} else if (b == '\r' && i + 1 < limit && buffer.get(i + 1) != '\n') {
+					rowStart = i + 1;
+				}
+			}
+		}
+		return rowStart;
+	}
+
+	/**
+	 * Parses a range of bytes and appends all rows to the specified list.
+	 * @param buffer Content.
+	 * @param start Index of the first byte.
+	 * @param end Index after the last byte.
+	 * @param rows List that receives the rows.
+	 * @throws IOException when the content is not valid.
+	 */
+	private void parse(ByteBuffer buffer, int start, int end,
+			List<List<Comparable<?>>> rows) throws IOException {
+		parse(buffer, start, end, new CSVParser(schema, rows));
+	}
+
+	/**
+	 * Decodes a range of bytes and passes the characters to the specified
+	 * parser.
+	 * @param buffer Content.
+	 * @param start Index of the first byte.
+	 * @param end Index after the last byte.
+	 * @param parser Parser that receives the characters.
+	 * @throws IOException when the content is not valid.
+	 */
+	private void parse(ByteBuffer buffer, int start, int end, CSVParser parser)
+			throws IOException {
+		ByteBuffer in = buffer.duplicate();
+		in.limit(end);
+		in.position(start);
+		CharBuffer out = CharBuffer.allocate(CSVParser.CHUNK_SIZE);
+		CharsetDecoder decoder = charset.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		CoderResult result;
+		do {
+			result = decoder.decode(in, out, true);
+			if (result.isError()) {
+				result.throwException();
+			}
+			drain(out, parser);
+		} while (result.isOverflow());
+		do {
+			result = decoder.flush(out);
+			drain(out, parser);
+		} while (result.isOverflow());
+		parser.finish();
+	}
+
+	/**
+	 * Passes all decoded characters to the specified parser and clears the
+	 * character buffer.
+	 * @param out Decoded characters.
+	 * @param parser Parser that receives the characters.
+	 * @throws IOException when the content is not valid.
+	 */
+	private static void drain(CharBuffer out, CSVParser parser)
+			throws IOException {
+		out.flip();
+		parser.parse(out.array(), out.arrayOffset() + out.position(),
+			out.remaining());
+		out.clear();
+	}
+}
@@ -29,10 +29,15 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Dimension2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 
+import de.erichseifert.gral.data.AbstractDataSource;
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
 import de.erichseifert.gral.data.DataSource;
-import de.erichseifert.gral.data.DataTable;
 import de.erichseifert.gral.data.Row;
+import de.erichseifert.gral.data.statistics.RowStatistics;
 import de.erichseifert.gral.data.statistics.Statistics;
 import de.erichseifert.gral.graphics.AbstractDrawable;
 import de.erichseifert.gral.graphics.Drawable;
@@ -44,7 +49,9 @@ import de.erichseifert.gral.plots.colors.ContinuousColorMapper;
 import de.erichseifert.gral.plots.colors.Grayscale;
 import de.erichseifert.gral.plots.points.AbstractPointRenderer;
 import de.erichseifert.gral.plots.points.PointData;
+import de.erichseifert.gral.util.DataUtils;
 import de.erichseifert.gral.util.GraphicsUtils;
+import de.erichseifert.gral.util.MathUtils;
 import de.erichseifert.gral.util.PointND;
 
 
@@ -322,39 +329,185 @@ public class RasterPlot extends XYPlot {
 	}
 
 	/**
-	 * Takes a matrix of values and creates a new data source that stores the
-	 * values in (x, y, value) format.
+	 * Read-only view of a matrix of values in (x, y, value) format. Each
+	 * cell of the matrix is a row of the view: the x coordinate is the
+	 * column of the cell, the y coordinate is the negated row of the cell,
+	 * and the value is scaled to the range of all values in the matrix.
+	 * The values are read from the matrix when they are requested.
+	 */
+	private static class RasterValues extends AbstractDataSource
+			implements DataListener {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -3542291487950476251L;
+
+		/** Matrix of values. */
+		private final DataSource data;
+		/** Smallest value of the matrix. */
+		private transient double min;
+		/** Difference between the largest and the smallest value. */
+		private transient double range;
+		/** Whether the range of values has to be determined again. */
+		private transient boolean rangeChanged;
+
+		/**
+		 * Initializes a new view of the specified matrix.
+		 * @param data Matrix of values.
+		 */
+		@SuppressWarnings("unchecked")
+		public RasterValues(DataSource data) {
+			super(Double.class, Double.class, Double.class);
+			this.data = data;
+			rangeChanged = true;
+			data.addDataListener(this);
+		}
+
+		@Override
+		public Comparable<?> get(int col, int row) {
+			if (row < 0 || row >= getRowCount()) {
+				throw new IndexOutOfBoundsException(String.valueOf(row));
+			}
+			int width = data.getColumnCount();
+			switch (col) {
+			case 0:
+				return (double) (row % width);
+			case 1:
+				return (double) -(row/width);
+			case 2:
+				double[] value = new double[1];
+				getValuesInRange(col, row, value, 0, 1);
+				return value[0];
+			default:
+				throw new IndexOutOfBoundsException(String.valueOf(col));
+			}
+		}
+
+		@Override
+		protected void getValuesInRange(int col, int row, double[] values, int offset, int length) {
+			int width = data.getColumnCount();
+			if (col == 0 || col == 1) {
+				for (int i = 0; i < length; i++) {
+					int r = row + i;
+					values[offset + i] = (col == 0) ? r % width : -(r/width);
+				}
+				return;
+			} else if (col != 2) {
+				throw new IndexOutOfBoundsException(String.valueOf(col));
+			}
+			updateRange();
+			// The cells of each column of the matrix are every width-th row
+			double[] column = null;
+			for (int i = 0; i < Math.min(width, length); i++) {
+				int count = (int) (((long) length - i + width - 1)/width);
+				if (column == null) {
+					column = new double[count];
+				}
+				DataUtils.getValues(data, (row + i) % width, (row + i)/width, column, 0, count);
+				for (int j = 0; j < count; j++) {
+					values[offset + i + j*width] = (column[j] - min)/range;
+				}
+			}
+		}
+
+		@Override
+		public int getRowCount() {
+			long count = (long) data.getRowCount()*data.getColumnCount();
+			return (int) Math.min(count, Integer.MAX_VALUE);
+		}
+
+		/**
+		 * Determines the range of all values in the matrix if it has changed.
+		 */
+		private void updateRange() {
+			if (!rangeChanged) {
+				return;
+			}
+			double min = Double.NaN;
+			for (double rowMin : RowStatistics.get(data, Statistics.MIN)) {
+				// Rows without numbers have no minimum
+				if (MathUtils.isCalculatable(rowMin) && !(rowMin >= min)) {
+					min = rowMin;
+				}
+			}
+			double max = Double.NaN;
+			for (double rowMax : RowStatistics.get(data, Statistics.MAX)) {
+				if (MathUtils.isCalculatable(rowMax) && !(rowMax <= max)) {
+					max = rowMax;
+				}
+			}
+			this.min = min;
+			range = max - min;
+			rangeChanged = false;
+		}
+
+		/**
+		 * Method that is invoked when data has been added.
+		 * This method is invoked by objects that provide support for
+		 * {@code DataListener}s and should not be called manually.
+		 * @param source Data source that has been changed.
+		 * @param events Optional event object describing the data values that
+		 *        have been added.
+		 */
+		public void dataAdded(DataSource source, DataChangeEvent... events) {
+			rangeChanged = true;
+			notifyDataAdded();
+		}
+
+		/**
+		 * Method that is invoked when data has been updated.
+		 * This method is invoked by objects that provide support for
+		 * {@code DataListener}s and should not be called manually.
+		 * @param source Data source that has been changed.
+		 * @param events Optional event object describing the data values that
+		 *        have been updated.
+		 */
+		public void dataUpdated(DataSource source, DataChangeEvent... events) {
+			rangeChanged = true;
+			notifyDataUpdated();
+		}
+
+		/**
+		 * Method that is invoked when data has been removed.
+		 * This method is invoked by objects that provide support for
+		 * {@code DataListener}s and should not be called manually.
+		 * @param source Data source that has been changed.
+		 * @param events Optional event object describing the data values that
+		 *        have been removed.
+		 */
+		public void dataRemoved(DataSource source, DataChangeEvent... events) {
+			rangeChanged = true;
+			notifyDataRemoved();
+		}
+
+		/**
+		 * Custom deserialization method.
+		 * @param in Input stream.
+		 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+		 * @throws IOException if there is an error while reading data from the
+		 *         input stream.
+		 */
+		private void readObject(ObjectInputStream in)
+				throws ClassNotFoundException, IOException {
+			// Normal deserialization
+			in.defaultReadObject();
+
+			// Restore listeners and determine the range again
+			rangeChanged = true;
+			data.addDataListener(this);
+		}
+	}
+
+	/**
+	 * Takes a matrix of values and returns a read-only data source that
+	 * provides the values in (x, y, value) format. The values aren't copied,
+	 * but read from the matrix when they are requested.
 	 * @param data Original data source with values in each cell.
-	 * @return New data source with (x, y, value) columns
+	 * @return Data source with (x, y, value) columns.
 	 */
-	@SuppressWarnings("unchecked")
 	public static DataSource createRasterData(DataSource data) {
 		if (data == null) {
 			throw new NullPointerException("Cannot convert null data source.");
 		}
-
-		DataTable coordsValueData =
-			new DataTable(Double.class, Double.class, Double.class);
-
-		// Generate pixel data with (x, y, value)
-		double min = ((Number) data.getRowStatistics(Statistics.MIN).
-				getColumnStatistics(Statistics.MIN).get(0, 0)).doubleValue();
-		double max = ((Number) data.getRowStatistics(Statistics.MAX).
-				getColumnStatistics(Statistics.MAX).get(0, 0)).doubleValue();
-		double range = max - min;
-		int i = 0;
-		for (Comparable<?> cell : data) {
-			int x =  i%data.getColumnCount();
-			int y = -i/data.getColumnCount();
-			double v = Double.NaN;
-			if (cell instanceof Number) {
-				Number numericCell = (Number) cell;
-				v = (numericCell.doubleValue() - min) / range;
-			}
-			coordsValueData.add((double) x, (double) y, v);
-			i++;
-		}
-		return coordsValueData;
+		return new RasterValues(data);
 	}
 
 	@Override
@@ -21,9 +21,16 @@
  */
 package de.erichseifert.gral.util;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import de.erichseifert.gral.data.AbstractDataSource;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.MutableDataSource;
+
 /**
  * Abstract class that contains utility functions for creating data structures
  * and for working with data sources and values.
@@ -74,4 +81,72 @@ public abstract class DataUtils {
 		}
 		return n.doubleValue();
 	}
+
+	/**
+	 * Returns the double value of the specified object if it is a
+	 * {@code Number}, or {@code NaN} otherwise.
+	 * @param value Object, for example the value of a data cell.
+	 * @return Double value of the object, or {@code NaN} if it isn't a
+	 *         number.
+	 */
+	public static double getValueOrNaN(Object value) {
+		if (!(value instanceof Number)) {
+			return Double.NaN;
+		}
+		return ((Number) value).doubleValue();
+	}
+
+	/**
+	 * Copies the values of consecutive rows in the specified column of a
+	 * data source to an array of primitive values. Cells that don't contain
+	 * a number, and rows outside the data source, are stored as
+	 * {@code NaN}. Data sources that extend {@link AbstractDataSource} copy
+	 * the values with {@link AbstractDataSource#getValues(int, int, double[], int, int)},
+	 * which usually doesn't create an object for every cell. The values of
+	 * other data sources are read with {@link DataSource#get(int, int)}.
+	 * @param data Data source.
+	 * @param col Index of the column.
+	 * @param row Index of the first row to be copied.
+	 * @param values Array that receives the values.
+	 * @param offset Position in the array where the first value is stored.
+	 * @param length Number of rows to be copied.
+	 */
+	public static void getValues(DataSource data, int col, int row,
+			double[] values, int offset, int length) {
+		if (data instanceof AbstractDataSource) {
+			((AbstractDataSource) data).getValues(col, row, values, offset, length);
+			return;
+		}
+		long first = Math.max(row, 0L);
+		long last = Math.min((long) row + length, data.getRowCount());
+		Arrays.fill(values, offset, offset + length, Double.NaN);
+		for (long r = first; r < last; r++) {
+			values[offset + (int) (r - row)] = getValueOrNaN(data.get(col, (int) r));
+		}
+	}
+
+	/**
+	 * Adds rows with the specified containers' elements to a data sink.
+	 * Rows are added to a {@link DataTable} at once with
+	 * {@link DataTable#addAll(List)}, which notifies listeners only once.
+	 * Rows are added to other data sinks one by one with
+	 * {@link MutableDataSource#add(List)}.
+	 * @param data Data sink.
+	 * @param rows Rows to be added.
+	 * @return Index of the first row that has been added.
+	 */
+	public static int addAll(MutableDataSource data,
+			List<? extends List<? extends Comparable<?>>> rows) {
+		if (data instanceof DataTable) {
+			return ((DataTable) data).addAll(rows);
+		}
+		int rowStart = data.getRowCount();
+		for (int i = 0; i < rows.size(); i++) {
+			int row = data.add(rows.get(i));
+			if (i == 0) {
+				rowStart = row;
+			}
+		}
+		return rowStart;
+	}
 }
@@ -0,0 +1,175 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Resizable array of primitive {@code double} values. In contrast to a
+ * {@code List<Double>} the values are stored without boxing, which makes
+ * this class suitable for caching large amounts of numeric data.
+ */
+public class DoubleList implements Serializable {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -2461238468927617296L;
+
+	/** Capacity that is used if none was specified. */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/** Stored values. Only the first {@code size} elements are valid. */
+	private double[] values;
+	/** Number of stored values. */
+	private int size;
+
+	/**
+	 * Constructs an empty list with the specified initial capacity.
+	 * @param initialCapacity Initial capacity of the list.
+	 */
+	public DoubleList(int initialCapacity) {
+		values = new double[Math.max(initialCapacity, 1)];
+	}
+
+	/**
+	 * Constructs an empty list with a default initial capacity.
+	 */
+	public DoubleList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Returns the value at the specified index.
+	 * @param index Index of the value.
+	 * @return Value at the specified index.
+	 */
+	public double get(int index) {
+		checkIndex(index);
+		return values[index];
+	}
+
+	/**
+	 * Replaces the value at the specified index.
+	 * @param index Index of the value.
+	 * @param value New value.
+	 * @return The value that was replaced.
+	 */
+	public double set(int index, double value) {
+		checkIndex(index);
+		double old = values[index];
+		values[index] = value;
+		return old;
+	}
+
+	/**
+	 * Appends the specified value to the end of the list.
+	 * @param value Value to be added.
+	 */
+	public void add(double value) {
+		ensureCapacity(size + 1);
+		values[size++] = value;
+	}
+
+	/**
+	 * Appends a range of values from the specified array to the end of the
+	 * list.
+	 * @param src Array containing the values.
+	 * @param offset Index of the first value in the array.
+	 * @param length Number of values to be added.
+	 */
+	public void add(double[] src, int offset, int length) {
+		ensureCapacity(size + length);
+		System.arraycopy(src, offset, values, size, length);
+		size += length;
+	}
+
+	/**
+	 * Copies a range of values into the specified array.
+	 * @param index Index of the first value to be copied.
+	 * @param dst Array that receives the values.
+	 * @param offset Index in the destination array.
+	 * @param length Number of values to be copied.
+	 */
+	public void get(int index, double[] dst, int offset, int length) {
+		if (index < 0 || length < 0 || index + length > size) {
+			throw new IndexOutOfBoundsException(
+				"Range " + index + "+" + length + " exceeds size " + size); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		System.arraycopy(values, index, dst, offset, length);
+	}
+
+	/**
+	 * Returns the number of values in this list.
+	 * @return Number of values.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Shortens this list to the specified size. If the list is already shorter
+	 * nothing happens.
+	 * @param newSize New number of values.
+	 */
+	public void truncate(int newSize) {
+		if (newSize < size) {
+			size = Math.max(newSize, 0);
+		}
+	}
+
+	/**
+	 * Removes all values from this list.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Makes sure the list can hold at least the specified number of values
+	 * without being resized.
+	 * @param capacity Minimal capacity.
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > values.length) {
+			int newCapacity = Math.max(capacity, values.length + (values.length >> 1));
+			values = Arrays.copyOf(values, newCapacity);
+		}
+	}
+
+	/**
+	 * Returns a copy of all values in this list.
+	 * @return Array containing the values.
+	 */
+	public double[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * Checks whether the specified index refers to a stored value.
+	 * @param index Index to be checked.
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(
+				"Index " + index + " exceeds size " + size); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+}
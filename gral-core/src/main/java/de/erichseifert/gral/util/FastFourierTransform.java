@@ -0,0 +1,185 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.util;
+
+/**
+ * Abstract class that provides an implementation of the fast Fourier
+ * transform (FFT) and functions based on it, e.g. the convolution of long
+ * sequences. The transform uses the iterative radix-2 Cooley-Tukey
+ * algorithm, so the length of all transformed arrays must be a power of two.
+ */
+public abstract class FastFourierTransform {
+	/**
+	 * Default constructor that prevents creation of class.
+	 */
+	private FastFourierTransform() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns the smallest power of two that is greater or equal to the
+	 * specified number.
+	 * @param n Number.
+	 * @return Power of two.
+	 */
+	public static int getPaddedSize(int n) {
+		int size = 1;
+		while (size < n) {
+			size <<= 1;
+		}
+		return size;
+	}
+
+	/**
+	 * Calculates the discrete Fourier transform of the specified complex
+	 * values in place.
+	 * @param re Real parts.
+	 * @param im Imaginary parts.
+	 */
+	public static void transform(double[] re, double[] im) {
+		transform(re, im, false);
+	}
+
+	/**
+	 * Calculates the inverse discrete Fourier transform of the specified
+	 * complex values in place. The result is scaled by {@code 1/n}.
+	 * @param re Real parts.
+	 * @param im Imaginary parts.
+	 */
+	public static void inverse(double[] re, double[] im) {
+		transform(re, im, true);
+		double scale = 1.0/re.length;
+		for (int i = 0; i < re.length; i++) {
+			re[i] *= scale;
+			im[i] *= scale;
+		}
+	}
+
+	/**
+	 * Calculates the linear convolution of two real sequences. The result
+	 * contains {@code a.length + b.length - 1} values; the value at index
+	 * {@code i} is the sum of all products {@code a[j]*b[i - j]}.
+	 * @param a First sequence.
+	 * @param b Second sequence.
+	 * @return Convolved sequence.
+	 */
+	public static double[] convolve(double[] a, double[] b) {
+		if (a.length == 0 || b.length == 0) {
+			return new double[0];
+		}
+		int length = a.length + b.length - 1;
+		int size = getPaddedSize(length);
+
+		// Both real sequences are transformed at once as a + i*b
+		double[] re = new double[size];
+		double[] im = new double[size];
+		System.arraycopy(a, 0, re, 0, a.length);
+		System.arraycopy(b, 0, im, 0, b.length);
+		transform(re, im, false);
+
+		// Separate the spectra using their symmetry and multiply them
+		double[] productRe = new double[size];
+		double[] productIm = new double[size];
+		for (int k = 0; k < size; k++) {
+			int kNeg = (size - k) & (size - 1);
+			double xr = re[k], xi = im[k];
+			double yr = re[kNeg], yi = im[kNeg];
+			double ar = (xr + yr)/2.0, ai = (xi - yi)/2.0;
+			double br = (xi + yi)/2.0, bi = (yr - xr)/2.0;
+			productRe[k] = ar*br - ai*bi;
+			productIm[k] = ar*bi + ai*br;
+		}
+		inverse(productRe, productIm);
+
+		double[] result = new double[length];
+		System.arraycopy(productRe, 0, result, 0, length);
+		return result;
+	}
+
+	/**
+	 * Calculates the discrete Fourier transform or its unscaled inverse in
+	 * place.
+	 * @param re Real parts.
+	 * @param im Imaginary parts.
+	 * @param inverse {@code true} if the inverse transform should be
+	 *        calculated.
+	 */
+	private static void transform(double[] re, double[] im, boolean inverse) {
+		int n = re.length;
+		if (n != im.length) {
+			throw new IllegalArgumentException(
+				"Real and imaginary parts must have the same length."); //$NON-NLS-1$
+		}
+		if ((n & (n - 1)) != 0) {
+			throw new IllegalArgumentException(
+				"Length must be a power of two: " + n); //$NON-NLS-1$
+		}
+
+		// Bit reversal permutation
+		for (int i = 1, j = 0; i < n; i++) {
+			int bit = n >> 1;
+			for (; (j & bit) != 0; bit >>= 1) {
+				j ^= bit;
+			}
+			j ^= bit;
+			if (i < j) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+
+		// Twiddle factors for the largest stage
+		int half = n/2;
+		double[] cos = new double[half];
+		double[] sin = new double[half];
+		double sign = inverse ? 1.0 : -1.0;
+		for (int k = 0; k < half; k++) {
+			double angle = 2.0*Math.PI*k/n;
+			cos[k] = Math.cos(angle);
+			sin[k] = sign*Math.sin(angle);
+		}
+
+		// Butterflies
+		for (int length = 2; length <= n; length <<= 1) {
+			int halfLength = length/2;
+			int step = n/length;
+			for (int start = 0; start < n; start += length) {
+				for (int k = 0; k < halfLength; k++) {
+					int even = start + k;
+					int odd = even + halfLength;
+					double wr = cos[k*step];
+					double wi = sin[k*step];
+					double tr = re[odd]*wr - im[odd]*wi;
+					double ti = re[odd]*wi + im[odd]*wr;
+					re[odd] = re[even] - tr;
+					im[odd] = im[even] - ti;
+					re[even] += tr;
+					im[even] += ti;
+				}
+			}
+		}
+	}
+}
@@ -389,6 +389,30 @@ public abstract class MathUtils {
 		return values.get(i) + (values.get(i + 1) - values.get(i))*(c + d*xFrac);
 	}
 
+	/**
+	 * Returns the specified quantile of sorted primitive values. The same
+	 * estimation as in {@link #quantile(List, double)} is used.
+	 * @param values Sorted data values.
+	 * @param length Number of values in the array to be used.
+	 * @param q Quantile in range [0, 1]
+	 * @return Quantile value
+	 */
+	public static double quantile(double[] values, int length, double q) {
+		double x = (length - 1.0) * q;
+		int i = (int) x;
+		double xFrac = x - i;
+
+		if (x < 0.0) {
+			return values[0];
+		} else if (i >= length - 1) {
+			return values[length - 1];
+		}
+		if (xFrac == 0) {
+			return values[i];
+		}
+		return values[i] + (values[i + 1] - values[i])*xFrac;
+	}
+
 	/**
 	 * Returns whether a specified {@code java.lang.Number} object can be
 	 * used for calculations. {@code null} values, {@code NaN} values
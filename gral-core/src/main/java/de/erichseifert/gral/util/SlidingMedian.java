@@ -0,0 +1,300 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.util;
+
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Window of primitive values that provides the median of its values. Values
+ * are added at the end of the window and removed from its start. Both
+ * operations take {@code O(log n)} time and the median can be queried in
+ * constant time, which makes the class suited for calculating medians of
+ * windows that slide over long sequences of values.</p>
+ *
+ * <p>The values are partitioned into two binary heaps: a max-heap with the
+ * lower half and a min-heap with the upper half of the values. Each value
+ * knows its position in the heaps, so the oldest value can be removed
+ * directly. Values that are not calculatable (like {@code NaN}) are kept in
+ * the window but aren't used for the median.</p>
+ */
+public class SlidingMedian {
+	/** Values in the window, stored as ring buffer. */
+	private final double[] values;
+	/** Position of each value in its heap, or {@code -1} if the value isn't
+	calculatable. */
+	private final int[] positions;
+	/** Flags that indicate whether a value belongs to the lower heap. */
+	private final boolean[] lower;
+	/** Max-heap with the indexes of the lower half of the values. */
+	private final int[] lowerHeap;
+	/** Min-heap with the indexes of the upper half of the values. */
+	private final int[] upperHeap;
+	/** Index of the oldest value. */
+	private int head;
+	/** Number of values in the window. */
+	private int size;
+	/** Number of values in the lower heap. */
+	private int lowerSize;
+	/** Number of values in the upper heap. */
+	private int upperSize;
+	/** Number of values that aren't calculatable. */
+	private int invalidCount;
+
+	/**
+	 * Initializes a new empty window with the specified capacity.
+	 * @param capacity Maximal number of values in the window.
+	 */
+	public SlidingMedian(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException(
+				"Invalid capacity: " + capacity); //$NON-NLS-1$
+		}
+		values = new double[capacity];
+		positions = new int[capacity];
+		lower = new boolean[capacity];
+		lowerHeap = new int[capacity];
+		upperHeap = new int[capacity];
+	}
+
+	/**
+	 * Returns the maximal number of values in the window.
+	 * @return Capacity.
+	 */
+	public int getCapacity() {
+		return values.length;
+	}
+
+	/**
+	 * Returns the number of values in the window.
+	 * @return Number of values.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of values in the window that aren't calculatable.
+	 * @return Number of values that aren't used for the median.
+	 */
+	public int getInvalidCount() {
+		return invalidCount;
+	}
+
+	/**
+	 * Returns the value at the specified position in the window.
+	 * @param index Position, starting with the oldest value.
+	 * @return Value.
+	 */
+	public double get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(
+				"Index: " + index + ", Size: " + size); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return values[(head + index) % values.length];
+	}
+
+	/**
+	 * Appends a value to the end of the window.
+	 * @param value Value to be added.
+	 * @throws IllegalStateException if the window is full.
+	 */
+	public void add(double value) {
+		if (size == values.length) {
+			throw new IllegalStateException("Window is full."); //$NON-NLS-1$
+		}
+		int index = (head + size) % values.length;
+		size++;
+		values[index] = value;
+		if (!MathUtils.isCalculatable(value)) {
+			positions[index] = -1;
+			invalidCount++;
+			return;
+		}
+		if (lowerSize == 0 || value <= values[lowerHeap[0]]) {
+			lower[index] = true;
+			lowerHeap[lowerSize] = index;
+			positions[index] = lowerSize++;
+			siftUp(lowerHeap, positions[index], true);
+		} else {
+			lower[index] = false;
+			upperHeap[upperSize] = index;
+			positions[index] = upperSize++;
+			siftUp(upperHeap, positions[index], false);
+		}
+		balance();
+	}
+
+	/**
+	 * Removes the oldest value from the window.
+	 * @return Removed value.
+	 * @throws NoSuchElementException if the window is empty.
+	 */
+	public double removeFirst() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		int index = head;
+		head = (head + 1) % values.length;
+		size--;
+		double value = values[index];
+		int pos = positions[index];
+		if (pos < 0) {
+			invalidCount--;
+			return value;
+		}
+		if (lower[index]) {
+			removeAt(lowerHeap, --lowerSize, pos, true);
+		} else {
+			removeAt(upperHeap, --upperSize, pos, false);
+		}
+		balance();
+		return value;
+	}
+
+	/**
+	 * Removes all values from the window.
+	 */
+	public void clear() {
+		head = 0;
+		size = 0;
+		lowerSize = 0;
+		upperSize = 0;
+		invalidCount = 0;
+	}
+
+	/**
+	 * Returns the median of all calculatable values in the window. For an
+	 * even number of values the mean of the two middle values is returned.
+	 * @return Median, or {@code NaN} if there are no calculatable values.
+	 */
+	public double getMedian() {
+		if (lowerSize == 0) {
+			return Double.NaN;
+		}
+		if (lowerSize > upperSize) {
+			return values[lowerHeap[0]];
+		}
+		return (values[lowerHeap[0]] + values[upperHeap[0]])/2.0;
+	}
+
+	/**
+	 * Restores the sizes of the heaps, so the lower heap contains as many
+	 * values as the upper heap or one more.
+	 */
+	private void balance() {
+		if (lowerSize > upperSize + 1) {
+			int index = lowerHeap[0];
+			removeAt(lowerHeap, --lowerSize, 0, true);
+			lower[index] = false;
+			upperHeap[upperSize] = index;
+			positions[index] = upperSize++;
+			siftUp(upperHeap, positions[index], false);
+		} else if (upperSize > lowerSize) {
+			int index = upperHeap[0];
+			removeAt(upperHeap, --upperSize, 0, false);
+			lower[index] = true;
+			lowerHeap[lowerSize] = index;
+			positions[index] = lowerSize++;
+			siftUp(lowerHeap, positions[index], true);
+		}
+	}
+
+	/**
+	 * Removes the element at the specified position from a heap.
+	 * @param heap Heap.
+	 * @param last Position of the last element, which is the new size.
+	 * @param pos Position of the element to be removed.
+	 * @param max {@code true} for the max-heap, {@code false} for the min-heap.
+	 */
+	private void removeAt(int[] heap, int last, int pos, boolean max) {
+		if (pos == last) {
+			return;
+		}
+		heap[pos] = heap[last];
+		positions[heap[pos]] = pos;
+		pos = siftUp(heap, pos, max);
+		siftDown(heap, last, pos, max);
+	}
+
+	/**
+	 * Returns whether the value of the first index has to be stored above the
+	 * value of the second index in a heap.
+	 * @param a First value index.
+	 * @param b Second value index.
+	 * @param max {@code true} for the max-heap, {@code false} for the min-heap.
+	 * @return {@code true} if the first value has a higher priority.
+	 */
+	private boolean isBefore(int a, int b, boolean max) {
+		return max ? values[a] > values[b] : values[a] < values[b];
+	}
+
+	/**
+	 * Moves an element up in a heap until the heap property is restored.
+	 * @param heap Heap.
+	 * @param pos Position of the element.
+	 * @param max {@code true} for the max-heap, {@code false} for the min-heap.
+	 * @return New position of the element.
+	 */
+	private int siftUp(int[] heap, int pos, boolean max) {
+		int index = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1)/2;
+			if (!isBefore(index, heap[parent], max)) {
+				break;
+			}
+			heap[pos] = heap[parent];
+			positions[heap[pos]] = pos;
+			pos = parent;
+		}
+		heap[pos] = index;
+		positions[index] = pos;
+		return pos;
+	}
+
+	/**
+	 * Moves an element down in a heap until the heap property is restored.
+	 * @param heap Heap.
+	 * @param heapSize Number of elements in the heap.
+	 * @param pos Position of the element.
+	 * @param max {@code true} for the max-heap, {@code false} for the min-heap.
+	 */
+	private void siftDown(int[] heap, int heapSize, int pos, boolean max) {
+		int index = heap[pos];
+		while (true) {
+			int child = 2*pos + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && isBefore(heap[child + 1], heap[child], max)) {
+				child++;
+			}
+			if (!isBefore(heap[child], index, max)) {
+				break;
+			}
+			heap[pos] = heap[child];
+			positions[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = index;
+		positions[index] = pos;
+	}
+}
@@ -21,15 +21,20 @@
  */
 package de.erichseifert.gral.util;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * A tokenizing parser that can analyzes a string using different sets of
@@ -46,10 +51,21 @@ import java.util.regex.Pattern;
  * joined by adding the type with {@link #addJoinedType(Object)} and tokens can
  * be omitted from the result for easier post-processing by adding with
  * {@link #addIgnoredType(Object)}.
+ *
+ * The rules of each state are compiled to a single regular expression that
+ * tries all rules in order at once. Tokens can be produced lazily from a
+ * {@code CharSequence} or a {@code Reader} with the {@code iterator}
+ * methods. States with rules that can't be combined, e.g. because they use
+ * back references or named groups, are analyzed rule by rule.
  */
 public abstract class StatefulTokenizer {
 	/** The name of the initial state. */
 	protected static final String INITIAL_STATE = "";
+	/** Number of characters that are read at once from a reader. */
+	static final int READ_SIZE = 8192;
+	/** Pattern that detects back references, which would refer to the
+	wrong groups in a combined expression. */
+	private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\(?:[1-9]|k<)");
 
 	/** Token types that should be joined when adjacent tokens are found. */
 	private final Set<Object> joinedTypes;
@@ -57,6 +73,8 @@ public abstract class StatefulTokenizer {
 	private final Set<Object> ignoredTypes;
 	/** Rules for specific states. */
 	private final Map<String, Rule[]> grammar;
+	/** Compiled rules for specific states. */
+	private final Map<String, CompiledState> compiledGrammar;
 
 	/**
 	 * A token that designates a certain section of a text input. The absolute
@@ -206,6 +224,268 @@ public abstract class StatefulTokenizer {
 		}
 	}
 
+	/**
+	 * The rules of a grammar state combined to a single regular expression.
+	 * Each rule is enclosed in a group, so the matching rule can be found by
+	 * checking which group participated in the match.
+	 */
+	private static final class CompiledState {
+		/** Rules of the state. */
+		private final Rule[] rules;
+		/** Combined expression, or {@code null} if the rules must be tried
+		one by one. */
+		private final Pattern pattern;
+		/** Index of the group that encloses each rule. */
+		private final int[] ruleGroups;
+		/** Index of the group that contains the content of each rule. */
+		private final int[] contentGroups;
+
+		/**
+		 * Combines the specified rules.
+		 * @param rules Rules of a grammar state.
+		 */
+		public CompiledState(Rule[] rules) {
+			this.rules = rules;
+			ruleGroups = new int[rules.length];
+			contentGroups = new int[rules.length];
+			StringBuilder expression = new StringBuilder();
+			boolean combinable = true;
+			int group = 1;
+			for (int i = 0; i < rules.length; i++) {
+				String regex = rules[i].pattern.pattern();
+				if (BACK_REFERENCE.matcher(regex).find()) {
+					combinable = false;
+				}
+				int groupCount = rules[i].pattern.matcher("").groupCount();
+				ruleGroups[i] = group;
+				contentGroups[i] = (groupCount > 0) ? group + 1 : group;
+				group += groupCount + 1;
+				if (i > 0) {
+					expression.append('|');
+				}
+				expression.append('(').append(regex).append(')');
+			}
+			Pattern combined = null;
+			if (combinable) {
+				try {
+					combined = Pattern.compile(expression.toString());
+				} catch (PatternSyntaxException e) {
+					// Rules are tried one by one
+				}
+			}
+			pattern = combined;
+		}
+	}
+
+	/**
+	 * Iterator that analyzes the input lazily and returns one token at a
+	 * time. Input from a reader is buffered until no rule can match more
+	 * characters; characters that have been analyzed are discarded.
+	 */
+	private final class TokenIterator implements Iterator<Token> {
+		/** Input data or buffered input from the reader. */
+		private final CharSequence data;
+		/** Reader that provides the input, or {@code null}. */
+		private final Reader reader;
+		/** Buffer for characters from the reader. */
+		private final char[] chars;
+		/** Decides whether all input has been read. */
+		private boolean eof;
+		/** Absolute position of the first character in the input data. */
+		private int base;
+		/** Current position in the input data. */
+		private int pos;
+		/** Stack of grammar states. */
+		private final Stack<String> states;
+		/** Matchers for each grammar state. */
+		private final Map<String, Matcher[]> matchers;
+		/** Token that might be joined with the following tokens. */
+		private Token pending;
+		/** Token that will be returned next. */
+		private Token next;
+		/** Decides whether all tokens have been found. */
+		private boolean finished;
+
+		/**
+		 * Initializes a new iterator for the specified input.
+		 * @param data Input data.
+		 * @param reader Reader that provides the input, or {@code null} if
+		 *        {@code data} contains all input.
+		 */
+		public TokenIterator(CharSequence data, Reader reader) {
+			this.data = data;
+			this.reader = reader;
+			chars = (reader != null) ? new char[READ_SIZE] : null;
+			eof = reader == null;
+			states = new Stack<>();
+			states.push(INITIAL_STATE);
+			matchers = new HashMap<>();
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null && !finished) {
+				next = findNext();
+				finished = next == null;
+			}
+			return next != null;
+		}
+
+		@Override
+		public Token next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Token token = next;
+			next = null;
+			return token;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Returns the next token that should be part of the output.
+		 * @return Token, or {@code null} if there are no more tokens.
+		 */
+		private Token findNext() {
+			while (true) {
+				Token token = match();
+				if (token == null) {
+					Token last = pending;
+					pending = null;
+					if (last != null && !ignoredTypes.contains(last.type)) {
+						return last;
+					}
+					return null;
+				}
+				if (pending != null && pending.type.equals(token.type) &&
+						joinedTypes.contains(pending.type)) {
+					pending.append(token);
+					continue;
+				}
+				Token last = pending;
+				pending = token;
+				if (last != null && !ignoredTypes.contains(last.type)) {
+					return last;
+				}
+			}
+		}
+
+		/**
+		 * Analyzes the input at the current position with the rules of the
+		 * current state.
+		 * @return Token, or {@code null} if the input has been analyzed
+		 *         completely or no rule matches.
+		 */
+		private Token match() {
+			while (!states.isEmpty()) {
+				if (pos >= data.length()) {
+					if (eof) {
+						return null;
+					}
+					fill();
+					continue;
+				}
+				String state = states.peek();
+				CompiledState compiled = getCompiledState(state);
+				Matcher[] stateMatchers = getMatchers(state, compiled);
+
+				Matcher matcher = null;
+				int rule = -1;
+				boolean hitEnd = false;
+				for (int i = 0; i < stateMatchers.length && rule < 0; i++) {
+					Matcher m = stateMatchers[i];
+					m.region(pos, data.length());
+					boolean found = m.lookingAt();
+					hitEnd |= m.hitEnd();
+					if (found) {
+						matcher = m;
+						rule = i;
+					}
+				}
+				if (hitEnd && !eof) {
+					// More input could change the result
+					fill();
+					continue;
+				}
+				if (matcher == null) {
+					return null;
+				}
+
+				int contentGroup;
+				if (compiled.pattern != null) {
+					rule = 0;
+					while (matcher.start(compiled.ruleGroups[rule]) < 0) {
+						rule++;
+					}
+					contentGroup = compiled.contentGroups[rule];
+				} else {
+					contentGroup = (matcher.groupCount() > 0) ? 1 : 0;
+				}
+				Rule r = compiled.rules[rule];
+				Token token = new Token(base + matcher.start(), base + matcher.end(),
+					r.tokenType, matcher.group(contentGroup));
+				pos = matcher.end();
+
+				if ("#pop".equals(r.nextState)) {
+					states.pop();
+				} else if (r.nextState != null) {
+					states.push(r.nextState);
+				}
+				return token;
+			}
+			return null;
+		}
+
+		/**
+		 * Returns the matchers of the specified grammar state.
+		 * @param state Name of the grammar state.
+		 * @param compiled Compiled rules of the grammar state.
+		 * @return Matchers that should be tried in order.
+		 */
+		private Matcher[] getMatchers(String state, CompiledState compiled) {
+			Matcher[] stateMatchers = matchers.get(state);
+			if (stateMatchers == null) {
+				if (compiled.pattern != null) {
+					stateMatchers = new Matcher[] {compiled.pattern.matcher(data)};
+				} else {
+					stateMatchers = new Matcher[compiled.rules.length];
+					for (int i = 0; i < stateMatchers.length; i++) {
+						stateMatchers[i] = compiled.rules[i].pattern.matcher(data);
+					}
+				}
+				matchers.put(state, stateMatchers);
+			}
+			return stateMatchers;
+		}
+
+		/**
+		 * Reads more characters from the reader and discards characters that
+		 * have already been analyzed.
+		 */
+		private void fill() {
+			StringBuilder buffer = (StringBuilder) data;
+			if (pos > 0) {
+				buffer.delete(0, pos);
+				base += pos;
+				pos = 0;
+			}
+			try {
+				int count = reader.read(chars);
+				if (count < 0) {
+					eof = true;
+				} else {
+					buffer.append(chars, 0, count);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
 	/**
 	 * Initializes the internal data structures of a new instance.
 	 */
@@ -213,6 +493,7 @@ public abstract class StatefulTokenizer {
 		joinedTypes = new HashSet<>();
 		ignoredTypes = new HashSet<>();
 		grammar = new HashMap<>();
+		compiledGrammar = new HashMap<>();
 	}
 
 	/**
@@ -248,6 +529,26 @@ public abstract class StatefulTokenizer {
 	 */
 	protected void putRules(String name, Rule... rules) {
 		grammar.put(name, rules);
+		synchronized (compiledGrammar) {
+			compiledGrammar.remove(name);
+		}
+	}
+
+	/**
+	 * Returns the compiled rules for the specified state. The rules are
+	 * compiled when they are used for the first time.
+	 * @param name Name of the grammar state.
+	 * @return Compiled rules.
+	 */
+	private CompiledState getCompiledState(String name) {
+		synchronized (compiledGrammar) {
+			CompiledState compiled = compiledGrammar.get(name);
+			if (compiled == null) {
+				compiled = new CompiledState(grammar.get(name));
+				compiledGrammar.put(name, compiled);
+			}
+			return compiled;
+		}
 	}
 
 	/**
@@ -257,47 +558,35 @@ public abstract class StatefulTokenizer {
 	 * @return List of tokens.
 	 */
 	public List<Token> tokenize(String data) {
-		LinkedList<Token> tokens = new LinkedList<>();
-
-		Stack<String> states = new Stack<>();
-		states.push(INITIAL_STATE);
-
-		int pos = 0;
-		Token tokenCur = null;
-		while (pos < data.length() && !states.isEmpty()) {
-			String state = states.peek();
-			Rule[] rules = grammar.get(state);
-			for (Rule rule : rules) {
-				Token token = rule.getToken(data, pos);
-				if (token == null) {
-					continue;
-				}
-
-				if (tokenCur != null && tokenCur.type.equals(token.type) &&
-						joinedTypes.contains(tokenCur.type)) {
-					tokenCur.append(token);
-				} else {
-					if (tokenCur != null &&
-							!ignoredTypes.contains(tokenCur.type)) {
-						tokens.add(tokenCur);
-					}
-					tokenCur = token;
-				}
-
-				pos = token.end;
-
-				if ("#pop".equals(rule.nextState)) {
-					states.pop();
-				} else if (rule.nextState != null) {
-					states.push(rule.nextState);
-				}
-				break;
-			}
+		List<Token> tokens = new ArrayList<>();
+		Iterator<Token> iterator = iterator(data);
+		while (iterator.hasNext()) {
+			tokens.add(iterator.next());
 		}
-		if (tokenCur != null && !ignoredTypes.contains(tokenCur.type)) {
-			tokens.add(tokenCur);
-		}
-
 		return tokens;
 	}
+
+	/**
+	 * Returns an iterator that analyzes the specified input lazily using
+	 * different sets of rules and returns the tokens one by one. The input
+	 * must not be changed while the iterator is used.
+	 * @param data Input data.
+	 * @return Iterator over the tokens.
+	 */
+	public Iterator<Token> iterator(CharSequence data) {
+		return new TokenIterator(data, null);
+	}
+
+	/**
+	 * Returns an iterator that reads the input lazily from the specified
+	 * reader using different sets of rules and returns the tokens one by
+	 * one. The reader isn't closed by the iterator. Errors while reading
+	 * are reported as {@code IllegalStateException} with the
+	 * {@code IOException} as cause.
+	 * @param reader Reader that provides the input.
+	 * @return Iterator over the tokens.
+	 */
+	public Iterator<Token> iterator(Reader reader) {
+		return new TokenIterator(new StringBuilder(), reader);
+	}
 }
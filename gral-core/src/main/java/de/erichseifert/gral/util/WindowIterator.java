@@ -21,40 +21,82 @@
  */
 package de.erichseifert.gral.util;
 
-import java.util.Deque;
+import java.util.AbstractList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
+/**
+ * Iterator that slides a window of fixed size over the values of another
+ * iterator. Values are read lazily and stored in a ring buffer, so the
+ * source iterator can be unbounded. The list returned by {@link #next()}
+ * is a read-only view of the ring buffer which changes with each
+ * subsequent call of {@link #next()}; it has to be copied if it should
+ * be kept.
+ * @param <T> Type of the values.
+ */
 public class WindowIterator<T> implements Iterator<List<T>> {
 	private final Iterator<T> iterator;
-	private final Deque<T> window;
+	private final Object[] buffer;
+	private final List<T> window;
+	private int head;
+	private int count;
 
-	public WindowIterator(Iterator<T> iterator, int windowSize) {
-		this.iterator = iterator;
+	private class Window extends AbstractList<T> {
+		@Override
+		@SuppressWarnings("unchecked")
+		public T get(int index) {
+			if (index < 0 || index >= buffer.length) {
+				throw new IndexOutOfBoundsException();
+			}
+			// The oldest value of the full window is located at head
+			return (T) buffer[(head + index) % buffer.length];
+		}
+
+		@Override
+		public int size() {
+			return buffer.length;
+		}
+	}
 
-		this.window = new LinkedList<>();
-		// Before the first call of Iterator.next(), the window contains an empty slot
-		window.add(null);
-		// ... and the other cells of the window are filled with values from the source iterator
-		for (int windowIndex = 0; windowIndex < windowSize - 1; windowIndex++) {
-			window.add(iterator.next());
+	public WindowIterator(Iterator<T> iterator, int windowSize) {
+		if (windowSize <= 0) {
+			throw new IllegalArgumentException(
+				"Invalid window size: " + windowSize); //$NON-NLS-1$
 		}
+		this.iterator = iterator;
+		buffer = new Object[windowSize];
+		window = new Window();
 	}
 
 	@Override
 	public boolean hasNext() {
-		return iterator.hasNext();
+		// Before the first call of next(), all but one cells of the window
+		// are filled with values from the source iterator
+		while (count < buffer.length - 1 && iterator.hasNext()) {
+			push(iterator.next());
+		}
+		return count >= buffer.length - 1 && iterator.hasNext();
 	}
 
 	@Override
 	public List<T> next() {
-		window.removeFirst();
-		window.add(iterator.next());
-		return new LinkedList<>(window);
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		push(iterator.next());
+		return window;
 	}
 
 	@Override
 	public void remove() {
 	}
+
+	private void push(T value) {
+		buffer[head] = value;
+		head = (head + 1) % buffer.length;
+		if (count < buffer.length) {
+			count++;
+		}
+	}
 }
@@ -36,6 +36,7 @@ import java.io.InputStream;
 import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.Iterator;
 import java.util.List;
 
 import de.erichseifert.gral.util.GeometryUtils;
@@ -269,4 +270,34 @@ public class TestUtils {
 			org.junit.Assert.assertEquals(expected, actual);
 		}
 	}
+
+	/**
+	 * Returns an endless sequence of the natural numbers, starting with zero.
+	 * @return Natural numbers.
+	 */
+	public static Iterable<Integer> getNaturalNumbers() {
+		return new Iterable<Integer>() {
+			@Override
+			public Iterator<Integer> iterator() {
+				return new Iterator<Integer>() {
+					private int value;
+
+					@Override
+					public boolean hasNext() {
+						return true;
+					}
+
+					@Override
+					public Integer next() {
+						return value++;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
 }
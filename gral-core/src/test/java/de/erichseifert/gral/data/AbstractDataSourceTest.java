@@ -124,4 +124,30 @@ public class AbstractDataSourceTest {
 		DataSource rowStatistics = source.getRowStatistics(Statistics.N);
 		assertThat(rowStatistics.getRowCount(), is(rowCount));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testGetValues() {
+		AbstractDataSource data = new StubAbstractDataSource(1, 3) {
+			@Override
+			public Comparable<?> get(int col, int row) {
+				if (row < 0 || row >= getRowCount()) {
+					throw new IndexOutOfBoundsException();
+				}
+				return (row == 1) ? "foo" : row;
+			}
+		};
+		double[] values = new double[7];
+		data.getValues(0, -2, values, 1, 6);
+		assertEquals(0.0, values[0], 0.0);
+		assertEquals(Double.NaN, values[1], 0.0);
+		assertEquals(Double.NaN, values[2], 0.0);
+		assertEquals(0.0, values[3], 0.0);
+		assertEquals(Double.NaN, values[4], 0.0);
+		assertEquals(2.0, values[5], 0.0);
+		assertEquals(Double.NaN, values[6], 0.0);
+
+		data.getValues(0, 5, values, 0, 2);
+		assertEquals(Double.NaN, values[0], 0.0);
+		assertEquals(Double.NaN, values[1], 0.0);
+	}
+}
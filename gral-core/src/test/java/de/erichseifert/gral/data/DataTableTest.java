@@ -30,6 +30,7 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import org.junit.Before;
 import org.junit.Test;
@@ -147,6 +148,45 @@ public class DataTableTest {
 		}
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAddAll() {
+		int sizeBefore = table.getRowCount();
+		MockDataListener listener = new MockDataListener();
+		table.addDataListener(listener);
+
+		int rowIndex = table.addAll(Arrays.asList(
+			Arrays.asList(0, -1),
+			Arrays.asList(1, -2),
+			Arrays.asList(2, null)
+		));
+		assertEquals(sizeBefore + 3, table.getRowCount());
+		assertEquals(sizeBefore, rowIndex);
+		assertEquals(1, table.get(0, rowIndex + 1));
+		assertEquals(-2, table.get(1, rowIndex + 1));
+		assertNull(table.get(1, rowIndex + 2));
+
+		// Listeners are notified once with one event per added cell
+		assertEquals(6, listener.added.length);
+		assertEquals(rowIndex, listener.added[0].getRow());
+		assertEquals(0, listener.added[0].getNew());
+		assertEquals(-1, listener.added[1].getNew());
+		assertEquals(rowIndex + 2, listener.added[5].getRow());
+		assertEquals(1, listener.added[5].getCol());
+		assertNull(listener.added[5].getNew());
+
+		// Wrong type of columns
+		try {
+			table.addAll(Arrays.asList(
+				Arrays.asList(3, -4),
+				Arrays.asList(1.0, 1.0)
+			));
+			fail("Expected IllegalArgumentException exception.");
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(sizeBefore + 3, table.getRowCount());
+	}
+
 	@Test
 	public void testAddCollectionReturnsInsertedPosition() {
 		DataTable table = new DataTable();
@@ -220,6 +260,28 @@ public class DataTableTest {
 		assertEquals(11, table.get(1, 7));
 	}
 
+	@Test
+	public void testGetValues() {
+		double[] values = new double[5];
+		table.getValues(1, 5, values, 1, 4);
+		assertEquals(0.0, values[0], TestUtils.DELTA);
+		assertEquals(8.0, values[1], TestUtils.DELTA);
+		assertEquals(9.0, values[2], TestUtils.DELTA);
+		assertEquals(11.0, values[3], TestUtils.DELTA);
+		// Rows after the end of the table are stored as NaN
+		assertEquals(Double.NaN, values[4], TestUtils.DELTA);
+
+		// Rows before the beginning of the table are stored as NaN
+		table.getValues(1, -2, values, 0, 3);
+		assertEquals(Double.NaN, values[0], TestUtils.DELTA);
+		assertEquals(Double.NaN, values[1], TestUtils.DELTA);
+		assertEquals(1.0, values[2], TestUtils.DELTA);
+		table.getValues(1, -10, values, 0, 5);
+		for (double value : values) {
+			assertEquals(Double.NaN, value, TestUtils.DELTA);
+		}
+	}
+
 	@Test
 	public void testIterator() {
 		int i = 0;
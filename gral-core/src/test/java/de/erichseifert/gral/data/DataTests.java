@@ -42,6 +42,9 @@ import de.erichseifert.gral.data.statistics.StatisticsTests;
 	RecordTest.class,
 	ColumnTest.class,
 	JdbcDataTest.class,
+	ReservoirSampleTest.class,
+	StratifiedSampleTest.class,
+	RasterDataTest.class,
 	// Tests for sub-packages
 	ComparatorTest.class,
 	StatisticsTests.class,
@@ -0,0 +1,126 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.data.RasterData.Channel;
+
+public class RasterDataTest {
+	private static final double DELTA = 1e-10;
+
+	private BufferedImage image;
+
+	@Before
+	public void setUp() {
+		image = new BufferedImage(3, 2, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(0, 0, 0xFF102030);
+		image.setRGB(1, 0, 0x80FF0000);
+		image.setRGB(2, 0, 0xFF00FF00);
+		image.setRGB(0, 1, 0xFF0000FF);
+		image.setRGB(1, 1, 0xFFFFFFFF);
+		image.setRGB(2, 1, 0x00000000);
+	}
+
+	@Test
+	public void testSize() {
+		RasterData data = new RasterData(image);
+		assertEquals(3, data.getColumnCount());
+		assertEquals(2, data.getRowCount());
+		assertEquals(Double.class, data.getColumnTypes()[0]);
+		assertTrue(data.isColumnNumeric(2));
+	}
+
+	@Test
+	public void testChannels() {
+		assertEquals(0x10, ((Number) new RasterData(image, Channel.RED, 1.0, 0.0).get(0, 0)).doubleValue(), DELTA);
+		assertEquals(0x20, ((Number) new RasterData(image, Channel.GREEN, 1.0, 0.0).get(0, 0)).doubleValue(), DELTA);
+		assertEquals(0x30, ((Number) new RasterData(image, Channel.BLUE, 1.0, 0.0).get(0, 0)).doubleValue(), DELTA);
+		assertEquals(0x80, ((Number) new RasterData(image, Channel.ALPHA, 1.0, 0.0).get(1, 0)).doubleValue(), DELTA);
+		assertEquals(255.0, ((Number) new RasterData(image, Channel.LUMINANCE, 1.0, 0.0).get(1, 1)).doubleValue(), DELTA);
+		assertEquals(0.587*255.0, ((Number) new RasterData(image, Channel.LUMINANCE, 1.0, 0.0).get(2, 0)).doubleValue(), DELTA);
+	}
+
+	@Test
+	public void testFactorAndOffset() {
+		RasterData data = new RasterData(image, Channel.BLUE, 0.5, -1.0);
+		assertEquals(0x30*0.5 - 1.0, ((Number) data.get(0, 0)).doubleValue(), DELTA);
+		assertEquals(255*0.5 - 1.0, ((Number) data.get(0, 1)).doubleValue(), DELTA);
+	}
+
+	@Test
+	public void testGetValues() {
+		RasterData data = new RasterData(image, Channel.BLUE, 2.0, 1.0);
+		double[] values = new double[3];
+		data.getValues(0, 0, values, 1, 2);
+		assertEquals(0x30*2.0 + 1.0, values[1], DELTA);
+		assertEquals(255*2.0 + 1.0, values[2], DELTA);
+	}
+
+	@Test
+	public void testView() {
+		RasterData data = new RasterData(image, Channel.RED, 1.0, 0.0);
+		image.setRGB(0, 0, 0xFF400000);
+		assertEquals(0x40, ((Number) data.get(0, 0)).doubleValue(), DELTA);
+	}
+
+	@Test
+	public void testGrayImage() {
+		BufferedImage gray = new BufferedImage(2, 1, BufferedImage.TYPE_BYTE_GRAY);
+		gray.setRGB(0, 0, 0xFF7F7F7F);
+		for (Channel channel : Channel.values()) {
+			RasterData data = new RasterData(gray, channel, 1.0, 0.0);
+			double expected = (channel == Channel.ALPHA) ? 255.0 : (gray.getRGB(0, 0) & 0xFF);
+			assertEquals(expected, ((Number) data.get(0, 0)).doubleValue(), 1e-3);
+			double[] values = new double[1];
+			data.getValues(0, 0, values, 0, 1);
+			assertEquals(expected, values[0], 1e-3);
+		}
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		RasterData data = new RasterData(image);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+			output.writeObject(data);
+		}
+		DataSource copy;
+		try (ObjectInputStream input = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()))) {
+			copy = (DataSource) input.readObject();
+		}
+		assertEquals(3, copy.getColumnCount());
+		assertEquals(0x10, ((Number) copy.get(0, 0)).doubleValue(), DELTA);
+	}
+}
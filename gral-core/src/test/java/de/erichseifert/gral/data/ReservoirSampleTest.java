@@ -0,0 +1,220 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.filters.Convolution;
+import de.erichseifert.gral.data.filters.Filter2D.Mode;
+import de.erichseifert.gral.data.filters.Kernel;
+
+public class ReservoirSampleTest {
+	private DataTable table;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new DataTable(Integer.class, Double.class);
+		for (int i = 0; i < 1000; i++) {
+			table.add(i, i/10.0);
+		}
+	}
+
+	private static int[] getOriginalRows(AbstractSample sample) {
+		int[] rows = new int[sample.getRowCount()];
+		for (int row = 0; row < rows.length; row++) {
+			rows[row] = sample.getOriginalRow(row);
+		}
+		return rows;
+	}
+
+	private static void assertValidSample(AbstractSample sample) {
+		DataSource original = sample.getOriginal();
+		assertEquals(Math.min(sample.getSize(), original.getRowCount()), sample.getRowCount());
+		int previous = -1;
+		for (int row = 0; row < sample.getRowCount(); row++) {
+			int rowOrig = sample.getOriginalRow(row);
+			assertTrue(rowOrig > previous);
+			assertTrue(rowOrig < original.getRowCount());
+			previous = rowOrig;
+			for (int col = 0; col < original.getColumnCount(); col++) {
+				assertEquals(original.get(col, rowOrig), sample.get(col, row));
+			}
+		}
+	}
+
+	@Test
+	public void testCreate() {
+		ReservoirSample sample = new ReservoirSample(table, 100, 42L);
+		assertEquals(table, sample.getOriginal());
+		assertEquals(100, sample.getSize());
+		assertEquals(42L, sample.getSeed());
+		assertEquals(table.getColumnCount(), sample.getColumnCount());
+		assertArrayEquals(table.getColumnTypes(), sample.getColumnTypes());
+		assertValidSample(sample);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSize() {
+		new ReservoirSample(table, 0);
+	}
+
+	@Test
+	public void testSmallSource() {
+		ReservoirSample sample = new ReservoirSample(table, 5000);
+		assertValidSample(sample);
+		for (int row = 0; row < table.getRowCount(); row++) {
+			assertEquals(row, sample.getOriginalRow(row));
+		}
+	}
+
+	@Test
+	public void testUniformity() {
+		int[] counts = new int[100];
+		int trials = 5000;
+		for (int seed = 0; seed < trials; seed++) {
+			@SuppressWarnings("unchecked")
+			DataTable data = new DataTable(Integer.class);
+			for (int i = 0; i < 20; i++) {
+				data.add(i);
+			}
+			ReservoirSample sample = new ReservoirSample(data, 10, seed);
+			for (int i = 20; i < counts.length; i++) {
+				data.add(i);
+			}
+			for (int row : getOriginalRows(sample)) {
+				counts[row]++;
+			}
+		}
+		// Each row is expected to be contained in 10% of the samples
+		for (int count : counts) {
+			assertEquals(trials/10.0, count, 100.0);
+		}
+	}
+
+	@Test
+	public void testIncrementalUpdate() {
+		@SuppressWarnings("unchecked")
+		DataTable data = new DataTable(Integer.class, Double.class);
+		ReservoirSample sample = new ReservoirSample(data, 50, 1234L);
+		for (int row = 0; row < table.getRowCount(); row++) {
+			data.add(table.getRow(row).toArray(null));
+		}
+		assertValidSample(sample);
+
+		ReservoirSample expected = new ReservoirSample(table, 50, 1234L);
+		assertArrayEquals(getOriginalRows(expected), getOriginalRows(sample));
+	}
+
+	@Test
+	public void testChanges() {
+		ReservoirSample sample = new ReservoirSample(table, 10, 1L);
+		int[] rows = getOriginalRows(sample);
+
+		table.set(1, rows[0], -1.0);
+		assertValidSample(sample);
+		assertEquals(-1.0, sample.get(1, 0));
+
+		table.remove(rows[3]);
+		assertValidSample(sample);
+
+		table.clear();
+		assertEquals(0, sample.getRowCount());
+	}
+
+	@Test
+	public void testEvents() {
+		@SuppressWarnings("unchecked")
+		DataTable data = new DataTable(Integer.class, Double.class);
+		ReservoirSample sample = new ReservoirSample(data, 2, 3L);
+		final List<DataChangeEvent> added = new ArrayList<>();
+		final List<DataChangeEvent> updated = new ArrayList<>();
+		sample.addDataListener(new DataListener() {
+			public void dataAdded(DataSource source, DataChangeEvent... events) {
+				added.addAll(Arrays.asList(events));
+			}
+			public void dataUpdated(DataSource source, DataChangeEvent... events) {
+				updated.addAll(Arrays.asList(events));
+			}
+			public void dataRemoved(DataSource source, DataChangeEvent... events) {
+			}
+		});
+
+		// Rows that enlarge the sample are added
+		data.add(0, 0.0);
+		data.add(1, 0.1);
+		assertEquals(4, added.size());
+		assertEquals(1, added.get(3).getRow());
+		assertTrue(updated.isEmpty());
+
+		// Replaced rows of the full sample are updated
+		added.clear();
+		for (int i = 2; i < 100; i++) {
+			data.add(i, i/10.0);
+		}
+		assertTrue(added.isEmpty());
+		assertFalse(updated.isEmpty());
+		for (DataChangeEvent event : updated) {
+			assertTrue(event.getRow() < sample.getRowCount());
+		}
+
+		// Changes of the original are updates of all sample rows
+		updated.clear();
+		data.set(1, sample.getOriginalRow(1), -1.0);
+		assertEquals(4, updated.size());
+		assertEquals(-1.0, updated.get(3).getNew());
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		ReservoirSample original = new ReservoirSample(table, 30, 7L);
+		ReservoirSample deserialized = TestUtils.serializeAndDeserialize(original);
+
+		assertEquals(original.getSize(), deserialized.getSize());
+		assertEquals(original.getSeed(), deserialized.getSeed());
+		assertArrayEquals(getOriginalRows(original), getOriginalRows(deserialized));
+	}
+
+	@Test
+	public void testNumericColumns() {
+		ReservoirSample sample = new ReservoirSample(table, 50, 1L);
+		assertEquals(2, sample.getColumnCount());
+		assertArrayEquals(table.getColumnTypes(), sample.getColumnTypes());
+		assertTrue(sample.isColumnNumeric(0));
+		assertTrue(sample.isColumnNumeric(1));
+
+		Convolution filter = new Convolution(sample, Kernel.getBinomial(3), Mode.REPEAT, 1);
+		assertEquals(sample.getRowCount(), filter.getRowCount());
+	}
+}
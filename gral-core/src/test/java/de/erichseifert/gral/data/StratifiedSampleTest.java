@@ -0,0 +1,165 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+
+public class StratifiedSampleTest {
+	private DataTable table;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new DataTable(Double.class, Integer.class);
+		// Dense region
+		for (int i = 0; i < 10000; i++) {
+			table.add(i/10000.0, i);
+		}
+		// Sparse region
+		for (int i = 0; i < 5; i++) {
+			table.add(9.0 + i/5.0, -i);
+		}
+		table.add(Double.NaN, 0);
+	}
+
+	private static void assertValidSample(StratifiedSample sample) {
+		DataSource original = sample.getOriginal();
+		assertTrue(sample.getRowCount() <= sample.getSize());
+		for (int row = 0; row < sample.getRowCount(); row++) {
+			int rowOrig = sample.getOriginalRow(row);
+			assertTrue(rowOrig < original.getRowCount());
+			for (int col = 0; col < original.getColumnCount(); col++) {
+				assertEquals(original.get(col, rowOrig), sample.get(col, row));
+			}
+			double x = ((Number) sample.get(sample.getXColumn(), row)).doubleValue();
+			assertTrue(x >= sample.getRangeStart());
+			assertTrue(x <= sample.getRangeStart() + sample.getRangeWidth());
+		}
+	}
+
+	private static int countRows(StratifiedSample sample, double xMin, double xMax) {
+		int count = 0;
+		for (int row = 0; row < sample.getRowCount(); row++) {
+			double x = ((Number) sample.get(sample.getXColumn(), row)).doubleValue();
+			if (x >= xMin && x <= xMax) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void testCreate() {
+		StratifiedSample sample = new StratifiedSample(table, 100, 0, 10, 42L);
+		assertEquals(100, sample.getSize());
+		assertEquals(0, sample.getXColumn());
+		assertEquals(10, sample.getStrataCount());
+		assertEquals(0.0, sample.getRangeStart(), 0.0);
+		assertEquals(9.8, sample.getRangeWidth(), 1e-12);
+		assertValidSample(sample);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidStrataCount() {
+		new StratifiedSample(table, 10, 0, 11);
+	}
+
+	@Test
+	public void testCoverage() {
+		StratifiedSample sample = new StratifiedSample(table, 100, 0, 10, 42L);
+		// The sparse region is contained completely
+		assertEquals(5, countRows(sample, 9.0, 10.0));
+		// The dense region covers two strata
+		assertEquals(20, countRows(sample, 0.0, 1.0));
+
+		ReservoirSample uniform = new ReservoirSample(table, 100, 42L);
+		int sparse = 0;
+		for (int row = 0; row < uniform.getRowCount(); row++) {
+			if (((Number) uniform.get(0, row)).doubleValue() >= 9.0) {
+				sparse++;
+			}
+		}
+		assertTrue(sparse < 5);
+	}
+
+	@Test
+	public void testIncrementalUpdate() {
+		@SuppressWarnings("unchecked")
+		DataTable data = new DataTable(Double.class, Integer.class);
+		StratifiedSample sample = new StratifiedSample(data, 40, 0, 4, 1L);
+		assertEquals(0, sample.getRowCount());
+		for (int i = 0; i < 5000; i++) {
+			data.add((double) i, i);
+		}
+		assertValidSample(sample);
+		// At least half of the range is covered after doubling
+		assertTrue(sample.getRowCount() >= 20);
+		assertTrue(sample.getRangeWidth() >= 4999.0);
+		assertTrue(sample.getRangeWidth() < 2*4999.0);
+		// Every quarter of the data is covered
+		for (int quarter = 0; quarter < 4; quarter++) {
+			assertTrue(countRows(sample, quarter*1250.0, (quarter + 1)*1250.0) > 0);
+		}
+
+		// Values to the left of the range
+		for (int i = 1; i <= 100; i++) {
+			data.add(-100.0*i, -i);
+		}
+		assertValidSample(sample);
+		assertTrue(countRows(sample, -10000.0, -1.0) > 0);
+	}
+
+	@Test
+	public void testEqualValues() {
+		@SuppressWarnings("unchecked")
+		DataTable data = new DataTable(Double.class);
+		StratifiedSample sample = new StratifiedSample(data, 10, 0, 2, 1L);
+		for (int i = 0; i < 20; i++) {
+			data.add(1.0);
+		}
+		assertEquals(5, sample.getRowCount());
+		data.add(0.0);
+		assertEquals(6, sample.getRowCount());
+		assertEquals(0.0, sample.get(0, 0));
+		assertValidSample(sample);
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		StratifiedSample original = new StratifiedSample(table, 50, 0, 5, 7L);
+		StratifiedSample deserialized = TestUtils.serializeAndDeserialize(original);
+
+		assertEquals(original.getStrataCount(), deserialized.getStrataCount());
+		assertEquals(original.getRowCount(), deserialized.getRowCount());
+		for (int row = 0; row < original.getRowCount(); row++) {
+			assertEquals(original.getOriginalRow(row), deserialized.getOriginalRow(row));
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.filters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.filters.Filter2D.Mode;
+
+public class BiquadTest {
+	private static final double DELTA = 1e-9;
+
+	@SuppressWarnings("unchecked")
+	private static DataTable createSine(double frequency, double offset, int rowCount) {
+		DataTable data = new DataTable(Double.class);
+		for (int row = 0; row < rowCount; row++) {
+			data.add(offset + Math.sin(2.0*Math.PI*frequency*row));
+		}
+		return data;
+	}
+
+	private static double getAmplitude(DataSource data, int rowStart) {
+		double max = 0.0;
+		for (int row = rowStart; row < data.getRowCount(); row++) {
+			max = Math.max(max, Math.abs(((Number) data.get(0, row)).doubleValue()));
+		}
+		return max;
+	}
+
+	@Test
+	public void testCreate() {
+		DataTable data = createSine(0.01, 0.0, 100);
+		Biquad filter = new Biquad(data, Biquad.Type.LOW_PASS, 0.1, Biquad.Q_BUTTERWORTH, false, Mode.REPEAT);
+
+		assertEquals(data.getRowCount(), filter.getRowCount());
+		assertEquals(Biquad.Type.LOW_PASS, filter.getType());
+		assertEquals(0.1, filter.getFrequency(), 0.0);
+		assertEquals(Biquad.Q_BUTTERWORTH, filter.getQuality(), 0.0);
+	}
+
+	@Test
+	public void testLowPass() {
+		// Constant values pass unchanged
+		Biquad filter = new Biquad(createSine(0.4, 3.0, 1000), Biquad.Type.LOW_PASS,
+			0.02, Biquad.Q_BUTTERWORTH, false, Mode.REPEAT);
+		assertEquals(3.0, ((Number) filter.get(0, 0)).doubleValue(), 1e-2);
+		for (int row = 500; row < filter.getRowCount(); row++) {
+			assertEquals(3.0, ((Number) filter.get(0, row)).doubleValue(), 1e-2);
+		}
+	}
+
+	@Test
+	public void testHighPass() {
+		Biquad filter = new Biquad(createSine(0.001, 0.0, 2000), Biquad.Type.HIGH_PASS,
+			0.1, Biquad.Q_BUTTERWORTH, false, Mode.REPEAT);
+		assertTrue(getAmplitude(filter, 100) < 1e-2);
+
+		filter = new Biquad(createSine(0.3, 0.0, 2000), Biquad.Type.HIGH_PASS,
+			0.1, Biquad.Q_BUTTERWORTH, false, Mode.REPEAT);
+		assertEquals(1.0, getAmplitude(filter, 100), 0.1);
+	}
+
+	@Test
+	public void testBandPass() {
+		Biquad filter = new Biquad(createSine(0.125, 2.0, 2000), Biquad.Type.BAND_PASS,
+			0.125, 2.0, false, Mode.REPEAT);
+		// Offset is removed, the center frequency passes
+		assertEquals(1.0, getAmplitude(filter, 200), 1e-2);
+
+		filter = new Biquad(createSine(0.45, 0.0, 2000), Biquad.Type.BAND_PASS,
+			0.125, 2.0, false, Mode.REPEAT);
+		assertTrue(getAmplitude(filter, 200) < 0.2);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAppend() {
+		DataTable data = createSine(0.05, 1.0, 50);
+		Biquad filter = new Biquad(data, Biquad.Type.LOW_PASS, 0.1, 1.0, false, Mode.REPEAT);
+		for (int row = 50; row < 100; row++) {
+			data.add(1.0 + Math.sin(2.0*Math.PI*0.05*row));
+		}
+		Biquad expected = new Biquad(data, Biquad.Type.LOW_PASS, 0.1, 1.0, false, Mode.REPEAT);
+
+		assertEquals(expected.getRowCount(), filter.getRowCount());
+		for (int row = 0; row < data.getRowCount(); row++) {
+			assertEquals(((Number) expected.get(0, row)).doubleValue(),
+				((Number) filter.get(0, row)).doubleValue(), DELTA);
+		}
+	}
+
+	@Test
+	public void testZeroPhase() {
+		// The peaks of a sine in the pass band aren't delayed
+		DataTable data = createSine(0.01, 0.0, 1000);
+		Biquad causal = new Biquad(data, Biquad.Type.LOW_PASS, 0.05, Biquad.Q_BUTTERWORTH, false, Mode.MIRROR);
+		Biquad zeroPhase = new Biquad(data, Biquad.Type.LOW_PASS, 0.05, Biquad.Q_BUTTERWORTH, true, Mode.MIRROR);
+
+		int peak = 525;
+		assertEquals(1.0, ((Number) zeroPhase.get(0, peak)).doubleValue(), 1e-2);
+		assertTrue(((Number) causal.get(0, peak)).doubleValue() < 0.99);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidFrequency() {
+		new Biquad(createSine(0.1, 0.0, 10), Biquad.Type.LOW_PASS, 0.5, 1.0, false, Mode.REPEAT);
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		Biquad original = new Biquad(createSine(0.1, 0.0, 100), Biquad.Type.BAND_PASS,
+			0.1, 2.0, true, Mode.CIRCULAR);
+		Biquad deserialized = TestUtils.serializeAndDeserialize(original);
+
+		assertEquals(original.getType(), deserialized.getType());
+		assertEquals(original.getFrequency(), deserialized.getFrequency(), 0.0);
+		assertEquals(original.getQuality(), deserialized.getQuality(), 0.0);
+		assertEquals(original.isZeroPhase(), deserialized.isZeroPhase());
+		for (int row = 0; row < original.getRowCount(); row++) {
+			assertEquals(original.get(0, row), deserialized.get(0, row));
+		}
+	}
+}
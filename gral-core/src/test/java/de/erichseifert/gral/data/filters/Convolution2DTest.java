@@ -0,0 +1,191 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.filters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.filters.Filter2D.Mode;
+
+public class Convolution2DTest {
+	private static final double DELTA = 1e-12;
+
+	private static DataTable grid;
+
+	@BeforeClass
+	@SuppressWarnings("unchecked")
+	public static void setUpBeforeClass() {
+		Class<? extends Comparable<?>>[] types = new Class[7];
+		for (int col = 0; col < types.length; col++) {
+			types[col] = Integer.class;
+		}
+		grid = new DataTable(types);
+		Random random = new Random(7L);
+		for (int row = 0; row < 9; row++) {
+			Integer[] values = new Integer[types.length];
+			for (int col = 0; col < values.length; col++) {
+				values[col] = random.nextInt(256);
+			}
+			grid.add(values);
+		}
+	}
+
+	private static double getOriginal(DataSource data, Mode mode, int col, int row) {
+		int colLast = data.getColumnCount() - 1;
+		int rowLast = data.getRowCount() - 1;
+		if (col < 0 || col > colLast || row < 0 || row > rowLast) {
+			if (mode == Mode.OMIT) {
+				return Double.NaN;
+			} else if (mode == Mode.ZERO) {
+				return 0.0;
+			}
+		}
+		if (col < 0 || col > colLast) {
+			col = Filter2D.getPaddedIndex(mode, col, colLast);
+		}
+		if (row < 0 || row > rowLast) {
+			row = Filter2D.getPaddedIndex(mode, row, rowLast);
+		}
+		return ((Number) data.get(col, row)).doubleValue();
+	}
+
+	private static void assertConvolved(DataSource data, Kernel2D kernel, Mode mode,
+			DataSource filtered) {
+		assertEquals(data.getColumnCount(), filtered.getColumnCount());
+		assertEquals(data.getRowCount(), filtered.getRowCount());
+		for (int col = 0; col < data.getColumnCount(); col++) {
+			for (int row = 0; row < data.getRowCount(); row++) {
+				double expected = 0.0;
+				for (int y = kernel.getMinIndexY(); y <= kernel.getMaxIndexY(); y++) {
+					for (int x = kernel.getMinIndexX(); x <= kernel.getMaxIndexX(); x++) {
+						expected += kernel.get(x, y)*getOriginal(data, mode, col + x, row + y);
+					}
+				}
+				double actual = ((Number) filtered.get(col, row)).doubleValue();
+				String message = String.format("Wrong value at col=%d, row=%d, mode=%s.", col, row, mode);
+				if (Double.isNaN(expected)) {
+					assertTrue(message, Double.isNaN(actual));
+				} else {
+					assertEquals(message, expected, actual, DELTA);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSeparable() {
+		Kernel2D kernel = new Kernel2D(Kernel.getBinomial(5), Kernel.getBinomial(3));
+		assertTrue(kernel.isSeparable());
+		for (Mode mode : Mode.values()) {
+			assertConvolved(grid, kernel, mode, new Convolution2D(grid, kernel, mode));
+		}
+	}
+
+	@Test
+	public void testNonSeparable() {
+		Kernel2D kernel = new Kernel2D(2, 0, new double[][] {
+			{0.5, 1.0, -2.0, 0.0},
+			{1.0, -4.0, 1.0, 3.0},
+			{0.0, 1.0, 0.0, 0.25}
+		});
+		for (Mode mode : Mode.values()) {
+			assertConvolved(grid, kernel, mode, new Convolution2D(grid, kernel, mode));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testParallel() {
+		Class<? extends Comparable<?>>[] types = new Class[100];
+		for (int col = 0; col < types.length; col++) {
+			types[col] = Double.class;
+		}
+		DataTable data = new DataTable(types);
+		Random random = new Random(11L);
+		for (int row = 0; row < 50; row++) {
+			Double[] values = new Double[types.length];
+			for (int col = 0; col < values.length; col++) {
+				values[col] = random.nextDouble();
+			}
+			data.add(values);
+		}
+		Kernel2D kernel = Kernel2D.getBinomial(7);
+		Convolution2D serial = new Convolution2D(data, kernel, Mode.MIRROR);
+		Convolution2D parallel = new Convolution2D(data, kernel, Mode.MIRROR);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		parallel.setPool(pool);
+		parallel.setMode(Mode.REPEAT);
+		serial.setMode(Mode.REPEAT);
+		pool.shutdown();
+
+		for (int col = 0; col < data.getColumnCount(); col++) {
+			for (int row = 0; row < data.getRowCount(); row++) {
+				assertEquals(serial.get(col, row), parallel.get(col, row));
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testUpdatesWhenDataChanges() {
+		DataTable data = new DataTable(Double.class, Double.class, Double.class);
+		data.add(1.0, 2.0, 3.0);
+		data.add(4.0, 5.0, 6.0);
+		Kernel2D kernel = Kernel2D.getBinomial(3);
+		Convolution2D filter = new Convolution2D(data, kernel, Mode.REPEAT);
+
+		data.add(7.0, 8.0, 9.0);
+
+		assertConvolved(data, kernel, Mode.REPEAT, filter);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	@SuppressWarnings("unchecked")
+	public void testNonNumericColumn() {
+		DataTable data = new DataTable(Double.class, String.class);
+		new Convolution2D(data, Kernel2D.getBinomial(3), Mode.REPEAT);
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		Convolution2D original = new Convolution2D(grid, Kernel2D.getBinomial(3), Mode.MIRROR);
+		Convolution2D deserialized = TestUtils.serializeAndDeserialize(original);
+
+		assertEquals(original.getKernel().getWidth(), deserialized.getKernel().getWidth());
+		assertEquals(original.getMode(), deserialized.getMode());
+		for (int col = 0; col < original.getColumnCount(); col++) {
+			for (int row = 0; row < original.getRowCount(); row++) {
+				assertEquals(original.get(col, row), deserialized.get(col, row));
+			}
+		}
+	}
+}
@@ -22,12 +22,16 @@
 package de.erichseifert.gral.data.filters;
 
 import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.is;
 
 import static org.junit.Assert.assertThat;
 
 import java.util.Arrays;
+import java.util.Iterator;
 import org.junit.Test;
 
+import de.erichseifert.gral.TestUtils;
+
 public class ConvolutionFilterTest {
 	@Test
 	public void testIteratorReturnsConvolvedValues() {
@@ -38,4 +42,26 @@ public class ConvolutionFilterTest {
 
 		assertThat(filter, hasItems(16.0, 19.0, 15.0, 19.0));
 	}
+
+	@Test
+	public void testIteratorIsEmptyWhenKernelLargerThanDataToBeFiltered() {
+		Iterable<Integer> data = Arrays.asList(3, 8);
+		Kernel kernel = new Kernel(1.0, 1.0, 1.0);
+
+		ConvolutionFilter<Integer> filter = new ConvolutionFilter<>(data, kernel);
+
+		assertThat(filter.iterator().hasNext(), is(false));
+	}
+
+	@Test
+	public void testFiltersUnboundedInputLazily() {
+		Kernel kernel = new Kernel(1.0, 1.0, 1.0);
+
+		ConvolutionFilter<Integer> filter = new ConvolutionFilter<>(TestUtils.getNaturalNumbers(), kernel);
+		Iterator<Double> iterator = new Accumulation<>(filter).iterator();
+
+		assertThat(iterator.next(), is(3.0));
+		assertThat(iterator.next(), is(3.0 + 6.0));
+		assertThat(iterator.next(), is(3.0 + 6.0 + 9.0));
+	}
 }
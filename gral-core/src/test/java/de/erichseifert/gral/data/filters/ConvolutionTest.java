@@ -27,11 +27,16 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
+import de.erichseifert.gral.data.DataSource;
 import de.erichseifert.gral.data.DataTable;
 import de.erichseifert.gral.data.statistics.Statistics;
 
@@ -165,6 +170,191 @@ public class ConvolutionTest {
 		assertEquals( 3.0, ((Number) filter.get(1, 7)).doubleValue(), DELTA);
 	}
 
+	private static void assertFilteredEquals(DataSource expected, DataSource actual) {
+		assertEquals(expected.getRowCount(), actual.getRowCount());
+		for (int row = 0; row < expected.getRowCount(); row++) {
+			for (int col = 0; col < expected.getColumnCount(); col++) {
+				assertEquals(String.format("col=%d, row=%d", col, row),
+					expected.get(col, row), actual.get(col, row));
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAppend() {
+		Random random = new Random(42);
+		Kernel[] kernels = {
+			kernel, new Kernel(2, 1.0, 2.0, 3.0), new Kernel(-1, 1.0, 2.0)
+		};
+		for (Kernel k : kernels) {
+			for (Filter2D.Mode mode : Filter2D.Mode.values()) {
+				DataTable data = new DataTable(Double.class, Double.class);
+				for (int i = 0; i < 10; i++) {
+					data.add(random.nextDouble(), random.nextDouble());
+				}
+				Convolution filter = new Convolution(data, k, mode, 0, 1);
+				for (int i = 0; i < 20; i++) {
+					data.add(random.nextDouble(), (i == 5) ? Double.NaN : random.nextDouble());
+					assertFilteredEquals(new Convolution(data, k, mode, 0, 1), filter);
+				}
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAppendChained() {
+		Random random = new Random(42);
+		DataTable data = new DataTable(Double.class);
+		for (int i = 0; i < 10; i++) {
+			data.add(random.nextDouble());
+		}
+		Convolution first = new Convolution(data, kernel, Filter2D.Mode.REPEAT, 0);
+		Convolution second = new Convolution(first, kernel, Filter2D.Mode.REPEAT, 0);
+		for (int i = 0; i < 5; i++) {
+			data.add(random.nextDouble());
+			Convolution expected = new Convolution(
+				new Convolution(data, kernel, Filter2D.Mode.REPEAT, 0),
+				kernel, Filter2D.Mode.REPEAT, 0);
+			assertFilteredEquals(expected, second);
+		}
+	}
+
+	@Test
+	public void testAppendRecalculatesTail() {
+		final int[] reads = new int[1];
+		@SuppressWarnings({"unchecked", "serial"})
+		DataTable data = new DataTable(Double.class) {
+			@Override
+			public void getValues(int col, int row, double[] values, int offset, int length) {
+				reads[0] += length;
+				super.getValues(col, row, values, offset, length);
+			}
+		};
+		for (int i = 0; i < 1000; i++) {
+			data.add((double) i);
+		}
+		Convolution filter = new Convolution(data, kernel, Filter2D.Mode.REPEAT, 0);
+		reads[0] = 0;
+		data.add(1000.0);
+
+		// Only the last two rows are affected by the new row
+		assertEquals(2 + kernel.size() - 1, reads[0]);
+		assertEquals(2997.0, ((Number) filter.get(0, 999)).doubleValue(), DELTA);
+		assertEquals(2999.0, ((Number) filter.get(0, 1000)).doubleValue(), DELTA);
+	}
+
+	private static void assertConvolution(Convolution filter, int col, double delta) {
+		Kernel k = filter.getKernel();
+		for (int row = 0; row < filter.getRowCount(); row++) {
+			double expected = 0.0;
+			for (int i = k.getMinIndex(); i <= k.getMaxIndex(); i++) {
+				double v = ((Number) filter.getOriginal(col, row + i)).doubleValue();
+				if (Double.isNaN(v) || Double.isInfinite(v)) {
+					expected = v;
+					break;
+				}
+				expected += k.get(i)*v;
+			}
+			assertEquals(String.format("row=%d", row), expected,
+				((Number) filter.get(col, row)).doubleValue(), delta);
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testLargeKernel() {
+		Random random = new Random(1234);
+		double[] values = new double[201];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextDouble() - 0.25;
+		}
+		Kernel large = new Kernel(values).normalize();
+		assertTrue(large.size() >= Convolution.FFT_THRESHOLD);
+
+		DataTable data = new DataTable(Double.class);
+		for (int i = 0; i < 10000; i++) {
+			double value = Math.sin(i/100.0) + random.nextGaussian();
+			if (i == 500) {
+				value = Double.NaN;
+			} else if (i == 7000) {
+				value = Double.POSITIVE_INFINITY;
+			}
+			data.add(value);
+		}
+		for (Filter2D.Mode mode : Filter2D.Mode.values()) {
+			Convolution filter = new Convolution(data, large, mode, 0);
+			assertConvolution(filter, 0, 1e-9);
+		}
+
+		// Short columns
+		DataTable shortData = new DataTable(Double.class);
+		for (int i = 0; i < 150; i++) {
+			shortData.add(random.nextDouble());
+		}
+		for (Filter2D.Mode mode : Filter2D.Mode.values()) {
+			Convolution filter = new Convolution(shortData, large, mode, 0);
+			shortData.add(random.nextDouble());
+			assertConvolution(filter, 0, 1e-9);
+		}
+	}
+
+	@Test
+	public void testGetValues() {
+		Convolution filter = new Convolution(table, kernel, Filter2D.Mode.REPEAT, 0);
+		for (int col = 0; col < 2; col++) {
+			double[] values = new double[filter.getRowCount() + 2];
+			filter.getValues(col, 0, values, 1, filter.getRowCount());
+			for (int row = 0; row < filter.getRowCount(); row++) {
+				assertEquals(((Number) filter.get(col, row)).doubleValue(), values[row + 1], 0.0);
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testParallel() {
+		DataTable data = new DataTable(Double.class, Double.class, Double.class,
+			Double.class, Double.class, Double.class);
+		Random random = new Random(1234L);
+		for (int row = 0; row < 1000; row++) {
+			data.add(random.nextDouble(), random.nextDouble(), random.nextDouble(),
+				random.nextDouble(), random.nextDouble(), random.nextDouble());
+		}
+		Kernel kernel = Kernel.getBinomial(100);
+		Convolution serial = new Convolution(data, kernel, Filter2D.Mode.MIRROR);
+		final Convolution parallel = new Convolution(data, kernel, Filter2D.Mode.MIRROR);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		parallel.setPool(pool);
+
+		final double[] notified = new double[data.getColumnCount()];
+		parallel.addDataListener(new DataListener() {
+			@Override
+			public void dataAdded(DataSource source, DataChangeEvent... events) {
+				for (int col = 0; col < notified.length; col++) {
+					notified[col] = ((Number) parallel.get(col, parallel.getRowCount() - 1)).doubleValue();
+				}
+			}
+			@Override
+			public void dataUpdated(DataSource source, DataChangeEvent... events) {
+			}
+			@Override
+			public void dataRemoved(DataSource source, DataChangeEvent... events) {
+			}
+		});
+		data.add(1.0, 2.0, 3.0, 4.0, 5.0, 6.0);
+		pool.shutdown();
+
+		for (int col = 0; col < data.getColumnCount(); col++) {
+			for (int row = 0; row < data.getRowCount(); row++) {
+				assertEquals(serial.get(col, row), parallel.get(col, row));
+			}
+			assertEquals(((Number) serial.get(col, data.getRowCount() - 1)).doubleValue(),
+				notified[col], 0.0);
+		}
+	}
+
 	@Test
 	public void testSerialization() throws IOException, ClassNotFoundException {
 		Convolution original = new Convolution(table, kernel, Filter2D.Mode.ZERO, 0, 1);
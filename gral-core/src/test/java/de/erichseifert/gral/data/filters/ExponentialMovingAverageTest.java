@@ -0,0 +1,141 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.filters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.filters.Filter2D.Mode;
+
+public class ExponentialMovingAverageTest {
+	private static final double DELTA = TestUtils.DELTA;
+
+	private DataTable table;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new DataTable(Integer.class, Double.class);
+		table.add(0, 4.0);
+		table.add(1, 2.0);
+		table.add(2, 6.0);
+		table.add(3, Double.NaN);
+		table.add(4, 8.0);
+	}
+
+	private static double getValue(DataTable data, int col, int row) {
+		return ((Number) data.get(col, row)).doubleValue();
+	}
+
+	@Test
+	public void testCreate() {
+		ExponentialMovingAverage filter = new ExponentialMovingAverage(table, 0.5, Mode.REPEAT, 1);
+
+		assertEquals(table.getColumnCount(), filter.getColumnCount());
+		assertEquals(table.getRowCount(), filter.getRowCount());
+		assertEquals(0.5, filter.getAlpha(), 0.0);
+		assertEquals(false, filter.isZeroPhase());
+	}
+
+	@Test
+	public void testValues() {
+		ExponentialMovingAverage filter = new ExponentialMovingAverage(table, 0.5, Mode.REPEAT, 1);
+
+		assertEquals(4.0, ((Number) filter.get(1, 0)).doubleValue(), DELTA);
+		assertEquals(3.0, ((Number) filter.get(1, 1)).doubleValue(), DELTA);
+		assertEquals(4.5, ((Number) filter.get(1, 2)).doubleValue(), DELTA);
+		assertTrue(Double.isNaN(((Number) filter.get(1, 3)).doubleValue()));
+		assertEquals(6.25, ((Number) filter.get(1, 4)).doubleValue(), DELTA);
+		// Unfiltered column
+		assertEquals(2, filter.get(0, 2));
+
+		filter.setMode(Mode.ZERO);
+		assertEquals(2.0, ((Number) filter.get(1, 0)).doubleValue(), DELTA);
+		assertEquals(2.0, ((Number) filter.get(1, 1)).doubleValue(), DELTA);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAppend() {
+		for (Mode mode : Mode.values()) {
+			DataTable data = new DataTable(Integer.class, Double.class);
+			for (int row = 0; row < 20; row++) {
+				data.add(row, Math.sin(row));
+			}
+			ExponentialMovingAverage filter = new ExponentialMovingAverage(data, 0.3, mode, 1);
+			for (int row = 20; row < 40; row++) {
+				data.add(row, Math.sin(row));
+			}
+			ExponentialMovingAverage expected = new ExponentialMovingAverage(data, 0.3, mode, 1);
+
+			assertEquals(expected.getRowCount(), filter.getRowCount());
+			for (int row = 0; row < data.getRowCount(); row++) {
+				assertEquals(((Number) expected.get(1, row)).doubleValue(),
+					((Number) filter.get(1, row)).doubleValue(), DELTA);
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testZeroPhase() {
+		// A symmetric pulse stays symmetric without a delay
+		DataTable data = new DataTable(Double.class);
+		for (int row = 0; row < 41; row++) {
+			data.add(row == 20 ? 1.0 : 0.0);
+		}
+		ExponentialMovingAverage filter = new ExponentialMovingAverage(data, 0.4, true, Mode.REPEAT);
+
+		assertTrue(filter.isZeroPhase());
+		for (int row = 0; row < 20; row++) {
+			assertEquals(((Number) filter.get(0, row)).doubleValue(),
+				((Number) filter.get(0, 40 - row)).doubleValue(), 1e-9);
+			assertTrue(((Number) filter.get(0, row)).doubleValue() <
+				((Number) filter.get(0, row + 1)).doubleValue());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidAlpha() {
+		new ExponentialMovingAverage(table, 0.0, Mode.REPEAT, 1);
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		ExponentialMovingAverage original = new ExponentialMovingAverage(table, 0.25, true, Mode.MIRROR, 1);
+		ExponentialMovingAverage deserialized = TestUtils.serializeAndDeserialize(original);
+
+		assertEquals(original.getAlpha(), deserialized.getAlpha(), 0.0);
+		assertEquals(original.isZeroPhase(), deserialized.isZeroPhase());
+		assertEquals(original.getMode(), deserialized.getMode());
+		for (int row = 0; row < original.getRowCount(); row++) {
+			assertEquals(original.get(1, row), deserialized.get(1, row));
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.filters;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.filters.Filter2D.Mode;
+
+public class FilterPipelineTest {
+	private static final double DELTA = 1e-12;
+
+	private DataTable table;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new DataTable(Integer.class, Double.class, Double.class);
+		Random random = new Random(42L);
+		for (int row = 0; row < 500; row++) {
+			table.add(row, random.nextGaussian(), Math.sin(row/20.0));
+		}
+	}
+
+	private static void assertEqualValues(DataSource expected, DataSource actual) {
+		assertEquals(expected.getColumnCount(), actual.getColumnCount());
+		assertEquals(expected.getRowCount(), actual.getRowCount());
+		for (int col = 0; col < expected.getColumnCount(); col++) {
+			for (int row = 0; row < expected.getRowCount(); row++) {
+				assertEquals(String.format("Wrong data at col=%d, row=%d.", col, row),
+					((Number) expected.get(col, row)).doubleValue(),
+					((Number) actual.get(col, row)).doubleValue(), DELTA);
+			}
+		}
+	}
+
+	@Test
+	public void testEqualsChainedFilters() {
+		Kernel kernel = Kernel.getBinomial(7).normalize();
+		for (Mode mode : Mode.values()) {
+			DataSource chained = new Resize(
+				new Convolution(new Median(table, 5, 2, mode, 1), kernel, mode, 1, 2),
+				0, 120);
+			DataSource pipeline = new FilterPipeline.Builder(table)
+				.median(5, 2, mode, 1)
+				.convolve(kernel, mode, 1, 2)
+				.resize(120)
+				.build();
+			assertEqualValues(chained, pipeline);
+		}
+	}
+
+	@Test
+	public void testFiltersSelectedColumns() {
+		DataSource pipeline = new FilterPipeline.Builder(table)
+			.median(3, 1, Mode.REPEAT, 2)
+			.build();
+
+		assertEquals(table.getRowCount(), pipeline.getRowCount());
+		assertEqualValues(new Median(table, 3, 1, Mode.REPEAT, 2), pipeline);
+		assertEquals(table.get(1, 10), pipeline.get(1, 10));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testUpdatesWhenDataChanges() {
+		Kernel kernel = Kernel.getUniform(3, 1, 1.0/3.0);
+		DataSource pipeline = new FilterPipeline.Builder(table)
+			.convolve(kernel, Mode.REPEAT, 1)
+			.build();
+
+		table.add(500, 1.0, 2.0);
+		table.set(1, 0, 4.0);
+
+		assertEquals(table.getRowCount(), pipeline.getRowCount());
+		assertEqualValues(new Convolution(table, kernel, Mode.REPEAT, 1), pipeline);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidWindowSize() {
+		new FilterPipeline.Builder(table).median(0, 0, Mode.REPEAT, 1);
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		FilterPipeline original = new FilterPipeline.Builder(table)
+			.median(5, 2, Mode.MIRROR, 1)
+			.convolve(Kernel.getBinomial(5), Mode.MIRROR, 1)
+			.resize(50)
+			.build();
+		FilterPipeline deserialized = TestUtils.serializeAndDeserialize(original);
+
+		assertEquals(50, deserialized.getRowCount());
+		assertEqualValues(original, deserialized);
+	}
+}
@@ -29,9 +29,14 @@ import org.junit.runners.Suite;
 	MedianFilterTest.class,
 	ConvolutionFilterTest.class,
 	KernelTest.class,
+	Kernel2DTest.class,
 	ConvolutionTest.class,
+	Convolution2DTest.class,
 	MedianTest.class,
 	ResizeTest.class,
+	FilterPipelineTest.class,
+	ExponentialMovingAverageTest.class,
+	BiquadTest.class,
 	AccumulationTest.class
 })
 public class FiltersTests {
@@ -0,0 +1,86 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.filters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+
+public class Kernel2DTest {
+	private static final double DELTA = TestUtils.DELTA;
+
+	@Test
+	public void testCreate() {
+		Kernel2D kernel = new Kernel2D(new double[][] {
+			{1.0, 2.0, 3.0},
+			{4.0, 5.0, 6.0}
+		});
+
+		assertEquals(3, kernel.getWidth());
+		assertEquals(2, kernel.getHeight());
+		assertEquals(1, kernel.getOffsetX());
+		assertEquals(1, kernel.getOffsetY());
+		assertEquals(1.0, kernel.get(-1, -1), DELTA);
+		assertEquals(6.0, kernel.get(1, 0), DELTA);
+		assertEquals(0.0, kernel.get(2, 0), DELTA);
+		assertEquals(0.0, kernel.get(0, 1), DELTA);
+	}
+
+	@Test
+	public void testProduct() {
+		Kernel horizontal = new Kernel(0, new double[] {1.0, 2.0});
+		Kernel vertical = new Kernel(2, new double[] {1.0, 3.0, 5.0});
+		Kernel2D kernel = new Kernel2D(horizontal, vertical);
+
+		assertEquals(2, kernel.getWidth());
+		assertEquals(3, kernel.getHeight());
+		assertEquals(0, kernel.getOffsetX());
+		assertEquals(2, kernel.getOffsetY());
+		assertEquals(10.0, kernel.get(1, 0), DELTA);
+		assertTrue(kernel.isSeparable());
+		for (int y = kernel.getMinIndexY(); y <= kernel.getMaxIndexY(); y++) {
+			for (int x = kernel.getMinIndexX(); x <= kernel.getMaxIndexX(); x++) {
+				assertEquals(kernel.get(x, y),
+					kernel.getHorizontal().get(x)*kernel.getVertical().get(y), DELTA);
+			}
+		}
+	}
+
+	@Test
+	public void testSeparable() {
+		assertTrue(Kernel2D.getBinomial(5).isSeparable());
+
+		Kernel2D laplacian = new Kernel2D(new double[][] {
+			{0.0,  1.0, 0.0},
+			{1.0, -4.0, 1.0},
+			{0.0,  1.0, 0.0}
+		});
+		assertFalse(laplacian.isSeparable());
+		assertNull(laplacian.getHorizontal());
+		assertNull(laplacian.getVertical());
+	}
+}
@@ -26,9 +26,12 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import org.junit.Test;
 
+import de.erichseifert.gral.TestUtils;
+
 public class MedianFilterTest {
 	@Test
 	public void testReturnsMedianValueWithinFilterWindow() {
@@ -40,6 +43,15 @@ public class MedianFilterTest {
 		assertThat(medianFilter, hasItems(5.0, 6.0, 5.0, 6.0));
 	}
 
+	@Test
+	public void testIgnoresValuesThatAreNotCalculatable() {
+		Iterable<Double> data = Arrays.asList(3.0, Double.NaN, 5.0, 6.0, 4.0);
+
+		MedianFilter<Double> medianFilter = new MedianFilter<>(data, 3);
+
+		assertThat(medianFilter, hasItems(4.0, 5.5, 5.0));
+	}
+
 	@Test
 	public void testIteratorIsEmptyWhenFilterWindowLargerThanDataToBeFiltered() {
 		List<Integer> data = Arrays.asList(3, 8, 5, 6, 4, 9);
@@ -50,4 +62,14 @@ public class MedianFilterTest {
 
 		assertThat(hasNext, is(false));
 	}
+
+	@Test
+	public void testFiltersUnboundedInputLazily() {
+		MedianFilter<Integer> medianFilter = new MedianFilter<>(TestUtils.getNaturalNumbers(), 3);
+		Iterator<Double> iterator = new MedianFilter<>(medianFilter, 2).iterator();
+
+		assertThat(iterator.next(), is(1.5));
+		assertThat(iterator.next(), is(2.5));
+		assertThat(iterator.next(), is(3.5));
+	}
 }
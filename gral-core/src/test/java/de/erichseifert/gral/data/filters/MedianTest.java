@@ -25,6 +25,11 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -32,6 +37,7 @@ import org.junit.Test;
 import de.erichseifert.gral.TestUtils;
 import de.erichseifert.gral.data.DataTable;
 import de.erichseifert.gral.data.statistics.Statistics;
+import de.erichseifert.gral.util.MathUtils;
 
 public class MedianTest {
 	private static final double DELTA = TestUtils.DELTA;
@@ -88,6 +94,80 @@ public class MedianTest {
 		assertEquals(0, filter.getOffset());
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testValues() {
+		DataTable data = new DataTable(Double.class);
+		Random random = new Random(1234);
+		for (int i = 0; i < 500; i++) {
+			data.add(random.nextGaussian());
+		}
+		data.set(0, 250, Double.NaN);
+		int[] windowSizes = {1, 2, 3, 4, 51};
+		for (int windowSize : windowSizes) {
+			int offset = windowSize/2;
+			Median filter = new Median(data, windowSize, offset, Filter2D.Mode.REPEAT, 0);
+			for (int row = windowSize; row < data.getRowCount() - windowSize; row++) {
+				List<Double> window = new ArrayList<>();
+				boolean calculatable = true;
+				for (int i = row - offset + 1; i <= row - offset + windowSize; i++) {
+					double v = ((Number) data.get(0, i)).doubleValue();
+					calculatable &= !Double.isNaN(v);
+					window.add(v);
+				}
+				Collections.sort(window);
+				double expected = MathUtils.quantile(window, 0.5);
+				if (!calculatable && windowSize > 1) {
+					expected = Double.NaN;
+				}
+				assertEquals(expected, ((Number) filter.get(0, row)).doubleValue(), DELTA);
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAppend() {
+		Random random = new Random(42);
+		int[][] windows = {{3, 1}, {4, 2}, {3, 0}, {2, 3}, {3, -1}};
+		for (int[] window : windows) {
+			for (Filter2D.Mode mode : Filter2D.Mode.values()) {
+				DataTable data = new DataTable(Double.class, Double.class);
+				for (int i = 0; i < 10; i++) {
+					data.add(random.nextDouble(), random.nextDouble());
+				}
+				Median filter = new Median(data, window[0], window[1], mode, 0, 1);
+				for (int i = 0; i < 20; i++) {
+					data.add(random.nextDouble(), random.nextDouble());
+					Median expected = new Median(data, window[0], window[1], mode, 0, 1);
+					assertEquals(expected.getRowCount(), filter.getRowCount());
+					for (int row = 0; row < expected.getRowCount(); row++) {
+						for (int col = 0; col < expected.getColumnCount(); col++) {
+							assertEquals(expected.get(col, row), filter.get(col, row));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testParallel() {
+		Median serial = new Median(table, 4, 1, Filter2D.Mode.CIRCULAR);
+		Median parallel = new Median(table, 4, 1, Filter2D.Mode.CIRCULAR);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		parallel.setPool(pool);
+		parallel.setWindowSize(3);
+		serial.setWindowSize(3);
+		pool.shutdown();
+
+		for (int col = 0; col < table.getColumnCount(); col++) {
+			for (int row = 0; row < table.getRowCount(); row++) {
+				assertEquals(serial.get(col, row), parallel.get(col, row));
+			}
+		}
+	}
+
 	@Test
 	public void testSerialization() throws IOException, ClassNotFoundException {
 		Filter2D original = new Median(table, 3, 1, Filter2D.Mode.REPEAT, 0);
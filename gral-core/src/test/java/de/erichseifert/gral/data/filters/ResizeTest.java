@@ -23,8 +23,10 @@ package de.erichseifert.gral.data.filters;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.Random;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -149,6 +151,92 @@ public class ResizeTest {
 			});
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAverage() {
+		DataTable data = new DataTable(Double.class, Double.class);
+		Random random = new Random(42);
+		for (int i = 0; i < 1000; i++) {
+			data.add(random.nextDouble(), (double) i);
+		}
+		int[] rowCounts = {1, 3, 7, 333, 1000, 1500};
+		for (int rowCount : rowCounts) {
+			Resize filter = new Resize(data, 0, rowCount);
+			assertEquals(rowCount, filter.getRowCount());
+			double step = data.getRowCount()/(double) rowCount;
+			for (int row = 0; row < rowCount; row++) {
+				// Integral of the step function over the interval
+				double start = row*step;
+				double end = (row + 1)*step;
+				double sum = 0.0;
+				for (int i = (int) Math.floor(start); i < Math.ceil(end); i++) {
+					double overlap = Math.min(end, i + 1) - Math.max(start, i);
+					sum += overlap*((Number) data.get(0, i)).doubleValue();
+				}
+				assertEquals(sum/step, ((Number) filter.get(0, row)).doubleValue(), 1e-12);
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testLTTB() {
+		DataTable data = new DataTable(Double.class, Double.class, Double.class);
+		for (int i = 0; i < 1000; i++) {
+			double y = (i == 123) ? 100.0 : (i == 777) ? -50.0 : Math.sin(i/50.0);
+			data.add(i/10.0, y, (double) i);
+		}
+		Resize filter = Resize.lttb(data, 50, 0, 1);
+		assertEquals(Resize.Method.LTTB, filter.getMethod());
+		assertEquals(data.getColumnCount(), filter.getColumnCount());
+		assertEquals(50, filter.getRowCount());
+
+		boolean maxFound = false, minFound = false;
+		double previousRow = -1.0;
+		for (int row = 0; row < filter.getRowCount(); row++) {
+			// Rows are selected from the original data in ascending order
+			int rowOrig = (int) ((Number) filter.get(2, row)).doubleValue();
+			assertTrue(rowOrig > previousRow);
+			previousRow = rowOrig;
+			for (int col = 0; col < data.getColumnCount(); col++) {
+				assertEquals(((Number) data.get(col, rowOrig)).doubleValue(),
+					((Number) filter.get(col, row)).doubleValue(), 0.0);
+			}
+			maxFound |= rowOrig == 123;
+			minFound |= rowOrig == 777;
+		}
+		assertEquals(0.0, ((Number) filter.get(2, 0)).doubleValue(), 0.0);
+		assertEquals(999.0, ((Number) filter.get(2, 49)).doubleValue(), 0.0);
+		// Peaks are preserved
+		assertTrue(maxFound);
+		assertTrue(minFound);
+
+		double[] values = new double[filter.getRowCount()];
+		filter.getValues(1, 0, values, 0, values.length);
+		for (int row = 0; row < values.length; row++) {
+			assertEquals(((Number) filter.get(1, row)).doubleValue(), values[row], 0.0);
+		}
+
+		// No upsampling
+		filter = Resize.lttb(data, 2000, 0, 1);
+		assertEquals(data.getRowCount(), filter.getRowCount());
+		assertEquals(data.get(1, 5), filter.get(1, 5));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testLTTBWithEmptyBucket() {
+		DataTable data = new DataTable(Double.class, Double.class);
+		for (int i = 0; i < 12; i++) {
+			double y = (i == 4) ? 5.0 : (i >= 5 && i < 9) ? Double.NaN : 0.0;
+			data.add((double) i, y);
+		}
+		// Buckets of two rows; the bucket after the peak has no valid points
+		Resize filter = Resize.lttb(data, 7, 0, 1);
+		assertEquals(7, filter.getRowCount());
+		assertEquals(4.0, ((Number) filter.get(0, 2)).doubleValue(), 0.0);
+	}
+
 	@Test
 	public void testSerialization() throws IOException, ClassNotFoundException {
 		Filter2D original = new Resize(dataDiagonal, 2, 2);
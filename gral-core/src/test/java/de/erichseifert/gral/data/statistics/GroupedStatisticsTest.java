@@ -0,0 +1,214 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.statistics.GroupedStatistics.Aggregate;
+
+public class GroupedStatisticsTest {
+	private static final double DELTA = TestUtils.DELTA;
+
+	private DataTable table;
+	private GroupedStatistics grouped;
+
+	private static final class MockDataListener implements DataListener {
+		private DataChangeEvent[] added;
+		private DataChangeEvent[] updated;
+		private DataChangeEvent[] removed;
+
+		public void dataAdded(DataSource source, DataChangeEvent... events) {
+			added = events;
+		}
+
+		public void dataUpdated(DataSource source, DataChangeEvent... events) {
+			updated = events;
+		}
+
+		public void dataRemoved(DataSource source, DataChangeEvent... events) {
+			removed = events;
+		}
+	}
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new DataTable(String.class, Double.class);
+		table.add("b", 2.0); // 0
+		table.add("a", 1.0); // 1
+		table.add("b", 4.0); // 2
+		table.add("c", Double.NaN); // 3
+		table.add("a", 5.0); // 4
+		table.add("b", 3.0); // 5
+
+		grouped = new GroupedStatistics(table, 0,
+			new Aggregate(1, Statistics.N),
+			new Aggregate(1, Statistics.SUM),
+			new Aggregate(1, Statistics.MEAN),
+			new Aggregate(1, Statistics.MIN),
+			new Aggregate(1, Statistics.MAX));
+	}
+
+	@Test
+	public void testCreate() {
+		assertEquals(6, grouped.getColumnCount());
+		assertEquals(3, grouped.getRowCount());
+		assertEquals(String.class, grouped.getColumnTypes()[0]);
+		assertEquals(Double.class, grouped.getColumnTypes()[1]);
+		assertEquals(0, grouped.getKeyColumn());
+		assertEquals(5, grouped.getAggregates().length);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedAggregate() {
+		new Aggregate(1, Statistics.MEDIAN);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNonNumericColumn() {
+		new GroupedStatistics(table, 1, new Aggregate(0, Statistics.SUM));
+	}
+
+	@Test
+	public void testValues() {
+		assertEquals("b", grouped.get(0, 0));
+		assertEquals("a", grouped.get(0, 1));
+		assertEquals("c", grouped.get(0, 2));
+		assertEquals(0, grouped.indexOf("b"));
+		assertEquals(-1, grouped.indexOf("d"));
+
+		// Group "b"
+		assertEquals(3.0, (Double) grouped.get(1, 0), DELTA);
+		assertEquals(9.0, (Double) grouped.get(2, 0), DELTA);
+		assertEquals(3.0, (Double) grouped.get(3, 0), DELTA);
+		assertEquals(2.0, (Double) grouped.get(4, 0), DELTA);
+		assertEquals(4.0, (Double) grouped.get(5, 0), DELTA);
+		// Group "a"
+		assertEquals(2.0, (Double) grouped.get(1, 1), DELTA);
+		assertEquals(6.0, (Double) grouped.get(2, 1), DELTA);
+		assertEquals(3.0, (Double) grouped.get(3, 1), DELTA);
+		// Group "c" without valid values
+		assertEquals(0.0, (Double) grouped.get(1, 2), DELTA);
+		assertEquals(0.0, (Double) grouped.get(2, 2), DELTA);
+		assertEquals(Double.NaN, (Double) grouped.get(3, 2), DELTA);
+		assertEquals(Double.NaN, (Double) grouped.get(4, 2), DELTA);
+		assertEquals(Double.NaN, (Double) grouped.get(5, 2), DELTA);
+
+		double[] sums = new double[3];
+		grouped.getValues(2, 0, sums, 0, 3);
+		assertEquals(9.0, sums[0], DELTA);
+		assertEquals(6.0, sums[1], DELTA);
+		assertEquals(0.0, sums[2], DELTA);
+	}
+
+	@Test
+	public void testAddExistingGroup() {
+		MockDataListener listener = new MockDataListener();
+		grouped.addDataListener(listener);
+
+		table.add("a", 3.0);
+
+		assertEquals(3, grouped.getRowCount());
+		assertEquals(9.0, (Double) grouped.get(2, 1), DELTA);
+		assertNull(listener.added);
+		// Count, sum, and maximum of group "a" changed
+		assertEquals(2, listener.updated.length);
+		for (DataChangeEvent event : listener.updated) {
+			assertEquals(1, event.getRow());
+			assertEquals(grouped.get(event.getCol(), 1), event.getNew());
+		}
+		assertEquals(2.0, (Double) listener.updated[0].getOld(), DELTA);
+		assertEquals(3.0, (Double) listener.updated[0].getNew(), DELTA);
+	}
+
+	@Test
+	public void testAddNewGroup() {
+		MockDataListener listener = new MockDataListener();
+		grouped.addDataListener(listener);
+
+		table.add("d", 7.0);
+
+		assertEquals(4, grouped.getRowCount());
+		assertEquals("d", grouped.get(0, 3));
+		assertEquals(7.0, (Double) grouped.get(2, 3), DELTA);
+		assertNull(listener.updated);
+		assertEquals(grouped.getColumnCount(), listener.added.length);
+		assertEquals(3, listener.added[0].getRow());
+	}
+
+	@Test
+	public void testUpdateAndRemove() {
+		MockDataListener listener = new MockDataListener();
+		grouped.addDataListener(listener);
+
+		table.set(1, 0, 10.0);
+		assertEquals(17.0, (Double) grouped.get(2, 0), DELTA);
+		// Sum, mean, minimum, and maximum of group "b" changed
+		assertEquals(4, listener.updated.length);
+		for (DataChangeEvent event : listener.updated) {
+			assertEquals(0, event.getRow());
+		}
+
+		// Groups are ordered by first occurrence
+		listener.updated = null;
+		table.remove(1);
+		assertEquals(3, grouped.getRowCount());
+		assertEquals("a", grouped.get(0, 2));
+		assertEquals(5.0, (Double) grouped.get(2, 2), DELTA);
+		// Groups "a" and "c" swapped places, no group was removed
+		assertNull(listener.removed);
+		for (DataChangeEvent event : listener.updated) {
+			assertTrue(event.getRow() >= 1 && event.getRow() < grouped.getRowCount());
+			assertEquals(grouped.get(event.getCol(), event.getRow()), event.getNew());
+		}
+
+		table.clear();
+		assertEquals(0, grouped.getRowCount());
+		assertEquals(3*grouped.getColumnCount(), listener.removed.length);
+		assertEquals(2, listener.removed[listener.removed.length - 1].getRow());
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		GroupedStatistics deserialized = TestUtils.serializeAndDeserialize(grouped);
+
+		assertEquals(grouped.getRowCount(), deserialized.getRowCount());
+		assertEquals(grouped.getColumnCount(), deserialized.getColumnCount());
+		for (int row = 0; row < grouped.getRowCount(); row++) {
+			for (int col = 0; col < grouped.getColumnCount(); col++) {
+				assertEquals(grouped.get(col, row), deserialized.get(col, row));
+			}
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.statistics.KernelDensity.KernelType;
+
+public class KernelDensityTest {
+	private DataTable table;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new DataTable(Integer.class, Double.class);
+		Random random = new Random(1234);
+		for (int i = 0; i < 2000; i++) {
+			double value = (i % 3 == 0) ? 5.0 + 0.5*random.nextGaussian() : random.nextGaussian();
+			table.add(i, value);
+		}
+		table.add(2000, Double.NaN);
+	}
+
+	private static void assertDensity(KernelDensity kde) {
+		DataSource data = kde.getData();
+		double h = kde.getBandwidth();
+		int n = 0;
+		for (int row = 0; row < data.getRowCount(); row++) {
+			if (!Double.isNaN(((Number) data.get(kde.getDataColumn(), row)).doubleValue())) {
+				n++;
+			}
+		}
+		double max = 0.0;
+		for (int row = 0; row < kde.getRowCount(); row++) {
+			max = Math.max(max, (Double) kde.get(KernelDensity.COL_DENSITY, row));
+		}
+		for (int row = 0; row < kde.getRowCount(); row++) {
+			double x = (Double) kde.get(KernelDensity.COL_X, row);
+			double expected = 0.0;
+			for (int i = 0; i < data.getRowCount(); i++) {
+				double value = ((Number) data.get(kde.getDataColumn(), i)).doubleValue();
+				if (!Double.isNaN(value)) {
+					expected += kde.getKernelType().get((x - value)/h);
+				}
+			}
+			expected /= n*h;
+			assertEquals("row " + row, expected,
+				(Double) kde.get(KernelDensity.COL_DENSITY, row), 1e-2*max);
+		}
+	}
+
+	private static double integrate(KernelDensity kde) {
+		double sum = 0.0;
+		for (int row = 1; row < kde.getRowCount(); row++) {
+			double x0 = (Double) kde.get(KernelDensity.COL_X, row - 1);
+			double x1 = (Double) kde.get(KernelDensity.COL_X, row);
+			double y0 = (Double) kde.get(KernelDensity.COL_DENSITY, row - 1);
+			double y1 = (Double) kde.get(KernelDensity.COL_DENSITY, row);
+			sum += (x1 - x0)*(y0 + y1)/2.0;
+		}
+		return sum;
+	}
+
+	@Test
+	public void testCreate() {
+		KernelDensity kde = new KernelDensity(table, 1, 256);
+		assertEquals(table, kde.getData());
+		assertEquals(1, kde.getDataColumn());
+		assertEquals(256, kde.getGridSize());
+		assertEquals(KernelType.GAUSSIAN, kde.getKernelType());
+		assertTrue(kde.isBandwidthAutomatic());
+		assertEquals(2, kde.getColumnCount());
+		assertEquals(256, kde.getRowCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidGridSize() {
+		new KernelDensity(table, 1, 1);
+	}
+
+	@Test
+	public void testGaussian() {
+		KernelDensity kde = new KernelDensity(table, 1, 512);
+		assertTrue(kde.getBandwidth() > 0.0);
+		assertDensity(kde);
+		assertEquals(1.0, integrate(kde), 1e-3);
+	}
+
+	@Test
+	public void testEpanechnikov() {
+		KernelDensity kde = new KernelDensity(table, 1, 512, KernelType.EPANECHNIKOV, 0.4);
+		assertEquals(0.4, kde.getBandwidth(), 0.0);
+		assertDensity(kde);
+		assertEquals(1.0, integrate(kde), 1e-3);
+	}
+
+	@Test
+	public void testSetBandwidth() {
+		KernelDensity kde = new KernelDensity(table, 1, 256);
+		double automatic = kde.getBandwidth();
+		kde.setBandwidth(1.5);
+		assertEquals(1.5, kde.getBandwidth(), 0.0);
+		assertDensity(kde);
+		kde.setBandwidth(Double.NaN);
+		assertTrue(kde.isBandwidthAutomatic());
+		assertEquals(automatic, kde.getBandwidth(), 0.0);
+	}
+
+	@Test
+	public void testEmpty() {
+		@SuppressWarnings("unchecked")
+		DataTable empty = new DataTable(Double.class);
+		KernelDensity kde = new KernelDensity(empty, 0, 64);
+		assertEquals(0, kde.getRowCount());
+
+		empty.add(2.0);
+		assertEquals(64, kde.getRowCount());
+		assertDensity(kde);
+	}
+
+	@Test
+	public void testLazyUpdate() {
+		KernelDensity kde = new KernelDensity(table, 1, 256);
+		final int[] notifications = new int[1];
+		kde.addDataListener(new DataListener() {
+			public void dataAdded(DataSource source, DataChangeEvent... events) {
+				notifications[0]++;
+			}
+			public void dataUpdated(DataSource source, DataChangeEvent... events) {
+				notifications[0]++;
+			}
+			public void dataRemoved(DataSource source, DataChangeEvent... events) {
+				notifications[0]++;
+			}
+		});
+		double maxBefore = (Double) kde.get(KernelDensity.COL_X, kde.getRowCount() - 1);
+
+		table.add(2001, 20.0);
+		assertEquals(1, notifications[0]);
+		double maxAfter = (Double) kde.get(KernelDensity.COL_X, kde.getRowCount() - 1);
+		assertTrue(maxAfter > maxBefore);
+		assertDensity(kde);
+
+		table.set(1, 2001, 10.0);
+		assertEquals(2, notifications[0]);
+		assertDensity(kde);
+
+		table.remove(2001);
+		assertEquals(3, notifications[0]);
+		assertEquals(maxBefore, (Double) kde.get(KernelDensity.COL_X, kde.getRowCount() - 1), 1e-12);
+	}
+
+	@Test
+	public void testEvents() {
+		KernelDensity kde = new KernelDensity(table, 1, 64);
+		final List<DataChangeEvent> updated = new ArrayList<>();
+		final int[] resized = new int[1];
+		kde.addDataListener(new DataListener() {
+			public void dataAdded(DataSource source, DataChangeEvent... events) {
+				resized[0]++;
+			}
+			public void dataUpdated(DataSource source, DataChangeEvent... events) {
+				updated.addAll(Arrays.asList(events));
+			}
+			public void dataRemoved(DataSource source, DataChangeEvent... events) {
+				resized[0]++;
+			}
+		});
+
+		// The grid keeps its size when the source grows or shrinks
+		table.add(2001, 20.0);
+		table.remove(2001);
+		assertEquals(0, resized[0]);
+		assertEquals(2*2*64, updated.size());
+		for (DataChangeEvent event : updated) {
+			assertTrue(event.getRow() >= 0 && event.getRow() < 64);
+		}
+	}
+
+	@Test
+	public void testGetValues() {
+		KernelDensity kde = new KernelDensity(table, 1, 128);
+		double[] values = new double[kde.getRowCount()];
+		kde.getValues(KernelDensity.COL_DENSITY, 0, values, 0, values.length);
+		for (int row = 0; row < values.length; row++) {
+			assertEquals((Double) kde.get(KernelDensity.COL_DENSITY, row), values[row], 0.0);
+		}
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		KernelDensity original = new KernelDensity(table, 1, 128, KernelType.EPANECHNIKOV, Double.NaN);
+		KernelDensity deserialized = TestUtils.serializeAndDeserialize(original);
+
+		assertEquals(original.getKernelType(), deserialized.getKernelType());
+		assertEquals(original.getBandwidth(), deserialized.getBandwidth(), 0.0);
+		assertEquals(original.getRowCount(), deserialized.getRowCount());
+		assertDensity(deserialized);
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.statistics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
+
+public class RollingStatisticsTest {
+	private static final double DELTA = 1e-9;
+
+	private DataTable table;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new DataTable(Integer.class, Double.class);
+		table.add(0, 3.0); // 0
+		table.add(1, 1.0); // 1
+		table.add(2, 4.0); // 2
+		table.add(3, 1.0); // 3
+		table.add(4, 5.0); // 4
+		table.add(5, Double.NaN); // 5
+		table.add(6, 9.0); // 6
+		table.add(7, 2.0); // 7
+	}
+
+	private static void assertWindows(DataSource data, int col, int windowSize, RollingStatistics rolling) {
+		assertEquals(data.getRowCount(), rolling.getRowCount());
+		for (int row = 0; row < data.getRowCount(); row++) {
+			List<Comparable<?>> window = new ArrayList<>();
+			for (int i = Math.max(row - windowSize + 1, 0); i <= row; i++) {
+				window.add(data.get(col, i));
+			}
+			Statistics expected = new Statistics(window);
+			double mean = expected.get(Statistics.MEAN);
+			double n = expected.get(Statistics.N);
+			assertEquals("mean, row " + row, n > 0 ? mean : Double.NaN,
+				(Double) rolling.get(RollingStatistics.COL_MEAN, row), DELTA);
+			assertEquals("standard deviation, row " + row, Math.sqrt(expected.get(Statistics.VARIANCE)),
+				(Double) rolling.get(RollingStatistics.COL_STANDARD_DEVIATION, row), DELTA);
+			assertEquals("min, row " + row, expected.get(Statistics.MIN),
+				(Double) rolling.get(RollingStatistics.COL_MIN, row), DELTA);
+			assertEquals("max, row " + row, expected.get(Statistics.MAX),
+				(Double) rolling.get(RollingStatistics.COL_MAX, row), DELTA);
+		}
+	}
+
+	@Test
+	public void testCreate() {
+		RollingStatistics rolling = new RollingStatistics(table, 1, 3);
+		assertEquals(4, rolling.getColumnCount());
+		assertEquals(table.getRowCount(), rolling.getRowCount());
+		assertEquals(3, rolling.getWindowSize());
+		assertEquals(1, rolling.getDataColumn());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidWindowSize() {
+		new RollingStatistics(table, 1, 0);
+	}
+
+	@Test
+	public void testValues() {
+		RollingStatistics rolling = new RollingStatistics(table, 1, 3);
+		assertEquals(3.0, (Double) rolling.get(RollingStatistics.COL_MEAN, 0), DELTA);
+		assertEquals(2.0, (Double) rolling.get(RollingStatistics.COL_MEAN, 1), DELTA);
+		assertEquals(8.0/3.0, (Double) rolling.get(RollingStatistics.COL_MEAN, 2), DELTA);
+		assertEquals(1.0, (Double) rolling.get(RollingStatistics.COL_MIN, 2), DELTA);
+		assertEquals(5.0, (Double) rolling.get(RollingStatistics.COL_MAX, 5), DELTA);
+		assertEquals(7.0, (Double) rolling.get(RollingStatistics.COL_MEAN, 6), DELTA);
+		assertEquals(Double.NaN, (Double) rolling.get(RollingStatistics.COL_STANDARD_DEVIATION, 0), DELTA);
+		assertWindows(table, 1, 3, rolling);
+	}
+
+	@Test
+	public void testRandomValues() {
+		Random random = new Random(42L);
+		DataTable data = new DataTable(Double.class);
+		for (int row = 0; row < 1000; row++) {
+			data.add(1e6 + random.nextGaussian());
+		}
+		assertWindows(data, 0, 1, new RollingStatistics(data, 0, 1));
+		assertWindows(data, 0, 17, new RollingStatistics(data, 0, 17));
+		assertWindows(data, 0, 2000, new RollingStatistics(data, 0, 2000));
+	}
+
+	@Test
+	public void testAdd() {
+		RollingStatistics rolling = new RollingStatistics(table, 1, 3);
+		final List<DataChangeEvent> added = new ArrayList<>();
+		rolling.addDataListener(new DataListener() {
+			@Override
+			public void dataAdded(DataSource source, DataChangeEvent... events) {
+				for (DataChangeEvent event : events) {
+					added.add(event);
+				}
+			}
+
+			@Override
+			public void dataUpdated(DataSource source, DataChangeEvent... events) {
+			}
+
+			@Override
+			public void dataRemoved(DataSource source, DataChangeEvent... events) {
+			}
+		});
+
+		table.add(8, 0.0);
+		table.add(9, 7.0);
+
+		assertWindows(table, 1, 3, rolling);
+		assertEquals(2*rolling.getColumnCount(), added.size());
+		for (DataChangeEvent event : added) {
+			assertEquals(rolling, event.getSource());
+			assertEquals(rolling.get(event.getCol(), event.getRow()), event.getNew());
+		}
+		assertEquals(8, added.get(0).getRow());
+		assertEquals(9, added.get(added.size() - 1).getRow());
+	}
+
+	@Test
+	public void testUpdate() {
+		RollingStatistics rolling = new RollingStatistics(table, 1, 3);
+		table.set(1, 2, 10.0);
+		assertWindows(table, 1, 3, rolling);
+	}
+
+	@Test
+	public void testRemove() {
+		RollingStatistics rolling = new RollingStatistics(table, 1, 3);
+		table.remove(2);
+		assertWindows(table, 1, 3, rolling);
+		table.add(8, 6.0);
+		assertWindows(table, 1, 3, rolling);
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		RollingStatistics original = new RollingStatistics(table, 1, 3);
+		RollingStatistics deserialized = TestUtils.serializeAndDeserialize(original);
+
+		assertEquals(original.getWindowSize(), deserialized.getWindowSize());
+		assertEquals(original.getRowCount(), deserialized.getRowCount());
+		assertWindows(deserialized.getData(), 1, 3, deserialized);
+	}
+}
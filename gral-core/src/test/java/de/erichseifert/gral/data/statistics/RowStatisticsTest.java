@@ -0,0 +1,121 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.statistics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.Record;
+
+public class RowStatisticsTest {
+	private static final double DELTA = TestUtils.DELTA;
+
+	private static final String[] KEYS = {
+		Statistics.N, Statistics.SUM, Statistics.SUM2, Statistics.SUM3, Statistics.SUM4,
+		Statistics.MIN, Statistics.MAX, Statistics.MEAN, Statistics.SUM_OF_DIFF_SQUARES,
+		Statistics.SUM_OF_DIFF_CUBICS, Statistics.SUM_OF_DIFF_QUADS, Statistics.VARIANCE,
+		Statistics.POPULATION_VARIANCE, Statistics.SKEWNESS, Statistics.KURTOSIS,
+		Statistics.MEDIAN, Statistics.QUARTILE_1, Statistics.QUARTILE_3
+	};
+
+	private DataTable table;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new DataTable(Integer.class, Double.class, String.class, Double.class);
+		table.add(1, 2.0, "a", 3.0); // 0
+		table.add(2, -1.0, "b", 0.5); // 1
+		table.add(3, Double.NaN, "c", 7.0); // 2
+		table.add(4, null, "d", null); // 3
+		table.add(5, 9.0, "e", 9.0); // 4
+	}
+
+	private static void assertRowStatistics(DataSource data, String key, double[] actual) {
+		assertEquals(data.getRowCount(), actual.length);
+		for (int row = 0; row < data.getRowCount(); row++) {
+			Record record = data.getRecord(row);
+			assertEquals(key + ", row " + row, new Statistics(record).get(key), actual[row], DELTA);
+		}
+	}
+
+	@Test
+	public void testKeys() {
+		for (String key : KEYS) {
+			assertRowStatistics(table, key, RowStatistics.get(table, key));
+		}
+	}
+
+	@Test
+	public void testValues() {
+		assertArrayEquals(new double[] {3.0, 3.0, 2.0, 1.0, 3.0},
+			RowStatistics.get(table, Statistics.N), DELTA);
+		assertArrayEquals(new double[] {1.0, -1.0, 3.0, 4.0, 5.0},
+			RowStatistics.get(table, Statistics.MIN), DELTA);
+		assertArrayEquals(new double[] {3.0, 2.0, 7.0, 4.0, 9.0},
+			RowStatistics.get(table, Statistics.MAX), DELTA);
+		assertArrayEquals(new double[] {2.0, 0.5, 5.0, 4.0, 23.0/3.0},
+			RowStatistics.get(table, Statistics.MEAN), DELTA);
+	}
+
+	@Test
+	public void testEmpty() {
+		DataTable empty = new DataTable(Double.class);
+		assertEquals(0, RowStatistics.get(empty, Statistics.MIN).length);
+	}
+
+	@Test
+	public void testUnknownKey() {
+		double[] result = RowStatistics.get(table, "unknown");
+		assertEquals(Double.NaN, result[0], DELTA);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testParallel() {
+		Random random = new Random(1234L);
+		DataTable data = new DataTable(Double.class, Double.class, Double.class);
+		for (int row = 0; row < 50000; row++) {
+			data.add(random.nextDouble(), random.nextGaussian(), random.nextDouble()*100.0);
+		}
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (String key : new String[] {Statistics.MIN, Statistics.MEAN, Statistics.VARIANCE, Statistics.MEDIAN}) {
+				double[] serial = RowStatistics.get(data, key);
+				double[] parallel = RowStatistics.get(data, key, pool);
+				assertArrayEquals(serial, parallel, 0.0);
+				assertRowStatistics(data, key, serial);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -28,7 +28,11 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
 	HistogramTest.class,
 	StatisticsTest.class,
-	AbstractHistogram2DTest.class
+	AbstractHistogram2DTest.class,
+	RollingStatisticsTest.class,
+	RowStatisticsTest.class,
+	GroupedStatisticsTest.class,
+	KernelDensityTest.class
 })
 public class StatisticsTests {
 }
@@ -0,0 +1,161 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.Test;
+
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.util.DataUtils;
+
+public class AudioReaderTest {
+	private static final double DELTA = 1e-10;
+
+	private static ByteArrayInputStream createWave(AudioFormat format, byte[] frames)
+			throws IOException {
+		AudioInputStream audio = new AudioInputStream(new ByteArrayInputStream(frames),
+			format, frames.length/format.getFrameSize());
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		AudioSystem.write(audio, AudioFileFormat.Type.WAVE, output);
+		return new ByteArrayInputStream(output.toByteArray());
+	}
+
+	@Test
+	public void testStereo16() throws IOException {
+		AudioFormat format = new AudioFormat(44100f, 16, 2, true, false);
+		byte[] frames = {
+			0x01, 0x00, (byte) 0xFF, (byte) 0xFF,
+			0x00, (byte) 0x80, (byte) 0xFF, 0x7F
+		};
+		DataReader reader = DataReaderFactory.getInstance().get("audio/wav");
+		DataSource data = reader.read(createWave(format, frames));
+
+		assertEquals(2, data.getColumnCount());
+		assertEquals(2, data.getRowCount());
+		assertEquals(1.0, data.get(0, 0));
+		assertEquals(-1.0, data.get(1, 0));
+		assertEquals(-32768.0, data.get(0, 1));
+		assertEquals(32767.0, data.get(1, 1));
+		assertEquals(44100f, ((AudioData) data).getSampleRate(), DELTA);
+	}
+
+	@Test
+	public void testUnsigned8() throws IOException {
+		AudioFormat format = new AudioFormat(8000f, 8, 1, false, false);
+		byte[] frames = {(byte) 0x80, (byte) 0xFF, 0x00};
+		DataReader reader = DataReaderFactory.getInstance().get("audio/wav");
+		DataSource data = reader.read(createWave(format, frames));
+
+		assertEquals(3, data.getRowCount());
+		assertEquals(0.0, data.get(0, 0));
+		assertEquals(127.0*256.0, data.get(0, 1));
+		assertEquals(-128.0*256.0, data.get(0, 2));
+	}
+
+	@Test
+	public void testSigned24() throws IOException {
+		AudioFormat format = new AudioFormat(8000f, 24, 1, true, false);
+		byte[] frames = {0x00, 0x01, 0x00, 0x00, 0x00, (byte) 0x80};
+		DataReader reader = DataReaderFactory.getInstance().get("audio/wav");
+		DataSource data = reader.read(createWave(format, frames));
+
+		assertEquals(2, data.getRowCount());
+		assertEquals(1.0, data.get(0, 0));
+		assertEquals(-32768.0, data.get(0, 1));
+	}
+
+	@Test
+	public void testFactorAndOffset() throws IOException {
+		AudioFormat format = new AudioFormat(8000f, 16, 1, true, true);
+		byte[] frames = {0x00, 0x10};
+		DataReader reader = DataReaderFactory.getInstance().get("audio/wav");
+		reader.setSetting(AudioReader.FACTOR, 0.5);
+		reader.setSetting(AudioReader.OFFSET, 1.0);
+		DataSource data = reader.read(createWave(format, frames));
+
+		assertEquals(9.0, data.get(0, 0));
+		double[] values = new double[2];
+		DataUtils.getValues(data, 0, 0, values, 0, 2);
+		assertEquals(9.0, values[0], DELTA);
+		assertTrue(Double.isNaN(values[1]));
+	}
+
+	@Test
+	public void testEnvelope() throws IOException {
+		int frameCount = 100003;
+		byte[] frames = new byte[2*frameCount];
+		new Random(42).nextBytes(frames);
+		AudioFormat format = new AudioFormat(48000f, 16, 1, true, false);
+		DataReader reader = DataReaderFactory.getInstance().get("audio/wav");
+		reader.setSetting(AudioReader.FACTOR, -2.0);
+		AudioData linear = (AudioData) reader.read(createWave(format, frames));
+		reader.setSetting(AudioReader.PYRAMID, true);
+		AudioData pyramid = (AudioData) reader.read(createWave(format, frames));
+		assertFalse(linear.hasPyramid());
+		assertTrue(pyramid.hasPyramid());
+
+		int[][] ranges = {{0, frameCount, 640}, {17, 5000, 33}, {99990, 20, 7}, {3, 4, 8}};
+		for (int[] range : ranges) {
+			int bins = range[2];
+			double[] expectedMins = new double[bins];
+			double[] expectedMaxs = new double[bins];
+			linear.getEnvelope(0, range[0], range[1], expectedMins, expectedMaxs);
+			double[] mins = new double[bins];
+			double[] maxs = new double[bins];
+			pyramid.getEnvelope(0, range[0], range[1], mins, maxs);
+			assertArrayEquals(expectedMins, mins, DELTA);
+			assertArrayEquals(expectedMaxs, maxs, DELTA);
+
+			for (int bin = 0; bin < bins; bin++) {
+				int start = range[0] + bin*range[1]/bins;
+				int end = Math.min(range[0] + (bin + 1)*range[1]/bins, frameCount);
+				double min = Double.NaN;
+				double max = Double.NaN;
+				for (int row = start; row < end; row++) {
+					double value = ((Number) linear.get(0, row)).doubleValue();
+					if (!(value >= min)) {
+						min = value;
+					}
+					if (!(value <= max)) {
+						max = value;
+					}
+				}
+				assertEquals(min, mins[bin], DELTA);
+				assertEquals(max, maxs[bin], DELTA);
+			}
+		}
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
+
+public class CSVFollowerTest {
+	private File file;
+	private DataTable data;
+	private CSVFollower follower;
+	private int addedCount;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() throws IOException {
+		file = File.createTempFile("gral", ".csv");
+		file.deleteOnExit();
+		data = new DataTable(Integer.class, String.class);
+		data.addDataListener(new DataListener() {
+			public void dataAdded(DataSource source, DataChangeEvent... events) {
+				addedCount++;
+			}
+			public void dataUpdated(DataSource source, DataChangeEvent... events) {
+			}
+			public void dataRemoved(DataSource source, DataChangeEvent... events) {
+			}
+		});
+		CSVReader reader = (CSVReader) DataReaderFactory.getInstance().get("text/csv");
+		follower = reader.follow(file, data);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		follower.close();
+		file.delete();
+	}
+
+	private static void write(File file, String content, boolean append) throws IOException {
+		try (OutputStream output = new FileOutputStream(file, append)) {
+			output.write(content.getBytes());
+		}
+	}
+
+	@Test
+	public void testPoll() throws IOException {
+		assertEquals(0, follower.poll());
+
+		write(file, "1,a\r\n2,\"b\r\n", true);
+		assertEquals(1, follower.poll());
+		assertEquals(1, data.getRowCount());
+		assertEquals(1, addedCount);
+
+		// Complete the quoted row
+		write(file, "c\"\r", true);
+		assertEquals(0, follower.poll());
+		write(file, "\n3,d", true);
+		assertEquals(1, follower.poll());
+		assertEquals("b\r\nc", data.get(1, 1));
+
+		write(file, "4\n", true);
+		assertEquals(1, follower.poll());
+		assertEquals(3, data.get(0, 2));
+		assertEquals("d4", data.get(1, 2));
+		assertEquals(3, addedCount);
+	}
+
+	@Test
+	public void testLargeAppend() throws IOException {
+		StringBuilder content = new StringBuilder();
+		int rowCount = 2*CSVParser.BATCH_SIZE + 1;
+		for (int row = 0; row < rowCount; row++) {
+			content.append(row).append(",row").append(row).append('\n');
+		}
+		write(file, content.toString(), false);
+		assertEquals(rowCount, follower.poll());
+		assertEquals(rowCount, data.getRowCount());
+		assertEquals(rowCount - 1, data.get(0, rowCount - 1));
+		assertTrue(addedCount < rowCount/100);
+	}
+
+	@Test
+	public void testTruncation() throws IOException {
+		write(file, "1,a\n2,b\n", false);
+		assertEquals(2, follower.poll());
+
+		write(file, "3,c\n", false);
+		assertEquals(1, follower.poll());
+		assertEquals(3, data.getRowCount());
+		assertEquals(3, data.get(0, 2));
+	}
+
+	@Test
+	public void testRotation() throws IOException {
+		write(file, "1,a\n", false);
+		assertEquals(1, follower.poll());
+
+		File rotated = new File(file.getPath() + ".1");
+		rotated.deleteOnExit();
+		assertTrue(file.renameTo(rotated));
+		assertEquals(0, follower.poll());
+		write(file, "2,b\n3,c\n", false);
+		assertEquals(2, follower.poll());
+		assertEquals(2, data.get(0, 1));
+		assertEquals(3, data.get(0, 2));
+		rotated.delete();
+	}
+
+	@Test
+	public void testInvalidContent() throws IOException {
+		write(file, "1,a\n2,b\nx,c\n3,d\n", false);
+		try {
+			follower.poll();
+			fail("Expected IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("line 3,"));
+		}
+
+		// Only the invalid row is skipped
+		assertEquals(3, data.getRowCount());
+		assertEquals(3, data.get(0, 2));
+		assertEquals(1, addedCount);
+		write(file, "4,e\n", true);
+		assertEquals(1, follower.poll());
+		assertEquals(4, data.get(0, data.getRowCount() - 1));
+	}
+
+	@Test
+	public void testHeader() throws IOException {
+		write(file, "id,label\n1,a\n", false);
+		assertEquals(1, follower.poll());
+		assertEquals(1, data.get(0, 0));
+
+		// The header of a rotated file is skipped, too
+		File rotated = new File(file.getPath() + ".1");
+		rotated.deleteOnExit();
+		assertTrue(file.renameTo(rotated));
+		write(file, "id,label\n2,b\n", false);
+		assertEquals(1, follower.poll());
+		assertEquals(2, data.getRowCount());
+		assertEquals(2, data.get(0, 1));
+		rotated.delete();
+
+		// Invalid rows after the first row aren't skipped silently
+		write(file, "id,label\n", true);
+		try {
+			follower.poll();
+			fail("Expected IOException");
+		} catch (IOException e) {
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSkippingHeader() throws IOException {
+		DataTable labels = new DataTable(String.class, String.class);
+		try (CSVFollower follower = new CSVFollower(file, ',', labels)) {
+			assertFalse(follower.isSkippingHeader());
+			follower.setSkippingHeader(true);
+			assertTrue(follower.isSkippingHeader());
+			write(file, "key,value\n", false);
+			assertEquals(0, follower.poll());
+			write(file, "a,b\n", true);
+			assertEquals(1, follower.poll());
+			assertEquals("a", labels.get(0, 0));
+		}
+	}
+
+	@Test
+	public void testRotationWithoutFileKey() {
+		FileTime created = FileTime.fromMillis(1000L);
+		assertFalse(CSVFollower.isRotated(null, null, null, created));
+		assertFalse(CSVFollower.isRotated(null, created, null, FileTime.fromMillis(1000L)));
+		assertTrue(CSVFollower.isRotated(null, created, null, FileTime.fromMillis(2000L)));
+		assertTrue(CSVFollower.isRotated("a", created, "b", created));
+		assertFalse(CSVFollower.isRotated("a", created, "a", FileTime.fromMillis(2000L)));
+	}
+
+	@Test
+	public void testStep() throws IOException, InterruptedException {
+		follower.setInterval(1L);
+		for (boolean watching : new boolean[] {false, true}) {
+			follower.setWatching(watching);
+			int rowCount = data.getRowCount();
+			try (WatchService watcher = follower.createWatcher()) {
+				assertEquals(watching, watcher != null);
+				write(file, "1,a\n", true);
+				follower.step(watcher);
+				assertEquals(rowCount + 1, data.getRowCount());
+				write(file, "x,b\n", true);
+				follower.step(watcher);
+				assertTrue(follower.getError() instanceof IOException);
+			}
+		}
+	}
+
+	@Test
+	public void testStartAndClose() throws IOException {
+		follower.start();
+		try {
+			follower.start();
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+		}
+		follower.close();
+		follower.close();
+		assertNull(follower.getError());
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.erichseifert.gral.data.DataTable;
+
+public class CSVFormatterTest {
+	private static String format(double value) {
+		CSVFormatter formatter = new CSVFormatter(new DataTable(), ',');
+		formatter.append(value);
+		return formatter.toString();
+	}
+
+	private static String format(long value) {
+		CSVFormatter formatter = new CSVFormatter(new DataTable(), ',');
+		formatter.append(value);
+		return formatter.toString();
+	}
+
+	@Test
+	public void testDoubleNotation() {
+		double[] values = {
+			0.0, -0.0, 1.0, -1.0, 10.0, 0.1, 0.5, 123.456, -0.001, 0.00123,
+			1e-4, 1.5e-7, 1234567.0, 1e7, 12345678.0, 1.25e21, Double.NaN,
+			Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MAX_VALUE,
+			Double.MIN_VALUE, 9007199254740992.0, 0.30000000000000004
+		};
+		for (double value : values) {
+			assertEquals(Double.toString(value), format(value));
+		}
+	}
+
+	@Test
+	public void testDoubleRoundTrip() {
+		Random random = new Random(42L);
+		for (int i = 0; i < 10000; i++) {
+			double value;
+			switch (i % 3) {
+				case 0:
+					value = random.nextDouble();
+					break;
+				case 1:
+					value = (random.nextInt(2000000) - 1000000)/1000.0;
+					break;
+				default:
+					value = Double.longBitsToDouble(random.nextLong());
+			}
+			String text = format(value);
+			assertEquals(text, Double.doubleToLongBits(value),
+				Double.doubleToLongBits(Double.parseDouble(text)));
+			assertTrue(text, text.length() <= Double.toString(value).length());
+		}
+	}
+
+	@Test
+	public void testLong() {
+		long[] values = {0L, 7L, -7L, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE};
+		for (long value : values) {
+			assertEquals(Long.toString(value), format(value));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testFormat() {
+		DataTable data = new DataTable(Double.class, Integer.class, Long.class, String.class);
+		data.add(1.5, 2, 3L, "foo");
+		data.add(null, null, null, null);
+		data.add(Double.NaN, -2, Long.MAX_VALUE, "a,\"b\"\nc");
+		data.add(0.1, 0, 0L, " x");
+		CSVFormatter formatter = new CSVFormatter(data, ',');
+		formatter.format(0, 2);
+		formatter.format(2, 2);
+		assertEquals(
+			"1.5,2,3,foo\r\n" +
+			",,,\r\n" +
+			"NaN,-2,9223372036854775807,\"a,\"\"b\"\"\nc\"\r\n" +
+			"0.1,0,0,\" x\"\r\n",
+			formatter.toString());
+	}
+}
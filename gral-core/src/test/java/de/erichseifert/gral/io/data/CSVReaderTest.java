@@ -23,16 +23,23 @@ package de.erichseifert.gral.io.data;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.ParseException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
 import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
 
 public class CSVReaderTest {
 	@Test
@@ -265,4 +272,193 @@ public class CSVReaderTest {
 		assertEquals(-21.0, data.get(2, 1));
 		assertEquals(-22.0, data.get(2, 2));
 	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testQuotedLineBreak() throws IOException {
+		InputStream input = new ByteArrayInputStream((
+			"0,\"foo\r\nbar\"\r\n" +
+			"1,\"foo,bar\"\r\n"
+		).getBytes());
+		DataReader reader = DataReaderFactory.getInstance().get("text/csv");
+		DataSource data = reader.read(input, Integer.class, String.class);
+
+		assertEquals(2, data.getRowCount());
+		assertEquals("foo\r\nbar", data.get(1, 0));
+		assertEquals("foo,bar", data.get(1, 1));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testNumberFormats() throws IOException {
+		InputStream input = new ByteArrayInputStream((
+			"+1,  0.1 ,1e3,1.5E-7\r\n" +
+			"-2,123456789012345678901,NaN,-Infinity\r\n" +
+			"3,0.30000000000000004,4.9e-324,1.7976931348623157E308\r\n"
+		).getBytes());
+		DataReader reader = DataReaderFactory.getInstance().get("text/csv");
+		DataSource data = reader.read(input,
+			Long.class, Double.class, Double.class, Double.class);
+
+		assertEquals(1L, data.get(0, 0));
+		assertEquals(0.1, data.get(1, 0));
+		assertEquals(1e3, data.get(2, 0));
+		assertEquals(1.5e-7, data.get(3, 0));
+		assertEquals(-2L, data.get(0, 1));
+		assertEquals(123456789012345678901.0, data.get(1, 1));
+		assertEquals(Double.NaN, data.get(2, 1));
+		assertEquals(Double.NEGATIVE_INFINITY, data.get(3, 1));
+		assertEquals(0.30000000000000004, data.get(1, 2));
+		assertEquals(Double.MIN_VALUE, data.get(2, 2));
+		assertEquals(Double.MAX_VALUE, data.get(3, 2));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testLargeInput() throws IOException {
+		int rowCount = 3*CSVParser.BATCH_SIZE + 1;
+		StringBuilder content = new StringBuilder();
+		for (int row = 0; row < rowCount; row++) {
+			content.append(row).append(",\"").append(row/8.0).append("\",")
+				.append(-row).append("\r\n");
+		}
+		// Make sure that the content is read in several chunks
+		assertTrue(content.length() > 2*CSVParser.CHUNK_SIZE);
+
+		InputStream input = new ByteArrayInputStream(content.toString().getBytes());
+		DataReader reader = DataReaderFactory.getInstance().get("text/csv");
+		DataSource data = reader.read(input, Integer.class, Double.class, Long.class);
+
+		assertEquals(rowCount, data.getRowCount());
+		for (int row = 0; row < rowCount; row++) {
+			assertEquals(row, data.get(0, row));
+			assertEquals(row/8.0, data.get(1, row));
+			assertEquals((long) -row, data.get(2, row));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testChunkBoundaries() throws IOException {
+		String content = "1,\"a\"\"b\"\r\n22,c\r\n333,\"d\"\n";
+		Class<? extends Comparable<?>>[] types = new Class[] {Integer.class, String.class};
+		for (int chunkSize = 1; chunkSize <= content.length(); chunkSize++) {
+			DataTable data = new DataTable(types);
+			CSVParser parser = new CSVParser(',', types, data, 2);
+			char[] chars = content.toCharArray();
+			for (int offset = 0; offset < chars.length; offset += chunkSize) {
+				parser.parse(chars, offset, Math.min(chunkSize, chars.length - offset));
+			}
+			parser.finish();
+
+			assertEquals(3, data.getRowCount());
+			assertEquals(1, data.get(0, 0));
+			assertEquals("a\"b", data.get(1, 0));
+			assertEquals(22, data.get(0, 1));
+			assertEquals("c", data.get(1, 1));
+			assertEquals(333, data.get(0, 2));
+			assertEquals("d", data.get(1, 2));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testReadFile() throws IOException {
+		File file = File.createTempFile("gral", ".csv");
+		file.deleteOnExit();
+		try (OutputStream output = new FileOutputStream(file)) {
+			output.write((
+				"0,10.0,\"foo\r\nbar\"\r\n" +
+				"1,11.0,foobar\r\n" +
+				"2,12.0,\"\"\"\""
+			).getBytes());
+		}
+
+		CSVReader reader = (CSVReader) DataReaderFactory.getInstance().get("text/csv");
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			for (ForkJoinPool p : Arrays.asList(null, pool)) {
+				reader.setPool(p);
+				DataSource data = reader.read(file, Integer.class, Double.class, String.class);
+				assertEquals(3, data.getRowCount());
+				assertEquals( 0,   data.get(0, 0));
+				assertEquals(11.0, data.get(1, 1));
+				assertEquals("foo\r\nbar", data.get(2, 0));
+				assertEquals("foobar", data.get(2, 1));
+				assertEquals("\"", data.get(2, 2));
+			}
+		} finally {
+			reader.setPool(null);
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testInferTypes() throws IOException {
+		String content =
+			"time,value,label\r\n" +
+			"2019-12-31T12:00:00Z,1,foo\r\n" +
+			"2019-12-31T13:00:00Z,2.5,bar\r\n" +
+			"2019-12-31T14:00:00Z,,\"foo, bar\"\r\n";
+		File file = File.createTempFile("gral", ".csv");
+		file.deleteOnExit();
+		try (OutputStream output = new FileOutputStream(file)) {
+			output.write(content.getBytes());
+		}
+
+		CSVReader reader = (CSVReader) DataReaderFactory.getInstance().get("text/csv");
+		reader.setSetting(CSVReader.SAMPLE_SIZE, 2);
+		DataSource[] sources = {
+			reader.read(new ByteArrayInputStream(content.getBytes())),
+			reader.read(file)
+		};
+		for (DataSource data : sources) {
+			assertEquals(3, data.getColumnCount());
+			assertEquals(3, data.getRowCount());
+			assertEquals(Long.class, data.getColumnTypes()[0]);
+			assertEquals(Double.class, data.getColumnTypes()[1]);
+			assertEquals(String.class, data.getColumnTypes()[2]);
+			assertEquals(1577793600000L, data.get(0, 0));
+			assertEquals(1577797200000L, data.get(0, 1));
+			assertEquals(1.0, data.get(1, 0));
+			assertEquals(2.5, data.get(1, 1));
+			assertNull(data.get(1, 2));
+			assertEquals("foo, bar", data.get(2, 2));
+		}
+		file.delete();
+	}
+
+	@Test
+	public void testInferSeparator() throws IOException {
+		String content = "1,5;2,25\r\n3,5;4,75\r\n";
+		CSVReader reader = (CSVReader) DataReaderFactory.getInstance().get("text/csv");
+		DataSource data = reader.read(new ByteArrayInputStream(content.getBytes()));
+		assertEquals(2, data.getColumnCount());
+		assertEquals("3,5", data.get(0, 1));
+
+		// An explicit separator is always used
+		reader.setSetting(CSVReader.SEPARATOR_CHAR, ',');
+		data = reader.read(new ByteArrayInputStream(content.getBytes()));
+		assertEquals(3, data.getColumnCount());
+		assertEquals("5;2", data.get(1, 0));
+	}
+
+	@Test
+	public void testSampleSizeWithCRLF() throws IOException {
+		// Decimal values only occur in the last sample rows
+		int sampleSize = 2500;
+		StringBuilder content = new StringBuilder();
+		for (int row = 0; row < 2*sampleSize; row++) {
+			content.append(row).append(',');
+			content.append(row < sampleSize - 100 ? "100000000" : "100000000.5");
+			content.append(",text in row ").append(row).append("\r\n");
+		}
+
+		CSVReader reader = (CSVReader) DataReaderFactory.getInstance().get("text/csv");
+		reader.setSetting(CSVReader.SAMPLE_SIZE, sampleSize);
+		DataSource data = reader.read(
+			new ByteArrayInputStream(content.toString().getBytes()));
+		assertEquals(Double.class, data.getColumnTypes()[1]);
+		assertEquals(2*sampleSize, data.getRowCount());
+	}
 }
@@ -0,0 +1,205 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class CSVSchemaTest {
+	private static CSVSchema infer(String content, boolean complete) throws IOException {
+		return infer(content, complete, ',');
+	}
+
+	private static CSVSchema infer(String content, boolean complete,
+			char preferredSeparator) throws IOException {
+		char[] chars = content.toCharArray();
+		return CSVSchema.infer(chars, chars.length, complete, preferredSeparator);
+	}
+
+	private static long parseTimestamp(String text) {
+		char[] chars = text.toCharArray();
+		return CSVParser.parseTimestamp(chars, 0, chars.length);
+	}
+
+	@Test
+	public void testTypes() throws IOException {
+		CSVSchema schema = infer(
+			"1,1.5,2019-12-31,foo,,2\r\n" +
+			"-2,3,2020-01-01 12:00,\"bar\",,2.0\r\n" +
+			"3,NaN,2020-01-01T12:00:00.5Z,,,x\r\n", true);
+
+		assertEquals(',', schema.getSeparator());
+		assertFalse(schema.hasHeader());
+		assertNull(schema.getHeader());
+		assertArrayEquals(new Class<?>[] {
+			Long.class, Double.class, Long.class, String.class, String.class, String.class
+		}, schema.getColumnTypes());
+		assertFalse(schema.isTimestamp(0));
+		assertTrue(schema.isTimestamp(2));
+	}
+
+	@Test
+	public void testMixedTypes() throws IOException {
+		// Numbers and timestamps cannot be combined
+		CSVSchema schema = infer("1,1\n2019-12-31,2.5\n", true);
+		assertArrayEquals(new Class<?>[] {String.class, Double.class},
+			schema.getColumnTypes());
+		assertFalse(schema.isTimestamp(0));
+	}
+
+	@Test
+	public void testHeader() throws IOException {
+		CSVSchema schema = infer(
+			"time;\"value; in m\";label\n" +
+			"2019-12-31;1.5;foo\n" +
+			"2020-01-01;2.0;bar\n", true);
+
+		assertEquals(';', schema.getSeparator());
+		assertTrue(schema.hasHeader());
+		assertArrayEquals(new String[] {"time", "value; in m", "label"},
+			schema.getHeader());
+		assertArrayEquals(new Class<?>[] {Long.class, Double.class, String.class},
+			schema.getColumnTypes());
+
+		// Text columns only: the first row can't be distinguished
+		schema = infer("a\tb\nc\td\n", true);
+		assertEquals('\t', schema.getSeparator());
+		assertFalse(schema.hasHeader());
+
+		// Values that match the types are not a header
+		schema = infer("x,1\ny,2\n", true);
+		assertFalse(schema.hasHeader());
+	}
+
+	@Test
+	public void testIncompleteSample() throws IOException {
+		// The last row of an incomplete sample is ignored
+		CSVSchema schema = infer("1|2\n3|4\n5|fo", false);
+		assertEquals('|', schema.getSeparator());
+		assertArrayEquals(new Class<?>[] {Long.class, Long.class},
+			schema.getColumnTypes());
+	}
+
+	@Test
+	public void testPreferredSeparator() throws IOException {
+		// The preferred separator wins if others divide the rows equally well
+		CSVSchema schema = infer("a;b\tc\n", true, '\t');
+		assertEquals('\t', schema.getSeparator());
+		schema = infer("a;b\tc\n", true, ';');
+		assertEquals(';', schema.getSeparator());
+
+		// Separators in text columns are ignored if they don't occur consistently
+		schema = infer("a\tb; c\nd\te\n", true, ',');
+		assertEquals('\t', schema.getSeparator());
+
+		// Other separators win if they divide the rows into more columns
+		schema = infer("1;2;3\n4;5;6\n", true, '|');
+		assertEquals(';', schema.getSeparator());
+		assertEquals(3, schema.getColumnTypes().length);
+	}
+
+	@Test
+	public void testEmbeddedSeparator() throws IOException {
+		// Commas in text of a TSV file
+		CSVSchema schema = infer("a, b\tc, d\n", true);
+		assertEquals('\t', schema.getSeparator());
+		assertEquals(2, schema.getColumnTypes().length);
+
+		// Decimal commas
+		schema = infer("1;2,5\n3;4,5\n", true);
+		assertEquals(';', schema.getSeparator());
+		assertArrayEquals(new Class<?>[] {Long.class, String.class},
+			schema.getColumnTypes());
+		schema = infer("1,5;2,25", true);
+		assertEquals(';', schema.getSeparator());
+		assertEquals(2, schema.getColumnTypes().length);
+
+		// Embedded separators are used if there is no other separator
+		schema = infer("1,2\n3,4\n", true);
+		assertEquals(',', schema.getSeparator());
+		schema = infer("a, b\nc, d\n", true, ';');
+		assertEquals(',', schema.getSeparator());
+	}
+
+	@Test
+	public void testFixedSeparator() throws IOException {
+		char[] chars = "1,5;2,25\n".toCharArray();
+		CSVSchema schema = CSVSchema.infer(chars, chars.length, true, ',', true);
+		assertEquals(',', schema.getSeparator());
+		assertEquals(3, schema.getColumnTypes().length);
+
+		chars = "a,b\n".toCharArray();
+		schema = CSVSchema.infer(chars, chars.length, true, ';', true);
+		assertEquals(';', schema.getSeparator());
+		assertEquals(1, schema.getColumnTypes().length);
+	}
+
+	@Test(expected = IOException.class)
+	public void testRaggedFixedSeparator() throws IOException {
+		char[] chars = "1;2\n3\n4,5\n6,7\n".toCharArray();
+		CSVSchema.infer(chars, chars.length, true, ';', true);
+	}
+
+	@Test(expected = IOException.class)
+	public void testRaggedRows() throws IOException {
+		infer("1,2\n3\n", true);
+	}
+
+	@Test(expected = IOException.class)
+	public void testRaggedRowsWithOtherSeparator() throws IOException {
+		infer("1;2\n3\n", true);
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		CSVSchema schema = infer("", true);
+		assertEquals(1, schema.getColumnTypes().length);
+		assertFalse(schema.hasHeader());
+	}
+
+	@Test
+	public void testParseTimestamp() {
+		assertEquals(0L, parseTimestamp("1970-01-01"));
+		assertEquals(0L, parseTimestamp("1970-01-01T00:00:00Z"));
+		assertEquals(1577836799999L, parseTimestamp("2019-12-31T23:59:59.999"));
+		assertEquals(1577836799999L, parseTimestamp("2020-01-01 00:59:59.9999+01:00"));
+		assertEquals(1582934400000L, parseTimestamp("2020-02-29"));
+		assertEquals(-86400000L, parseTimestamp("1969-12-31"));
+		assertEquals(3600000L, parseTimestamp("1970-01-01 00:00-0100"));
+
+		String[] invalid = {
+			"", "2019-02-29", "2019-13-01", "2019-1-01", "2019-12-31T24:00",
+			"2019-12-31 12", "2019-12-31T12:00:", "2019-12-31T12:00:00.",
+			"2019-12-31T12:00+1", "2019-12-31X"
+		};
+		for (String text : invalid) {
+			assertEquals(text, CSVParser.INVALID_TIMESTAMP, parseTimestamp(text));
+		}
+	}
+}
@@ -22,10 +22,15 @@
 package de.erichseifert.gral.io.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -86,4 +91,73 @@ public class CSVWriterTest {
 		);
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testEmptyCellsAndQuotes() throws IOException {
+		DataTable data = new DataTable(Double.class, String.class);
+		data.add(null, "foo,bar");
+		data.add(1.0, null);
+		OutputStream output = new ByteArrayOutputStream();
+
+		DataWriter writer = DataWriterFactory.getInstance().get("text/csv");
+		writer.write(data, output);
+
+		assertEquals(
+			",\"foo,bar\"\r\n" +
+			"1.0,\r\n",
+			output.toString()
+		);
+	}
+
+	@Test
+	public void testGzip() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		DataWriter writer = DataWriterFactory.getInstance().get("text/csv");
+		writer.setSetting(CSVWriter.GZIP, true);
+		try {
+			writer.write(data, output);
+		} finally {
+			writer.setSetting(CSVWriter.GZIP, false);
+		}
+
+		InputStream input = new GZIPInputStream(new ByteArrayInputStream(output.toByteArray()));
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int count;
+		while ((count = input.read(buffer)) != -1) {
+			content.write(buffer, 0, count);
+		}
+		assertEquals(
+			"0.0,10.0,20\r\n" +
+			"1.0,11.0,21\r\n" +
+			"2.0,12.0,22\r\n",
+			content.toString()
+		);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testParallel() throws IOException {
+		DataTable large = new DataTable(Integer.class, Double.class);
+		for (int i = 0; i < 10000; i++) {
+			large.add(i, i/3.0);
+		}
+
+		CSVWriter writer = (CSVWriter) DataWriterFactory.getInstance().get("text/csv");
+		OutputStream expected = new ByteArrayOutputStream();
+		writer.write(large, expected);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		OutputStream output = new ByteArrayOutputStream();
+		try {
+			writer.setPool(pool);
+			writer.write(large, output);
+		} finally {
+			writer.setPool(null);
+			pool.shutdown();
+		}
+		assertEquals(expected.toString(), output.toString());
+		assertTrue(output.toString().endsWith("9999,3333.0\r\n"));
+	}
 }
@@ -0,0 +1,165 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.util.DataUtils;
+
+public class ColumnarReaderTest {
+	private static final double DELTA = 1e-15;
+
+	private static byte[] content;
+
+	@BeforeClass
+	@SuppressWarnings("unchecked")
+	public static void setUpBeforeClass() throws IOException {
+		DataTable data = new DataTable(Integer.class, Double.class, String.class);
+		for (int i = 0; i < 10; i++) {
+			data.add(i, (i == 5) ? null : 0.5*i - 1.0, "row" + i);
+		}
+		DataWriter writer = DataWriterFactory.getInstance().get("application/x-gral-columnar");
+		writer.setSetting(ColumnarWriter.BLOCK_SIZE, 4);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writer.write(data, output);
+		content = output.toByteArray();
+	}
+
+	@Test
+	public void testReadFile() throws IOException {
+		File file = File.createTempFile("gral", ".gralc");
+		file.deleteOnExit();
+		try (FileOutputStream output = new FileOutputStream(file)) {
+			output.write(content);
+		}
+
+		ColumnarReader reader = (ColumnarReader) DataReaderFactory.getInstance().get(
+			"application/x-gral-columnar");
+		DataSource data = reader.read(file, Integer.class, Double.class, String.class);
+		assertEquals(10, data.getRowCount());
+		assertEquals(7, data.get(0, 7));
+		assertEquals(2.5, data.get(1, 7));
+		assertEquals(null, data.get(1, 5));
+		assertEquals("row9", data.get(2, 9));
+	}
+
+	@Test
+	public void testMinimumAndMaximum() throws IOException {
+		DataReader reader = DataReaderFactory.getInstance().get("application/x-gral-columnar");
+		ColumnarData data = (ColumnarData) reader.read(new ByteArrayInputStream(content));
+
+		assertEquals(4, data.getBlockSize());
+		assertEquals(3, data.getBlockCount());
+		assertEquals(0.0, data.getMinimum(0), DELTA);
+		assertEquals(9.0, data.getMaximum(0), DELTA);
+		assertEquals(-1.0, data.getMinimum(1), DELTA);
+		assertEquals(3.5, data.getMaximum(1), DELTA);
+		assertEquals(1.0, data.getMinimum(1, 1), DELTA);
+		assertEquals(2.5, data.getMaximum(1, 1), DELTA);
+		assertTrue(Double.isNaN(data.getMinimum(2)));
+	}
+
+	@Test
+	public void testGetValues() throws IOException {
+		DataReader reader = DataReaderFactory.getInstance().get("application/x-gral-columnar");
+		DataSource data = reader.read(new ByteArrayInputStream(content));
+
+		double[] values = new double[12];
+		DataUtils.getValues(data, 1, 2, values, 1, 10);
+		assertEquals(0.0, values[1], DELTA);
+		assertTrue(Double.isNaN(values[4]));
+		assertEquals(3.5, values[8], DELTA);
+		assertTrue(Double.isNaN(values[9]));
+		assertTrue(Double.isNaN(values[10]));
+
+		DataUtils.getValues(data, 0, 3, values, 0, 3);
+		assertEquals(3.0, values[0], DELTA);
+		assertEquals(5.0, values[2], DELTA);
+
+		// Text and rows outside the data are NaN
+		DataUtils.getValues(data, 2, 8, values, 0, 4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(Double.isNaN(values[i]));
+		}
+		DataUtils.getValues(data, 0, 10, values, 0, 2);
+		assertTrue(Double.isNaN(values[0]));
+		assertTrue(Double.isNaN(values[1]));
+		DataUtils.getValues(data, 0, -1, values, 0, 2);
+		assertTrue(Double.isNaN(values[0]));
+		assertEquals(0.0, values[1], DELTA);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTypeMismatch() throws IOException {
+		DataReader reader = DataReaderFactory.getInstance().get("application/x-gral-columnar");
+		reader.read(new ByteArrayInputStream(content), Double.class, Double.class, String.class);
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidContent() throws IOException {
+		byte[] invalid = content.clone();
+		invalid[invalid.length - 1] = 0;
+		DataReader reader = DataReaderFactory.getInstance().get("application/x-gral-columnar");
+		reader.read(new ByteArrayInputStream(invalid));
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidColumnCount() throws IOException {
+		byte[] invalid = content.clone();
+		ByteBuffer.wrap(invalid).putInt(ColumnarFormat.MAGIC.length, Integer.MAX_VALUE);
+		DataReader reader = DataReaderFactory.getInstance().get("application/x-gral-columnar");
+		reader.read(new ByteArrayInputStream(invalid));
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		DataReader reader = DataReaderFactory.getInstance().get("application/x-gral-columnar");
+		DataSource data = reader.read(new ByteArrayInputStream(content));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+			output.writeObject(data);
+		}
+		DataSource copy;
+		try (ObjectInputStream input = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()))) {
+			copy = (DataSource) input.readObject();
+		}
+		assertEquals(10, copy.getRowCount());
+		assertEquals("row3", copy.get(2, 3));
+	}
+}
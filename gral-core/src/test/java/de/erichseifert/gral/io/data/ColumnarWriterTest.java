@@ -0,0 +1,136 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
+
+public class ColumnarWriterTest {
+	private static DataTable data;
+
+	@BeforeClass
+	@SuppressWarnings("unchecked")
+	public static void setUpBeforeClass() {
+		data = new DataTable(Double.class, Float.class, Long.class,
+			Integer.class, Short.class, Byte.class, String.class);
+		data.add(1.5, 2.5f, Long.MAX_VALUE, 3, (short) 4, (byte) 5, "foo");
+		data.add(null, null, null, null, null, null, null);
+		data.add(-1.5, -2.5f, Long.MIN_VALUE, -3, (short) -4, (byte) -5, "b\u00e4r");
+	}
+
+	private static DataSource writeAndRead(DataSource data, int blockSize,
+			boolean compression) throws IOException {
+		DataWriter writer = DataWriterFactory.getInstance().get("application/x-gral-columnar");
+		writer.setSetting(ColumnarWriter.BLOCK_SIZE, blockSize);
+		writer.setSetting(ColumnarWriter.COMPRESSION, compression);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writer.write(data, output);
+
+		DataReader reader = DataReaderFactory.getInstance().get("application/x-gral-columnar");
+		return reader.read(new ByteArrayInputStream(output.toByteArray()));
+	}
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		for (int blockSize : new int[] {1, 2, 1024}) {
+			for (boolean compression : new boolean[] {false, true}) {
+				DataSource result = writeAndRead(data, blockSize, compression);
+				assertArrayEquals(data.getColumnTypes(), result.getColumnTypes());
+				assertEquals(data.getRowCount(), result.getRowCount());
+				for (int row = 0; row < data.getRowCount(); row++) {
+					for (int col = 0; col < data.getColumnCount(); col++) {
+						assertEquals(data.get(col, row), result.get(col, row));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		DataSource result = writeAndRead(new DataTable(Double.class), 16, false);
+		assertEquals(1, result.getColumnCount());
+		assertEquals(0, result.getRowCount());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testCompression() throws IOException {
+		DataTable data = new DataTable(Integer.class);
+		for (int i = 0; i < 10000; i++) {
+			data.add(i % 10);
+		}
+		DataWriter writer = DataWriterFactory.getInstance().get("application/x-gral-columnar");
+		ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+		writer.write(data, uncompressed);
+		writer.setSetting(ColumnarWriter.COMPRESSION, true);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		writer.write(data, compressed);
+
+		assertTrue(compressed.size() < uncompressed.size()/4);
+		DataReader reader = DataReaderFactory.getInstance().get("application/x-gral-columnar");
+		DataSource result = reader.read(new ByteArrayInputStream(compressed.toByteArray()));
+		assertEquals(10000, result.getRowCount());
+		assertEquals(7, result.get(0, 9997));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testUnsupportedType() throws IOException {
+		DataWriter writer = DataWriterFactory.getInstance().get("application/x-gral-columnar");
+		for (Class<? extends Comparable<?>> type : new Class[] {Boolean.class, Date.class}) {
+			DataTable data = new DataTable(Double.class, type);
+			try {
+				writer.write(data, new ByteArrayOutputStream());
+				fail("Expected IOException");
+			} catch (IOException e) {
+				assertEquals("Unsupported type of column 1: " + type.getName(),
+					e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testNaN() throws IOException {
+		DataTable data = new DataTable(Double.class);
+		data.add(Double.NaN);
+		data.add((Double) null);
+		DataSource result = writeAndRead(data, 16, false);
+		assertEquals(Double.NaN, result.get(0, 0));
+		assertNull(result.get(0, 1));
+	}
+}
@@ -29,7 +29,14 @@ import org.junit.runners.Suite;
 	DataReaderFactoryTest.class,
 	DataWriterFactoryTest.class,
 	CSVReaderTest.class,
+	CSVSchemaTest.class,
+	MappedCSVParserTest.class,
+	CSVFollowerTest.class,
 	CSVWriterTest.class,
+	CSVFormatterTest.class,
+	ColumnarReaderTest.class,
+	ColumnarWriterTest.class,
+	AudioReaderTest.class,
 	ImageReaderTest.class,
 	ImageWriterTest.class
 })
@@ -36,6 +36,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.RasterData.Channel;
 
 public class ImageReaderTest {
 	private static final double DELTA = 1e-15;
@@ -86,4 +87,21 @@ public class ImageReaderTest {
 		}
 	}
 
+	@Test
+	public void testSettings() throws IOException {
+		BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, 0x102030);
+		image.setRGB(1, 0, 0x405060);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+
+		DataReader reader = DataReaderFactory.getInstance().get("image/png");
+		reader.setSetting(ImageReader.CHANNEL, Channel.GREEN);
+		reader.setSetting(ImageReader.FACTOR, 2.0);
+		reader.setSetting(ImageReader.OFFSET, 1.0);
+		DataSource data = reader.read(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(0x20*2.0 + 1.0, ((Number) data.get(0, 0)).doubleValue(), DELTA);
+		assertEquals(0x50*2.0 + 1.0, ((Number) data.get(1, 0)).doubleValue(), DELTA);
+	}
+
 }
@@ -29,12 +29,16 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
+import java.awt.Color;
+import java.awt.image.Raster;
+
 import javax.imageio.ImageIO;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.plots.colors.LinearGradient;
 
 public class ImageWriterTest {
 	private static final double DELTA = 1e-15;
@@ -74,4 +78,65 @@ public class ImageWriterTest {
 		}
 	}
 
+	private static BufferedImage writeAndRead(DataTable data, DataWriter writer)
+			throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writer.write(data, output);
+		return ImageIO.read(new ByteArrayInputStream(output.toByteArray()));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testNonNumericCells() throws IOException {
+		DataTable data = new DataTable(Double.class, String.class, Double.class);
+		data.add(10.0, "foo", 20.0);
+		data.add(null, null, 30.0);
+		BufferedImage image = writeAndRead(data, DataWriterFactory.getInstance().get("image/png"));
+
+		Raster raster = image.getRaster();
+		assertEquals(10, raster.getSample(0, 0, 0));
+		assertEquals( 0, raster.getSample(1, 0, 0));
+		assertEquals(20, raster.getSample(2, 0, 0));
+		assertEquals( 0, raster.getSample(0, 1, 0));
+		assertEquals(30, raster.getSample(2, 1, 0));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testGray16() throws IOException {
+		DataTable data = new DataTable(Double.class, Double.class);
+		data.add(0.0, 1.0);
+		data.add(0.5, 2.0);
+		DataWriter writer = DataWriterFactory.getInstance().get("image/png");
+		writer.setSetting(ImageWriter.BIT_DEPTH, 16);
+		writer.setSetting(ImageWriter.FACTOR, 65535.0);
+		BufferedImage image = writeAndRead(data, writer);
+
+		Raster raster = image.getRaster();
+		assertEquals(16, image.getColorModel().getComponentSize(0));
+		assertEquals(    0, raster.getSample(0, 0, 0));
+		assertEquals(65535, raster.getSample(1, 0, 0));
+		assertEquals(32768, raster.getSample(0, 1, 0));
+		assertEquals(65535, raster.getSample(1, 1, 0));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testColorMapper() throws IOException {
+		DataTable data = new DataTable(Double.class, Double.class, Double.class);
+		data.add(0.0, 255.0, null);
+		for (int bitDepth : new int[] {8, 16}) {
+			DataWriter writer = DataWriterFactory.getInstance().get("image/png");
+			writer.setSetting(ImageWriter.BIT_DEPTH, bitDepth);
+			writer.setSetting(ImageWriter.FACTOR, bitDepth == 8 ? 1.0 : 257.0);
+			writer.setSetting(ImageWriter.COLOR_MAPPER, new LinearGradient(Color.RED, Color.BLUE));
+			BufferedImage image = writeAndRead(data, writer);
+
+			assertEquals(bitDepth, image.getColorModel().getComponentSize(0));
+			assertEquals(0xFF0000, image.getRGB(0, 0) & 0xFFFFFF);
+			assertEquals(0x0000FF, image.getRGB(1, 0) & 0xFFFFFF);
+			assertEquals(0x000000, image.getRGB(2, 0) & 0xFFFFFF);
+		}
+	}
+
 }
@@ -0,0 +1,209 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.erichseifert.gral.data.DataTable;
+
+public class MappedCSVParserTest {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static ForkJoinPool pool;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		pool.shutdown();
+	}
+
+	private static String getContent(int rowCount) {
+		StringBuilder content = new StringBuilder();
+		for (int row = 0; row < rowCount; row++) {
+			content.append(row).append(',').append(row/4.0).append(',');
+			if (row % 3 == 0) {
+				content.append("\"a\r\n\"\"b\"\"\nä\"");
+			} else {
+				content.append("c").append(row);
+			}
+			content.append(row % 2 == 0 ? "\r\n" : "\n");
+		}
+		return content.toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static DataTable parse(String content, ForkJoinPool pool, int minChunkSize)
+			throws IOException {
+		Class<? extends Comparable<?>>[] types = new Class[] {
+			Integer.class, Double.class, String.class};
+		DataTable data = new DataTable(types);
+		MappedCSVParser parser = new MappedCSVParser(',', types, UTF8, pool, minChunkSize);
+		parser.parse(ByteBuffer.wrap(content.getBytes(UTF8)), data);
+		return data;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static DataTable parse(File file, boolean skipHeader,
+			ForkJoinPool pool, int minChunkSize, int windowSize)
+			throws IOException {
+		Class<? extends Comparable<?>>[] types = new Class[] {
+			Integer.class, Double.class, String.class};
+		DataTable data = new DataTable(types);
+		MappedCSVParser parser = new MappedCSVParser(',', types, UTF8, pool, minChunkSize);
+		try (FileChannel channel = FileChannel.open(
+				file.toPath(), StandardOpenOption.READ)) {
+			parser.parse(channel, skipHeader, windowSize, data);
+		}
+		return data;
+	}
+
+	private static File createFile(String content) throws IOException {
+		File file = File.createTempFile("gral", ".csv");
+		file.deleteOnExit();
+		try (OutputStream output = new FileOutputStream(file)) {
+			output.write(content.getBytes(UTF8));
+		}
+		return file;
+	}
+
+	@Test
+	public void testParse() throws IOException {
+		int rowCount = 500;
+		String content = getContent(rowCount);
+		DataTable expected = parse(content, null, 1);
+		assertEquals(rowCount, expected.getRowCount());
+		assertEquals("a\r\n\"b\"\nä", expected.get(2, 0));
+		assertEquals("c1", expected.get(2, 1));
+
+		// Chunks of different sizes start inside quoted content and line breaks
+		for (int minChunkSize = 1; minChunkSize < 64; minChunkSize += 7) {
+			DataTable data = parse(content, pool, minChunkSize);
+			assertEquals(expected.getRowCount(), data.getRowCount());
+			for (int row = 0; row < expected.getRowCount(); row++) {
+				for (int col = 0; col < expected.getColumnCount(); col++) {
+					assertEquals(expected.get(col, row), data.get(col, row));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNoTrailingLineBreak() throws IOException {
+		String content = getContent(100) + "100,25.0,end";
+		DataTable data = parse(content, pool, 16);
+		assertEquals(101, data.getRowCount());
+		assertEquals(100, data.get(0, 100));
+		assertEquals("end", data.get(2, 100));
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		DataTable data = parse("", pool, 1);
+		assertEquals(0, data.getRowCount());
+	}
+
+	@Test
+	public void testErrorLine() throws IOException {
+		String content = getContent(200) + "x,0.0,foo\n" + getContent(10);
+		try {
+			parse(content, pool, 16);
+			fail("Expected IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("line 201,"));
+		}
+	}
+
+	@Test
+	public void testIsSupported() {
+		assertTrue(MappedCSVParser.isSupported(UTF8));
+		assertTrue(MappedCSVParser.isSupported(Charset.forName("ISO-8859-1")));
+		assertFalse(MappedCSVParser.isSupported(Charset.forName("UTF-16")));
+	}
+
+	@Test
+	public void testParseWindows() throws IOException {
+		int rowCount = 300;
+		String content = getContent(rowCount);
+		DataTable expected = parse(content, null, 1);
+		File file = createFile("a,b,c\r\n" + content);
+
+		// Windows end inside quoted content and between CR and LF
+		for (ForkJoinPool p : Arrays.asList(null, pool)) {
+			for (int windowSize = 40; windowSize < 400; windowSize += 61) {
+				DataTable data = parse(file, true, p, 16, windowSize);
+				assertEquals(rowCount, data.getRowCount());
+				for (int row = 0; row < rowCount; row++) {
+					for (int col = 0; col < expected.getColumnCount(); col++) {
+						assertEquals(expected.get(col, row), data.get(col, row));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testWindowErrorLine() throws IOException {
+		File file = createFile(getContent(200) + "x,0.0,foo\n" + getContent(10));
+		for (ForkJoinPool p : Arrays.asList(null, pool)) {
+			try {
+				parse(file, false, p, 16, 100);
+				fail("Expected IOException");
+			} catch (IOException e) {
+				assertTrue(e.getMessage().contains("line 201,"));
+			}
+		}
+	}
+
+	@Test
+	public void testRowLargerThanWindow() throws IOException {
+		File file = createFile("0,0.0,\"a\nb\nc\nd\"\n1,1.0,e\n");
+		for (ForkJoinPool p : Arrays.asList(null, pool)) {
+			try {
+				parse(file, false, p, 1, 8);
+				fail("Expected IOException");
+			} catch (IOException e) {
+				assertTrue(e.getMessage().contains("byte 0 "));
+			}
+		}
+	}
+}
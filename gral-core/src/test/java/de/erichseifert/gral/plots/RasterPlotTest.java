@@ -34,10 +34,12 @@ import static org.junit.Assert.fail;
 
 import de.erichseifert.gral.TestUtils;
 import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
 import de.erichseifert.gral.data.DummyData;
 import de.erichseifert.gral.graphics.DrawingContext;
 import de.erichseifert.gral.plots.RasterPlot.RasterRenderer;
 import de.erichseifert.gral.plots.points.PointRenderer;
+import de.erichseifert.gral.util.DataUtils;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -95,6 +97,55 @@ public class RasterPlotTest {
 		}
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testCreateRasterData() {
+		DataTable matrix = new DataTable(Double.class, Double.class, Double.class);
+		matrix.add(1.0, 2.0, 3.0);
+		matrix.add(4.0, null, 5.0);
+
+		DataSource raster = RasterPlot.createRasterData(matrix);
+		assertEquals(3, raster.getColumnCount());
+		assertEquals(6, raster.getRowCount());
+		assertEquals(1.0, raster.get(0, 4));
+		assertEquals(-1.0, raster.get(1, 4));
+		assertEquals(0.25, raster.get(2, 1));
+
+		double[] values = new double[8];
+		DataUtils.getValues(raster, 2, 1, values, 1, 6);
+		assertEquals(0.25, values[1], DELTA);
+		assertEquals(0.5, values[2], DELTA);
+		assertEquals(0.75, values[3], DELTA);
+		assertTrue(Double.isNaN(values[4]));
+		assertEquals(1.0, values[5], DELTA);
+		assertTrue(Double.isNaN(values[6]));
+
+		DataUtils.getValues(raster, 0, 2, values, 0, 3);
+		assertEquals(2.0, values[0], DELTA);
+		assertEquals(0.0, values[1], DELTA);
+		assertEquals(1.0, values[2], DELTA);
+
+		// The view reflects changes of the matrix
+		matrix.set(2, 1, 9.0);
+		assertEquals(1.0, raster.get(2, 5));
+		assertEquals(0.125, raster.get(2, 1));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testCreateRasterDataWithEmptyRow() {
+		DataTable matrix = new DataTable(Double.class, Double.class);
+		matrix.add(1.0, 3.0);
+		matrix.add(null, null);
+		matrix.add(5.0, 2.0);
+
+		DataSource raster = RasterPlot.createRasterData(matrix);
+		assertEquals(0.0, raster.get(2, 0));
+		assertTrue(Double.isNaN((Double) raster.get(2, 2)));
+		assertEquals(1.0, raster.get(2, 4));
+		assertEquals(0.25, raster.get(2, 5));
+	}
+
 	@Test
 	public void testSerialization() throws IOException, ClassNotFoundException {
 		RasterPlot original = plot;
@@ -0,0 +1,114 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.MutableDataSource;
+
+public class DataUtilsTest {
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testGetValues() {
+		final DataTable table = new DataTable(Integer.class, String.class);
+		table.add(1, "a");
+		table.add(null, "b");
+		table.add(3, "c");
+
+		// Data source that doesn't extend AbstractDataSource
+		DataSource data = (DataSource) Proxy.newProxyInstance(
+			DataSource.class.getClassLoader(), new Class<?>[] {DataSource.class},
+			new InvocationHandler() {
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args)
+						throws Throwable {
+					return method.invoke(table, args);
+				}
+			});
+
+		double[] values = new double[6];
+		DataUtils.getValues(data, 0, -1, values, 1, 5);
+		assertEquals(0.0, values[0], 0.0);
+		assertEquals(Double.NaN, values[1], 0.0);
+		assertEquals(1.0, values[2], 0.0);
+		assertEquals(Double.NaN, values[3], 0.0);
+		assertEquals(3.0, values[4], 0.0);
+		assertEquals(Double.NaN, values[5], 0.0);
+
+		DataUtils.getValues(data, 1, 0, values, 0, 2);
+		assertEquals(Double.NaN, values[0], 0.0);
+		assertEquals(Double.NaN, values[1], 0.0);
+
+		DataUtils.getValues(table, 0, 2, values, 0, 2);
+		assertEquals(3.0, values[0], 0.0);
+		assertEquals(Double.NaN, values[1], 0.0);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAddAll() {
+		final DataTable table = new DataTable(Integer.class, String.class);
+		table.add(1, "a");
+		final List<String> calls = new ArrayList<String>();
+
+		// Data sink that isn't a DataTable
+		MutableDataSource data = (MutableDataSource) Proxy.newProxyInstance(
+			MutableDataSource.class.getClassLoader(),
+			new Class<?>[] {MutableDataSource.class},
+			new InvocationHandler() {
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args)
+						throws Throwable {
+					calls.add(method.getName());
+					return method.invoke(table, args);
+				}
+			});
+
+		List<List<Comparable<?>>> rows = new ArrayList<List<Comparable<?>>>();
+		rows.add(Arrays.<Comparable<?>>asList(2, "b"));
+		rows.add(Arrays.<Comparable<?>>asList(3, "c"));
+		assertEquals(1, DataUtils.addAll(data, rows));
+		assertEquals(3, table.getRowCount());
+		assertEquals(3, table.get(0, 2));
+		assertEquals("c", table.get(1, 2));
+		assertEquals(2, Collections.frequency(calls, "add"));
+
+		assertEquals(3, DataUtils.addAll(table, rows));
+		assertEquals(5, table.getRowCount());
+		assertEquals(2, table.get(0, 3));
+
+		assertEquals(5, DataUtils.addAll(data,
+			new ArrayList<List<Comparable<?>>>()));
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+
+public class DoubleListTest {
+	private static final double DELTA = TestUtils.DELTA;
+
+	@Test
+	public void testCreate() {
+		assertEquals(0, new DoubleList().size());
+		assertEquals(0, new DoubleList(0).size());
+	}
+
+	@Test
+	public void testAdd() {
+		DoubleList list = new DoubleList(1);
+		for (int i = 0; i < 100; i++) {
+			list.add(i);
+		}
+		assertEquals(100, list.size());
+		assertEquals(0.0, list.get(0), DELTA);
+		assertEquals(99.0, list.get(99), DELTA);
+
+		list.add(new double[] {-1.0, -2.0, -3.0}, 1, 2);
+		assertEquals(102, list.size());
+		assertEquals(-2.0, list.get(100), DELTA);
+		assertEquals(-3.0, list.get(101), DELTA);
+	}
+
+	@Test
+	public void testSet() {
+		DoubleList list = new DoubleList();
+		list.add(1.0);
+		assertEquals(1.0, list.set(0, 2.0), DELTA);
+		assertEquals(2.0, list.get(0), DELTA);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetInvalidIndex() {
+		DoubleList list = new DoubleList();
+		list.add(1.0);
+		list.get(1);
+	}
+
+	@Test
+	public void testRange() {
+		DoubleList list = new DoubleList();
+		for (int i = 0; i < 5; i++) {
+			list.add(i);
+		}
+		double[] values = new double[4];
+		list.get(1, values, 1, 3);
+		assertArrayEquals(new double[] {0.0, 1.0, 2.0, 3.0}, values, DELTA);
+		assertArrayEquals(new double[] {0.0, 1.0, 2.0, 3.0, 4.0}, list.toArray(), DELTA);
+	}
+
+	@Test
+	public void testTruncateAndClear() {
+		DoubleList list = new DoubleList();
+		list.add(1.0);
+		list.add(2.0);
+		list.truncate(5);
+		assertEquals(2, list.size());
+		list.truncate(1);
+		assertEquals(1, list.size());
+		list.clear();
+		assertEquals(0, list.size());
+	}
+}
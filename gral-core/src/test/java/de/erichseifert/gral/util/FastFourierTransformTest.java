@@ -0,0 +1,111 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FastFourierTransformTest {
+	private static final double DELTA = 1e-9;
+
+	@Test
+	public void testGetPaddedSize() {
+		assertEquals(1, FastFourierTransform.getPaddedSize(0));
+		assertEquals(1, FastFourierTransform.getPaddedSize(1));
+		assertEquals(2, FastFourierTransform.getPaddedSize(2));
+		assertEquals(4, FastFourierTransform.getPaddedSize(3));
+		assertEquals(1024, FastFourierTransform.getPaddedSize(1000));
+		assertEquals(1024, FastFourierTransform.getPaddedSize(1024));
+	}
+
+	@Test
+	public void testTransform() {
+		Random random = new Random(42);
+		int n = 16;
+		double[] re = new double[n];
+		double[] im = new double[n];
+		for (int i = 0; i < n; i++) {
+			re[i] = random.nextGaussian();
+			im[i] = random.nextGaussian();
+		}
+		double[] re0 = re.clone();
+		double[] im0 = im.clone();
+
+		FastFourierTransform.transform(re, im);
+		for (int k = 0; k < n; k++) {
+			double sumRe = 0.0, sumIm = 0.0;
+			for (int j = 0; j < n; j++) {
+				double angle = -2.0*Math.PI*j*k/n;
+				sumRe += re0[j]*Math.cos(angle) - im0[j]*Math.sin(angle);
+				sumIm += re0[j]*Math.sin(angle) + im0[j]*Math.cos(angle);
+			}
+			assertEquals(sumRe, re[k], DELTA);
+			assertEquals(sumIm, im[k], DELTA);
+		}
+
+		FastFourierTransform.inverse(re, im);
+		for (int i = 0; i < n; i++) {
+			assertEquals(re0[i], re[i], DELTA);
+			assertEquals(im0[i], im[i], DELTA);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTransformInvalidLength() {
+		FastFourierTransform.transform(new double[3], new double[3]);
+	}
+
+	@Test
+	public void testConvolve() {
+		double[] result = FastFourierTransform.convolve(
+			new double[] {1.0, 2.0, 3.0}, new double[] {0.0, 1.0, 0.5});
+		double[] expected = {0.0, 1.0, 2.5, 4.0, 1.5};
+		assertEquals(expected.length, result.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], result[i], DELTA);
+		}
+
+		Random random = new Random(23);
+		double[] a = new double[100];
+		double[] b = new double[37];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = random.nextDouble();
+		}
+		for (int i = 0; i < b.length; i++) {
+			b[i] = random.nextDouble() - 0.5;
+		}
+		result = FastFourierTransform.convolve(a, b);
+		assertEquals(a.length + b.length - 1, result.length);
+		for (int i = 0; i < result.length; i++) {
+			double sum = 0.0;
+			for (int j = Math.max(0, i - b.length + 1); j <= Math.min(i, a.length - 1); j++) {
+				sum += a[j]*b[i - j];
+			}
+			assertEquals(sum, result[i], DELTA);
+		}
+
+		assertEquals(0, FastFourierTransform.convolve(new double[0], b).length);
+	}
+}
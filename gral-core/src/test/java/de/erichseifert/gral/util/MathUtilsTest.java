@@ -183,6 +183,18 @@ public class MathUtilsTest {
 		assertEquals(75.00, MathUtils.quantile(values, 1.0), DELTA);
 	}
 
+	@Test
+	public void testQuantilePrimitive() {
+		double[] values = {11.4, 17.3, 21.3, 25.9, 40.1, 50.5, 60.0, 70.0, 75.0, 0.0};
+		int length = 9;
+
+		assertEquals(11.40, MathUtils.quantile(values, length, 0.0), DELTA);
+		assertEquals(16.12, MathUtils.quantile(values, length, 0.1), DELTA);
+		assertEquals(40.10, MathUtils.quantile(values, length, 0.5), DELTA);
+		assertEquals(71.00, MathUtils.quantile(values, length, 0.9), DELTA);
+		assertEquals(75.00, MathUtils.quantile(values, length, 1.0), DELTA);
+	}
+
 	@Test
 	public void testIsCalculatable() {
 		// Number
@@ -0,0 +1,122 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SlidingMedianTest {
+	private static double median(List<Double> window) {
+		List<Double> values = new ArrayList<>();
+		for (double v : window) {
+			if (MathUtils.isCalculatable(v)) {
+				values.add(v);
+			}
+		}
+		if (values.isEmpty()) {
+			return Double.NaN;
+		}
+		java.util.Collections.sort(values);
+		return MathUtils.quantile(values, 0.5);
+	}
+
+	@Test
+	public void testCreate() {
+		SlidingMedian window = new SlidingMedian(5);
+		assertEquals(5, window.getCapacity());
+		assertEquals(0, window.size());
+		assertTrue(Double.isNaN(window.getMedian()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		new SlidingMedian(0);
+	}
+
+	@Test
+	public void testAdd() {
+		SlidingMedian window = new SlidingMedian(4);
+		window.add(3.0);
+		assertEquals(3.0, window.getMedian(), 0.0);
+		window.add(1.0);
+		assertEquals(2.0, window.getMedian(), 0.0);
+		window.add(5.0);
+		assertEquals(3.0, window.getMedian(), 0.0);
+		window.add(Double.NaN);
+		assertEquals(3.0, window.getMedian(), 0.0);
+		assertEquals(1, window.getInvalidCount());
+		assertEquals(4, window.size());
+		assertEquals(1.0, window.get(1), 0.0);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAddFull() {
+		SlidingMedian window = new SlidingMedian(1);
+		window.add(1.0);
+		window.add(2.0);
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testRemoveEmpty() {
+		new SlidingMedian(1).removeFirst();
+	}
+
+	@Test
+	public void testSliding() {
+		Random random = new Random(42);
+		for (int capacity : new int[] {1, 2, 3, 10, 101}) {
+			SlidingMedian window = new SlidingMedian(capacity);
+			LinkedList<Double> expected = new LinkedList<>();
+			for (int i = 0; i < 2000; i++) {
+				if (expected.size() == capacity || (!expected.isEmpty() && random.nextInt(4) == 0)) {
+					assertEquals(expected.removeFirst(), window.removeFirst(), 0.0);
+				}
+				double value;
+				int type = random.nextInt(20);
+				if (type == 0) {
+					value = Double.NaN;
+				} else if (type < 5) {
+					// Duplicates
+					value = random.nextInt(5);
+				} else {
+					value = random.nextGaussian();
+				}
+				window.add(value);
+				expected.add(value);
+
+				assertEquals(expected.size(), window.size());
+				assertEquals(median(expected), window.getMedian(), 1e-15);
+			}
+			window.clear();
+			assertEquals(0, window.size());
+			assertEquals(0, window.getInvalidCount());
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2019 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.erichseifert.gral.util.StatefulTokenizer.Token;
+
+public class StatefulTokenizerTest {
+	private static class ExpressionTokenizer extends StatefulTokenizer {
+		public ExpressionTokenizer() {
+			addJoinedType("text");
+			addIgnoredType("space");
+			putRules(
+				new Rule("\\s+", "space"),
+				new Rule("\\d+", "number"),
+				new Rule("\"", "quote", "string"),
+				new Rule("[a-z]+", "word"),
+				new Rule(".", "symbol")
+			);
+			putRules("string",
+				new Rule("\\\\(.)", "text"),
+				new Rule("\"", "quote", "#pop"),
+				new Rule(".", "text")
+			);
+		}
+	}
+
+	private static class BackReferenceTokenizer extends StatefulTokenizer {
+		public BackReferenceTokenizer() {
+			putRules(
+				new Rule("(['\"])(?:(?!\\1).)*\\1", "string"),
+				new Rule(".", "symbol")
+			);
+		}
+	}
+
+	private static void assertToken(Token token, int start, int end, Object type, String content) {
+		assertEquals(start, token.getStart());
+		assertEquals(end, token.getEnd());
+		assertEquals(type, token.getType());
+		assertEquals(content, token.getContent());
+	}
+
+	private static List<Token> toList(Iterator<Token> iterator) {
+		List<Token> tokens = new ArrayList<>();
+		while (iterator.hasNext()) {
+			tokens.add(iterator.next());
+		}
+		return tokens;
+	}
+
+	@Test
+	public void testTokenize() {
+		List<Token> tokens = new ExpressionTokenizer().tokenize("foo 12+\"a\\\"b\"");
+		assertEquals(6, tokens.size());
+		assertToken(tokens.get(0),  0,  3, "word", "foo");
+		assertToken(tokens.get(1),  4,  6, "number", "12");
+		assertToken(tokens.get(2),  6,  7, "symbol", "+");
+		assertToken(tokens.get(3),  7,  8, "quote", "\"");
+		assertToken(tokens.get(4),  8, 12, "text", "a\"b");
+		assertToken(tokens.get(5), 12, 13, "quote", "\"");
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals(0, new ExpressionTokenizer().tokenize("").size());
+		assertEquals(0, new ExpressionTokenizer().tokenize("   ").size());
+		assertFalse(new ExpressionTokenizer().iterator(new StringReader("")).hasNext());
+	}
+
+	@Test
+	public void testBackReference() {
+		List<Token> tokens = new BackReferenceTokenizer().tokenize("'a\"'\"b\"");
+		assertEquals(2, tokens.size());
+		assertToken(tokens.get(0), 0, 4, "string", "'");
+		assertToken(tokens.get(1), 4, 7, "string", "\"");
+	}
+
+	@Test
+	public void testReader() {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			input.append("abc ").append(i).append(" \"x\\\"y\" ");
+		}
+		for (int i = 0; i < 3*StatefulTokenizer.READ_SIZE; i++) {
+			input.append(i % 10);
+		}
+		input.append("\"unterminated");
+
+		ExpressionTokenizer tokenizer = new ExpressionTokenizer();
+		List<Token> expected = tokenizer.tokenize(input.toString());
+		List<Token> tokens = toList(tokenizer.iterator(new StringReader(input.toString())));
+		assertEquals(expected.size(), tokens.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Token e = expected.get(i);
+			assertToken(tokens.get(i), e.getStart(), e.getEnd(), e.getType(), e.getContent());
+		}
+		Token number = tokens.get(tokens.size() - 3);
+		assertEquals(3*StatefulTokenizer.READ_SIZE, number.getContent().length());
+		assertToken(tokens.get(tokens.size() - 1),
+			input.length() - 12, input.length(), "text", "unterminated");
+	}
+}
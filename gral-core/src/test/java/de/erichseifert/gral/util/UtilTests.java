@@ -33,7 +33,12 @@ import org.junit.runners.Suite;
 	GraphicsUtilsTest.class,
 	SortedListTest.class,
 	WindowIteratorTest.class,
-	ConcatenationIteratorTest.class
+	ConcatenationIteratorTest.class,
+	DoubleListTest.class,
+	FastFourierTransformTest.class,
+	SlidingMedianTest.class,
+	StatefulTokenizerTest.class,
+	DataUtilsTest.class
 })
 public class UtilTests {
 }
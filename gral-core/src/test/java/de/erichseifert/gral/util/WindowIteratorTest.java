@@ -64,4 +64,15 @@ public class WindowIteratorTest {
 
 		assertThat(hasNext, is(true));
 	}
+
+	@Test
+	public void testHasNextReturnsFalseWhenInputIsShorterThanWindow() {
+		int windowSize = 3;
+		Iterable<Object> iterable = Arrays.<Object>asList(0, 1);
+		WindowIterator<Object> windowIterator = new WindowIterator<>(iterable.iterator(), windowSize);
+
+		boolean hasNext = windowIterator.hasNext();
+
+		assertThat(hasNext, is(false));
+	}
 }